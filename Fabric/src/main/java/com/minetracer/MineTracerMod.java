@@ -16,6 +16,9 @@ public class MineTracerMod implements ModInitializer {
             System.out.println("[MineTracer] User caching enabled (max: " + MineTracerConfig.USER_CACHE_SIZE + " entries)");
         }
 
+        // Once-a-second upkeep and shutdown flushes of the in-memory aggregators
+        com.minetracer.features.minetracer.PeriodicFlush.register();
+
         // Register event listeners
         MineTracer.register();
 
@@ -23,11 +26,32 @@ public class MineTracerMod implements ModInitializer {
         com.minetracer.features.minetracer.listeners.ExplosionEventListener.register();
 
 
+        // Compile capture filters once every mod has registered its blocks and items
+        com.minetracer.features.minetracer.util.CaptureFilter.register();
+
         // Initialize new database-based storage system
         NewOptimizedLogStorage.registerServerLifecycle();
 
         // Initialize CoreProtect-style inspector system
         com.minetracer.features.minetracer.inspector.InspectorEventHandler.init();
 
+        // Apply rollback/restore jobs a little every tick and resume interrupted ones
+        com.minetracer.features.minetracer.rollback.RollbackScheduler.register();
+
+        // Write net container changes per visit instead of per click
+        com.minetracer.features.minetracer.ContainerSessionAggregator.register();
+
+        // Write hopper flow as periodic per-container totals
+        com.minetracer.features.minetracer.HopperFlowAggregator.register();
+
+        // Sum farm kills into per-minute rows
+        com.minetracer.features.minetracer.KillRollupAggregator.register();
+
+        // Shed low-value logging while the server or database falls behind
+        com.minetracer.features.minetracer.database.LoadGovernor.register();
+
+        // Stream and revert rollback preview ghost blocks
+        com.minetracer.features.minetracer.rollback.GhostPreview.register();
+
     }
 }
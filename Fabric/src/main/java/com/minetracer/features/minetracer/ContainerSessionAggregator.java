@@ -0,0 +1,125 @@
+package com.minetracer.features.minetracer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.util.CaptureFilter;
+import com.minetracer.features.minetracer.util.ItemIdentity;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Folds the container transactions of one visit into net per-item changes.
+ * A session runs from the first click in a container until its screen closes, the player
+ * moves on to another container, or it has been idle for the configured timeout. Only the
+ * net change of each item is logged, so sorting a chest by hand produces no rows at all.
+ * Server thread only.
+ */
+public class ContainerSessionAggregator {
+
+    private static class Session {
+        final PlayerEntity player;
+        final BlockPos pos;
+        final Object2IntMap<ItemStack> net = ItemIdentity.newCounter();
+        long lastActivity;
+
+        Session(PlayerEntity player, BlockPos pos) {
+            this.player = player;
+            this.pos = pos;
+        }
+    }
+
+    private static final Map<UUID, Session> sessions = new HashMap<>();
+
+    public static void register() {
+        PeriodicFlush.add(
+                () -> flushIdle(System.currentTimeMillis() - MineTracerConfig.CONTAINER_SESSION_TIMEOUT_SECONDS * 1000L),
+                ContainerSessionAggregator::flushAll);
+    }
+
+    /**
+     * Record a transaction seen by the screen handler
+     */
+    public static void record(String action, PlayerEntity player, BlockPos pos, ItemStack stack) {
+        if (!CaptureFilter.shouldCaptureItem(player.getWorld(), pos, stack.getItem())) {
+            return;
+        }
+        if (MineTracerConfig.CONTAINER_SESSION_DETAIL) {
+            OptimizedLogStorage.logContainerAction(action, player, pos, stack);
+            return;
+        }
+        // Client-side screen handlers (singleplayer) must not touch the server's sessions
+        if (stack.isEmpty() || player.getWorld().isClient) {
+            return;
+        }
+
+        Session session = sessions.get(player.getUuid());
+        if (session != null && !session.pos.equals(pos)) {
+            flush(session);
+            session = null;
+        }
+        if (session == null) {
+            session = new Session(player, pos.toImmutable());
+            sessions.put(player.getUuid(), session);
+        }
+
+        int amount = "deposited".equals(action) ? stack.getCount() : -stack.getCount();
+        ItemStack key = stack.copy();
+        key.setCount(1);
+        session.net.mergeInt(key, amount, Integer::sum);
+        session.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * The player's container screen closed
+     */
+    public static void close(PlayerEntity player) {
+        if (player.getWorld().isClient) {
+            return;
+        }
+        Session session = sessions.remove(player.getUuid());
+        if (session != null) {
+            flush(session);
+        }
+    }
+
+    private static void flushAll() {
+        for (Session session : sessions.values()) {
+            flush(session);
+        }
+        sessions.clear();
+    }
+
+    private static void flushIdle(long idleBefore) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            Session session = it.next();
+            if (session.lastActivity < idleBefore) {
+                it.remove();
+                flush(session);
+            }
+        }
+    }
+
+    private static void flush(Session session) {
+        for (Object2IntMap.Entry<ItemStack> entry : session.net.object2IntEntrySet()) {
+            int change = entry.getIntValue();
+            if (change == 0) {
+                continue;
+            }
+            ItemStack stack = entry.getKey().copy();
+            stack.setCount(Math.abs(change));
+            OptimizedLogStorage.logContainerAction(change > 0 ? "deposited" : "withdrew", session.player, session.pos, stack);
+        }
+        session.net.clear();
+    }
+}
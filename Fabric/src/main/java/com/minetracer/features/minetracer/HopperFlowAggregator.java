@@ -0,0 +1,158 @@
+package com.minetracer.features.minetracer;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.util.CaptureFilter;
+import com.minetracer.mixin.DoubleInventoryAccessor;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.inventory.DoubleInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Objects;
+
+/**
+ * Sums hopper, dropper and other automated inventory transfers in memory and writes them as
+ * rollups: every few seconds one "withdrew" row at the source container and one "deposited"
+ * row at the destination per item, logged under {@link #USER}. A sorting system moving
+ * thousands of items a minute then costs a handful of rows instead of one per item.
+ * Server thread only.
+ */
+public class HopperFlowAggregator {
+
+    public static final String USER = "#hopper";
+
+    // Marks a side of the transfer that is not a block container (item entities, minecarts)
+    private static final long NO_POS = Long.MIN_VALUE;
+
+    private static final class FlowKey {
+        World world;
+        long from;
+        long to;
+        Item item;
+        NbtCompound nbt;
+
+        FlowKey set(World world, long from, long to, Item item, NbtCompound nbt) {
+            this.world = world;
+            this.from = from;
+            this.to = to;
+            this.item = item;
+            this.nbt = nbt;
+            return this;
+        }
+
+        FlowKey copy() {
+            return new FlowKey().set(world, from, to, item, nbt == null ? null : nbt.copy());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlowKey)) {
+                return false;
+            }
+            FlowKey other = (FlowKey) o;
+            return world == other.world && from == other.from && to == other.to
+                    && item == other.item && Objects.equals(nbt, other.nbt);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(world);
+            hash = 31 * hash + Long.hashCode(from);
+            hash = 31 * hash + Long.hashCode(to);
+            hash = 31 * hash + System.identityHashCode(item);
+            return 31 * hash + Objects.hashCode(nbt);
+        }
+    }
+
+    private static final Object2IntOpenHashMap<FlowKey> flows = new Object2IntOpenHashMap<>();
+    // Reused for lookups so a transfer into an existing counter allocates nothing
+    private static final FlowKey probe = new FlowKey();
+    private static int seconds = 0;
+
+    public static void register() {
+        PeriodicFlush.add(() -> {
+            if (++seconds >= MineTracerConfig.HOPPER_ROLLUP_SECONDS) {
+                seconds = 0;
+                flushAll();
+            }
+        }, HopperFlowAggregator::flushAll);
+    }
+
+    /**
+     * Whether a container log row is a hopper rollup rather than a player action
+     */
+    public static boolean isRollup(String user) {
+        return USER.equals(user);
+    }
+
+    /**
+     * Record a completed transfer of {@code moved} items from one inventory to another.
+     * {@code from} is null when the items came from an item entity.
+     */
+    public static void record(Inventory from, Inventory to, Item item, NbtCompound nbt, int moved) {
+        if (moved <= 0 || !MineTracerConfig.HOPPER_TRANSACTIONS || !MineTracerConfig.LOG_CONTAINER_TRANSACTIONS) {
+            return;
+        }
+        BlockEntity toEntity = blockEntityOf(to);
+        BlockEntity fromEntity = blockEntityOf(from);
+        World world = toEntity != null ? toEntity.getWorld() : fromEntity != null ? fromEntity.getWorld() : null;
+        if (world == null || world.isClient || !CaptureFilter.shouldCaptureItem(world,
+                toEntity != null ? toEntity.getPos() : fromEntity.getPos(), item)) {
+            return;
+        }
+        long toPos = positionOf(world, toEntity);
+        long fromPos = positionOf(world, fromEntity);
+        if (toPos == NO_POS && fromPos == NO_POS) {
+            return;
+        }
+
+        probe.set(world, fromPos, toPos, item, nbt);
+        if (flows.containsKey(probe)) {
+            flows.addTo(probe, moved);
+        } else {
+            flows.put(probe.copy(), moved);
+        }
+    }
+
+    private static void flushAll() {
+        if (flows.isEmpty()) {
+            return;
+        }
+        for (Object2IntMap.Entry<FlowKey> entry : flows.object2IntEntrySet()) {
+            FlowKey key = entry.getKey();
+            ItemStack stack = new ItemStack(key.item, entry.getIntValue());
+            stack.setNbt(key.nbt);
+            if (key.from != NO_POS) {
+                NewOptimizedLogStorage.logContainerAction("withdrew", USER, key.world, BlockPos.fromLong(key.from), stack);
+            }
+            if (key.to != NO_POS) {
+                NewOptimizedLogStorage.logContainerAction("deposited", USER, key.world, BlockPos.fromLong(key.to), stack);
+            }
+        }
+        flows.clear();
+    }
+
+    private static BlockEntity blockEntityOf(Inventory inventory) {
+        if (inventory instanceof DoubleInventory) {
+            // A double chest is logged at its canonical half, which either half resolves to
+            inventory = ((DoubleInventoryAccessor) inventory).getFirst();
+        }
+        return inventory instanceof BlockEntity ? (BlockEntity) inventory : null;
+    }
+
+    private static long positionOf(World world, BlockEntity blockEntity) {
+        if (blockEntity == null || blockEntity.getWorld() != world) {
+            return NO_POS;
+        }
+        BlockPos pos = ContainerPositionTracker.getContainerPosition(world, blockEntity.getPos());
+        return pos != null ? pos.asLong() : NO_POS;
+    }
+}
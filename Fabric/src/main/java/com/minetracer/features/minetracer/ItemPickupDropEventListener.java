@@ -1,23 +1,93 @@
 package com.minetracer.features.minetracer;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.LoadGovernor;
+import com.minetracer.features.minetracer.util.CaptureFilter;
 import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.BlockPos;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 public class ItemPickupDropEventListener {
     private static final String PICKUP_ACTION = "pickup";
     private static final String DROP_ACTION = "drop";
+    /**
+     * Pickups of one item by one player, summed until the window closes
+     */
+    private static final class PickupKey {
+        UUID player;
+        Item item;
+        NbtCompound nbt;
+        PickupKey set(UUID player, Item item, NbtCompound nbt) {
+            this.player = player;
+            this.item = item;
+            this.nbt = nbt;
+            return this;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PickupKey)) {
+                return false;
+            }
+            PickupKey other = (PickupKey) o;
+            return player.equals(other.player) && item == other.item && Objects.equals(nbt, other.nbt);
+        }
+        @Override
+        public int hashCode() {
+            return 31 * (31 * player.hashCode() + System.identityHashCode(item)) + Objects.hashCode(nbt);
+        }
+    }
+    private static final class PendingPickup {
+        final ServerPlayerEntity player;
+        final BlockPos pos;
+        final String world;
+        final long started;
+        int count;
+        PendingPickup(ServerPlayerEntity player, BlockPos pos, String world, long started) {
+            this.player = player;
+            this.pos = pos;
+            this.world = world;
+            this.started = started;
+        }
+    }
+    // Server thread only
+    private static final Map<PickupKey, PendingPickup> pendingPickups = new HashMap<>();
+    private static final PickupKey probe = new PickupKey();
     public static void register() {
+        PeriodicFlush.add(
+                () -> flushPickups(System.currentTimeMillis() - LoadGovernor.pickupWindowSeconds() * 1000L),
+                () -> flushPickups(Long.MAX_VALUE));
     }
-    public static void logItemPickup(ServerPlayerEntity player, ItemEntity itemEntity, ItemStack originalStack) {
-        if (player == null || itemEntity == null || originalStack == null || originalStack.isEmpty()) {
+    /**
+     * Record a completed pickup. Only the item, its NBT reference and the count are passed in;
+     * the NBT is copied once per window, when a new pending pickup starts.
+     */
+    public static void logItemPickup(ServerPlayerEntity player, ItemEntity itemEntity, Item item, NbtCompound nbt, int count) {
+        if (player == null || itemEntity == null || count <= 0 || !MineTracerConfig.LOG_ITEM_PICKUPS
+                || !CaptureFilter.shouldCaptureItem(itemEntity.getWorld(), itemEntity.getBlockPos(), item)) {
             return;
         }
-        BlockPos pos = itemEntity.getBlockPos();
-        String world = player.getWorld().getRegistryKey().getValue().toString();
-        NewOptimizedLogStorage.logItemPickupDropAction(PICKUP_ACTION, player, pos, originalStack.copy(), world);
+        PendingPickup pending = pendingPickups.get(probe.set(player.getUuid(), item, nbt));
+        if (pending == null) {
+            String world = player.getWorld().getRegistryKey().getValue().toString();
+            pending = new PendingPickup(player, itemEntity.getBlockPos(), world, System.currentTimeMillis());
+            pendingPickups.put(new PickupKey().set(player.getUuid(), item, nbt == null ? null : nbt.copy()), pending);
+        } else {
+            LoadGovernor.recordCoalescedPickup();
+        }
+        pending.count += count;
     }
     public static void logItemDrop(ServerPlayerEntity player, ItemEntity itemEntity) {
-        if (player == null || itemEntity == null || itemEntity.getStack().isEmpty()) {
+        if (player == null || itemEntity == null || itemEntity.getStack().isEmpty()
+                || !CaptureFilter.shouldCaptureItem(itemEntity.getWorld(), itemEntity.getBlockPos(), itemEntity.getStack().getItem())) {
+            return;
+        }
+        if (MineTracerConfig.LOG_ITEM_DROPS && !LoadGovernor.shouldLogDrop()) {
             return;
         }
         ItemStack stack = itemEntity.getStack();
@@ -25,4 +95,21 @@ public class ItemPickupDropEventListener {
         String world = player.getWorld().getRegistryKey().getValue().toString();
         NewOptimizedLogStorage.logItemPickupDropAction(DROP_ACTION, player, pos, stack, world);
     }
+    private static void flushPickups(long startedBefore) {
+        if (pendingPickups.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<PickupKey, PendingPickup>> it = pendingPickups.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<PickupKey, PendingPickup> entry = it.next();
+            PendingPickup pending = entry.getValue();
+            if (pending.started >= startedBefore) {
+                continue;
+            }
+            it.remove();
+            ItemStack stack = new ItemStack(entry.getKey().item, pending.count);
+            stack.setNbt(entry.getKey().nbt);
+            NewOptimizedLogStorage.logItemPickupDropAction(PICKUP_ACTION, pending.player, pending.pos, stack, pending.world);
+        }
+    }
 }
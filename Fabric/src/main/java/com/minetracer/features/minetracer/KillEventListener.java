@@ -1,4 +1,5 @@
 package com.minetracer.features.minetracer;
+import com.minetracer.features.minetracer.util.CaptureFilter;
 import net.fabricmc.fabric.api.entity.event.v1.ServerEntityCombatEvents;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -14,11 +15,19 @@ public class KillEventListener {
             if (!(killer instanceof PlayerEntity)) {
                 return;
             }
+            if (!CaptureFilter.shouldCapture(world, killedEntity.getBlockPos())) {
+                return;
+            }
             String killerName = killer.getName().getString();
             String victimName = killedEntity.getName().getString();
             BlockPos pos = killedEntity.getBlockPos();
             String worldName = world.getRegistryKey().getValue().toString();
-            NewOptimizedLogStorage.logKillAction(killerName, victimName, pos, worldName);
+            // Players and named entities keep a row each; farm mobs are summed per minute
+            if (killedEntity instanceof PlayerEntity || killedEntity.hasCustomName()) {
+                NewOptimizedLogStorage.logKillAction(killerName, victimName, pos, worldName);
+            } else {
+                KillRollupAggregator.record(killerName, victimName, pos, worldName);
+            }
         });
     }
 }
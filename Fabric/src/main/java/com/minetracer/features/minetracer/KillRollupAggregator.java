@@ -0,0 +1,94 @@
+package com.minetracer.features.minetracer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Sums kills of unnamed mobs per (killer, victim type, chunk, minute) and writes one kill row
+ * with a count when the minute is over. A mob grinder then logs a row per mob type per minute
+ * instead of one per kill. Server thread only.
+ */
+public class KillRollupAggregator {
+
+    private static final long WINDOW_MS = 60_000L;
+
+    private static final class RollupKey {
+        final String killer;
+        final String victim;
+        final String world;
+        final long chunk;
+        final long window;
+
+        RollupKey(String killer, String victim, String world, long chunk, long window) {
+            this.killer = killer;
+            this.victim = victim;
+            this.world = world;
+            this.chunk = chunk;
+            this.window = window;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RollupKey)) {
+                return false;
+            }
+            RollupKey other = (RollupKey) o;
+            return chunk == other.chunk && window == other.window && killer.equals(other.killer)
+                    && victim.equals(other.victim) && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(killer, victim, world, chunk, window);
+        }
+    }
+
+    private static class Rollup {
+        // Where and when the first kill of the window happened, so range and time lookups still find the row
+        final BlockPos pos;
+        final long firstKillAt;
+        int count;
+
+        Rollup(BlockPos pos, long firstKillAt) {
+            this.pos = pos;
+            this.firstKillAt = firstKillAt;
+        }
+    }
+
+    private static final Map<RollupKey, Rollup> rollups = new HashMap<>();
+
+    public static void register() {
+        PeriodicFlush.add(() -> flushBefore(System.currentTimeMillis() / WINDOW_MS), () -> flushBefore(Long.MAX_VALUE));
+    }
+
+    /**
+     * Count a kill towards the rollup of the current minute
+     */
+    public static void record(String killerName, String victimName, BlockPos pos, String world) {
+        long now = System.currentTimeMillis();
+        RollupKey key = new RollupKey(killerName, victimName, world, ChunkPos.toLong(pos), now / WINDOW_MS);
+        rollups.computeIfAbsent(key, k -> new Rollup(pos.toImmutable(), now)).count++;
+    }
+
+    private static void flushBefore(long window) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<RollupKey, Rollup>> it = rollups.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<RollupKey, Rollup> entry = it.next();
+            RollupKey key = entry.getKey();
+            if (key.window >= window) {
+                continue;
+            }
+            it.remove();
+            Rollup rollup = entry.getValue();
+            NewOptimizedLogStorage.logKillAction(key.killer, key.victim, rollup.pos, key.world, rollup.count, rollup.firstKillAt);
+        }
+    }
+}
@@ -6,9 +6,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-import com.minetracer.features.minetracer.database.MineTracerConsumer;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.LoadGovernor;
+import com.minetracer.features.minetracer.database.LookupScheduler;
 import com.minetracer.features.minetracer.database.MineTracerLookup;
+import com.minetracer.features.minetracer.database.RolledBackMarker;
+import com.minetracer.features.minetracer.database.StorageBackends;
+import com.minetracer.features.minetracer.rollback.BlockStateDecoder;
+import com.minetracer.features.minetracer.rollback.GhostPreview;
+import com.minetracer.features.minetracer.rollback.RollbackJob;
+import com.minetracer.features.minetracer.rollback.RollbackPlanner;
+import com.minetracer.features.minetracer.rollback.RollbackScheduler;
+import com.minetracer.features.minetracer.rollback.RollbackStep;
+import com.minetracer.features.minetracer.rollback.SectionBatcher;
+import com.minetracer.features.minetracer.rollback.UndoJournal;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
@@ -17,11 +31,9 @@ import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 
 import me.lucko.fabric.api.permissions.v0.Permissions;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
-import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
-import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
 import net.minecraft.registry.Registries;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -33,27 +45,6 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 public class MineTracerCommand {
     
-    // Undo tracking system - stores last rollback/restore operation per player
-    private static class UndoOperation {
-        final String type; // "rollback" or "restore"
-        final List<MineTracerLookup.BlockLogEntry> blockLogs;
-        final List<MineTracerLookup.SignLogEntry> signLogs;
-        final List<MineTracerLookup.ContainerLogEntry> containerLogs;
-        final Instant timestamp;
-        
-        UndoOperation(String type, List<MineTracerLookup.BlockLogEntry> blockLogs,
-                     List<MineTracerLookup.SignLogEntry> signLogs,
-                     List<MineTracerLookup.ContainerLogEntry> containerLogs) {
-            this.type = type;
-            this.blockLogs = new ArrayList<>(blockLogs);
-            this.signLogs = new ArrayList<>(signLogs);
-            this.containerLogs = new ArrayList<>(containerLogs);
-            this.timestamp = Instant.now();
-        }
-    }
-    
-    private static final Map<UUID, UndoOperation> lastOperations = new java.util.concurrent.ConcurrentHashMap<>();
-    
     public static void register() {
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             dispatcher.register(CommandManager.literal("minetracer")
@@ -89,9 +80,34 @@ public class MineTracerCommand {
                     .then(CommandManager.literal("saves")
                             .requires(source -> Permissions.check(source, "minetracer.command.saves", 2))
                             .executes(MineTracerCommand::showSaveHistory))
+                    .then(CommandManager.literal("preview")
+                            .requires(source -> Permissions.check(source, "minetracer.command.rollback", 2))
+                            .then(CommandManager.literal("clear")
+                                    .executes(MineTracerCommand::clearPreview)))
+                    .then(CommandManager.literal("jobs")
+                            .requires(source -> Permissions.check(source, "minetracer.command.rollback", 2))
+                            .executes(MineTracerCommand::listJobs))
+                    .then(CommandManager.literal("status")
+                            .requires(source -> Permissions.check(source, "minetracer.command.status", 2))
+                            .executes(MineTracerCommand::status))
+                    .then(CommandManager.literal("purge")
+                            .requires(source -> Permissions.check(source, "minetracer.command.purge", 4))
+                            .then(CommandManager.argument("days", com.mojang.brigadier.arguments.IntegerArgumentType.integer(1))
+                                    .executes(MineTracerCommand::purge)))
+                    .then(CommandManager.literal("job")
+                            .requires(source -> Permissions.check(source, "minetracer.command.rollback", 2))
+                            .then(CommandManager.literal("pause")
+                                    .then(CommandManager.argument("id", com.mojang.brigadier.arguments.IntegerArgumentType.integer(1))
+                                            .executes(ctx -> controlJob(ctx, "pause"))))
+                            .then(CommandManager.literal("resume")
+                                    .then(CommandManager.argument("id", com.mojang.brigadier.arguments.IntegerArgumentType.integer(1))
+                                            .executes(ctx -> controlJob(ctx, "resume"))))
+                            .then(CommandManager.literal("cancel")
+                                    .then(CommandManager.argument("id", com.mojang.brigadier.arguments.IntegerArgumentType.integer(1))
+                                            .executes(ctx -> controlJob(ctx, "cancel")))))
                     .executes(context -> {
                         ServerCommandSource source = context.getSource();
-                        source.sendError(Text.literal("Invalid command usage. Use /minetracer <lookup|rollback|restore|undo|page|inspector|save|saves>"));
+                        source.sendError(Text.literal("Invalid command usage. Use /minetracer <lookup|rollback|restore|undo|page|inspector|save|saves|preview|jobs|job|status|purge>"));
                         return 0;
                     }));
 
@@ -300,185 +316,94 @@ public class MineTracerCommand {
             return 0;
         }
         String arg = StringArgumentType.getString(ctx, "arg");
-        CompletableFuture.supplyAsync(() -> {
-            String userFilter = null;
-            String timeArg = null;
-            int range = 100;
-            java.util.Set<String> actionFilters = new java.util.HashSet<>();
-            String includeItem = null;
-            String excludeItem = null;
-            for (String part : arg.split(" ")) {
-                if (part.startsWith("user:")) {
-                    userFilter = part.substring(5);
-                } else if (part.startsWith("time:")) {
-                    timeArg = part.substring(5);
-                } else if (part.startsWith("range:")) {
-                    try {
-                        range = Integer.parseInt(part.substring(6));
-                    } catch (Exception ignored) {
+        String userFilter = null;
+        String timeArg = null;
+        int range = 100;
+        java.util.Set<String> actionFilters = new java.util.HashSet<>();
+        String includeItem = null;
+        String excludeItem = null;
+        for (String part : arg.split(" ")) {
+            if (part.startsWith("user:")) {
+                userFilter = part.substring(5);
+            } else if (part.startsWith("time:")) {
+                timeArg = part.substring(5);
+            } else if (part.startsWith("range:")) {
+                try {
+                    range = Integer.parseInt(part.substring(6));
+                } catch (Exception ignored) {
+                }
+            } else if (part.startsWith("action:")) {
+                String actions = part.substring(7).toLowerCase();
+                for (String act : actions.split(",")) {
+                    act = act.trim();
+                    if (act.equals("place")) {
+                        act = "placed";
                     }
-                } else if (part.startsWith("action:")) {
-                    String actions = part.substring(7).toLowerCase();
-                    for (String act : actions.split(",")) {
-                        act = act.trim();
-                        if (act.equals("place")) {
-                            act = "placed";
-                        }
-                        if (act.equals("sign")) {
-                            act = "edit";
-                        }
-                        if (!act.isEmpty()) {
-                            actionFilters.add(act);
-                        }
+                    if (act.equals("sign")) {
+                        act = "edit";
+                    }
+                    if (!act.isEmpty()) {
+                        actionFilters.add(act);
                     }
-                } else if (part.startsWith("include:") || part.startsWith("i:")) {
-                    includeItem = part.startsWith("include:") ? part.substring(8) : part.substring(2);
-                } else if (part.startsWith("exclude:") || part.startsWith("e:")) {
-                    excludeItem = part.startsWith("exclude:") ? part.substring(8) : part.substring(2);
-                }
-            }
-            BlockPos playerPos = source.getPlayer().getBlockPos();
-            Instant cutoff = null;
-            if (timeArg != null) {
-                long seconds = parseTimeArg(timeArg);
-                cutoff = Instant.now().minusSeconds(seconds);
-            }
-            boolean hasRange = range != 100; // 100 is the default, so anything else means range was specified
-            boolean hasTime = timeArg != null;
-            boolean hasUser = userFilter != null;
-            int restrictionCount = (hasRange ? 1 : 0) + (hasTime ? 1 : 0) + (hasUser ? 1 : 0);
-            if (restrictionCount < 2) {
-                source.sendError(Text.literal(
-                        "Lookup requires at least 2 of these filters: range:<blocks>, time:<duration>, user:<player>. Examples: 'range:50 user:PlayerName' or 'time:1h user:PlayerName' or 'range:20 time:30m'"));
-                return null;
-            }
-            BlockPos searchCenter = playerPos;
-            int searchRange = range;
-            if (hasUser && !hasRange) {
-                searchRange = 50000; // Very large range for global search
-            }
-            boolean filterByKiller = actionFilters.contains("kill");
-            CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture;
-            CompletableFuture<List<MineTracerLookup.SignLogEntry>> signLogsFuture;
-            CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> containerLogsFuture;
-            CompletableFuture<List<MineTracerLookup.KillLogEntry>> killLogsFuture;
-            CompletableFuture<List<MineTracerLookup.ItemPickupDropLogEntry>> itemLogsFuture;
-            ServerPlayerEntity player = source.getPlayer();
-            String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
-            if (hasUser && !hasRange) {
-                blockLogsFuture = MineTracerLookup.getBlockLogsForUserAsync(userFilter, worldName);
-                signLogsFuture = MineTracerLookup.getSignLogsForUserAsync(userFilter, worldName);
-                containerLogsFuture = MineTracerLookup.getContainerLogsForUserAsync(userFilter, worldName);
-                killLogsFuture = MineTracerLookup.getKillLogsForUserAsync(userFilter, worldName);
-                itemLogsFuture = MineTracerLookup.getItemPickupDropLogsForUserAsync(userFilter, worldName);
-            } else {
-                blockLogsFuture = MineTracerLookup.getBlockLogsInRangeAsync(playerPos, range, userFilter, worldName);
-                signLogsFuture = MineTracerLookup.getSignLogsInRangeAsync(playerPos, range, userFilter, worldName);
-                containerLogsFuture = MineTracerLookup.getContainerLogsInRangeAsync(playerPos, range, userFilter, worldName);
-                killLogsFuture = MineTracerLookup.getKillLogsInRangeAsync(playerPos, range, userFilter, worldName);
-                itemLogsFuture = userFilter != null ? MineTracerLookup.getItemPickupDropLogsForUserAsync(userFilter, worldName) : CompletableFuture.supplyAsync(() -> new ArrayList<>());
-            }
-            try {
-                List<MineTracerLookup.BlockLogEntry> blockLogs = blockLogsFuture.get();
-                List<MineTracerLookup.SignLogEntry> signLogs = signLogsFuture.get();
-                List<MineTracerLookup.ContainerLogEntry> containerLogs = containerLogsFuture.get();
-                List<MineTracerLookup.KillLogEntry> killLogs = killLogsFuture.get();
-                List<MineTracerLookup.ItemPickupDropLogEntry> itemLogs = itemLogsFuture.get();
-                
-                if (userFilter != null && !(hasUser && !hasRange)) {
-                    // Note: User filtering is already handled by database queries above
-                    // Removing redundant filtering to ensure TNT (#tnt) and other non-player entities are included
-                }
-                if (cutoff != null) {
-                    final Instant cutoffFinal = cutoff;
-                    blockLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-                    signLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-                    containerLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-                    killLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-                    itemLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-                }
-                if (!actionFilters.isEmpty()) {
-                    containerLogs.removeIf(
-                            entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-                    blockLogs.removeIf(
-                            entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-                    signLogs.removeIf(
-                            entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-                    killLogs.removeIf(
-                            entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-                    itemLogs.removeIf(
-                            entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-                }
-                if (includeItem != null && !includeItem.isEmpty()) {
-                    final String includeItemFinal = includeItem;
-                    
-                    // Use CoreProtect-style partial matching instead of exact equals
-                    containerLogs.removeIf(
-                            entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                                    Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
-                    blockLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                            entry.blockId, includeItemFinal));
-                    itemLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
-                }
-                if (excludeItem != null && !excludeItem.isEmpty()) {
-                    final String excludeItemFinal = excludeItem;
-                    
-                    // Exclude matching items
-                    containerLogs.removeIf(
-                            entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                                    Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
-                    blockLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                            entry.blockId, excludeItemFinal));
-                    itemLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
-                }
-                List<FlatLogEntry> flatList = new ArrayList<>();
-                for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
-                    flatList.add(new FlatLogEntry(entry, "container"));
-                }
-                for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-                    flatList.add(new FlatLogEntry(entry, "block"));
-                }
-                for (MineTracerLookup.SignLogEntry entry : signLogs) {
-                    flatList.add(new FlatLogEntry(entry, "sign"));
-                }
-                for (MineTracerLookup.KillLogEntry entry : killLogs) {
-                    flatList.add(new FlatLogEntry(entry, "kill"));
-                }
-                for (MineTracerLookup.ItemPickupDropLogEntry entry : itemLogs) {
-                    flatList.add(new FlatLogEntry(entry, "item"));
                 }
-                flatList.sort((a, b) -> {
-                    Instant aTime = a.entry instanceof MineTracerLookup.ContainerLogEntry ? ((MineTracerLookup.ContainerLogEntry) a.entry).timestamp
-                            : a.entry instanceof MineTracerLookup.BlockLogEntry
-                                    ? ((MineTracerLookup.BlockLogEntry) a.entry).timestamp
-                                    : a.entry instanceof MineTracerLookup.SignLogEntry
-                                            ? ((MineTracerLookup.SignLogEntry) a.entry).timestamp
-                                            : a.entry instanceof MineTracerLookup.KillLogEntry
-                                                    ? ((MineTracerLookup.KillLogEntry) a.entry).timestamp
-                                                    : a.entry instanceof MineTracerLookup.ItemPickupDropLogEntry
-                                                            ? ((MineTracerLookup.ItemPickupDropLogEntry) a.entry).timestamp
-                                                            : Instant.EPOCH;
-                    Instant bTime = b.entry instanceof MineTracerLookup.ContainerLogEntry ? ((MineTracerLookup.ContainerLogEntry) b.entry).timestamp
-                            : b.entry instanceof MineTracerLookup.BlockLogEntry
-                                    ? ((MineTracerLookup.BlockLogEntry) b.entry).timestamp
-                                    : b.entry instanceof MineTracerLookup.SignLogEntry
-                                            ? ((MineTracerLookup.SignLogEntry) b.entry).timestamp
-                                            : b.entry instanceof MineTracerLookup.KillLogEntry
-                                                    ? ((MineTracerLookup.KillLogEntry) b.entry).timestamp
-                                                    : b.entry instanceof MineTracerLookup.ItemPickupDropLogEntry
-                                                            ? ((MineTracerLookup.ItemPickupDropLogEntry) b.entry).timestamp
-                                                            : Instant.EPOCH;
-                    return bTime.compareTo(aTime);
-                });
-                return flatList;
-            } catch (Exception e) {
-                throw new RuntimeException("Error executing lookup", e);
+            } else if (part.startsWith("include:") || part.startsWith("i:")) {
+                includeItem = part.startsWith("include:") ? part.substring(8) : part.substring(2);
+            } else if (part.startsWith("exclude:") || part.startsWith("e:")) {
+                excludeItem = part.startsWith("exclude:") ? part.substring(8) : part.substring(2);
             }
-        }).thenAccept(flatList -> {
-            QueryContext queryContext = new QueryContext(flatList, arg, source.getPlayer().getBlockPos());
-            lastQueries.put(source.getPlayer().getUuid(), queryContext);
+        }
+        ServerPlayerEntity player = source.getPlayer();
+        BlockPos playerPos = player.getBlockPos();
+        Instant cutoff = null;
+        if (timeArg != null) {
+            long seconds = parseTimeArg(timeArg);
+            cutoff = Instant.now().minusSeconds(seconds);
+        }
+        boolean hasRange = range != 100; // 100 is the default, so anything else means range was specified
+        boolean hasTime = timeArg != null;
+        boolean hasUser = userFilter != null;
+        int restrictionCount = (hasRange ? 1 : 0) + (hasTime ? 1 : 0) + (hasUser ? 1 : 0);
+        if (restrictionCount < 2) {
+            source.sendError(Text.literal(
+                    "Lookup requires at least 2 of these filters: range:<blocks>, time:<duration>, user:<player>. Examples: 'range:50 user:PlayerName' or 'time:1h user:PlayerName' or 'range:20 time:30m'"));
+            return 0;
+        }
+        String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
+        
+        // Queries run in the command lane and count towards this player's concurrency limit
+        Executor executor = LookupScheduler.executor(LookupScheduler.Priority.COMMAND, player.getUuid());
+        CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture;
+        CompletableFuture<List<MineTracerLookup.SignLogEntry>> signLogsFuture;
+        CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> containerLogsFuture;
+        CompletableFuture<List<MineTracerLookup.KillLogEntry>> killLogsFuture;
+        CompletableFuture<List<MineTracerLookup.ItemPickupDropLogEntry>> itemLogsFuture;
+        if (hasUser && !hasRange) {
+            blockLogsFuture = MineTracerLookup.getBlockLogsForUserAsync(userFilter, worldName, executor);
+            signLogsFuture = MineTracerLookup.getSignLogsForUserAsync(userFilter, worldName, executor);
+            containerLogsFuture = MineTracerLookup.getContainerLogsForUserAsync(userFilter, worldName, executor);
+            killLogsFuture = MineTracerLookup.getKillLogsForUserAsync(userFilter, worldName, executor);
+            itemLogsFuture = MineTracerLookup.getItemPickupDropLogsForUserAsync(userFilter, worldName, executor);
+        } else {
+            blockLogsFuture = MineTracerLookup.getBlockLogsInRangeAsync(playerPos, range, userFilter, worldName, 1000, executor);
+            signLogsFuture = MineTracerLookup.getSignLogsInRangeAsync(playerPos, range, userFilter, worldName, executor);
+            containerLogsFuture = MineTracerLookup.getContainerLogsInRangeAsync(playerPos, range, userFilter, worldName, executor);
+            killLogsFuture = MineTracerLookup.getKillLogsInRangeAsync(playerPos, range, userFilter, worldName, executor);
+            itemLogsFuture = userFilter != null
+                    ? MineTracerLookup.getItemPickupDropLogsForUserAsync(userFilter, worldName, executor)
+                    : CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        
+        // Compose without blocking: filtering runs on whichever lookup worker finishes last
+        final Instant cutoffFinal = cutoff;
+        final String includeItemFinal = includeItem;
+        final String excludeItemFinal = excludeItem;
+        CompletableFuture.allOf(blockLogsFuture, signLogsFuture, containerLogsFuture, killLogsFuture, itemLogsFuture)
+        .thenApply(ignored -> buildLookupResults(blockLogsFuture.join(), signLogsFuture.join(),
+                containerLogsFuture.join(), killLogsFuture.join(), itemLogsFuture.join(),
+                cutoffFinal, actionFilters, includeItemFinal, excludeItemFinal))
+        .thenAccept(flatList -> {
+            QueryContext queryContext = new QueryContext(flatList, arg, player.getBlockPos());
+            lastQueries.put(player.getUuid(), queryContext);
             displayPage(source, flatList, 1, queryContext.entriesPerPage);
         }).exceptionally(throwable -> {
             source.sendError(Text.literal("Error performing lookup: " + throwable.getMessage()));
@@ -486,6 +411,98 @@ public class MineTracerCommand {
         });
         return Command.SINGLE_SUCCESS;
     }
+    /**
+     * Apply lookup filters to the raw query results and flatten them into one list, newest first
+     */
+    private static List<FlatLogEntry> buildLookupResults(List<MineTracerLookup.BlockLogEntry> blockLogs,
+            List<MineTracerLookup.SignLogEntry> signLogs, List<MineTracerLookup.ContainerLogEntry> containerLogs,
+            List<MineTracerLookup.KillLogEntry> killLogs, List<MineTracerLookup.ItemPickupDropLogEntry> itemLogs,
+            Instant cutoff, java.util.Set<String> actionFilters, String includeItem, String excludeItem) {
+        if (cutoff != null) {
+            final Instant cutoffFinal = cutoff;
+            blockLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
+            signLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
+            containerLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
+            killLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
+            itemLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
+        }
+        if (!actionFilters.isEmpty()) {
+            containerLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            blockLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            signLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            killLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            itemLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+        }
+        if (includeItem != null && !includeItem.isEmpty()) {
+            final String includeItemFinal = includeItem;
+            
+            // Use CoreProtect-style partial matching instead of exact equals
+            containerLogs.removeIf(
+                    entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
+                            Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
+            blockLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
+                    entry.blockId, includeItemFinal));
+            itemLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
+                    Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
+        }
+        if (excludeItem != null && !excludeItem.isEmpty()) {
+            final String excludeItemFinal = excludeItem;
+            
+            // Exclude matching items
+            containerLogs.removeIf(
+                    entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
+                            Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
+            blockLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
+                    entry.blockId, excludeItemFinal));
+            itemLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
+                    Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
+        }
+        List<FlatLogEntry> flatList = new ArrayList<>();
+        for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
+            flatList.add(new FlatLogEntry(entry, "container"));
+        }
+        for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
+            flatList.add(new FlatLogEntry(entry, "block"));
+        }
+        for (MineTracerLookup.SignLogEntry entry : signLogs) {
+            flatList.add(new FlatLogEntry(entry, "sign"));
+        }
+        for (MineTracerLookup.KillLogEntry entry : killLogs) {
+            flatList.add(new FlatLogEntry(entry, "kill"));
+        }
+        for (MineTracerLookup.ItemPickupDropLogEntry entry : itemLogs) {
+            flatList.add(new FlatLogEntry(entry, "item"));
+        }
+        flatList.sort((a, b) -> {
+            Instant aTime = a.entry instanceof MineTracerLookup.ContainerLogEntry ? ((MineTracerLookup.ContainerLogEntry) a.entry).timestamp
+                    : a.entry instanceof MineTracerLookup.BlockLogEntry
+                            ? ((MineTracerLookup.BlockLogEntry) a.entry).timestamp
+                            : a.entry instanceof MineTracerLookup.SignLogEntry
+                                    ? ((MineTracerLookup.SignLogEntry) a.entry).timestamp
+                                    : a.entry instanceof MineTracerLookup.KillLogEntry
+                                            ? ((MineTracerLookup.KillLogEntry) a.entry).timestamp
+                                            : a.entry instanceof MineTracerLookup.ItemPickupDropLogEntry
+                                                    ? ((MineTracerLookup.ItemPickupDropLogEntry) a.entry).timestamp
+                                                    : Instant.EPOCH;
+            Instant bTime = b.entry instanceof MineTracerLookup.ContainerLogEntry ? ((MineTracerLookup.ContainerLogEntry) b.entry).timestamp
+                    : b.entry instanceof MineTracerLookup.BlockLogEntry
+                            ? ((MineTracerLookup.BlockLogEntry) b.entry).timestamp
+                            : b.entry instanceof MineTracerLookup.SignLogEntry
+                                    ? ((MineTracerLookup.SignLogEntry) b.entry).timestamp
+                                    : b.entry instanceof MineTracerLookup.KillLogEntry
+                                            ? ((MineTracerLookup.KillLogEntry) b.entry).timestamp
+                                            : b.entry instanceof MineTracerLookup.ItemPickupDropLogEntry
+                                                    ? ((MineTracerLookup.ItemPickupDropLogEntry) b.entry).timestamp
+                                                    : Instant.EPOCH;
+            return bTime.compareTo(aTime);
+        });
+        return flatList;
+    }
     public static void displayPage(ServerCommandSource source, List<FlatLogEntry> logs, int page, int entriesPerPage) {
         int totalEntries = logs.size();
         int totalPages = (totalEntries + entriesPerPage - 1) / entriesPerPage;
@@ -549,6 +566,9 @@ public class MineTracerCommand {
                     .append(Text.literal(ce.stack.getCount() + "x ").formatted(Formatting.WHITE))
                     .append(Text.literal("#" + itemId).formatted(Formatting.YELLOW))
                     .append(Text.literal(" (" + itemName + ")").formatted(Formatting.GRAY));
+            if (HopperFlowAggregator.isRollup(ce.playerName)) {
+                base = base.copy().append(Text.literal(" [hopper total]").formatted(Formatting.DARK_AQUA));
+            }
             if (isRolledBack) {
                 base = base.copy().setStyle(base.getStyle().withStrikethrough(true).withColor(Formatting.DARK_GRAY));
             }
@@ -589,6 +609,7 @@ public class MineTracerCommand {
                     .append(Text.literal(" — ").formatted(Formatting.WHITE))
                     .append(Text.literal(ke.killerName).formatted(Formatting.AQUA))
                     .append(Text.literal(" killed ").formatted(Formatting.GREEN))
+                    .append(Text.literal(ke.count > 1 ? ke.count + "x " : "").formatted(Formatting.WHITE))
                     .append(Text.literal(ke.victimName).formatted(Formatting.RED));
             if (isRolledBack) {
                 base = base.copy().setStyle(base.getStyle().withStrikethrough(true).withColor(Formatting.DARK_GRAY));
@@ -705,87 +726,62 @@ public class MineTracerCommand {
         
         // Use the new database lookup system (same as lookup command)
         String worldName = source.getPlayer().getServerWorld().getRegistryKey().getValue().toString();
-        List<MineTracerLookup.BlockLogEntry> blockLogs;
-        List<MineTracerLookup.SignLogEntry> signLogs;
-        List<MineTracerLookup.ContainerLogEntry> containerLogs;
-        List<MineTracerLookup.KillLogEntry> killLogs;
         
         // When user is specified without an explicit range, search the full world
         // (mirrors CoreProtect's r:#world behavior for user-based queries like u:#tnt)
         int searchRange = (!hasRange && hasUser) ? 50000 : range;
 
-        // Wait for the consumer queue to drain so all explosion/block entries are in the DB
-        // before we query. With a 5-second timeout to avoid blocking indefinitely.
-        int queueSizeBefore = MineTracerConsumer.getQueueSize();
-        if (queueSizeBefore > 0) {
-            final int finalQueueSize = queueSizeBefore;
-            source.sendFeedback(() -> Text.literal("[MineTracer] Flushing " + finalQueueSize + " pending log entries before rollback...")
-                    .formatted(Formatting.GRAY), false);
-            MineTracerConsumer.waitForQueue(5000);
-        }
+        // Entries still waiting in the consumer queue are merged into the lookup results,
+        // so there is no need to flush the queue before querying
+        // Rollback scans use the bulk lane so they never crowd out inspector clicks
+        Executor bulkExecutor = LookupScheduler.executor(LookupScheduler.Priority.BULK, null);
+        CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture =
+                MineTracerLookup.getBlockLogsInRangeAsync(playerPos, searchRange, userFilter, worldName, Integer.MAX_VALUE, bulkExecutor);
+        CompletableFuture<List<MineTracerLookup.SignLogEntry>> signLogsFuture =
+                MineTracerLookup.getSignLogsInRangeAsync(playerPos, searchRange, userFilter, worldName, bulkExecutor);
+        CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> containerLogsFuture =
+                MineTracerLookup.getContainerLogsInRangeAsync(playerPos, searchRange, userFilter, worldName, bulkExecutor);
 
-        try {
-            blockLogs = MineTracerLookup.getBlockLogsInRangeAsync(playerPos, searchRange, userFilter, worldName, Integer.MAX_VALUE).get();
-            signLogs = MineTracerLookup.getSignLogsInRangeAsync(playerPos, searchRange, userFilter, worldName).get();
-            containerLogs = MineTracerLookup.getContainerLogsInRangeAsync(playerPos, searchRange, userFilter, worldName).get();
-            killLogs = MineTracerLookup.getKillLogsInRangeAsync(playerPos, searchRange, userFilter, worldName).get();
-        } catch (Exception e) {
-            source.sendError(Text.literal("[MineTracer] Error querying database: " + e.getMessage()));
-            e.printStackTrace();
-            return Command.SINGLE_SUCCESS;
-        }
-        
-        boolean filterByKiller = actionFilters.contains("kill");
-        
         // Note: User filtering is already handled by the database queries above,
         // so we don't need additional filtering here. This ensures TNT (#tnt) and
         // other non-player entities are properly included in rollbacks.
-        
-        // Debug: Show counts before time filtering
-        if (cutoff != null) {
-            final Instant cutoffFinal = cutoff;
-            blockLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-            signLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-            containerLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-            killLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-        }
-        if (!actionFilters.isEmpty()) {
-            containerLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-            blockLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-            signLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-            killLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-        }
-        if (includeItem != null && !includeItem.isEmpty()) {
-            final String includeItemFinal = includeItem;
-            // Use CoreProtect-style partial matching instead of exact equals
-            containerLogs.removeIf(
-                    entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
-            blockLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                    entry.blockId, includeItemFinal));
-        }
-        if (excludeItem != null && !excludeItem.isEmpty()) {
-            final String excludeItemFinal = excludeItem;
-            // Exclude matching items
-            containerLogs.removeIf(
-                    entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
-            blockLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                    entry.blockId, excludeItemFinal));
-        }
-        int successfulRollbacks = 0;
-        int failedRollbacks = 0;
+        final Instant cutoffFinal = cutoff;
+        final String includeItemFinal = includeItem;
+        final String excludeItemFinal = excludeItem;
+        final boolean previewFinal = preview;
+        final boolean forceFinal = force;
+
+        // The queries run off-thread; the world is only touched back on the server thread
+        CompletableFuture.allOf(blockLogsFuture, signLogsFuture, containerLogsFuture)
+                .thenAcceptAsync(ignored -> startRollback(source, blockLogsFuture.join(), signLogsFuture.join(),
+                        containerLogsFuture.join(), cutoffFinal, actionFilters, includeItemFinal, excludeItemFinal,
+                        previewFinal, forceFinal), source.getServer())
+                .exceptionally(throwable -> {
+                    source.sendError(Text.literal("[MineTracer] Error querying database: " + throwable.getMessage()));
+                    throwable.printStackTrace();
+                    return null;
+                });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Second half of the rollback command, run on the server thread once the lookups complete.
+     * Builds the ordered list of changes and hands it to the rollback scheduler.
+     */
+    private static void startRollback(ServerCommandSource source,
+                                      List<MineTracerLookup.BlockLogEntry> blockLogs,
+                                      List<MineTracerLookup.SignLogEntry> signLogs,
+                                      List<MineTracerLookup.ContainerLogEntry> containerLogs,
+                                      Instant cutoff, java.util.Set<String> actionFilters,
+                                      String includeItem, String excludeItem, boolean preview, boolean force) {
+        applyFilters(blockLogs, signLogs, containerLogs, cutoff, actionFilters, includeItem, excludeItem);
         ServerWorld world = source.getWorld();
         
         int totalActions = containerLogs.size() + blockLogs.size() + signLogs.size();
         if (totalActions == 0) {
             source.sendFeedback(() -> Text.literal("[MineTracer] No actions found matching the specified filters.")
                     .formatted(Formatting.YELLOW), false);
-            return Command.SINGLE_SUCCESS;
+            return;
         }
         
         // Preview mode - show ghost blocks to the player
@@ -796,29 +792,26 @@ public class MineTracerCommand {
                     .formatted(Formatting.AQUA), false);
             
             ServerPlayerEntity player = source.getPlayer();
-            int ghostBlocksShown = 0;
+            if (player == null) {
+                source.sendError(Text.literal("[MineTracer] Only players can see a rollback preview."));
+                return;
+            }
             
-            // Send ghost blocks for block changes
+            // Same block changes the rollback would apply; sent as section packets over several ticks
+            List<RollbackStep> previewSteps = new ArrayList<>();
             for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-                if (!entry.rolledBack) {
-                    if ("broke".equals(entry.action)) {
-                        // Show the block that would be restored
-                        sendGhostBlock(player, entry.pos, entry.blockId, entry.nbt);
-                        ghostBlocksShown++;
-                    } else if ("placed".equals(entry.action)) {
-                        // Show air where block would be removed
-                        sendGhostBlock(player, entry.pos, "minecraft:air", null);
-                        ghostBlocksShown++;
-                    }
+                if (!entry.rolledBack && ("broke".equals(entry.action) || "placed".equals(entry.action))) {
+                    previewSteps.add(RollbackStep.block(entry, true));
                 }
             }
             
-            final int finalGhostBlocksShown = ghostBlocksShown;
-            source.sendFeedback(() -> Text.literal("Showing " + finalGhostBlocksShown + " ghost blocks. They will disappear when you relog or move away.")
-                    .formatted(Formatting.GRAY), false);
+            GhostPreview.show(player, world, previewSteps).thenAccept(ghostBlocksShown -> {
+                source.sendFeedback(() -> Text.literal("Showing " + ghostBlocksShown + " ghost blocks. Use /minetracer preview clear to remove them.")
+                        .formatted(Formatting.GRAY), false);
+            });
             source.sendFeedback(() -> Text.literal("Run without #preview to execute the rollback.")
                     .formatted(Formatting.YELLOW), false);
-            return Command.SINGLE_SUCCESS;
+            return;
         }
         
         source.sendFeedback(() -> Text.literal("[MineTracer] Found " + totalActions + " actions to rollback.")
@@ -830,38 +823,18 @@ public class MineTracerCommand {
             source.sendFeedback(() -> Text.literal("[MineTracer] Processing rollback in reverse chronological order (newest actions first).")
                     .formatted(Formatting.GRAY), false);
         }
+
+        // Steps are applied by the scheduler in exactly this order
+        List<RollbackStep> steps = new ArrayList<>();
         if (actionFilters.isEmpty()) {
-            int brokeEntriesProcessed = 0;
-            int brokeEntriesSkipped = 0;
-            int alreadyRolledBack = 0;
-            int wrongAction = 0;
-            
             for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-                if ("broke".equals(entry.action)) {
-                    if (!entry.rolledBack || force) {
-                        brokeEntriesProcessed++;
-                        if (performBlockPlaceRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    } else {
-                        alreadyRolledBack++;
-                    }
-                } else {
-                    wrongAction++;
+                if ("broke".equals(entry.action) && (!entry.rolledBack || force)) {
+                    steps.add(RollbackStep.block(entry, true));
                 }
             }
-            
             for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-                if ("placed".equals(entry.action)) {
-                    if (!entry.rolledBack || force) {
-                        if (performBlockBreakRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ("placed".equals(entry.action) && (!entry.rolledBack || force)) {
+                    steps.add(RollbackStep.block(entry, true));
                 }
             }
             // Only roll back container entries that occurred at or after the earliest block event
@@ -875,109 +848,43 @@ public class MineTracerCommand {
                 if (entry.timestamp.isBefore(earliestBlockEvent)) {
                     continue; // skip pre-explosion container history
                 }
-                if (!entry.rolledBack || force) {
-                    if ("withdrew".equals(entry.action)) {
-                        if (performWithdrawalRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    } else if ("deposited".equals(entry.action)) {
-                        if (performDepositRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ((!entry.rolledBack || force)
+                        && ("withdrew".equals(entry.action) || "deposited".equals(entry.action))) {
+                    steps.add(RollbackStep.container(entry, true));
                 }
             }
             for (MineTracerLookup.SignLogEntry entry : signLogs) {
-                if ("edit".equals(entry.action)) {
-                    if (!entry.rolledBack || force) {
-                        if (performSignRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ("edit".equals(entry.action) && (!entry.rolledBack || force)) {
+                    steps.add(RollbackStep.sign(entry, true));
                 }
             }
         } else {
             for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
-                if (!entry.rolledBack || force) {
-                    if ("withdrew".equals(entry.action)) {
-                        if (performWithdrawalRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    } else if ("deposited".equals(entry.action)) {
-                        if (performDepositRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ((!entry.rolledBack || force)
+                        && ("withdrew".equals(entry.action) || "deposited".equals(entry.action))) {
+                    steps.add(RollbackStep.container(entry, true));
                 }
             }
             for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-                if (!entry.rolledBack || force) {
-                    if ("placed".equals(entry.action)) {
-                        if (performBlockBreakRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    } else if ("broke".equals(entry.action)) {
-                        if (performBlockPlaceRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ((!entry.rolledBack || force)
+                        && ("placed".equals(entry.action) || "broke".equals(entry.action))) {
+                    steps.add(RollbackStep.block(entry, true));
                 }
             }
             for (MineTracerLookup.SignLogEntry entry : signLogs) {
-                if ("edit".equals(entry.action)) {
-                    if (!entry.rolledBack || force) {
-                        if (performSignRollback(world, entry)) {
-                            successfulRollbacks++;
-                        } else {
-                            failedRollbacks++;
-                        }
-                    }
+                if ("edit".equals(entry.action) && (!entry.rolledBack || force)) {
+                    steps.add(RollbackStep.sign(entry, true));
                 }
             }
         }
-        // Final pass: geometrically re-link every adjacent identical-facing chest pair
-        // that was just restored. This runs after ALL blocks are placed so both halves
-        // are guaranteed to be in the world, regardless of placement order.
-        relinkRestoredDoubleChests(world, blockLogs);
-        if (successfulRollbacks > 0 || failedRollbacks > 0) {
-            final int finalSuccessfulRollbacks = successfulRollbacks;
-            final int finalFailedRollbacks = failedRollbacks;
-            source.sendFeedback(() -> Text.literal(
-                    "[MineTracer] Rollback complete: " + finalSuccessfulRollbacks + " actions restored, " +
-                            finalFailedRollbacks + " failed.")
-                    .formatted(Formatting.GREEN), false);
-            
-            // Store operation for undo
-            try {
-                UUID playerId = source.getPlayer().getUuid();
-                UndoOperation undoOp = new UndoOperation("rollback", blockLogs, signLogs, containerLogs);
-                lastOperations.put(playerId, undoOp);
-                source.sendFeedback(() -> Text.literal(
-                    "[MineTracer] Use /minetracer undo to revert this rollback.")
-                    .formatted(Formatting.GRAY), false);
-            } catch (Exception e) {
-                // Player might not exist in some contexts
-            }
-        } else {
+
+        if (steps.isEmpty()) {
             source.sendFeedback(
                     () -> Text.literal("[MineTracer] No actions found to rollback.").formatted(Formatting.YELLOW),
                     false);
+            return;
         }
-        return Command.SINGLE_SUCCESS;
+        submitJob(source, "rollback", world, steps, true);
     }
     
     /**
@@ -1056,63 +963,51 @@ public class MineTracerCommand {
         
         // Use the new database lookup system (same as lookup and rollback commands)
         String worldName = source.getPlayer().getServerWorld().getRegistryKey().getValue().toString();
-        List<MineTracerLookup.BlockLogEntry> blockLogs;
-        List<MineTracerLookup.SignLogEntry> signLogs;
-        List<MineTracerLookup.ContainerLogEntry> containerLogs;
         
-        try {
-            blockLogs = MineTracerLookup.getBlockLogsInRangeAsync(playerPos, range, userFilter, worldName).get();
-            signLogs = MineTracerLookup.getSignLogsInRangeAsync(playerPos, range, userFilter, worldName).get();
-            containerLogs = MineTracerLookup.getContainerLogsInRangeAsync(playerPos, range, userFilter, worldName).get();
-        } catch (Exception e) {
-            source.sendError(Text.literal("[MineTracer] Error querying database: " + e.getMessage()));
-            e.printStackTrace();
-            return Command.SINGLE_SUCCESS;
-        }
+        // Restore scans use the bulk lane so they never crowd out inspector clicks
+        Executor bulkExecutor = LookupScheduler.executor(LookupScheduler.Priority.BULK, null);
+        CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture =
+                MineTracerLookup.getBlockLogsInRangeAsync(playerPos, range, userFilter, worldName, 1000, bulkExecutor);
+        CompletableFuture<List<MineTracerLookup.SignLogEntry>> signLogsFuture =
+                MineTracerLookup.getSignLogsInRangeAsync(playerPos, range, userFilter, worldName, bulkExecutor);
+        CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> containerLogsFuture =
+                MineTracerLookup.getContainerLogsInRangeAsync(playerPos, range, userFilter, worldName, bulkExecutor);
         
         // Note: User filtering is already handled by database queries above,
         // so we don't need additional filtering here. This ensures TNT (#tnt) and
         // other non-player entities are properly included in restores.
+        final Instant cutoffFinal = cutoff;
+        final String includeItemFinal = includeItem;
+        final String excludeItemFinal = excludeItem;
+
+        CompletableFuture.allOf(blockLogsFuture, signLogsFuture, containerLogsFuture)
+                .thenAcceptAsync(ignored -> startRestore(source, blockLogsFuture.join(), signLogsFuture.join(),
+                        containerLogsFuture.join(), cutoffFinal, actionFilters, includeItemFinal, excludeItemFinal,
+                        previewMode), source.getServer())
+                .exceptionally(throwable -> {
+                    source.sendError(Text.literal("[MineTracer] Error querying database: " + throwable.getMessage()));
+                    throwable.printStackTrace();
+                    return null;
+                });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Second half of the restore command, run on the server thread once the lookups complete
+     */
+    private static void startRestore(ServerCommandSource source,
+                                     List<MineTracerLookup.BlockLogEntry> blockLogs,
+                                     List<MineTracerLookup.SignLogEntry> signLogs,
+                                     List<MineTracerLookup.ContainerLogEntry> containerLogs,
+                                     Instant cutoff, java.util.Set<String> actionFilters,
+                                     String includeItem, String excludeItem, boolean previewMode) {
+        applyFilters(blockLogs, signLogs, containerLogs, cutoff, actionFilters, includeItem, excludeItem);
         
-        if (cutoff != null) {
-            final Instant cutoffFinal = cutoff;
-            blockLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-            signLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-            containerLogs.removeIf(entry -> entry.timestamp.isBefore(cutoffFinal));
-        }
-        
-        if (!actionFilters.isEmpty()) {
-            containerLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-            blockLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-            signLogs.removeIf(
-                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
-        }
-        
-        if (includeItem != null && !includeItem.isEmpty()) {
-            final String includeItemFinal = includeItem;
-            containerLogs.removeIf(
-                    entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItemFinal));
-            blockLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
-                    entry.blockId, includeItemFinal));
-        }
-        
-        if (excludeItem != null && !excludeItem.isEmpty()) {
-            final String excludeItemFinal = excludeItem;
-            containerLogs.removeIf(
-                    entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                            Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItemFinal));
-            blockLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
-                    entry.blockId, excludeItemFinal));
-        }
-        
-        int totalActions = containerLogs.size() + blockLogs.size() + signLogs.size();
-        if (totalActions == 0) {
-            source.sendFeedback(() -> Text.literal("[MineTracer] No actions found matching the specified filters.")
-                    .formatted(Formatting.YELLOW), false);
-            return Command.SINGLE_SUCCESS;
+        int totalActions = containerLogs.size() + blockLogs.size() + signLogs.size();
+        if (totalActions == 0) {
+            source.sendFeedback(() -> Text.literal("[MineTracer] No actions found matching the specified filters.")
+                    .formatted(Formatting.YELLOW), false);
+            return;
         }
         
         // Preview mode - show what would be restored without actually doing it
@@ -1127,11 +1022,9 @@ public class MineTracerCommand {
                     .formatted(Formatting.GRAY), false);
             source.sendFeedback(() -> Text.literal("Remove #preview to execute the restore.")
                     .formatted(Formatting.YELLOW), false);
-            return Command.SINGLE_SUCCESS;
+            return;
         }
         
-        int successfulRestores = 0;
-        int failedRestores = 0;
         ServerWorld world = source.getWorld();
         
         source.sendFeedback(() -> Text.literal("[MineTracer] Found " + totalActions + " actions to restore.")
@@ -1140,76 +1033,121 @@ public class MineTracerCommand {
         // Restore = inverse of rollback, so we apply the original actions
         // placed -> place block, broke -> remove block
         // withdrew -> remove from container, deposited -> add to container
-        
+        List<RollbackStep> steps = new ArrayList<>();
         for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
-            if ("placed".equals(entry.action) && !entry.rolledBack) {
-                // Re-place the block
-                if (performBlockRestore(world, entry)) {
-                    successfulRestores++;
-                } else {
-                    failedRestores++;
-                }
-            } else if ("broke".equals(entry.action) && !entry.rolledBack) {
-                // Re-break the block
-                if (performBlockBreakRestore(world, entry)) {
-                    successfulRestores++;
-                } else {
-                    failedRestores++;
-                }
+            if (!entry.rolledBack && ("placed".equals(entry.action) || "broke".equals(entry.action))) {
+                steps.add(RollbackStep.block(entry, false));
             }
         }
         
         for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
-            if (!entry.rolledBack) {
-                if ("withdrew".equals(entry.action)) {
-                    // Restore withdrawal = remove item from container
-                    if (performWithdrawalRestore(world, entry)) {
-                        successfulRestores++;
-                    } else {
-                        failedRestores++;
-                    }
-                } else if ("deposited".equals(entry.action)) {
-                    // Restore deposit = add item to container
-                    if (performDepositRestore(world, entry)) {
-                        successfulRestores++;
-                    } else {
-                        failedRestores++;
-                    }
-                }
+            if (!entry.rolledBack && ("withdrew".equals(entry.action) || "deposited".equals(entry.action))) {
+                steps.add(RollbackStep.container(entry, false));
             }
         }
 
-        // Final pass: geometrically re-link any adjacent identical-facing chest pairs
-        relinkRestoredDoubleChests(world, blockLogs);
-
-        if (successfulRestores > 0 || failedRestores > 0) {
-            final int finalSuccessfulRestores = successfulRestores;
-            final int finalFailedRestores = failedRestores;
-            source.sendFeedback(() -> Text.literal(
-                    "[MineTracer] Restore complete: " + finalSuccessfulRestores + " actions reapplied, " +
-                            finalFailedRestores + " failed.")
-                    .formatted(Formatting.GREEN), false);
-            
-            // Store operation for undo
-            try {
-                UUID playerId = source.getPlayer().getUuid();
-                UndoOperation undoOp = new UndoOperation("restore", blockLogs, signLogs, containerLogs);
-                lastOperations.put(playerId, undoOp);
-                source.sendFeedback(() -> Text.literal(
-                    "[MineTracer] Use /minetracer undo to revert this restore.")
-                    .formatted(Formatting.GRAY), false);
-            } catch (Exception e) {
-                // Player might not exist in some contexts
-            }
-        } else {
+        if (steps.isEmpty()) {
             source.sendFeedback(
                     () -> Text.literal("[MineTracer] No actions found to restore.").formatted(Formatting.YELLOW),
                     false);
+            return;
+        }
+        submitJob(source, "restore", world, steps, true);
+    }
+
+    /**
+     * Filters shared by rollback and restore; applied after the database lookups
+     */
+    private static void applyFilters(List<MineTracerLookup.BlockLogEntry> blockLogs,
+                                     List<MineTracerLookup.SignLogEntry> signLogs,
+                                     List<MineTracerLookup.ContainerLogEntry> containerLogs,
+                                     Instant cutoff, java.util.Set<String> actionFilters,
+                                     String includeItem, String excludeItem) {
+        if (cutoff != null) {
+            blockLogs.removeIf(entry -> entry.timestamp.isBefore(cutoff));
+            signLogs.removeIf(entry -> entry.timestamp.isBefore(cutoff));
+            containerLogs.removeIf(entry -> entry.timestamp.isBefore(cutoff));
         }
         
+        if (!actionFilters.isEmpty()) {
+            containerLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            blockLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+            signLogs.removeIf(
+                    entry -> actionFilters.stream().noneMatch(filter -> entry.action.equalsIgnoreCase(filter)));
+        }
+        
+        if (includeItem != null && !includeItem.isEmpty()) {
+            // Use CoreProtect-style partial matching instead of exact equals
+            containerLogs.removeIf(
+                    entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
+                            Registries.ITEM.getId(entry.stack.getItem()).toString(), includeItem));
+            blockLogs.removeIf(entry -> !com.minetracer.features.minetracer.util.MaterialMatcher.matchesIncludeFilter(
+                    entry.blockId, includeItem));
+        }
+        
+        if (excludeItem != null && !excludeItem.isEmpty()) {
+            // Exclude matching items
+            containerLogs.removeIf(
+                    entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
+                            Registries.ITEM.getId(entry.stack.getItem()).toString(), excludeItem));
+            blockLogs.removeIf(entry -> com.minetracer.features.minetracer.util.MaterialMatcher.matchesExcludeFilter(
+                    entry.blockId, excludeItem));
+        }
+    }
+
+    /**
+     * Hand a step list to the rollback scheduler and tell the issuer how to control it
+     */
+    private static void submitJob(ServerCommandSource source, String type, ServerWorld world,
+                                  List<RollbackStep> steps, boolean recordUndo) {
+        submitJob(source, type, world, steps, recordUndo, null);
+    }
+
+    /**
+     * Same, running onSubmitted on the server thread once the scheduler has accepted the job
+     */
+    private static void submitJob(ServerCommandSource source, String type, ServerWorld world,
+                                  List<RollbackStep> steps, boolean recordUndo, Runnable onSubmitted) {
+        // Plan and decode block states off the server thread; it only places the results
+        CompletableFuture.supplyAsync(() -> {
+            // Fold repeated changes to the same block or container item into one world write
+            List<RollbackStep> planned = RollbackPlanner.compact(steps);
+            BlockStateDecoder.decodeAll(planned);
+            return planned;
+        }, ForkJoinPool.commonPool()).thenAcceptAsync(planned -> {
+            ServerPlayerEntity player = source.getPlayer();
+            UUID owner = player != null ? player.getUuid() : null;
+            RollbackJob job = RollbackScheduler.submit(owner, source.getName(), type, world, planned, recordUndo);
+            if (onSubmitted != null) {
+                onSubmitted.run();
+            }
+            source.sendFeedback(() -> Text.literal("[MineTracer] Started " + type + " job #" + job.id + " (" + steps.size()
+                    + " actions, " + planned.size() + " world changes). Use /minetracer job <pause|resume|cancel> "
+                    + job.id + " to control it.")
+                    .formatted(Formatting.GRAY), false);
+        }, source.getServer()).exceptionally(throwable -> {
+            source.sendError(Text.literal("[MineTracer] Error planning " + type + ": " + throwable.getMessage()));
+            throwable.printStackTrace();
+            return null;
+        });
+    }
+
+    /**
+     * Revert the ghost blocks of the caller's rollback preview
+     */
+    public static int clearPreview(CommandContext<ServerCommandSource> ctx) {
+        ServerCommandSource source = ctx.getSource();
+        ServerPlayerEntity player = source.getPlayer();
+        if (player == null || !GhostPreview.clear(player)) {
+            source.sendError(Text.literal("[MineTracer] You have no active rollback preview."));
+            return 0;
+        }
+        source.sendFeedback(() -> Text.literal("[MineTracer] Preview cleared.").formatted(Formatting.GRAY), false);
         return Command.SINGLE_SUCCESS;
     }
-    
+
     /**
      * Undo command - reverts the last rollback or restore operation
      */
@@ -1220,116 +1158,68 @@ public class MineTracerCommand {
             return 0;
         }
         
-        try {
-            UUID playerId = source.getPlayer().getUuid();
-            UndoOperation lastOp = lastOperations.get(playerId);
-            
-            if (lastOp == null) {
+        ServerPlayerEntity player = source.getPlayer();
+        if (player == null) {
+            source.sendError(Text.literal("[MineTracer] Only players can undo their operations."));
+            return 0;
+        }
+        java.nio.file.Path journalFile = UndoJournal.undoFile(player.getUuid());
+        
+        // Journals can be large, so read them off the server thread
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                if (!java.nio.file.Files.exists(journalFile)) {
+                    return null;
+                }
+                long finishedAt = java.nio.file.Files.getLastModifiedTime(journalFile).toMillis();
+                long minutesAgo = Duration.ofMillis(System.currentTimeMillis() - finishedAt).toMinutes();
+                if (MineTracerConfig.UNDO_EXPIRY_MINUTES > 0 && minutesAgo > MineTracerConfig.UNDO_EXPIRY_MINUTES) {
+                    throw new IllegalStateException("Last operation was " + minutesAgo + " minutes ago. Undo is only available for recent operations (within "
+                            + MineTracerConfig.UNDO_EXPIRY_MINUTES + " minutes).");
+                }
+                return UndoJournal.read(journalFile);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }).thenAcceptAsync(journal -> {
+            if (journal == null) {
                 source.sendError(Text.literal("[MineTracer] No recent rollback or restore to undo."));
-                return 0;
+                return;
             }
-            
-            // Check if operation is recent (within 5 minutes)
-            long minutesAgo = Duration.between(lastOp.timestamp, Instant.now()).toMinutes();
-            if (minutesAgo > 5) {
-                source.sendError(Text.literal("[MineTracer] Last operation was " + minutesAgo + " minutes ago. Undo is only available for recent operations (within 5 minutes)."));
-                return 0;
+            ServerWorld world = source.getServer().getWorld(net.minecraft.registry.RegistryKey.of(
+                    net.minecraft.registry.RegistryKeys.WORLD, new Identifier(journal.worldKey)));
+            if (world == null) {
+                source.sendError(Text.literal("[MineTracer] World " + journal.worldKey + " is not loaded."));
+                return;
             }
             
-            int successfulUndos = 0;
-            int failedUndos = 0;
-            ServerWorld world = source.getWorld();
-            
-            source.sendFeedback(() -> Text.literal("[MineTracer] Undoing last " + lastOp.type + " operation...")
+            source.sendFeedback(() -> Text.literal("[MineTracer] Undoing last " + journal.type + " operation...")
                     .formatted(Formatting.AQUA), false);
             
-            // Undo rollback = restore
-            // Undo restore = rollback
-            boolean isUndoingRollback = "rollback".equals(lastOp.type);
-            
-            for (MineTracerLookup.BlockLogEntry entry : lastOp.blockLogs) {
-                if (isUndoingRollback) {
-                    // Undo rollback: restore the original action
-                    if ("broke".equals(entry.action)) {
-                        if (performBlockBreakRestore(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    } else if ("placed".equals(entry.action)) {
-                        if (performBlockRestore(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    }
-                } else {
-                    // Undo restore: rollback the action
-                    if ("broke".equals(entry.action)) {
-                        if (performBlockPlaceRollback(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    } else if ("placed".equals(entry.action)) {
-                        if (performBlockBreakRollback(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    }
-                }
+            // Put every touched position back into its recorded before-image
+            List<RollbackStep> steps = new ArrayList<>(journal.images.size());
+            for (UndoJournal.Image image : journal.images) {
+                steps.add(RollbackStep.snapshot(image));
             }
             
-            for (MineTracerLookup.ContainerLogEntry entry : lastOp.containerLogs) {
-                if (isUndoingRollback) {
-                    // Undo rollback: restore original action
-                    if ("withdrew".equals(entry.action)) {
-                        if (performWithdrawalRestore(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    } else if ("deposited".equals(entry.action)) {
-                        if (performDepositRestore(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    }
-                } else {
-                    // Undo restore: rollback the action
-                    if ("withdrew".equals(entry.action)) {
-                        if (performWithdrawalRollback(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    } else if ("deposited".equals(entry.action)) {
-                        if (performDepositRollback(world, entry)) {
-                            successfulUndos++;
-                        } else {
-                            failedUndos++;
-                        }
-                    }
+            // Remove the journal so the same operation cannot be undone twice, but only once the
+            // undo job itself is saved; until then the journal is the only copy of the images
+            submitJob(source, "undo", world, steps, false, () -> RollbackScheduler.afterPendingWrites(() -> {
+                try {
+                    java.nio.file.Files.deleteIfExists(journalFile);
+                } catch (java.io.IOException e) {
+                    System.err.println("[MineTracer] Failed to delete undo journal: " + e.getMessage());
                 }
+            }));
+        }, source.getServer()).exceptionally(throwable -> {
+            Throwable cause = throwable instanceof java.util.concurrent.CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            source.sendError(Text.literal("[MineTracer] Failed to undo: " + cause.getMessage()));
+            if (!(cause instanceof IllegalStateException)) {
+                cause.printStackTrace();
             }
-            
-            // Clear the undo history after executing
-            lastOperations.remove(playerId);
-            
-            final int finalSuccessfulUndos = successfulUndos;
-            final int finalFailedUndos = failedUndos;
-            source.sendFeedback(() -> Text.literal(
-                    "[MineTracer] Undo complete: " + finalSuccessfulUndos + " changes reverted, " +
-                            finalFailedUndos + " failed.")
-                    .formatted(Formatting.GREEN), false);
-            
-        } catch (Exception e) {
-            source.sendError(Text.literal("[MineTracer] Failed to undo: " + e.getMessage()));
-            e.printStackTrace();
-            return 0;
-        }
+            return null;
+        });
         
         return Command.SINGLE_SUCCESS;
     }
@@ -1357,254 +1247,195 @@ public class MineTracerCommand {
         return null;
     }
     
-    private static boolean performWithdrawalRollback(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
-        try {
-            BlockPos pos = entry.pos;
-            ItemStack stackToRestore = entry.stack.copy();
-            Inventory inventory = getContainerInventory(world, pos);
-            if (inventory != null) {
-                ItemStack remaining = addItemToInventory(inventory, stackToRestore);
-                inventory.markDirty();
-                boolean success = remaining.getCount() < stackToRestore.getCount();
-                
-                // CoreProtect-style: Mark as rolled back in database
-                if (success) {
-                    markContainerEntryRolledBack(entry, world);
-                }
-                
-                return success;
-            }
-            return false;
-        } catch (RuntimeException e) {
-            return false;
+    public static boolean performWithdrawalRollback(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
+        boolean success = applyContainerDelta(world, entry.pos, entry.stack, entry.stack.getCount());
+        
+        // CoreProtect-style: Mark as rolled back in database
+        if (success) {
+            RolledBackMarker.markContainer(entry);
         }
+        
+        return success;
     }
-    private static boolean performDepositRollback(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
+    public static boolean performDepositRollback(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
+        boolean success = applyContainerDelta(world, entry.pos, entry.stack, -entry.stack.getCount());
+        
+        // CoreProtect-style: Mark as rolled back in database
+        if (success) {
+            RolledBackMarker.markContainer(entry);
+        }
+        
+        return success;
+    }
+    /**
+     * Add (delta > 0) or remove (delta < 0) items matching the given stack from a container.
+     * Succeeds if at least part of the change could be applied.
+     */
+    public static boolean applyContainerDelta(ServerWorld world, BlockPos pos, ItemStack stack, int delta) {
+        int[] applied = applyContainerDeltas(world, pos, List.of(stack), new int[] { delta });
+        return applied != null && applied[0] != 0;
+    }
+    /**
+     * Apply several net item changes to one container with a single pass over its slots.
+     * Removals and partial-stack additions happen during the pass; what is left to add
+     * goes into the empty slots found (or freed) on the way.
+     * Returns the signed amount actually applied per item, or null if there is no container.
+     */
+    public static int[] applyContainerDeltas(ServerWorld world, BlockPos pos, List<ItemStack> stacks, int[] deltas) {
         try {
-            BlockPos pos = entry.pos;
-            ItemStack stackToRemove = entry.stack.copy();
             Inventory inventory = getContainerInventory(world, pos);
-            if (inventory != null) {
-                ItemStack remaining = removeItemFromInventory(inventory, stackToRemove);
-                inventory.markDirty();
-                boolean success = remaining.getCount() < stackToRemove.getCount();
-                
-                // CoreProtect-style: Mark as rolled back in database
-                if (success) {
-                    markContainerEntryRolledBack(entry, world);
-                }
-                
-                return success;
+            if (inventory == null) {
+                return null;
             }
-            return false;
-        } catch (RuntimeException e) {
-            return false;
-        }
-    }
-    private static ItemStack removeItemFromInventory(Inventory inventory, ItemStack stackToRemove) {
-        ItemStack remaining = stackToRemove.copy();
-        for (int i = 0; i < inventory.size() && !remaining.isEmpty(); i++) {
-            ItemStack existingStack = inventory.getStack(i);
-            if (!existingStack.isEmpty() && ItemStack.canCombine(existingStack, remaining)) {
-                int canRemove = Math.min(existingStack.getCount(), remaining.getCount());
-                if (canRemove > 0) {
-                    existingStack.decrement(canRemove);
-                    remaining.decrement(canRemove);
-                    if (existingStack.isEmpty()) {
-                        inventory.setStack(i, ItemStack.EMPTY);
+            int[] applied = new int[deltas.length];
+            int[] remaining = new int[deltas.length];
+            for (int k = 0; k < deltas.length; k++) {
+                remaining[k] = Math.abs(deltas[k]);
+            }
+            
+            it.unimi.dsi.fastutil.ints.IntList emptySlots = new it.unimi.dsi.fastutil.ints.IntArrayList();
+            for (int i = 0; i < inventory.size(); i++) {
+                ItemStack existingStack = inventory.getStack(i);
+                if (existingStack.isEmpty()) {
+                    emptySlots.add(i);
+                    continue;
+                }
+                for (int k = 0; k < deltas.length; k++) {
+                    if (remaining[k] == 0 || !ItemStack.canCombine(existingStack, stacks.get(k))) {
+                        continue;
+                    }
+                    if (deltas[k] < 0) {
+                        int toRemove = Math.min(existingStack.getCount(), remaining[k]);
+                        existingStack.decrement(toRemove);
+                        remaining[k] -= toRemove;
+                        applied[k] -= toRemove;
+                        if (existingStack.isEmpty()) {
+                            inventory.setStack(i, ItemStack.EMPTY);
+                            emptySlots.add(i);
+                        } else {
+                            inventory.setStack(i, existingStack);
+                        }
                     } else {
-                        inventory.setStack(i, existingStack);
+                        int toAdd = Math.min(existingStack.getMaxCount() - existingStack.getCount(), remaining[k]);
+                        if (toAdd > 0) {
+                            existingStack.increment(toAdd);
+                            remaining[k] -= toAdd;
+                            applied[k] += toAdd;
+                            inventory.setStack(i, existingStack);
+                        }
                     }
+                    // A slot holds exactly one item type
+                    break;
                 }
             }
-        }
-        return remaining;
-    }
-    private static ItemStack addItemToInventory(Inventory inventory, ItemStack stack) {
-        ItemStack remaining = stack.copy();
-        for (int i = 0; i < inventory.size() && !remaining.isEmpty(); i++) {
-            ItemStack existingStack = inventory.getStack(i);
-            if (!existingStack.isEmpty() && ItemStack.canCombine(existingStack, remaining)) {
-                int maxStackSize = existingStack.getMaxCount();
-                int canAdd = maxStackSize - existingStack.getCount();
-                if (canAdd > 0) {
-                    int toAdd = Math.min(canAdd, remaining.getCount());
-                    existingStack.increment(toAdd);
-                    remaining.decrement(toAdd);
-                    inventory.setStack(i, existingStack);
+            
+            int nextEmpty = 0;
+            for (int k = 0; k < deltas.length; k++) {
+                while (deltas[k] > 0 && remaining[k] > 0 && nextEmpty < emptySlots.size()) {
+                    ItemStack toSet = stacks.get(k).copy();
+                    toSet.setCount(Math.min(toSet.getMaxCount(), remaining[k]));
+                    inventory.setStack(emptySlots.getInt(nextEmpty++), toSet);
+                    remaining[k] -= toSet.getCount();
+                    applied[k] += toSet.getCount();
                 }
             }
+            inventory.markDirty();
+            return applied;
+        } catch (RuntimeException e) {
+            return null;
         }
-        for (int i = 0; i < inventory.size() && !remaining.isEmpty(); i++) {
-            ItemStack existingStack = inventory.getStack(i);
-            if (existingStack.isEmpty()) {
-                int maxStackSize = remaining.getMaxCount();
-                int toPlace = Math.min(maxStackSize, remaining.getCount());
-                ItemStack toSet = remaining.copy();
-                toSet.setCount(toPlace);
-                inventory.setStack(i, toSet);
-                remaining.decrement(toPlace);
-            }
-        }
-        return remaining;
     }
-    private static boolean performBlockBreakRollback(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
+    public static boolean performBlockBreakRollback(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
         try {
             BlockPos pos = entry.pos;
-            world.setBlockState(pos, net.minecraft.block.Blocks.AIR.getDefaultState());
+            SectionBatcher.setBlockState(world, pos, net.minecraft.block.Blocks.AIR.getDefaultState(), net.minecraft.block.Block.NOTIFY_ALL);
             
             // CoreProtect-style: Mark as rolled back in database
-            markBlockEntryRolledBack(entry, world);
+            RolledBackMarker.markBlock(entry);
             
             return true;
         } catch (Exception e) {
             return false;
         }
     }
-    private static boolean performBlockPlaceRollback(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
+    public static boolean performBlockPlaceRollback(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
+        return performBlockPlaceRollback(world, entry, BlockStateDecoder.decode(entry.blockId, entry.nbt));
+    }
+    /**
+     * Place a previously decoded block. Decoding (properties, block entity NBT) is done
+     * ahead of time by the rollback planner so only the world writes happen here.
+     */
+    public static boolean performBlockPlaceRollback(ServerWorld world, MineTracerLookup.BlockLogEntry entry,
+            BlockStateDecoder.Decoded decoded) {
         try {
             BlockPos pos = entry.pos;
-            net.minecraft.block.Block block = net.minecraft.registry.Registries.BLOCK
-                    .get(new net.minecraft.util.Identifier(entry.blockId));
-            if (block == null || block == net.minecraft.block.Blocks.AIR) {
+            if (decoded == null) {
                 return false;
             }
 
-            net.minecraft.block.BlockState blockState = block.getDefaultState();
+            net.minecraft.block.BlockState blockState = decoded.state;
+            net.minecraft.block.Block block = blockState.getBlock();
 
-            // Apply stored block state properties.
-            // Handles three formats in priority order:
-            //   1. "[snowy=false,facing=north]" - new CoreProtect-style bracket format
-            //   2. "{Properties:{snowy:\"false\"}}" - previous SNBT format
-            //   3. "Block{minecraft:grass_block}[snowy=false]" - legacy toString format
-            String nbt = entry.nbt;
-            if (nbt != null && !nbt.isEmpty()) {
-                String propsSection = null;
-                net.minecraft.nbt.NbtCompound blockEntityNbt = null;
+            // Use FORCE_STATE so that getStateForNeighborUpdate() does NOT reset
+            // a chest's type (e.g. LEFT→SINGLE) because the matching half is not
+            // in the world yet.  NOTIFY_ALL is still set so clients see the change.
+            int placeFlags = (block instanceof net.minecraft.block.ChestBlock)
+                    ? (net.minecraft.block.Block.FORCE_STATE | net.minecraft.block.Block.NOTIFY_ALL)
+                    : net.minecraft.block.Block.NOTIFY_ALL;
 
-                if (nbt.startsWith("[")) {
-                    // Format 1: CoreProtect-style bracket properties
-                    int end = nbt.indexOf(']');
-                    if (end > 1) {
-                        propsSection = nbt.substring(1, end);
-                    }
-                } else if (nbt.startsWith("{")) {
-                    // Format 2: SNBT
-                    net.minecraft.nbt.NbtCompound compound;
-                    try {
-                        compound = net.minecraft.nbt.StringNbtReader.parse(nbt);
-                    } catch (Exception ex) {
-                        compound = new net.minecraft.nbt.NbtCompound();
-                    }
-                    if (compound.contains("Properties") && compound.get("Properties") instanceof net.minecraft.nbt.NbtCompound props) {
-                        StringBuilder sb = new StringBuilder();
-                        for (String key : props.getKeys()) {
-                            if (sb.length() > 0) sb.append(',');
-                            sb.append(key).append('=').append(props.getString(key));
-                        }
-                        propsSection = sb.toString();
-                    }
-                    if (compound.contains("BlockEntityTag") && compound.get("BlockEntityTag") instanceof net.minecraft.nbt.NbtCompound bet) {
-                        blockEntityNbt = bet;
-                    }
-                } else if (nbt.startsWith("Block{")) {
-                    // Format 3: legacy toString
-                    int bracketStart = nbt.indexOf('[');
-                    int bracketEnd = nbt.lastIndexOf(']');
-                    if (bracketStart != -1 && bracketEnd > bracketStart) {
-                        propsSection = nbt.substring(bracketStart + 1, bracketEnd);
-                    }
-                }
+            SectionBatcher.setBlockState(world, pos, blockState, placeFlags);
 
-                if (propsSection != null && !propsSection.isEmpty()) {
-                    for (String kv : propsSection.split(",")) {
-                        String[] pair = kv.trim().split("=", 2);
-                        if (pair.length == 2) {
-                            String key = pair[0].trim();
-                            String value = pair[1].trim();
-                            for (net.minecraft.state.property.Property<?> prop : blockState.getProperties()) {
-                                if (prop.getName().equals(key)) {
-                                    blockState = setBlockStateProperty(blockState, prop, value);
-                                    break;
-                                }
-                            }
-                        }
-                    }
+            // If this is one half of a double chest, ensure the neighbour is also correctly set
+            // so Minecraft connects the two halves. This must happen before we restore inventory.
+            if (block instanceof net.minecraft.block.ChestBlock &&
+                    blockState.contains(net.minecraft.block.ChestBlock.CHEST_TYPE)) {
+                net.minecraft.block.enums.ChestType chestType =
+                        blockState.get(net.minecraft.block.ChestBlock.CHEST_TYPE);
+                if (chestType != net.minecraft.block.enums.ChestType.SINGLE) {
+                    linkDoubleChestNeighbour(world, pos, blockState, block);
                 }
+            }
 
-                // Use FORCE_STATE so that getStateForNeighborUpdate() does NOT reset
-                // a chest's type (e.g. LEFT→SINGLE) because the matching half is not
-                // in the world yet.  NOTIFY_ALL is still set so clients see the change.
-                int placeFlags = (block instanceof net.minecraft.block.ChestBlock)
-                        ? (net.minecraft.block.Block.FORCE_STATE | net.minecraft.block.Block.NOTIFY_ALL)
-                        : net.minecraft.block.Block.NOTIFY_ALL;
-
-                world.setBlockState(pos, blockState, placeFlags);
-
-                // If this is one half of a double chest, ensure the neighbour is also correctly set
-                // so Minecraft connects the two halves. This must happen before we restore inventory.
-                if (block instanceof net.minecraft.block.ChestBlock &&
-                        blockState.contains(net.minecraft.block.ChestBlock.CHEST_TYPE)) {
-                    net.minecraft.block.enums.ChestType chestType =
-                            blockState.get(net.minecraft.block.ChestBlock.CHEST_TYPE);
-                    if (chestType != net.minecraft.block.enums.ChestType.SINGLE) {
-                        linkDoubleChestNeighbour(world, pos, blockState, block);
+            if (decoded.blockEntityNbt != null && !decoded.blockEntityNbt.isEmpty()) {
+                // The decoded compound may be shared, so work on a copy
+                net.minecraft.nbt.NbtCompound blockEntityNbt = decoded.blockEntityNbt.copy();
+                blockEntityNbt.putInt("x", pos.getX());
+                blockEntityNbt.putInt("y", pos.getY());
+                blockEntityNbt.putInt("z", pos.getZ());
+                // Re-place to ensure a fresh block entity exists (handles cases where
+                // the world already had a different block entity at this pos)
+                world.removeBlockEntity(pos);
+                SectionBatcher.setBlockState(world, pos, blockState, placeFlags);
+                net.minecraft.block.entity.BlockEntity newBE = world.getBlockEntity(pos);
+                if (newBE instanceof net.minecraft.inventory.Inventory inv) {
+                    // Clear first so stale items don't remain
+                    for (int i = 0; i < inv.size(); i++) {
+                        inv.setStack(i, net.minecraft.item.ItemStack.EMPTY);
                     }
-                }
-
-                if (blockEntityNbt != null && !blockEntityNbt.isEmpty()) {
-                    blockEntityNbt.putInt("x", pos.getX());
-                    blockEntityNbt.putInt("y", pos.getY());
-                    blockEntityNbt.putInt("z", pos.getZ());
-                    // Re-place to ensure a fresh block entity exists (handles cases where
-                    // the world already had a different block entity at this pos)
-                    world.removeBlockEntity(pos);
-                    world.setBlockState(pos, blockState, placeFlags);
-                    net.minecraft.block.entity.BlockEntity newBE = world.getBlockEntity(pos);
-                    if (newBE instanceof net.minecraft.inventory.Inventory inv) {
-                        // Clear first so stale items don't remain
-                        for (int i = 0; i < inv.size(); i++) {
-                            inv.setStack(i, net.minecraft.item.ItemStack.EMPTY);
-                        }
-                        net.minecraft.nbt.NbtList itemsList = blockEntityNbt.getList("Items", net.minecraft.nbt.NbtElement.COMPOUND_TYPE);
-                        for (int i = 0; i < itemsList.size(); i++) {
-                            if (itemsList.get(i) instanceof net.minecraft.nbt.NbtCompound itemNbt) {
-                                int slot = itemNbt.getByte("Slot") & 255;
-                                if (slot < inv.size()) {
-                                    // Strip "Slot" before parsing — it's the container-specific slot
-                                    // index, not part of the item's own NBT
-                                    net.minecraft.nbt.NbtCompound itemOnlyNbt = itemNbt.copy();
-                                    itemOnlyNbt.remove("Slot");
-                                    net.minecraft.item.ItemStack stack =
-                                        net.minecraft.item.ItemStack.fromNbt(itemOnlyNbt);
-                                    if (!stack.isEmpty()) {
-                                        inv.setStack(slot, stack);
-                                    }
+                    net.minecraft.nbt.NbtList itemsList = blockEntityNbt.getList("Items", net.minecraft.nbt.NbtElement.COMPOUND_TYPE);
+                    for (int i = 0; i < itemsList.size(); i++) {
+                        if (itemsList.get(i) instanceof net.minecraft.nbt.NbtCompound itemNbt) {
+                            int slot = itemNbt.getByte("Slot") & 255;
+                            if (slot < inv.size()) {
+                                // Strip "Slot" before parsing — it's the container-specific slot
+                                // index, not part of the item's own NBT
+                                net.minecraft.nbt.NbtCompound itemOnlyNbt = itemNbt.copy();
+                                itemOnlyNbt.remove("Slot");
+                                net.minecraft.item.ItemStack stack =
+                                    net.minecraft.item.ItemStack.fromNbt(itemOnlyNbt);
+                                if (!stack.isEmpty()) {
+                                    inv.setStack(slot, stack);
                                 }
                             }
                         }
-                        inv.markDirty();
-                    }
-                    if (newBE != null) newBE.markDirty();
-                    world.updateListeners(pos, blockState, blockState, net.minecraft.block.Block.NOTIFY_ALL);
-                }
-            } else {
-                int placeFlags = (block instanceof net.minecraft.block.ChestBlock)
-                        ? (net.minecraft.block.Block.FORCE_STATE | net.minecraft.block.Block.NOTIFY_ALL)
-                        : net.minecraft.block.Block.NOTIFY_ALL;
-                world.setBlockState(pos, blockState, placeFlags);
-                // Link double chests in the no-NBT path too
-                if (block instanceof net.minecraft.block.ChestBlock &&
-                        blockState.contains(net.minecraft.block.ChestBlock.CHEST_TYPE)) {
-                    net.minecraft.block.enums.ChestType chestType =
-                            blockState.get(net.minecraft.block.ChestBlock.CHEST_TYPE);
-                    if (chestType != net.minecraft.block.enums.ChestType.SINGLE) {
-                        linkDoubleChestNeighbour(world, pos, blockState, block);
                     }
+                    inv.markDirty();
                 }
+                if (newBE != null) newBE.markDirty();
+                world.updateListeners(pos, blockState, blockState, net.minecraft.block.Block.NOTIFY_ALL);
             }
 
-            markBlockEntryRolledBack(entry, world);
+            RolledBackMarker.markBlock(entry);
             return true;
         } catch (Exception e) {
             System.err.println("[MineTracer] Exception in performBlockPlaceRollback: " + e.getMessage());
@@ -1621,7 +1452,7 @@ public class MineTracerCommand {
      * pair of matching same-facing chests.  This runs as a post-rollback second pass,
      * guaranteeing correctness regardless of placement order or NBT accuracy.
      */
-    private static void relinkRestoredDoubleChests(ServerWorld world,
+    public static void relinkRestoredDoubleChests(ServerWorld world,
             java.util.List<MineTracerLookup.BlockLogEntry> blockLogs) {
         java.util.Set<net.minecraft.util.math.BlockPos> processed = new java.util.HashSet<>();
         for (MineTracerLookup.BlockLogEntry entry : blockLogs) {
@@ -1795,16 +1626,7 @@ public class MineTracerCommand {
         return chestPos.offset(otherHalfDirection);
     }
     
-    @SuppressWarnings("unchecked")
-    private static <T extends Comparable<T>> net.minecraft.block.BlockState setBlockStateProperty(
-            net.minecraft.block.BlockState state, net.minecraft.state.property.Property<T> property, String value) {
-        java.util.Optional<T> parsedValue = property.parse(value);
-        if (parsedValue.isPresent()) {
-            return state.with(property, parsedValue.get());
-        }
-        return state;
-    }
-    private static boolean performSignRollback(ServerWorld world, MineTracerLookup.SignLogEntry entry) {
+    public static boolean performSignRollback(ServerWorld world, MineTracerLookup.SignLogEntry entry) {
         try {
             BlockPos pos = entry.pos;
             net.minecraft.block.entity.BlockEntity blockEntity = world.getBlockEntity(pos);
@@ -1843,7 +1665,7 @@ public class MineTracerCommand {
                         world.updateListeners(pos, world.getBlockState(pos), world.getBlockState(pos), 3);
                         
                         // CoreProtect-style: Mark as rolled back in database
-                        markSignEntryRolledBack(entry, world);
+                        RolledBackMarker.markSign(entry);
                         
                         return true;
                     } catch (Exception e) {
@@ -1862,7 +1684,7 @@ public class MineTracerCommand {
     /**
      * Restore a withdrawal - removes the item from container (undoes the rollback that added it back)
      */
-    private static boolean performWithdrawalRestore(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
+    public static boolean performWithdrawalRestore(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
         // Restore withdrawal = remove item (same as deposit rollback)
         return performDepositRollback(world, entry);
     }
@@ -1870,7 +1692,7 @@ public class MineTracerCommand {
     /**
      * Restore a deposit - adds the item back to container (undoes the rollback that removed it)
      */
-    private static boolean performDepositRestore(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
+    public static boolean performDepositRestore(ServerWorld world, MineTracerLookup.ContainerLogEntry entry) {
         // Restore deposit = add item (same as withdrawal rollback)
         return performWithdrawalRollback(world, entry);
     }
@@ -1878,14 +1700,14 @@ public class MineTracerCommand {
     /**
      * Restore a block placement - places the block again
      */
-    private static boolean performBlockRestore(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
+    public static boolean performBlockRestore(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
         try {
             BlockPos pos = entry.pos;
             String blockId = entry.blockId;
             net.minecraft.block.Block block = net.minecraft.registry.Registries.BLOCK.get(new Identifier(blockId));
             if (block != null) {
                 net.minecraft.block.BlockState newState = block.getDefaultState();
-                world.setBlockState(pos, newState, 3);
+                SectionBatcher.setBlockState(world, pos, newState, 3);
                 
                 // Apply NBT if available
                 if (entry.nbt != null && !entry.nbt.isEmpty()) {
@@ -1912,16 +1734,105 @@ public class MineTracerCommand {
     /**
      * Restore a block break - removes the block again
      */
-    private static boolean performBlockBreakRestore(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
+    public static boolean performBlockBreakRestore(ServerWorld world, MineTracerLookup.BlockLogEntry entry) {
         try {
             BlockPos pos = entry.pos;
-            world.setBlockState(pos, net.minecraft.block.Blocks.AIR.getDefaultState(), 3);
+            SectionBatcher.setBlockState(world, pos, net.minecraft.block.Blocks.AIR.getDefaultState(), 3);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
     
+    /**
+     * Lists running and paused rollback jobs
+     */
+    public static int listJobs(CommandContext<ServerCommandSource> ctx) {
+        ServerCommandSource source = ctx.getSource();
+        java.util.Collection<RollbackJob> jobs = RollbackScheduler.getJobs();
+        if (jobs.isEmpty()) {
+            source.sendFeedback(() -> Text.literal("[MineTracer] No rollback jobs are running.").formatted(Formatting.YELLOW), false);
+            return Command.SINGLE_SUCCESS;
+        }
+        source.sendFeedback(() -> Text.literal("----- MineTracer Jobs -----").formatted(Formatting.AQUA), false);
+        for (RollbackJob job : jobs) {
+            source.sendFeedback(() -> Text.literal("#" + job.id + " " + job.type + " by " + job.ownerName + " in " + job.worldKey
+                    + " - " + job.getState().name().toLowerCase() + ", " + job.getPercent() + "% ("
+                    + job.getProcessed() + "/" + job.getTotal() + ")").formatted(Formatting.WHITE), false);
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Shows the logging queue and what the load governor has shed
+     */
+    public static int status(CommandContext<ServerCommandSource> ctx) {
+        ServerCommandSource source = ctx.getSource();
+        source.sendFeedback(() -> Text.literal("[MineTracer] " + NewOptimizedLogStorage.getQueueStatus()).formatted(Formatting.WHITE), false);
+        LoadGovernor.Level level = LoadGovernor.getLevel();
+        source.sendFeedback(() -> Text.literal("[MineTracer] " + LoadGovernor.getStatus())
+                .formatted(level == LoadGovernor.Level.NORMAL ? Formatting.GRAY : Formatting.YELLOW), false);
+        // Counting rows scans the tables, so it runs with the bulk lookups
+        LookupScheduler.submit(LookupScheduler.Priority.BULK, null, () -> {
+            try {
+                String summary = StorageBackends.get().getStats().getSummary();
+                source.sendFeedback(() -> Text.literal("[MineTracer] " + summary).formatted(Formatting.GRAY), false);
+            } catch (Exception e) {
+                source.sendError(Text.literal("[MineTracer] Could not read storage stats: " + e.getMessage()));
+            }
+        });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Deletes every log entry older than the given number of days
+     */
+    public static int purge(CommandContext<ServerCommandSource> ctx) {
+        ServerCommandSource source = ctx.getSource();
+        int days = com.mojang.brigadier.arguments.IntegerArgumentType.getInteger(ctx, "days");
+        long cutoff = Instant.now().minus(Duration.ofDays(days)).getEpochSecond();
+        source.sendFeedback(() -> Text.literal("[MineTracer] Purging entries older than " + days + " days...").formatted(Formatting.YELLOW), true);
+        LookupScheduler.submit(LookupScheduler.Priority.BULK, null, () -> {
+            try {
+                long removed = StorageBackends.get().purge(cutoff);
+                source.sendFeedback(() -> Text.literal("[MineTracer] Purged " + removed + " entries.").formatted(Formatting.GREEN), true);
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Purge failed: " + e.getMessage());
+                e.printStackTrace();
+                source.sendError(Text.literal("[MineTracer] Purge failed: " + e.getMessage()));
+            }
+        });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Pauses, resumes or cancels a rollback job
+     */
+    public static int controlJob(CommandContext<ServerCommandSource> ctx, String action) {
+        ServerCommandSource source = ctx.getSource();
+        int id = com.mojang.brigadier.arguments.IntegerArgumentType.getInteger(ctx, "id");
+        boolean success;
+        switch (action) {
+            case "pause":
+                success = RollbackScheduler.pause(id);
+                break;
+            case "resume":
+                success = RollbackScheduler.resume(id);
+                break;
+            default:
+                success = RollbackScheduler.cancel(id);
+                break;
+        }
+        if (!success) {
+            source.sendError(Text.literal("[MineTracer] Cannot " + action + " job #" + id + "."));
+            return 0;
+        }
+        String done = "cancel".equals(action)
+                ? "cancelled. Changes already applied remain; use /minetracer undo to revert them."
+                : action + "d.";
+        source.sendFeedback(() -> Text.literal("[MineTracer] Job #" + id + " " + done).formatted(Formatting.GREEN), false);
+        return Command.SINGLE_SUCCESS;
+    }
     public static int lookupPage(CommandContext<ServerCommandSource> ctx) {
         ServerCommandSource source = ctx.getSource();
         if (!Permissions.check(source, "minetracer.command.page", 2)) {
@@ -2029,125 +1940,4 @@ public class MineTracerCommand {
             return String.format("%.1fd", days);
         }
     }
-    
-    /**
-     * Mark a container entry as rolled back in database (CoreProtect-style)
-     */
-    private static void markContainerEntryRolledBack(MineTracerLookup.ContainerLogEntry entry, ServerWorld world) {
-        try {
-            java.util.concurrent.CompletableFuture.runAsync(() -> {
-                try (java.sql.Connection conn = com.minetracer.features.minetracer.database.MineTracerDatabase.getConnection()) {
-                    if (conn == null) return;
-                    
-                    String worldName = world.getRegistryKey().getValue().toString();
-                    String sql = "UPDATE minetracer_container SET rolled_back = 1 WHERE " +
-                               "user = (SELECT id FROM minetracer_user WHERE user = ?) AND " +
-                               "wid = (SELECT id FROM minetracer_world WHERE world = ?) AND " +
-                               "x = ? AND y = ? AND z = ? AND time = ? AND rolled_back = 0";
-                    
-                    try (java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
-                        stmt.setString(1, entry.playerName);
-                        stmt.setString(2, worldName);
-                        stmt.setInt(3, entry.pos.getX());
-                        stmt.setInt(4, entry.pos.getY());
-                        stmt.setInt(5, entry.pos.getZ());
-                        stmt.setLong(6, entry.timestamp.getEpochSecond());
-                        stmt.executeUpdate();
-                    }
-                } catch (Exception e) {
-                    System.err.println("[MineTracer] Failed to mark container entry as rolled back: " + e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            // Silently fail - rollback still succeeded in-game
-        }
-    }
-    
-    /**
-     * Mark a block entry as rolled back in database (CoreProtect-style)
-     */
-    private static void markBlockEntryRolledBack(MineTracerLookup.BlockLogEntry entry, ServerWorld world) {
-        try {
-            java.util.concurrent.CompletableFuture.runAsync(() -> {
-                try (java.sql.Connection conn = com.minetracer.features.minetracer.database.MineTracerDatabase.getConnection()) {
-                    if (conn == null) return;
-                    
-                    String worldName = world.getRegistryKey().getValue().toString();
-                    String sql = "UPDATE minetracer_block SET rolled_back = 1 WHERE " +
-                               "user = (SELECT id FROM minetracer_user WHERE user = ?) AND " +
-                               "wid = (SELECT id FROM minetracer_world WHERE world = ?) AND " +
-                               "x = ? AND y = ? AND z = ? AND time = ? AND rolled_back = 0";
-                    
-                    try (java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
-                        stmt.setString(1, entry.playerName);
-                        stmt.setString(2, worldName);
-                        stmt.setInt(3, entry.pos.getX());
-                        stmt.setInt(4, entry.pos.getY());
-                        stmt.setInt(5, entry.pos.getZ());
-                        stmt.setLong(6, entry.timestamp.getEpochSecond());
-                        stmt.executeUpdate();
-                    }
-                } catch (Exception e) {
-                    System.err.println("[MineTracer] Failed to mark block entry as rolled back: " + e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            // Silently fail - rollback still succeeded in-game
-        }
-    }
-    
-    /**
-     * Mark a sign entry as rolled back in database (CoreProtect-style)
-     */
-    private static void markSignEntryRolledBack(MineTracerLookup.SignLogEntry entry, ServerWorld world) {
-        try {
-            java.util.concurrent.CompletableFuture.runAsync(() -> {
-                try (java.sql.Connection conn = com.minetracer.features.minetracer.database.MineTracerDatabase.getConnection()) {
-                    if (conn == null) return;
-                    
-                    String worldName = world.getRegistryKey().getValue().toString();
-                    String sql = "UPDATE minetracer_sign SET rolled_back = 1 WHERE " +
-                               "user = (SELECT id FROM minetracer_user WHERE user = ?) AND " +
-                               "wid = (SELECT id FROM minetracer_world WHERE world = ?) AND " +
-                               "x = ? AND y = ? AND z = ? AND time = ? AND rolled_back = 0";
-                    
-                    try (java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
-                        stmt.setString(1, entry.playerName);
-                        stmt.setString(2, worldName);
-                        stmt.setInt(3, entry.pos.getX());
-                        stmt.setInt(4, entry.pos.getY());
-                        stmt.setInt(5, entry.pos.getZ());
-                        stmt.setLong(6, entry.timestamp.getEpochSecond());
-                        stmt.executeUpdate();
-                    }
-                } catch (Exception e) {
-                    System.err.println("[MineTracer] Failed to mark sign entry as rolled back: " + e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            // Silently fail - rollback still succeeded in-game
-        }
-    }
-    
-    /**
-     * Send a ghost block packet to a player (client-side only)
-     * The block appears only to this player and disappears when they relog or the chunk reloads
-     */
-    private static void sendGhostBlock(ServerPlayerEntity player, BlockPos pos, String blockId, String nbtString) {
-        try {
-            // Parse the block ID and get the block state
-            Identifier identifier = new Identifier(blockId);
-            Block block = Registries.BLOCK.get(identifier);
-            BlockState state = block.getDefaultState();
-            
-            // Send the block update packet to the player only
-            BlockUpdateS2CPacket packet = new BlockUpdateS2CPacket(pos, state);
-            player.networkHandler.sendPacket(packet);
-            
-            // Note: NBT data (for signs, chests, etc.) would require additional block entity packets
-            // For now, we just show the block type as a ghost block
-        } catch (Exception e) {
-            // Silently fail if block ID is invalid - ghost block preview is best-effort
-        }
-    }
 }
@@ -12,9 +12,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
-import com.minetracer.features.minetracer.database.MineTracerDatabase;
 import com.minetracer.features.minetracer.database.MineTracerConsumer;
 import com.minetracer.features.minetracer.database.MineTracerLookup;
+import com.minetracer.features.minetracer.database.StorageBackends;
 import com.minetracer.features.minetracer.config.MineTracerConfig;
 
 /**
@@ -35,7 +35,7 @@ public class NewOptimizedLogStorage {
         }
         
         // Initialize database
-        if (!MineTracerDatabase.initializeDatabase()) {
+        if (!StorageBackends.get().initialize()) {
             System.err.println("[MineTracer] Failed to initialize database");
             return false;
         }
@@ -54,7 +54,7 @@ public class NewOptimizedLogStorage {
     public static void shutdown() {
         if (initialized) {
             MineTracerConsumer.stopConsumer();
-            MineTracerDatabase.shutdown();
+            StorageBackends.get().shutdown();
             MineTracerLookup.shutdown();
             initialized = false;
             System.out.println("[MineTracer] Storage system shutdown completed");
@@ -79,6 +79,19 @@ public class NewOptimizedLogStorage {
         MineTracerConsumer.queueEntry(MineTracerConsumer.PROCESS_CONTAINER, data, null);
     }
     
+    /**
+     * Log container action not made by a player, e.g. a hopper rollup
+     */
+    public static void logContainerAction(String action, String user, World world, BlockPos pos, ItemStack stack) {
+        if (stack.isEmpty() || !initialized || !MineTracerConfig.LOG_CONTAINER_TRANSACTIONS) {
+            return;
+        }
+        
+        Object[] data = new Object[]{action, user, pos, stack, getWorldName(world)};
+        
+        MineTracerConsumer.queueEntry(MineTracerConsumer.PROCESS_CONTAINER, data, null);
+    }
+    
     /**
      * Log block action (place, break)
      */
@@ -112,13 +125,27 @@ public class NewOptimizedLogStorage {
      * Log kill action
      */
     public static void logKillAction(String killerName, String victimName, BlockPos pos, String world) {
+        logKillAction(killerName, victimName, pos, world, 1);
+    }
+    
+    /**
+     * Log kill action standing for {@code count} kills of the same victim type
+     */
+    public static void logKillAction(String killerName, String victimName, BlockPos pos, String world, int count) {
+        logKillAction(killerName, victimName, pos, world, count, System.currentTimeMillis());
+    }
+    
+    /**
+     * Log kill action standing for {@code count} kills, the first of which happened at {@code timestamp}
+     */
+    public static void logKillAction(String killerName, String victimName, BlockPos pos, String world, int count, long timestamp) {
         if (!initialized || !MineTracerConfig.LOG_ENTITY_KILLS) {
             return;
         }
         
-        Object[] data = new Object[]{killerName, victimName, pos, world};
+        Object[] data = new Object[]{killerName, victimName, pos, world, count};
         
-        MineTracerConsumer.queueEntry(MineTracerConsumer.PROCESS_KILL, data, null);
+        MineTracerConsumer.queueEntry(MineTracerConsumer.PROCESS_KILL, data, null, timestamp);
     }
     
     /**
@@ -277,6 +304,8 @@ public class NewOptimizedLogStorage {
         });
 
         net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            // Aggregators still hold unwritten rows
+            PeriodicFlush.flushAll();
             shutdown();
         });
     }
@@ -1,15 +1,24 @@
 package com.minetracer.features.minetracer;
+import com.minetracer.features.minetracer.util.CaptureFilter;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
 import net.minecraft.block.Block;
 import net.minecraft.block.Blocks;
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import java.util.BitSet;
 public class OptimizedChestEventListener {
     public static void register() {
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> compileContainerBlocks());
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> compileContainerBlocks());
         PlayerBlockBreakEvents.BEFORE.register((world, player, pos, state, blockEntity) -> {
             Block block = state.getBlock();
-            if (isTrackedContainer(block) && blockEntity instanceof Inventory inv) {
+            if (isTrackedContainer(block) && blockEntity instanceof Inventory inv
+                    && CaptureFilter.shouldCaptureBlock(world, pos, block)) {
 
                 java.util.concurrent.CompletableFuture.runAsync(() -> {
                     // Use canonical position for consistent double chest handling
@@ -27,6 +36,43 @@ public class OptimizedChestEventListener {
             return true;
         });
     }
+    /**
+     * Container blocks by raw id, classified once per registered block.
+     * Null until the registries are complete; classify() answers directly until then.
+     */
+    private static volatile BitSet containerBlocks = null;
+    /**
+     * Classify every registered block up front, so the per-break check is a single bit test.
+     * Runs on server start and again after a reload.
+     */
+    public static void compileContainerBlocks() {
+        BitSet bits = new BitSet(Registries.BLOCK.size());
+        for (Block block : Registries.BLOCK) {
+            if (classify(block)) {
+                bits.set(Registries.BLOCK.getRawId(block));
+            }
+        }
+        applyOverrides(bits, MineTracerConfig.CONTAINER_BLOCKS, true);
+        applyOverrides(bits, MineTracerConfig.NON_CONTAINER_BLOCKS, false);
+        containerBlocks = bits;
+        if (MineTracerConfig.VERBOSE) {
+            System.out.println("[MineTracer] " + bits.cardinality() + " block types tracked as containers");
+        }
+    }
+    private static void applyOverrides(BitSet bits, String blocks, boolean container) {
+        for (String id : MineTracerConfig.parseList(blocks, ",")) {
+            Identifier identifier = Identifier.tryParse(id);
+            if (identifier == null || !Registries.BLOCK.containsId(identifier)) {
+                System.err.println("[MineTracer] Unknown block in container overrides: " + id);
+                continue;
+            }
+            bits.set(Registries.BLOCK.getRawId(Registries.BLOCK.get(identifier)), container);
+        }
+    }
+    private static boolean isTrackedContainer(Block block) {
+        BitSet bits = containerBlocks;
+        return bits != null ? bits.get(Registries.BLOCK.getRawId(block)) : classify(block);
+    }
     /**
      * Check if a block is a trackable container.
      * This method dynamically detects containers including modded ones like More Chest Variants.
@@ -34,29 +80,16 @@ public class OptimizedChestEventListener {
      * @param block The block to check
      * @return true if this block should be tracked as a container
      */
-    private static boolean isTrackedContainer(Block block) {
-        // Fast path: Check vanilla containers first
-        if (block == Blocks.CHEST || block == Blocks.TRAPPED_CHEST || 
-            block == Blocks.BARREL || block == Blocks.ENDER_CHEST) {
-            return true;
-        }
-        
-        // Check shulker boxes
-        if (block == Blocks.SHULKER_BOX || block == Blocks.WHITE_SHULKER_BOX || 
-            block == Blocks.ORANGE_SHULKER_BOX || block == Blocks.MAGENTA_SHULKER_BOX || 
-            block == Blocks.LIGHT_BLUE_SHULKER_BOX || block == Blocks.YELLOW_SHULKER_BOX || 
-            block == Blocks.LIME_SHULKER_BOX || block == Blocks.PINK_SHULKER_BOX || 
-            block == Blocks.GRAY_SHULKER_BOX || block == Blocks.LIGHT_GRAY_SHULKER_BOX || 
-            block == Blocks.CYAN_SHULKER_BOX || block == Blocks.PURPLE_SHULKER_BOX || 
-            block == Blocks.BLUE_SHULKER_BOX || block == Blocks.BROWN_SHULKER_BOX || 
-            block == Blocks.GREEN_SHULKER_BOX || block == Blocks.RED_SHULKER_BOX || 
-            block == Blocks.BLACK_SHULKER_BOX) {
+    private static boolean classify(Block block) {
+        // Anything with an inventory block entity
+        if (block instanceof net.minecraft.block.ShulkerBoxBlock || block instanceof net.minecraft.block.ChestBlock
+                || block == Blocks.BARREL || block == Blocks.ENDER_CHEST) {
             return true;
         }
         
         // Dynamic detection for modded containers
         try {
-            String blockId = net.minecraft.registry.Registries.BLOCK.getId(block).toString();
+            String blockId = Registries.BLOCK.getId(block).toString();
             
             // More Chest Variants compatibility - check multiple possible mod IDs
             if ((blockId.startsWith("morechestVariants:") || 
@@ -72,11 +105,6 @@ public class OptimizedChestEventListener {
                 return true;
             }
             
-            // Check if it's a ChestBlock (common base class for chest-like blocks)
-            if (block instanceof net.minecraft.block.ChestBlock) {
-                return true;
-            }
-            
             // Legacy detection using translation key
             String translationKey = block.getTranslationKey();
             return translationKey.contains("shulker_box") ||
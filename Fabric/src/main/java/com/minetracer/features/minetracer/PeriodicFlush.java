@@ -0,0 +1,65 @@
+package com.minetracer.features.minetracer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+
+/**
+ * One server tick hook for everything that holds log rows in memory or re-checks its state
+ * once a second. Each task gets a periodic step, run every {@link #CHECK_INTERVAL_TICKS}
+ * ticks, and optionally a flush that writes whatever it still holds; the storage runs every
+ * flush through {@link #flushAll()} before it shuts down. Server thread only.
+ */
+public class PeriodicFlush {
+
+    public static final int CHECK_INTERVAL_TICKS = 20;
+
+    private static final class Task {
+        final Runnable periodic;
+        final Runnable flush;
+
+        Task(Runnable periodic, Runnable flush) {
+            this.periodic = periodic;
+            this.flush = flush;
+        }
+    }
+
+    private static final List<Task> tasks = new ArrayList<>();
+    private static int ticks = 0;
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (++ticks >= CHECK_INTERVAL_TICKS) {
+                ticks = 0;
+                for (Task task : tasks) {
+                    task.periodic.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Run {@code periodic} once a second and {@code flush}, if not null, on shutdown
+     */
+    public static void add(Runnable periodic, Runnable flush) {
+        tasks.add(new Task(periodic, flush));
+    }
+
+    /**
+     * Write everything the tasks still hold
+     */
+    public static void flushAll() {
+        for (Task task : tasks) {
+            if (task.flush == null) {
+                continue;
+            }
+            try {
+                task.flush.run();
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Error flushing pending log rows: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.minetracer.features.minetracer.config;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,17 +23,41 @@ public class MineTracerConfig {
     public static int CACHE_SIZE = 10000;
     public static String SYNCHRONOUS = "NORMAL";
     public static String TEMP_STORE = "MEMORY";
+    public static int PAGE_SIZE = 4096;
+    public static int MMAP_SIZE_MB = 256;
+    public static int WAL_AUTOCHECKPOINT = 0;
+    public static int CHECKPOINT_INTERVAL_SECONDS = 10;
+    public static int WAL_TRUNCATE_MB = 64;
+    public static int OPTIMIZE_INTERVAL_MINUTES = 60;
+    public static String STORAGE_BACKEND = "sqlite";
+    public static int SEGMENT_ROWS = 65536;
+    public static String DATABASE_URL = "jdbc:mariadb://localhost:3306/minetracer";
+    public static String DATABASE_USERNAME = "minetracer";
+    public static String DATABASE_PASSWORD = "";
+    public static int SERVER_ID = 0;
+    public static boolean LOOKUP_ALL_SERVERS = false;
     
     // Logging settings
     public static boolean LOG_CONTAINER_TRANSACTIONS = true;
+    public static boolean CONTAINER_SESSION_DETAIL = false;
+    public static int CONTAINER_SESSION_TIMEOUT_SECONDS = 30;
     public static boolean LOG_BLOCK_CHANGES = true;
     public static boolean LOG_ITEM_PICKUPS = true;
+    public static int ITEM_PICKUP_WINDOW_SECONDS = 5;
     public static boolean LOG_ITEM_DROPS = true;
     public static boolean LOG_ENTITY_KILLS = true;
     public static boolean LOG_SIGN_TEXT = true;
     public static boolean LOG_CHAT_MESSAGES = false;
     public static boolean LOG_PLAYER_COMMANDS = false;
     
+    // Capture filters (comma separated ids; regions separated by semicolons)
+    public static String FILTER_EXCLUDE_WORLDS = "";
+    public static String FILTER_EXCLUDE_REGIONS = "";
+    public static String FILTER_INCLUDE_BLOCKS = "";
+    public static String FILTER_EXCLUDE_BLOCKS = "";
+    public static String FILTER_INCLUDE_ITEMS = "";
+    public static String FILTER_EXCLUDE_ITEMS = "";
+    
     // Inspector settings
     public static int INSPECTOR_COOLDOWN_MS = 100;
     public static int DEFAULT_PAGE_SIZE = 7;
@@ -43,6 +69,12 @@ public class MineTracerConfig {
     public static int BATCH_INSERT_SIZE = 500;
     public static int BATCH_INSERT_INTERVAL = 100;
     public static boolean VERBOSE = false;
+    public static int LOOKUP_THREADS = 4;
+    public static int MAX_LOOKUPS_PER_PLAYER = 2;
+    public static boolean LOAD_SHEDDING = true;
+    public static int SHED_QUEUE_DEPTH = 20000;
+    public static int SHED_MSPT = 45;
+    public static int SHED_COMMIT_MS = 1000;
     
     // Rollback settings
     public static boolean ROLLBACK_ITEMS = true;
@@ -50,11 +82,17 @@ public class MineTracerConfig {
     public static int MAX_RADIUS = 100;
     public static int DEFAULT_RADIUS = 10;
     public static boolean ENABLE_PREVIEW = true;
+    public static int ROLLBACK_TICK_BUDGET_MS = 10;
+    public static int ROLLBACK_MAX_LOADED_CHUNKS = 32;
+    public static int UNDO_EXPIRY_MINUTES = 5;
     
     // Feature flags
     public static boolean USER_CACHING = true;
     public static int USER_CACHE_SIZE = 1000;
     public static boolean HOPPER_TRANSACTIONS = true;
+    public static int HOPPER_ROLLUP_SECONDS = 60;
+    public static String CONTAINER_BLOCKS = "";
+    public static String NON_CONTAINER_BLOCKS = "";
     public static boolean CHECK_UPDATES = true;
     
     /**
@@ -170,17 +208,42 @@ public class MineTracerConfig {
         CACHE_SIZE = getInt("database.cache-size", CACHE_SIZE);
         SYNCHRONOUS = getString("database.synchronous", SYNCHRONOUS);
         TEMP_STORE = getString("database.temp-store", TEMP_STORE);
+        PAGE_SIZE = getInt("database.page-size", PAGE_SIZE);
+        MMAP_SIZE_MB = getInt("database.mmap-size-mb", MMAP_SIZE_MB);
+        WAL_AUTOCHECKPOINT = getInt("database.wal-autocheckpoint", WAL_AUTOCHECKPOINT);
+        CHECKPOINT_INTERVAL_SECONDS = getInt("database.checkpoint-interval-seconds", CHECKPOINT_INTERVAL_SECONDS);
+        WAL_TRUNCATE_MB = Math.max(1, getInt("database.wal-truncate-mb", WAL_TRUNCATE_MB));
+        OPTIMIZE_INTERVAL_MINUTES = getInt("database.optimize-interval-minutes", OPTIMIZE_INTERVAL_MINUTES);
+        STORAGE_BACKEND = getString("database.backend", STORAGE_BACKEND);
+        SEGMENT_ROWS = Math.max(1024, getInt("database.segment-rows", SEGMENT_ROWS));
+        DATABASE_URL = getString("database.url", DATABASE_URL);
+        DATABASE_USERNAME = getString("database.username", DATABASE_USERNAME);
+        // Quoted so that an empty password is not read as a section header
+        DATABASE_PASSWORD = getString("database.password", DATABASE_PASSWORD).replace("\"", "");
+        SERVER_ID = getInt("database.server-id", SERVER_ID);
+        LOOKUP_ALL_SERVERS = getBoolean("database.lookup-all-servers", LOOKUP_ALL_SERVERS);
         
         // Logging
         LOG_CONTAINER_TRANSACTIONS = getBoolean("logging.container-transactions", LOG_CONTAINER_TRANSACTIONS);
+        CONTAINER_SESSION_DETAIL = getBoolean("logging.container-session-detail", CONTAINER_SESSION_DETAIL);
+        CONTAINER_SESSION_TIMEOUT_SECONDS = getInt("logging.container-session-timeout", CONTAINER_SESSION_TIMEOUT_SECONDS);
         LOG_BLOCK_CHANGES = getBoolean("logging.block-changes", LOG_BLOCK_CHANGES);
         LOG_ITEM_PICKUPS = getBoolean("logging.item-pickups", LOG_ITEM_PICKUPS);
+        ITEM_PICKUP_WINDOW_SECONDS = getInt("logging.item-pickup-window-seconds", ITEM_PICKUP_WINDOW_SECONDS);
         LOG_ITEM_DROPS = getBoolean("logging.item-drops", LOG_ITEM_DROPS);
         LOG_ENTITY_KILLS = getBoolean("logging.entity-kills", LOG_ENTITY_KILLS);
         LOG_SIGN_TEXT = getBoolean("logging.sign-text", LOG_SIGN_TEXT);
         LOG_CHAT_MESSAGES = getBoolean("logging.chat-messages", LOG_CHAT_MESSAGES);
         LOG_PLAYER_COMMANDS = getBoolean("logging.player-commands", LOG_PLAYER_COMMANDS);
         
+        // Filters
+        FILTER_EXCLUDE_WORLDS = getString("filters.exclude-worlds", FILTER_EXCLUDE_WORLDS);
+        FILTER_EXCLUDE_REGIONS = getString("filters.exclude-regions", FILTER_EXCLUDE_REGIONS);
+        FILTER_INCLUDE_BLOCKS = getString("filters.include-blocks", FILTER_INCLUDE_BLOCKS);
+        FILTER_EXCLUDE_BLOCKS = getString("filters.exclude-blocks", FILTER_EXCLUDE_BLOCKS);
+        FILTER_INCLUDE_ITEMS = getString("filters.include-items", FILTER_INCLUDE_ITEMS);
+        FILTER_EXCLUDE_ITEMS = getString("filters.exclude-items", FILTER_EXCLUDE_ITEMS);
+        
         // Inspector
         INSPECTOR_COOLDOWN_MS = getInt("inspector.cooldown-ms", INSPECTOR_COOLDOWN_MS);
         DEFAULT_PAGE_SIZE = getInt("inspector.default-page-size", DEFAULT_PAGE_SIZE);
@@ -192,6 +255,12 @@ public class MineTracerConfig {
         BATCH_INSERT_SIZE = getInt("performance.batch-insert-size", BATCH_INSERT_SIZE);
         BATCH_INSERT_INTERVAL = getInt("performance.batch-insert-interval", BATCH_INSERT_INTERVAL);
         VERBOSE = getBoolean("performance.verbose", VERBOSE);
+        LOOKUP_THREADS = getInt("performance.lookup-threads", LOOKUP_THREADS);
+        MAX_LOOKUPS_PER_PLAYER = getInt("performance.max-lookups-per-player", MAX_LOOKUPS_PER_PLAYER);
+        LOAD_SHEDDING = getBoolean("performance.load-shedding", LOAD_SHEDDING);
+        SHED_QUEUE_DEPTH = getInt("performance.shed-queue-depth", SHED_QUEUE_DEPTH);
+        SHED_MSPT = getInt("performance.shed-mspt", SHED_MSPT);
+        SHED_COMMIT_MS = getInt("performance.shed-commit-ms", SHED_COMMIT_MS);
         
         // Rollback
         ROLLBACK_ITEMS = getBoolean("rollback.rollback-items", ROLLBACK_ITEMS);
@@ -199,11 +268,17 @@ public class MineTracerConfig {
         MAX_RADIUS = getInt("rollback.max-radius", MAX_RADIUS);
         DEFAULT_RADIUS = getInt("rollback.default-radius", DEFAULT_RADIUS);
         ENABLE_PREVIEW = getBoolean("rollback.enable-preview", ENABLE_PREVIEW);
+        ROLLBACK_TICK_BUDGET_MS = getInt("rollback.tick-budget-ms", ROLLBACK_TICK_BUDGET_MS);
+        ROLLBACK_MAX_LOADED_CHUNKS = getInt("rollback.max-loaded-chunks", ROLLBACK_MAX_LOADED_CHUNKS);
+        UNDO_EXPIRY_MINUTES = getInt("rollback.undo-expiry-minutes", UNDO_EXPIRY_MINUTES);
         
         // Features
         USER_CACHING = getBoolean("features.user-caching", USER_CACHING);
         USER_CACHE_SIZE = getInt("features.user-cache-size", USER_CACHE_SIZE);
         HOPPER_TRANSACTIONS = getBoolean("features.hopper-transactions", HOPPER_TRANSACTIONS);
+        HOPPER_ROLLUP_SECONDS = getInt("features.hopper-rollup-seconds", HOPPER_ROLLUP_SECONDS);
+        CONTAINER_BLOCKS = getString("features.container-blocks", CONTAINER_BLOCKS);
+        NON_CONTAINER_BLOCKS = getString("features.non-container-blocks", NON_CONTAINER_BLOCKS);
         CHECK_UPDATES = getBoolean("features.check-updates", CHECK_UPDATES);
     }
     
@@ -222,6 +297,23 @@ public class MineTracerConfig {
         return value != null ? value.toString() : defaultValue;
     }
     
+    /**
+     * Split a list value such as "minecraft:wheat, minecraft:snow" into its trimmed entries
+     */
+    public static List<String> parseList(String value, String separator) {
+        List<String> parts = new ArrayList<>();
+        if (value == null) {
+            return parts;
+        }
+        for (String part : value.replace("\"", "").split(separator)) {
+            part = part.trim();
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+    
     private static String getDefaultConfig() {
         return """
 # MineTracer Configuration File
@@ -234,18 +326,43 @@ database:
   cache-size: 10000
   synchronous: NORMAL
   temp-store: MEMORY
+  page-size: 4096
+  mmap-size-mb: 256
+  wal-autocheckpoint: 0
+  checkpoint-interval-seconds: 10
+  wal-truncate-mb: 64
+  optimize-interval-minutes: 60
+  backend: sqlite
+  segment-rows: 65536
+  url: jdbc:mariadb://localhost:3306/minetracer
+  username: minetracer
+  password: ""
+  server-id: 0
+  lookup-all-servers: false
 
 # Logging Configuration
 logging:
   container-transactions: true
+  container-session-detail: false
+  container-session-timeout: 30
   block-changes: true
   item-pickups: true
+  item-pickup-window-seconds: 5
   item-drops: true
   entity-kills: true
   sign-text: true
   chat-messages: false
   player-commands: false
 
+# Capture Filters
+filters:
+  exclude-worlds: ""
+  exclude-regions: ""
+  include-blocks: ""
+  exclude-blocks: ""
+  include-items: ""
+  exclude-items: ""
+
 # Inspector Configuration
 inspector:
   cooldown-ms: 100
@@ -259,6 +376,12 @@ performance:
   batch-insert-size: 500
   batch-insert-interval: 100
   verbose: false
+  lookup-threads: 4
+  max-lookups-per-player: 2
+  load-shedding: true
+  shed-queue-depth: 20000
+  shed-mspt: 45
+  shed-commit-ms: 1000
 
 # Rollback Configuration
 rollback:
@@ -267,12 +390,18 @@ rollback:
   max-radius: 100
   default-radius: 10
   enable-preview: true
+  tick-budget-ms: 10
+  max-loaded-chunks: 32
+  undo-expiry-minutes: 5
 
 # Feature Flags
 features:
   user-caching: true
   user-cache-size: 1000
   hopper-transactions: true
+  hopper-rollup-seconds: 60
+  container-blocks: ""
+  non-container-blocks: ""
   check-updates: true
 """;
     }
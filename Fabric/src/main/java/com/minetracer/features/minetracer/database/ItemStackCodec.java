@@ -0,0 +1,88 @@
+package com.minetracer.features.minetracer.database;
+
+import java.nio.charset.StandardCharsets;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.StringNbtReader;
+import net.minecraft.registry.Registries;
+
+/**
+ * How item stacks are stored: the raw item id, the count and the stack NBT as UTF-8 SNBT.
+ * Shared by all storage backends so logs keep reading the same whichever engine wrote them.
+ */
+public class ItemStackCodec {
+
+    /**
+     * Get material ID from ItemStack
+     */
+    public static int materialId(ItemStack stack) {
+        return Registries.ITEM.getRawId(stack.getItem());
+    }
+
+    /**
+     * Serialize ItemStack to bytes
+     */
+    public static byte[] serialize(ItemStack stack) {
+        try {
+            NbtCompound nbt = new NbtCompound();
+            stack.writeNbt(nbt);
+            return nbt.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to serialize ItemStack: " + e.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Deserialize ItemStack from database
+     */
+    public static ItemStack deserialize(byte[] data, int typeId, int amount) {
+        try {
+            if (data != null && data.length > 0) {
+                // Try to parse NBT data
+                String nbtString = new String(data, StandardCharsets.UTF_8);
+                if (!nbtString.trim().isEmpty() && !nbtString.equals("{}")) {
+                    try {
+                        NbtCompound nbt = StringNbtReader.parse(nbtString);
+                        if (!nbt.isEmpty()) {
+                            // The amount column is authoritative; rollup rows exceed the byte-sized NBT count
+                            nbt.putByte("Count", (byte) 1);
+                            ItemStack result = ItemStack.fromNbt(nbt);
+                            if (!result.isEmpty()) {
+                                result.setCount(Math.max(1, amount));
+                                return result;
+                            }
+                        }
+                    } catch (Exception nbtException) {
+                        // Silent fallback to registry lookup
+                    }
+                }
+            }
+
+            // Enhanced fallback: create from type ID and amount with better error handling
+            if (typeId > 0 && amount > 0) {
+                try {
+                    // Get item from registry using ID
+                    net.minecraft.item.Item item = Registries.ITEM.get(typeId);
+                    if (item != null && item != net.minecraft.item.Items.AIR) {
+                        return new ItemStack(item, amount);
+                    }
+                } catch (Exception registryException) {
+                    // Silent fallback to placeholder
+                }
+            }
+
+            // Last resort: create a barrier item with a warning name to indicate corruption
+            ItemStack placeholder = new ItemStack(net.minecraft.item.Items.BARRIER, Math.max(1, amount));
+            placeholder.setCustomName(net.minecraft.text.Text.literal("§c[Corrupted Item Data]"));
+            return placeholder;
+
+        } catch (Exception e) {
+            // Return placeholder barrier item for corrupted data
+            ItemStack placeholder = new ItemStack(net.minecraft.item.Items.BARRIER, 1);
+            placeholder.setCustomName(net.minecraft.text.Text.literal("§c[Critical Error - Item Data Lost]"));
+            return placeholder;
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package com.minetracer.features.minetracer.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Storage in a relational database over JDBC: a table per log type plus user and world name
+ * tables. Everything engine-specific goes through the SqlDialect, so SQLite and a shared
+ * MySQL/MariaDB server run the same inserts and lookup templates. Rows are tagged with
+ * database.server-id so several servers can write to one database.
+ */
+public abstract class JdbcStorageBackend implements StorageBackend {
+
+    // Stay well below SQLite's host parameter limit
+    private static final int IDS_PER_STATEMENT = 500;
+    // Rows sent per executeBatch
+    private static final int INSERTS_PER_BATCH = 1000;
+    // Id range deleted per purge transaction
+    private static final long PURGE_IDS_PER_CHUNK = 20_000;
+
+    private static final String[] LOG_NAMES = {"container", "block", "sign", "kill", "item"};
+
+    private static final String CONTAINER_COLUMNS = "c.id, c.time, u.user, w.world, c.x, c.y, c.z, c.type, c.data, c.amount, c.action, c.rolled_back";
+    private static final String BLOCK_COLUMNS = "b.id, b.time, u.user, w.world, b.x, b.y, b.z, b.type, b.nbt, b.action, b.rolled_back";
+    private static final String SIGN_COLUMNS = "s.id, s.time, u.user, w.world, s.x, s.y, s.z, s.action, s.text, s.nbt, s.rolled_back";
+    private static final String KILL_COLUMNS = "k.time, u.user, w.world, k.x, k.y, k.z, k.victim_name, k.rolled_back, k.count";
+    private static final String ITEM_COLUMNS = "i.time, u.user, w.world, i.x, i.y, i.z, i.type, i.data, i.amount, i.action, i.rolled_back";
+
+    protected final SqlDialect dialect;
+
+    private SchemaMigrator migrator;
+
+    // User and world ID caches
+    private final Map<String, Integer> userIdCache = new ConcurrentHashMap<>();
+    private final Map<String, Integer> worldIdCache = new ConcurrentHashMap<>();
+
+    protected JdbcStorageBackend(SqlDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * A connection to the database; closing it returns it to wherever it came from
+     */
+    protected abstract Connection connect() throws SQLException;
+
+    /**
+     * Connection for ingest and maintenance writes; hand it back with releaseWriter
+     */
+    protected Connection acquireWriter() throws SQLException {
+        return connect();
+    }
+
+    protected void releaseWriter(Connection connection) {
+        closeQuietly(connection);
+    }
+
+    /**
+     * Connection for lookups; hand it back with releaseReader
+     */
+    protected Connection acquireReader() throws SQLException {
+        return connect();
+    }
+
+    protected void releaseReader(Connection connection) {
+        closeQuietly(connection);
+    }
+
+    protected static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("[MineTracer] Failed to close connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bytes the database takes on disk, or -1 if unknown
+     */
+    protected abstract long sizeBytes();
+
+    protected void createSchema(Connection connection) throws SQLException {
+        MineTracerDatabase.createSchema(connection, dialect);
+    }
+
+    /**
+     * Bring an older schema up to date in the background; call once the backend can hand out writers
+     */
+    protected void startMigrations() {
+        migrator = new SchemaMigrator(this);
+        migrator.start();
+    }
+
+    /**
+     * Pause a running migration; call before the writer goes away
+     */
+    protected void stopMigrations() {
+        if (migrator != null) {
+            migrator.stop();
+            migrator = null;
+        }
+    }
+
+    // ---- Ingest ----
+
+    @Override
+    public StagedBatch ingest(List<MineTracerConsumer.QueueEntry> batch) throws Exception {
+        Connection connection = acquireWriter();
+        try {
+            // Begin transaction for batch
+            connection.setAutoCommit(false);
+            processBatchEntries(connection, batch);
+        } catch (Exception e) {
+            rollbackAndRelease(connection);
+            throw e;
+        }
+
+        return new StagedBatch() {
+            // A failed commit is followed by abort, which rolls back and releases
+            private boolean released = false;
+
+            @Override
+            public void commit() throws Exception {
+                connection.commit();
+                released = true;
+                releaseWriter(connection);
+            }
+
+            @Override
+            public void abort() {
+                if (!released) {
+                    released = true;
+                    rollbackAndRelease(connection);
+                }
+            }
+        };
+    }
+
+    private void rollbackAndRelease(Connection connection) {
+        // Ids handed out inside the discarded transaction no longer exist
+        userIdCache.clear();
+        worldIdCache.clear();
+        try {
+            if (!connection.isClosed()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            System.err.println("[MineTracer] Rollback failed: " + e.getMessage());
+        }
+        releaseWriter(connection);
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException;
+    }
+
+    private void processBatchEntries(Connection connection, List<MineTracerConsumer.QueueEntry> batch) throws SQLException {
+        List<MineTracerConsumer.QueueEntry> containers = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> blocks = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> signs = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> kills = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> items = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> users = new ArrayList<>();
+        List<MineTracerConsumer.QueueEntry> worlds = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : batch) {
+            switch (entry.processType) {
+                case MineTracerConsumer.PROCESS_CONTAINER:
+                    containers.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_BLOCK:
+                    blocks.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_SIGN:
+                    signs.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_KILL:
+                    kills.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_ITEM:
+                    items.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_USER:
+                    users.add(entry);
+                    break;
+                case MineTracerConsumer.PROCESS_WORLD:
+                    worlds.add(entry);
+                    break;
+            }
+        }
+
+        // Names first, so users arrive with their real uuid before a log row creates them as unknown
+        insertAll(connection, MineTracerDatabase.USER, users, false, this::bindUser);
+        insertAll(connection, MineTracerDatabase.WORLD, worlds, false, this::bindWorld);
+        insertAll(connection, MineTracerDatabase.CONTAINER, containers, true, (stmt, entry) -> bindContainer(connection, stmt, entry));
+        insertAll(connection, MineTracerDatabase.BLOCK, blocks, true, (stmt, entry) -> bindBlock(connection, stmt, entry));
+        insertAll(connection, MineTracerDatabase.SIGN, signs, true, (stmt, entry) -> bindSign(connection, stmt, entry));
+        insertAll(connection, MineTracerDatabase.KILL, kills, false, (stmt, entry) -> bindKill(connection, stmt, entry));
+        insertAll(connection, MineTracerDatabase.ITEM_PICKUP_DROP, items, false, (stmt, entry) -> bindItem(connection, stmt, entry));
+    }
+
+    /**
+     * Insert the entries of one table through a single prepared statement, sent in batches
+     * unless row ids are needed and the driver cannot report them per batch row
+     */
+    private void insertAll(Connection connection, int tableType, List<MineTracerConsumer.QueueEntry> entries,
+                           boolean recordIds, RowBinder binder) throws SQLException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        boolean batched = !recordIds || dialect.batchGeneratedKeys();
+        try (PreparedStatement stmt = MineTracerDatabase.prepareStatement(connection, dialect, tableType, recordIds)) {
+            if (stmt == null) {
+                throw new SQLException("No insert statement for table " + tableType);
+            }
+            int first = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                MineTracerConsumer.QueueEntry entry = entries.get(i);
+                binder.bind(stmt, entry);
+                if (!batched) {
+                    stmt.executeUpdate();
+                    recordRowIds(stmt, entries, i, i + 1);
+                    continue;
+                }
+                stmt.addBatch();
+                if (i + 1 - first == INSERTS_PER_BATCH) {
+                    executeBatch(stmt, entries, first, i + 1, recordIds);
+                    first = i + 1;
+                }
+            }
+            if (batched && first < entries.size()) {
+                executeBatch(stmt, entries, first, entries.size(), recordIds);
+            }
+        }
+    }
+
+    private static void executeBatch(PreparedStatement stmt, List<MineTracerConsumer.QueueEntry> entries,
+                                     int from, int to, boolean recordIds) throws SQLException {
+        stmt.executeBatch();
+        if (recordIds) {
+            recordRowIds(stmt, entries, from, to);
+        }
+    }
+
+    /**
+     * Remember the inserted row ids so a rollback of a still-pending entry can mark them later
+     */
+    private static void recordRowIds(PreparedStatement stmt, List<MineTracerConsumer.QueueEntry> entries,
+                                     int from, int to) throws SQLException {
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            for (int i = from; i < to && keys.next(); i++) {
+                entries.get(i).rowId = keys.getLong(1);
+            }
+        }
+    }
+
+    private void bindContainer(Connection connection, PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+
+        String action = (String) entryData[0];
+        String playerName = (String) entryData[1];
+        BlockPos pos = (BlockPos) entryData[2];
+        ItemStack stack = (ItemStack) entryData[3];
+        String worldName = (String) entryData[4];
+
+        stmt.setLong(1, entry.timestamp / 1000); // Convert to seconds
+        stmt.setInt(2, MineTracerConfig.SERVER_ID);
+        stmt.setInt(3, getUserId(connection, playerName));
+        stmt.setInt(4, getWorldId(connection, worldName));
+        stmt.setInt(5, pos.getX());
+        stmt.setInt(6, pos.getY());
+        stmt.setInt(7, pos.getZ());
+        stmt.setInt(8, ItemStackCodec.materialId(stack));
+        stmt.setBytes(9, ItemStackCodec.serialize(stack));
+        stmt.setInt(10, stack.getCount());
+        stmt.setBytes(11, null); // metadata - not used currently
+        stmt.setInt(12, action.equals("deposited") ? 1 : 0); // action: 0=withdrew, 1=deposited
+        stmt.setInt(13, entry.rolledBack ? 1 : 0); // rolled_back
+    }
+
+    private void bindBlock(Connection connection, PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+
+        String action = (String) entryData[0];
+        String playerName = (String) entryData[1];
+        BlockPos pos = (BlockPos) entryData[2];
+        String blockId = (String) entryData[3];
+        String nbt = (String) entryData[4];
+        String worldName = (String) entryData[5];
+
+        stmt.setLong(1, entry.timestamp / 1000);
+        stmt.setInt(2, MineTracerConfig.SERVER_ID);
+        stmt.setInt(3, getUserId(connection, playerName));
+        stmt.setInt(4, getWorldId(connection, worldName));
+        stmt.setInt(5, pos.getX());
+        stmt.setInt(6, pos.getY());
+        stmt.setInt(7, pos.getZ());
+        stmt.setString(8, blockId);
+        stmt.setString(9, null); // block data - not used currently
+        stmt.setString(10, nbt);
+        stmt.setString(11, action);
+        stmt.setInt(12, entry.rolledBack ? 1 : 0); // rolled_back
+    }
+
+    private void bindSign(Connection connection, PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+
+        String action = (String) entryData[0];
+        String playerName = (String) entryData[1];
+        BlockPos pos = (BlockPos) entryData[2];
+        String text = (String) entryData[3];
+        String nbt = (String) entryData[4];
+        String worldName = (String) entryData[5];
+
+        stmt.setLong(1, entry.timestamp / 1000);
+        stmt.setInt(2, MineTracerConfig.SERVER_ID);
+        stmt.setInt(3, getUserId(connection, playerName));
+        stmt.setInt(4, getWorldId(connection, worldName));
+        stmt.setInt(5, pos.getX());
+        stmt.setInt(6, pos.getY());
+        stmt.setInt(7, pos.getZ());
+        stmt.setString(8, action);
+        stmt.setString(9, text);
+        stmt.setString(10, nbt);
+        stmt.setInt(11, entry.rolledBack ? 1 : 0); // rolled_back
+    }
+
+    private void bindKill(Connection connection, PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+
+        String killerName = (String) entryData[0];
+        String victimName = (String) entryData[1];
+        BlockPos pos = (BlockPos) entryData[2];
+        String worldName = (String) entryData[3];
+        int count = entryData.length > 4 ? (Integer) entryData[4] : 1;
+
+        stmt.setLong(1, entry.timestamp / 1000);
+        stmt.setInt(2, MineTracerConfig.SERVER_ID);
+        stmt.setInt(3, getUserId(connection, killerName));
+        stmt.setString(4, victimName);
+        stmt.setInt(5, getWorldId(connection, worldName));
+        stmt.setInt(6, pos.getX());
+        stmt.setInt(7, pos.getY());
+        stmt.setInt(8, pos.getZ());
+        stmt.setInt(9, entry.rolledBack ? 1 : 0); // rolled_back
+        stmt.setInt(10, count);
+    }
+
+    private void bindItem(Connection connection, PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+
+        String action = (String) entryData[0];
+        String playerName = (String) entryData[1];
+        BlockPos pos = (BlockPos) entryData[2];
+        ItemStack stack = (ItemStack) entryData[3];
+        String worldName = (String) entryData[4];
+
+        stmt.setLong(1, entry.timestamp / 1000);
+        stmt.setInt(2, MineTracerConfig.SERVER_ID);
+        stmt.setInt(3, getUserId(connection, playerName));
+        stmt.setInt(4, getWorldId(connection, worldName));
+        stmt.setInt(5, pos.getX());
+        stmt.setInt(6, pos.getY());
+        stmt.setInt(7, pos.getZ());
+        stmt.setInt(8, ItemStackCodec.materialId(stack));
+        stmt.setBytes(9, ItemStackCodec.serialize(stack));
+        stmt.setInt(10, stack.getCount());
+        stmt.setInt(11, action.equals("pickup") ? 0 : 1); // action: 0=pickup, 1=drop
+        stmt.setInt(12, entry.rolledBack ? 1 : 0); // rolled_back
+    }
+
+    private void bindUser(PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+        stmt.setLong(1, entry.timestamp / 1000);
+        stmt.setString(2, (String) entryData[0]);
+        stmt.setString(3, (String) entryData[1]);
+    }
+
+    private void bindWorld(PreparedStatement stmt, MineTracerConsumer.QueueEntry entry) throws SQLException {
+        Object[] entryData = entry.data;
+        stmt.setInt(1, (Integer) entryData[0]);
+        stmt.setString(2, (String) entryData[1]);
+    }
+
+    /**
+     * Get or create user ID
+     */
+    private int getUserId(Connection connection, String userName) throws SQLException {
+        // Check cache first
+        Integer cachedId = userIdCache.get(userName);
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        int id = selectId(connection, "SELECT id FROM minetracer_user WHERE user = ?", userName);
+        if (id < 0) {
+            // Create new user entry; another server sharing the database may insert it first
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    dialect.insertIgnore() + " INTO minetracer_user (time, user, uuid) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setLong(1, System.currentTimeMillis() / 1000);
+                stmt.setString(2, userName);
+                stmt.setString(3, "unknown"); // UUID will be updated when available
+                id = insertedId(stmt, connection, "SELECT id FROM minetracer_user WHERE user = ?", userName);
+            }
+        }
+        userIdCache.put(userName, id);
+        return id;
+    }
+
+    /**
+     * Get or create world ID
+     */
+    private int getWorldId(Connection connection, String worldName) throws SQLException {
+        // Check cache first
+        Integer cachedId = worldIdCache.get(worldName);
+        if (cachedId != null) {
+            return cachedId;
+        }
+
+        int id = selectId(connection, "SELECT id FROM minetracer_world WHERE world = ?", worldName);
+        if (id < 0) {
+            // Create new world entry with auto-generated ID
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    dialect.insertIgnore() + " INTO minetracer_world (world) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setString(1, worldName);
+                id = insertedId(stmt, connection, "SELECT id FROM minetracer_world WHERE world = ?", worldName);
+            }
+        }
+        worldIdCache.put(worldName, id);
+        return id;
+    }
+
+    private static int selectId(Connection connection, String sql, String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Run an insert-or-ignore and return the new key, or the existing row's id if it was ignored
+     */
+    private static int insertedId(PreparedStatement stmt, Connection connection, String select, String name) throws SQLException {
+        if (stmt.executeUpdate() > 0) {
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getInt(1);
+                }
+            }
+        }
+        int id = selectId(connection, select, name);
+        if (id < 0) {
+            throw new SQLException("Could not resolve id for " + name);
+        }
+        return id;
+    }
+
+    // ---- Queries ----
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ResultSet rs, BlockPos pos) throws SQLException;
+    }
+
+    @Override
+    public List<MineTracerLookup.ContainerLogEntry> queryContainers(LogQuery query) throws SQLException {
+        return select(query, CONTAINER_COLUMNS, "minetracer_container", "c", "user", (rs, pos) -> {
+            ItemStack stack = ItemStackCodec.deserialize(rs.getBytes("data"), rs.getInt("type"), rs.getInt("amount"));
+            String action = rs.getInt("action") == 1 ? "deposited" : "withdrew";
+            return new MineTracerLookup.ContainerLogEntry(action, rs.getString("user"), pos, stack,
+                    Instant.ofEpochSecond(rs.getLong("time")), rs.getInt("rolled_back") > 0, rs.getLong("id"));
+        });
+    }
+
+    @Override
+    public List<MineTracerLookup.BlockLogEntry> queryBlocks(LogQuery query) throws SQLException {
+        return select(query, BLOCK_COLUMNS, "minetracer_block", "b", "user", (rs, pos) ->
+                new MineTracerLookup.BlockLogEntry(rs.getString("action"), rs.getString("user"), pos,
+                        rs.getString("type"), rs.getString("nbt"), Instant.ofEpochSecond(rs.getLong("time")),
+                        rs.getInt("rolled_back") > 0, rs.getLong("id")));
+    }
+
+    @Override
+    public List<MineTracerLookup.SignLogEntry> querySigns(LogQuery query) throws SQLException {
+        return select(query, SIGN_COLUMNS, "minetracer_sign", "s", "user", (rs, pos) ->
+                new MineTracerLookup.SignLogEntry(rs.getString("action"), rs.getString("user"), pos,
+                        rs.getString("text"), rs.getString("nbt"), Instant.ofEpochSecond(rs.getLong("time")),
+                        rs.getInt("rolled_back") > 0, rs.getLong("id")));
+    }
+
+    @Override
+    public List<MineTracerLookup.KillLogEntry> queryKills(LogQuery query) throws SQLException {
+        return select(query, KILL_COLUMNS, "minetracer_kill", "k", "killer_user", (rs, pos) ->
+                new MineTracerLookup.KillLogEntry(rs.getString("user"), rs.getString("victim_name"), pos,
+                        rs.getString("world"), Instant.ofEpochSecond(rs.getLong("time")),
+                        rs.getInt("rolled_back") > 0, rs.getInt("count")));
+    }
+
+    @Override
+    public List<MineTracerLookup.ItemPickupDropLogEntry> queryItems(LogQuery query) throws SQLException {
+        return select(query, ITEM_COLUMNS, "minetracer_item", "i", "user", (rs, pos) -> {
+            ItemStack stack = ItemStackCodec.deserialize(rs.getBytes("data"), rs.getInt("type"), rs.getInt("amount"));
+            String action = rs.getInt("action") == 0 ? "pickup" : "drop";
+            return new MineTracerLookup.ItemPickupDropLogEntry(action, rs.getString("user"), pos, stack,
+                    rs.getString("world"), Instant.ofEpochSecond(rs.getLong("time")), rs.getInt("rolled_back") > 0);
+        });
+    }
+
+    /**
+     * Run the lookup template shared by every log table: join user and world names, filter by
+     * world, user and bounding box, newest first, then drop rows outside the query range
+     */
+    private <T> List<T> select(LogQuery query, String columns, String table, String alias, String userColumn,
+                               RowReader<T> reader) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                .append(" FROM ").append(table).append(' ').append(alias)
+                .append(" JOIN minetracer_user u ON ").append(alias).append('.').append(userColumn).append(" = u.id")
+                .append(" JOIN minetracer_world w ON ").append(alias).append(".wid = w.id");
+
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (!MineTracerConfig.LOOKUP_ALL_SERVERS) {
+            conditions.add(alias + ".sid = ?");
+            params.add(MineTracerConfig.SERVER_ID);
+        }
+        if (query.world != null) {
+            conditions.add("w.world = ?");
+            params.add(query.world);
+        }
+        if (query.hasUser()) {
+            conditions.add("u.user = ?");
+            params.add(query.user);
+        }
+        if (query.center != null) {
+            BlockPos center = query.center;
+            if (query.range == 0) {
+                // Exact position match
+                conditions.add(alias + ".x = ? AND " + alias + ".y = ? AND " + alias + ".z = ?");
+                params.add(center.getX());
+                params.add(center.getY());
+                params.add(center.getZ());
+            } else {
+                // Range match
+                conditions.add(alias + ".x BETWEEN ? AND ? AND " + alias + ".y BETWEEN ? AND ? AND " + alias + ".z BETWEEN ? AND ?");
+                params.add(center.getX() - query.range);
+                params.add(center.getX() + query.range);
+                params.add(center.getY() - query.range);
+                params.add(center.getY() + query.range);
+                params.add(center.getZ() - query.range);
+                params.add(center.getZ() + query.range);
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(alias).append(".time DESC");
+        if (query.hasLimit()) {
+            sql.append(" LIMIT ").append(query.limit);
+        }
+
+        List<T> results = new ArrayList<>();
+        Connection connection = acquireReader();
+        try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            if (dialect.fetchSize() > 0) {
+                stmt.setFetchSize(dialect.fetchSize());
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    BlockPos pos = new BlockPos(rs.getInt("x"), rs.getInt("y"), rs.getInt("z"));
+                    if (query.contains(pos)) {
+                        results.add(reader.read(rs, pos));
+                    }
+                }
+            }
+        } finally {
+            releaseReader(connection);
+        }
+        return results;
+    }
+
+    @Override
+    public Set<String> getUserNames() throws SQLException {
+        Set<String> playerNames = new HashSet<>();
+        Connection connection = acquireReader();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT DISTINCT user FROM minetracer_user");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                playerNames.add(rs.getString("user"));
+            }
+        } finally {
+            releaseReader(connection);
+        }
+        return playerNames;
+    }
+
+    // ---- Maintenance ----
+
+    @Override
+    public int markRolledBack(LongList containerIds, LongList blockIds, LongList signIds) throws SQLException {
+        Connection connection = acquireWriter();
+        try {
+            connection.setAutoCommit(false);
+            int updated = markRolledBack(connection, "minetracer_container", containerIds)
+                    + markRolledBack(connection, "minetracer_block", blockIds)
+                    + markRolledBack(connection, "minetracer_sign", signIds);
+            connection.commit();
+            return updated;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            releaseWriter(connection);
+        }
+    }
+
+    private static int markRolledBack(Connection connection, String table, LongList ids) throws SQLException {
+        int updated = 0;
+        for (int start = 0; start < ids.size(); start += IDS_PER_STATEMENT) {
+            int end = Math.min(ids.size(), start + IDS_PER_STATEMENT);
+
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table)
+                    .append(" SET rolled_back = 1 WHERE id IN (");
+            for (int i = start; i < end; i++) {
+                sql.append(i == start ? "?" : ",?");
+            }
+            sql.append(')');
+
+            try (PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+                for (int i = start; i < end; i++) {
+                    stmt.setLong(i - start + 1, ids.getLong(i));
+                }
+                updated += stmt.executeUpdate();
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Delete old rows one id range at a time. No index leads with time, so each range is a
+     * short primary key scan in its own transaction and ingest gets the writer in between.
+     */
+    @Override
+    public long purge(long beforeEpochSecond) throws SQLException {
+        long removed = 0;
+        for (String table : MineTracerDatabase.LOG_TABLES) {
+            long minId;
+            long maxId;
+            Connection connection = acquireReader();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT MIN(id), MAX(id) FROM " + table)) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    continue;
+                }
+                minId = rs.getLong(1);
+                maxId = rs.getLong(2);
+            } finally {
+                releaseReader(connection);
+            }
+
+            String delete = "DELETE FROM " + table + " WHERE id >= ? AND id < ? AND time < ? AND sid = ?";
+            for (long from = minId; from <= maxId; from += PURGE_IDS_PER_CHUNK) {
+                connection = acquireWriter();
+                try (PreparedStatement stmt = connection.prepareStatement(delete)) {
+                    connection.setAutoCommit(false);
+                    stmt.setLong(1, from);
+                    stmt.setLong(2, from + PURGE_IDS_PER_CHUNK);
+                    stmt.setLong(3, beforeEpochSecond);
+                    stmt.setInt(4, MineTracerConfig.SERVER_ID);
+                    removed += stmt.executeUpdate();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    releaseWriter(connection);
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public StorageStats getStats() throws Exception {
+        LinkedHashMap<String, Long> rows = new LinkedHashMap<>();
+        Connection connection = acquireReader();
+        try (Statement statement = connection.createStatement()) {
+            for (int i = 0; i < MineTracerDatabase.LOG_TABLES.length; i++) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + MineTracerDatabase.LOG_TABLES[i])) {
+                    rows.put(LOG_NAMES[i], rs.next() ? rs.getLong(1) : 0L);
+                }
+            }
+        } finally {
+            releaseReader(connection);
+        }
+
+        long size = sizeBytes();
+        return new StorageStats(getName(), rows, size);
+    }
+}
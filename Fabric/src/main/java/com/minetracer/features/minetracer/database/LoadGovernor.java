@@ -0,0 +1,189 @@
+package com.minetracer.features.minetracer.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.minetracer.features.minetracer.PeriodicFlush;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+
+/**
+ * Sheds low-value logging while the server or the database falls behind.
+ * Once a second the consumer backlog, the time of the last batch commit and the tick time are
+ * compared against their thresholds and the worst of the three picks a level. Each level adds
+ * one kind of shedding to the ones below it. Block, sign, kill and container events are never
+ * shed, as rollbacks depend on them, and neither is block entity data beyond a block's
+ * defaults. The load drops back one level at a time once it has stayed low for a few seconds.
+ */
+public class LoadGovernor {
+
+    public enum Level {
+        NORMAL,
+        // Pickups are summed over a longer window
+        COALESCE_PICKUPS,
+        // Only one in DROP_SAMPLE_RATE item drops is logged
+        SAMPLE_DROPS,
+        // Placed blocks are logged without block entity data that only holds defaults
+        DEFER_NBT
+    }
+
+    public static final int DROP_SAMPLE_RATE = 10;
+    public static final int SHED_PICKUP_WINDOW_SECONDS = 60;
+
+    // Seconds of lower load before dropping a level
+    private static final int CALM_CHECKS = 5;
+    // An idle consumer's last commit time no longer says anything about the database
+    private static final long STALE_COMMIT_MS = 3000;
+
+    private static volatile Level level = Level.NORMAL;
+    private static volatile long lastCommitMs = 0;
+    private static volatile long lastCommitAt = 0;
+
+    private static final AtomicLong shedDrops = new AtomicLong();
+    private static final AtomicLong shedBlockNbt = new AtomicLong();
+    private static final AtomicLong coalescedPickups = new AtomicLong();
+    private static final AtomicLong dropCounter = new AtomicLong();
+
+    // Server thread only
+    private static long tickStart = 0;
+    private static double averageTickMs = 0;
+    private static int calmChecks = 0;
+
+    public static void register() {
+        ServerTickEvents.START_SERVER_TICK.register(server -> tickStart = System.nanoTime());
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            double tickMs = (System.nanoTime() - tickStart) / 1_000_000.0;
+            averageTickMs = averageTickMs * 0.95 + tickMs * 0.05;
+        });
+        PeriodicFlush.add(LoadGovernor::update, null);
+    }
+
+    /**
+     * Called by the consumer with the time a batch took to write and commit
+     */
+    static void recordCommit(long millis) {
+        lastCommitMs = millis;
+        lastCommitAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Wall-clock time of the last batch commit, 0 before the first
+     */
+    static long getLastCommitAt() {
+        return lastCommitAt;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    private static boolean atLeast(Level required) {
+        return MineTracerConfig.LOAD_SHEDDING && level.ordinal() >= required.ordinal();
+    }
+
+    /**
+     * Seconds over which one player's pickups of one item are summed
+     */
+    public static int pickupWindowSeconds() {
+        return atLeast(Level.COALESCE_PICKUPS)
+                ? Math.max(MineTracerConfig.ITEM_PICKUP_WINDOW_SECONDS, SHED_PICKUP_WINDOW_SECONDS)
+                : MineTracerConfig.ITEM_PICKUP_WINDOW_SECONDS;
+    }
+
+    /**
+     * Called for each pickup that was merged into an existing row
+     */
+    public static void recordCoalescedPickup() {
+        if (atLeast(Level.COALESCE_PICKUPS)) {
+            coalescedPickups.incrementAndGet();
+        }
+    }
+
+    /**
+     * Whether an item drop should be logged; counts the ones that are not
+     */
+    public static boolean shouldLogDrop() {
+        if (!atLeast(Level.SAMPLE_DROPS)) {
+            return true;
+        }
+        if (dropCounter.incrementAndGet() % DROP_SAMPLE_RATE == 0) {
+            return true;
+        }
+        shedDrops.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Whether a placed block's block entity data should be captured; counts the ones that are not.
+     * Data the placed item carried, which a rollback could not recreate, is never shed.
+     */
+    public static boolean shouldCapturePlacedNbt(boolean carriesData) {
+        if (!atLeast(Level.DEFER_NBT) || carriesData) {
+            return true;
+        }
+        shedBlockNbt.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * One-line summary for operators
+     */
+    public static String getStatus() {
+        return String.format("Load level: %s (tick %.1f ms, last commit %d ms). Shed since start: %d drops, %d placed-block NBT, %d pickups merged",
+                level.name().toLowerCase(), averageTickMs, lastCommitMs,
+                shedDrops.get(), shedBlockNbt.get(), coalescedPickups.get());
+    }
+
+    private static void update() {
+        if (!MineTracerConfig.LOAD_SHEDDING) {
+            level = Level.NORMAL;
+            return;
+        }
+
+        int queueDepth = MineTracerConsumer.getQueueSize();
+        long commitMs = lastCommitMs;
+        if (queueDepth == 0 && System.currentTimeMillis() - lastCommitAt >= STALE_COMMIT_MS) {
+            commitMs = 0;
+        }
+        int target = Math.max(severity(queueDepth, MineTracerConfig.SHED_QUEUE_DEPTH),
+                Math.max(severity(averageTickMs, MineTracerConfig.SHED_MSPT),
+                        severity(commitMs, MineTracerConfig.SHED_COMMIT_MS)));
+
+        int current = level.ordinal();
+        if (target > current) {
+            calmChecks = 0;
+            setLevel(Level.values()[target], queueDepth);
+        } else if (target < current) {
+            if (++calmChecks >= CALM_CHECKS) {
+                calmChecks = 0;
+                setLevel(Level.values()[current - 1], queueDepth);
+            }
+        } else {
+            calmChecks = 0;
+        }
+    }
+
+    /**
+     * Level a single measurement calls for: its threshold, twice and four times its threshold
+     * map to the three shedding levels
+     */
+    private static int severity(double value, int threshold) {
+        if (threshold <= 0 || value < threshold) {
+            return 0;
+        }
+        if (value < threshold * 2.0) {
+            return 1;
+        }
+        return value < threshold * 4.0 ? 2 : 3;
+    }
+
+    private static void setLevel(Level next, int queueDepth) {
+        Level previous = level;
+        level = next;
+        System.out.println("[MineTracer] Load level " + previous.name().toLowerCase() + " -> " + next.name().toLowerCase()
+                + " (queue " + queueDepth + ", tick " + String.format("%.1f", averageTickMs) + " ms, last commit " + lastCommitMs + " ms)");
+        if (next == Level.NORMAL) {
+            System.out.println("[MineTracer] " + getStatus());
+        }
+    }
+}
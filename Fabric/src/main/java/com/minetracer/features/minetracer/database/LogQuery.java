@@ -0,0 +1,55 @@
+package com.minetracer.features.minetracer.database;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * What a lookup asks a storage backend for: rows optionally limited to one world, a range
+ * around a position and one user, newest first.
+ */
+public final class LogQuery {
+
+    public static final int DEFAULT_LIMIT = 1000;
+
+    // Null matches every world
+    public final String world;
+    // Null matches every position
+    public final BlockPos center;
+    // 0 matches the exact position, otherwise rows within this distance of the center
+    public final int range;
+    // Null or empty matches every user
+    public final String user;
+    // 0 or Integer.MAX_VALUE for no limit
+    public final int limit;
+
+    private LogQuery(String world, BlockPos center, int range, String user, int limit) {
+        this.world = world;
+        this.center = center;
+        this.range = range;
+        this.user = user;
+        this.limit = limit;
+    }
+
+    public static LogQuery inRange(BlockPos center, int range, String user, String world, int limit) {
+        return new LogQuery(world, center, range, user, limit);
+    }
+
+    public static LogQuery forUser(String user, String world, int limit) {
+        return new LogQuery(world, null, 0, user, limit);
+    }
+
+    public boolean hasUser() {
+        return user != null && !user.isEmpty();
+    }
+
+    public boolean hasLimit() {
+        return limit > 0 && limit < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Whether a row at this position is in range. Backends may narrow by bounding box first
+     * but must apply this check before returning a row.
+     */
+    public boolean contains(BlockPos pos) {
+        return center == null || pos.getSquaredDistance(center) <= (double) range * range;
+    }
+}
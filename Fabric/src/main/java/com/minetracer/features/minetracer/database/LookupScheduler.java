@@ -0,0 +1,205 @@
+package com.minetracer.features.minetracer.database;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+/**
+ * Priority-aware executor for database lookups
+ * Inspector clicks run ahead of command lookups, which run ahead of bulk rollback/restore scans.
+ * Each player can only have a limited number of queries in flight, and bulk work never
+ * occupies every worker, so a few heavy lookups cannot starve everyone else's inspector.
+ */
+public class LookupScheduler {
+
+    /**
+     * Lookup priority lanes, highest first
+     */
+    public enum Priority {
+        INTERACTIVE,
+        COMMAND,
+        BULK
+    }
+
+    private static class Task {
+        final Priority priority;
+        final Object owner;
+        final Runnable body;
+
+        Task(Priority priority, Object owner, Runnable body) {
+            this.priority = priority;
+            this.owner = owner;
+            this.body = body;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final List<ArrayDeque<Task>> lanes = new ArrayList<>();
+    private static final Map<Object, Integer> runningPerOwner = new HashMap<>();
+    private static final List<Thread> workers = new ArrayList<>();
+    private static int runningBulk = 0;
+    private static int workerCount = 0;
+    private static boolean started = false;
+    private static boolean shutdown = false;
+    private static final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+
+    static {
+        for (int i = 0; i < Priority.values().length; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Executor that submits into the given lane on behalf of an owner (usually a player UUID).
+     * A null owner is not subject to the per-player limit.
+     */
+    public static Executor executor(Priority priority, Object owner) {
+        return body -> submit(priority, owner, body);
+    }
+
+    /**
+     * Queue a task in its priority lane
+     */
+    public static void submit(Priority priority, Object owner, Runnable body) {
+        synchronized (lock) {
+            if (shutdown) {
+                throw new RejectedExecutionException("[MineTracer] Lookup scheduler is shut down");
+            }
+            ensureStarted();
+            lanes.get(priority.ordinal()).addLast(new Task(priority, owner, body));
+            lock.notify();
+        }
+    }
+
+    /**
+     * Number of queued (not yet running) tasks in a lane
+     */
+    public static int getQueuedCount(Priority priority) {
+        synchronized (lock) {
+            return lanes.get(priority.ordinal()).size();
+        }
+    }
+
+    /**
+     * Stop all workers; queued tasks are dropped
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            for (ArrayDeque<Task> lane : lanes) {
+                lane.clear();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private static void ensureStarted() {
+        if (started) {
+            return;
+        }
+        started = true;
+        workerCount = Math.max(2, MineTracerConfig.LOOKUP_THREADS);
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(LookupScheduler::workerLoop, "MineTracer-Lookup-" + i);
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    /**
+     * Whether the calling thread is one of the lookup workers
+     */
+    public static boolean isWorkerThread() {
+        return isWorker.get();
+    }
+
+    private static void workerLoop() {
+        isWorker.set(true);
+        while (true) {
+            Task task;
+            synchronized (lock) {
+                while ((task = pollEligible()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                markRunning(task);
+            }
+
+            try {
+                task.body.run();
+            } catch (Throwable t) {
+                System.err.println("[MineTracer] Lookup task failed: " + t.getMessage());
+                t.printStackTrace();
+            } finally {
+                synchronized (lock) {
+                    markDone(task);
+                    // A finished task may unblock a deferred task of the same owner or lane
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the first runnable task from the highest non-empty lane, skipping tasks whose
+     * owner is at its concurrency limit or bulk tasks when the bulk share is used up
+     */
+    private static Task pollEligible() {
+        for (ArrayDeque<Task> lane : lanes) {
+            Iterator<Task> it = lane.iterator();
+            while (it.hasNext()) {
+                Task task = it.next();
+                if (isEligible(task)) {
+                    it.remove();
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEligible(Task task) {
+        if (task.priority == Priority.BULK && runningBulk >= workerCount - 1) {
+            // Always leave one worker free for inspector and command lookups
+            return false;
+        }
+        if (task.owner != null) {
+            int running = runningPerOwner.getOrDefault(task.owner, 0);
+            return running < Math.max(1, MineTracerConfig.MAX_LOOKUPS_PER_PLAYER);
+        }
+        return true;
+    }
+
+    private static void markRunning(Task task) {
+        if (task.priority == Priority.BULK) {
+            runningBulk++;
+        }
+        if (task.owner != null) {
+            runningPerOwner.merge(task.owner, 1, Integer::sum);
+        }
+    }
+
+    private static void markDone(Task task) {
+        if (task.priority == Priority.BULK) {
+            runningBulk--;
+        }
+        if (task.owner != null) {
+            runningPerOwner.computeIfPresent(task.owner, (k, v) -> v > 1 ? v - 1 : null);
+        }
+    }
+}
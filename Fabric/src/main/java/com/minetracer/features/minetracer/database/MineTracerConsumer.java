@@ -33,6 +33,8 @@ public class MineTracerConsumer implements Runnable {
     };
     
     private static final AtomicInteger entryIdCounter = new AtomicInteger(0);
+    // Entries queued but not yet processed; ConcurrentLinkedQueue.size() walks the whole queue
+    private static final AtomicInteger pendingEntries = new AtomicInteger(0);
     
     /**
      * Queue entry for batch processing
@@ -42,12 +44,23 @@ public class MineTracerConsumer implements Runnable {
         public final int processType;
         public final Object[] data;
         public final long timestamp;
+        // Set when a rollback targets this entry before it reaches the database
+        public volatile boolean rolledBack = false;
+        // Row id assigned on insert, 0 until the entry is written
+        public volatile long rowId = 0;
         
         public QueueEntry(int id, int processType, Object[] data) {
+            this(id, processType, data, System.currentTimeMillis());
+        }
+        
+        /**
+         * Entry for something that happened at the given time rather than now, e.g. a rollup
+         */
+        public QueueEntry(int id, int processType, Object[] data, long timestamp) {
             this.id = id;
             this.processType = processType;
             this.data = data;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
         }
     }
     
@@ -99,16 +112,27 @@ public class MineTracerConsumer implements Runnable {
      * Add entry to queue for processing
      */
     public static void queueEntry(int processType, Object[] data, Object associatedData) {
+        queueEntry(processType, data, associatedData, System.currentTimeMillis());
+    }
+    
+    /**
+     * Queue an entry logged with the time it happened, in epoch milliseconds
+     */
+    public static void queueEntry(int processType, Object[] data, Object associatedData, long timestamp) {
         if (shutdownRequested) {
             return;
         }
         
         int entryId = entryIdCounter.incrementAndGet();
-        QueueEntry entry = new QueueEntry(entryId, processType, data);
+        QueueEntry entry = new QueueEntry(entryId, processType, data, timestamp);
+        
+        // Make the entry visible to lookups before it is picked up by the consumer
+        RecentWriteOverlay.add(entry);
         
         // Add to current consumer queue
         int consumer = currentConsumer;
         queues[consumer].offer(entry);
+        pendingEntries.incrementAndGet();
         
         // Store associated data if provided
         if (associatedData != null) {
@@ -140,12 +164,16 @@ public class MineTracerConsumer implements Runnable {
                 QueueEntry entry;
                 
                 // Collect batch (up to 1000 entries)
-                while ((entry = queues[processQueue].poll()) != null && batch.size() < 1000) {
+                while (batch.size() < 1000 && (entry = queues[processQueue].poll()) != null) {
                     batch.add(entry);
                 }
                 
                 if (!batch.isEmpty()) {
-                    processor.processBatch(batch, consumerData[processQueue]);
+                    try {
+                        processor.processBatch(batch, consumerData[processQueue]);
+                    } finally {
+                        pendingEntries.addAndGet(-batch.size());
+                    }
                     
                     // Clear processed data
                     for (QueueEntry batchEntry : batch) {
@@ -201,7 +229,7 @@ public class MineTracerConsumer implements Runnable {
      * Get current queue size
      */
     public static int getQueueSize() {
-        return queues[0].size() + queues[1].size();
+        return pendingEntries.get();
     }
     
     /**
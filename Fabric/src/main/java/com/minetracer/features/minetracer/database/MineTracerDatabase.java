@@ -8,18 +8,27 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.nio.file.Path;
 import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
 /**
  * MineTracer Database Management System
  * Based on CoreProtect's optimized database design
  */
 public class MineTracerDatabase {
     
-    private static final String DATABASE_VERSION = "1.0.0";
+    // Bump together with a new step in SchemaMigrator
+    public static final int SCHEMA_VERSION = 2;
     private static final Path DATABASE_PATH = Path.of("config", "minetracer", "database.db");
     private static final ReadWriteLock CONNECTION_LOCK = new ReentrantReadWriteLock();
+    // Lookup connections keep a page cache of their own
+    private static final int READ_CACHE_KB = 32 * 1024;
+    private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORE_MODES = Set.of("DEFAULT", "FILE", "MEMORY");
     
     // Database table constants
     public static final int CONTAINER = 0;
@@ -30,6 +39,10 @@ public class MineTracerDatabase {
     public static final int USER = 5;
     public static final int WORLD = 6;
     
+    static final String[] LOG_TABLES = {
+        "minetracer_container", "minetracer_block", "minetracer_sign", "minetracer_kill", "minetracer_item"
+    };
+    
     private static volatile boolean databaseInitialized = false;
     private static volatile boolean shutdownInProgress = false;
     
@@ -41,13 +54,19 @@ public class MineTracerDatabase {
     }
     
     public static Connection getConnection(boolean force, int waitTime) {
+        if (!force && shutdownInProgress) {
+            return null;
+        }
+        return openConnection(DATABASE_PATH);
+    }
+    
+    /**
+     * Open a connection to the SQLite file at {@code path}, or null if that fails
+     */
+    public static Connection openConnection(Path path) {
         Connection connection = null;
         
         try {
-            if (!force && shutdownInProgress) {
-                return connection;
-            }
-            
             // Ensure SQLite driver is loaded
             try {
                 Class.forName("org.sqlite.JDBC");
@@ -57,19 +76,13 @@ public class MineTracerDatabase {
             }
             
             // Ensure database directory exists
-            Files.createDirectories(DATABASE_PATH.getParent());
+            Files.createDirectories(path.toAbsolutePath().getParent());
             
             // Create SQLite connection
-            String database = "jdbc:sqlite:" + DATABASE_PATH.toAbsolutePath();
+            String database = "jdbc:sqlite:" + path.toAbsolutePath();
             connection = DriverManager.getConnection(database);
             
-            // Enable WAL mode for better concurrency
-            try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate("PRAGMA journal_mode=WAL;");
-                statement.executeUpdate("PRAGMA synchronous=NORMAL;");
-                statement.executeUpdate("PRAGMA cache_size=10000;");
-                statement.executeUpdate("PRAGMA temp_store=MEMORY;");
-            }
+            applyPragmas(connection);
             
         } catch (Exception e) {
             System.err.println("[MineTracer] Database connection error: " + e.getMessage());
@@ -79,6 +92,80 @@ public class MineTracerDatabase {
         return connection;
     }
     
+    /**
+     * Apply the configured PRAGMA profile to a new connection
+     */
+    private static void applyPragmas(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Only takes effect while the file is still empty
+            statement.execute("PRAGMA page_size=" + MineTracerConfig.PAGE_SIZE + ";");
+            // WAL lets lookups read while the consumer writes
+            statement.execute("PRAGMA journal_mode=" + (MineTracerConfig.ENABLE_WAL ? "WAL" : "DELETE") + ";");
+            statement.execute("PRAGMA synchronous=" + pragmaMode(MineTracerConfig.SYNCHRONOUS, SYNCHRONOUS_MODES, "NORMAL") + ";");
+            statement.execute("PRAGMA cache_size=" + MineTracerConfig.CACHE_SIZE + ";");
+            statement.execute("PRAGMA temp_store=" + pragmaMode(MineTracerConfig.TEMP_STORE, TEMP_STORE_MODES, "MEMORY") + ";");
+            statement.execute("PRAGMA mmap_size=" + MineTracerConfig.MMAP_SIZE_MB * 1024L * 1024L + ";");
+            if (MineTracerConfig.ENABLE_WAL) {
+                // 0 leaves checkpoints to WalCheckpointer, but only while it is running
+                int autoCheckpoint = MineTracerConfig.WAL_AUTOCHECKPOINT;
+                if (autoCheckpoint <= 0 && MineTracerConfig.CHECKPOINT_INTERVAL_SECONDS <= 0) {
+                    autoCheckpoint = 1000;
+                }
+                statement.execute("PRAGMA wal_autocheckpoint=" + Math.max(0, autoCheckpoint) + ";");
+            }
+        }
+    }
+    
+    private static String pragmaMode(String value, Set<String> allowed, String fallback) {
+        String mode = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+        if (allowed.contains(mode)) {
+            return mode;
+        }
+        System.err.println("[MineTracer] Unsupported PRAGMA value '" + value + "', using " + fallback);
+        return fallback;
+    }
+    
+    /**
+     * Get a read-only connection for lookups
+     */
+    public static Connection getReadConnection() {
+        if (shutdownInProgress) {
+            return null;
+        }
+        return openReadConnection(DATABASE_PATH);
+    }
+    
+    /**
+     * Open a connection that can only read, with its own page cache on top of the memory map,
+     * or null if that fails
+     */
+    public static Connection openReadConnection(Path path) {
+        Connection connection = openConnection(path);
+        if (connection == null) {
+            return null;
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA query_only=ON;");
+            statement.execute("PRAGMA cache_size=-" + READ_CACHE_KB + ";");
+        } catch (SQLException e) {
+            System.err.println("[MineTracer] Failed to configure read connection: " + e.getMessage());
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+            return null;
+        }
+        return connection;
+    }
+    
+    /**
+     * Path of the live database file
+     */
+    public static Path getDatabasePath() {
+        return DATABASE_PATH;
+    }
+    
     /**
      * Initialize database tables and indexes
      */
@@ -98,25 +185,7 @@ public class MineTracerDatabase {
                     return false;
                 }
                 
-                Statement statement = connection.createStatement();
-                
-                // Create all tables
-                createContainerTable(statement);
-                createBlockTable(statement);
-                createSignTable(statement);
-                createKillTable(statement);
-                createItemPickupDropTable(statement);
-                createUserTable(statement);
-                createWorldTable(statement);
-                createVersionTable(statement);
-                
-                // Create indexes for optimal query performance
-                createIndexes(statement);
-                
-                // Initialize version tracking
-                initializeVersion(statement);
-                
-                statement.close();
+                createSchema(connection, SqlDialect.SQLITE);
                 databaseInitialized = true;
                 
                 System.out.println("[MineTracer] Database initialized successfully with optimized schema");
@@ -133,187 +202,305 @@ public class MineTracerDatabase {
         }
     }
     
-    private static void createContainerTable(Statement statement) throws SQLException {
+    /**
+     * Create any missing tables and indexes on an open connection. A new database gets the
+     * current layout right away; an older one keeps its layout until SchemaMigrator has
+     * brought it up to date in the background.
+     */
+    static void createSchema(Connection connection, SqlDialect dialect) throws SQLException {
+        boolean fresh = !tableExists(connection, "minetracer_container");
+        try (Statement statement = connection.createStatement()) {
+            // Create all tables
+            for (String table : LOG_TABLES) {
+                createLogTable(statement, dialect, table, table);
+            }
+            // Kill rows became rollups after the table was first created
+            addColumnIfMissing(statement, "minetracer_kill", "count", "INTEGER NOT NULL DEFAULT 1");
+            // Rows carry the id of the server that logged them so several servers can share one database
+            for (String table : LOG_TABLES) {
+                addColumnIfMissing(statement, table, "sid", "INTEGER NOT NULL DEFAULT 0");
+            }
+            createUserTable(statement, dialect);
+            createWorldTable(statement, dialect);
+            createVersionTable(statement, dialect);
+            
+            // Names are looked up through the UNIQUE constraint's own index, uuids through this one
+            dialect.createIndex(statement, "idx_user_uuid", "minetracer_user", "uuid");
+            
+            if (fresh) {
+                for (String table : LOG_TABLES) {
+                    createLogIndexes(statement, dialect, table, table);
+                }
+                recordSchemaVersion(statement, SCHEMA_VERSION);
+            }
+        }
+    }
+    
+    /**
+     * Create one of the log tables under the given name, which differs from the table's own
+     * while it is being rebuilt
+     */
+    static void createLogTable(Statement statement, SqlDialect dialect, String table, String name) throws SQLException {
+        switch (table) {
+            case "minetracer_container":
+                createContainerTable(statement, dialect, name);
+                break;
+            case "minetracer_block":
+                createBlockTable(statement, dialect, name);
+                break;
+            case "minetracer_sign":
+                createSignTable(statement, dialect, name);
+                break;
+            case "minetracer_kill":
+                createKillTable(statement, dialect, name);
+                break;
+            case "minetracer_item":
+                createItemPickupDropTable(statement, dialect, name);
+                break;
+            default:
+                throw new SQLException("Not a log table: " + table);
+        }
+    }
+    
+    /**
+     * Columns of a log table in insert order, for copying rows between layouts
+     */
+    static String logColumns(String table) {
+        switch (table) {
+            case "minetracer_container":
+                return "id, time, sid, user, wid, x, y, z, type, data, amount, metadata, action, rolled_back";
+            case "minetracer_block":
+                return "id, time, sid, user, wid, x, y, z, type, data, nbt, action, rolled_back";
+            case "minetracer_sign":
+                return "id, time, sid, user, wid, x, y, z, action, text, nbt, rolled_back";
+            case "minetracer_kill":
+                return "id, time, sid, killer_user, victim_name, wid, x, y, z, rolled_back, count";
+            case "minetracer_item":
+                return "id, time, sid, user, wid, x, y, z, type, data, amount, action, rolled_back";
+            default:
+                throw new IllegalArgumentException("Not a log table: " + table);
+        }
+    }
+    
+    /**
+     * Name of the position index of a log table in the current layout
+     */
+    static String positionIndex(String table) {
+        return "idx_" + table.substring("minetracer_".length()) + "_position";
+    }
+    
+    /**
+     * The indexes the lookup templates need and nothing else: every lookup is either a box
+     * around a position in one world or one player's history, newest first. Rollback marks go
+     * by primary key, so neither rolled_back, type nor time alone is indexed.
+     */
+    static void createLogIndexes(Statement statement, SqlDialect dialect, String table, String name) throws SQLException {
+        String shortName = table.substring("minetracer_".length());
+        String userColumn = table.equals("minetracer_kill") ? "killer_user" : "user";
+        // Equality on world, then the x range; z and y are checked inside the index
+        dialect.createIndex(statement, positionIndex(table), name, "wid,x,z,y");
+        dialect.createIndex(statement, "idx_" + shortName + "_user_time", name, userColumn + ",time");
+    }
+    
+    static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    static boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static void createContainerTable(Statement statement, SqlDialect dialect, String name) throws SQLException {
         statement.executeUpdate(
-            "CREATE TABLE IF NOT EXISTS minetracer_container (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
+            "CREATE TABLE IF NOT EXISTS " + name + " (" +
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "sid INTEGER NOT NULL DEFAULT 0, " +
             "user INTEGER NOT NULL, " +
             "wid INTEGER NOT NULL, " +
             "x INTEGER NOT NULL, " +
             "y INTEGER NOT NULL, " +
             "z INTEGER NOT NULL, " +
             "type INTEGER NOT NULL, " +
-            "data BLOB, " +
+            "data " + dialect.blob() + ", " +
             "amount INTEGER NOT NULL, " +
-            "metadata BLOB, " +
+            "metadata " + dialect.blob() + ", " +
             "action INTEGER NOT NULL, " +
             "rolled_back INTEGER DEFAULT 0" +
-            ");"
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createBlockTable(Statement statement) throws SQLException {
+    private static void createBlockTable(Statement statement, SqlDialect dialect, String name) throws SQLException {
         statement.executeUpdate(
-            "CREATE TABLE IF NOT EXISTS minetracer_block (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
+            "CREATE TABLE IF NOT EXISTS " + name + " (" +
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "sid INTEGER NOT NULL DEFAULT 0, " +
             "user INTEGER NOT NULL, " +
             "wid INTEGER NOT NULL, " +
             "x INTEGER NOT NULL, " +
             "y INTEGER NOT NULL, " +
             "z INTEGER NOT NULL, " +
-            "type TEXT NOT NULL, " +
-            "data TEXT, " +
-            "nbt TEXT, " +
-            "action TEXT NOT NULL, " +
+            "type " + dialect.varchar(255) + " NOT NULL, " +
+            "data " + dialect.text() + ", " +
+            "nbt " + dialect.text() + ", " +
+            "action " + dialect.varchar(32) + " NOT NULL, " +
             "rolled_back INTEGER DEFAULT 0" +
-            ");"
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createSignTable(Statement statement) throws SQLException {
+    private static void createSignTable(Statement statement, SqlDialect dialect, String name) throws SQLException {
         statement.executeUpdate(
-            "CREATE TABLE IF NOT EXISTS minetracer_sign (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
+            "CREATE TABLE IF NOT EXISTS " + name + " (" +
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "sid INTEGER NOT NULL DEFAULT 0, " +
             "user INTEGER NOT NULL, " +
             "wid INTEGER NOT NULL, " +
             "x INTEGER NOT NULL, " +
             "y INTEGER NOT NULL, " +
             "z INTEGER NOT NULL, " +
-            "action TEXT NOT NULL, " +
-            "text TEXT, " +
-            "nbt TEXT, " +
+            "action " + dialect.varchar(32) + " NOT NULL, " +
+            "text " + dialect.text() + ", " +
+            "nbt " + dialect.text() + ", " +
             "rolled_back INTEGER DEFAULT 0" +
-            ");"
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createKillTable(Statement statement) throws SQLException {
+    private static void createKillTable(Statement statement, SqlDialect dialect, String name) throws SQLException {
         statement.executeUpdate(
-            "CREATE TABLE IF NOT EXISTS minetracer_kill (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
+            "CREATE TABLE IF NOT EXISTS " + name + " (" +
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "sid INTEGER NOT NULL DEFAULT 0, " +
             "killer_user INTEGER NOT NULL, " +
-            "victim_name TEXT NOT NULL, " +
+            "victim_name " + dialect.varchar(255) + " NOT NULL, " +
             "wid INTEGER NOT NULL, " +
             "x INTEGER NOT NULL, " +
             "y INTEGER NOT NULL, " +
             "z INTEGER NOT NULL, " +
-            "rolled_back INTEGER DEFAULT 0" +
-            ");"
+            "rolled_back INTEGER DEFAULT 0, " +
+            "count INTEGER NOT NULL DEFAULT 1" +
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createItemPickupDropTable(Statement statement) throws SQLException {
+    private static void addColumnIfMissing(Statement statement, String table, String column, String definition) throws SQLException {
+        Connection connection = statement.getConnection();
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return;
+                }
+            }
+        }
+        statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition + ";");
+    }
+    
+    private static void createItemPickupDropTable(Statement statement, SqlDialect dialect, String name) throws SQLException {
         statement.executeUpdate(
-            "CREATE TABLE IF NOT EXISTS minetracer_item (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
+            "CREATE TABLE IF NOT EXISTS " + name + " (" +
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "sid INTEGER NOT NULL DEFAULT 0, " +
             "user INTEGER NOT NULL, " +
             "wid INTEGER NOT NULL, " +
             "x INTEGER NOT NULL, " +
             "y INTEGER NOT NULL, " +
             "z INTEGER NOT NULL, " +
             "type INTEGER NOT NULL, " +
-            "data BLOB, " +
+            "data " + dialect.blob() + ", " +
             "amount INTEGER NOT NULL, " +
             "action INTEGER NOT NULL, " +
             "rolled_back INTEGER DEFAULT 0" +
-            ");"
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createUserTable(Statement statement) throws SQLException {
+    private static void createUserTable(Statement statement, SqlDialect dialect) throws SQLException {
         statement.executeUpdate(
             "CREATE TABLE IF NOT EXISTS minetracer_user (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
-            "user TEXT NOT NULL UNIQUE, " +
-            "uuid TEXT NOT NULL" +
-            ");"
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "user " + dialect.varchar(64) + " NOT NULL UNIQUE, " +
+            "uuid " + dialect.varchar(36) + " NOT NULL" +
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createWorldTable(Statement statement) throws SQLException {
+    private static void createWorldTable(Statement statement, SqlDialect dialect) throws SQLException {
         statement.executeUpdate(
             "CREATE TABLE IF NOT EXISTS minetracer_world (" +
-            "id INTEGER PRIMARY KEY, " +
-            "world TEXT NOT NULL UNIQUE" +
-            ");"
+            "id " + dialect.integerKey() + ", " +
+            "world " + dialect.varchar(255) + " NOT NULL UNIQUE" +
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createVersionTable(Statement statement) throws SQLException {
+    private static void createVersionTable(Statement statement, SqlDialect dialect) throws SQLException {
         statement.executeUpdate(
             "CREATE TABLE IF NOT EXISTS minetracer_version (" +
-            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-            "time INTEGER NOT NULL, " +
-            "version TEXT NOT NULL" +
-            ");"
+            "id " + dialect.autoIncrementKey() + ", " +
+            "time " + dialect.bigint() + " NOT NULL, " +
+            "version " + dialect.varchar(16) + " NOT NULL" +
+            ")" + dialect.tableOptions() + ";"
         );
     }
     
-    private static void createIndexes(Statement statement) throws SQLException {
-        // Container table indexes (with composite indexes for better query performance)
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_location ON minetracer_container(wid,x,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_lookup ON minetracer_container(wid,x,y,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_user ON minetracer_container(user,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_type ON minetracer_container(type,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_time_user ON minetracer_container(time,user);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_container_rolled_back ON minetracer_container(rolled_back,time);");
-        
-        // Block table indexes (with composite indexes for better query performance)
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_location ON minetracer_block(wid,x,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_lookup ON minetracer_block(wid,x,y,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_user ON minetracer_block(user,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_type ON minetracer_block(type,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_time_user ON minetracer_block(time,user);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_block_rolled_back ON minetracer_block(rolled_back,time);");
-        
-        // Sign table indexes
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sign_location ON minetracer_sign(wid,x,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sign_user ON minetracer_sign(user,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_sign_time ON minetracer_sign(time);");
-        
-        // Kill table indexes
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_kill_location ON minetracer_kill(wid,x,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_kill_killer ON minetracer_kill(killer_user,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_kill_victim ON minetracer_kill(victim_name,time);");
-        
-        // Item table indexes
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_item_location ON minetracer_item(wid,x,z,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_item_user ON minetracer_item(user,time);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_item_type ON minetracer_item(type,time);");
-        
-        // User table indexes
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_name ON minetracer_user(user);");
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_uuid ON minetracer_user(uuid);");
-        
-        // World table indexes
-        statement.executeUpdate("CREATE INDEX IF NOT EXISTS idx_world_id ON minetracer_world(id);");
+    /**
+     * Schema version recorded in the database; versions before 2 were stored as "1.0.0"
+     */
+    static int getSchemaVersion(Connection connection) throws SQLException {
+        int version = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version FROM minetracer_version")) {
+            while (rs.next()) {
+                String value = rs.getString(1);
+                int dot = value.indexOf('.');
+                try {
+                    version = Math.max(version, Integer.parseInt(dot < 0 ? value : value.substring(0, dot)));
+                } catch (NumberFormatException e) {
+                    // Not a version we wrote
+                }
+            }
+        }
+        return version;
     }
     
-    private static void initializeVersion(Statement statement) throws SQLException {
-        // Check if version exists
-        ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM minetracer_version WHERE version = '" + DATABASE_VERSION + "'");
-        if (rs.next() && rs.getInt(1) == 0) {
-            // Insert version
-            statement.executeUpdate("INSERT INTO minetracer_version (time, version) VALUES (" + 
-                (System.currentTimeMillis() / 1000) + ", '" + DATABASE_VERSION + "')");
-        }
-        rs.close();
+    static void recordSchemaVersion(Statement statement, int version) throws SQLException {
+        statement.executeUpdate("INSERT INTO minetracer_version (time, version) VALUES (" + 
+            (System.currentTimeMillis() / 1000) + ", '" + version + "')");
     }
     
     /**
      * Get prepared statement for specific table operation
      */
     public static PreparedStatement prepareStatement(Connection connection, int tableType, boolean returnKeys) {
+        return prepareStatement(connection, SqlDialect.SQLITE, tableType, returnKeys);
+    }
+    
+    public static PreparedStatement prepareStatement(Connection connection, SqlDialect dialect, int tableType, boolean returnKeys) {
         PreparedStatement preparedStatement = null;
         
         try {
-            String query = getInsertQuery(tableType);
+            String query = getInsertQuery(dialect, tableType);
             if (query != null) {
                 if (returnKeys) {
                     preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
@@ -329,22 +516,22 @@ public class MineTracerDatabase {
         return preparedStatement;
     }
     
-    private static String getInsertQuery(int tableType) {
+    private static String getInsertQuery(SqlDialect dialect, int tableType) {
         switch (tableType) {
             case CONTAINER:
-                return "INSERT INTO minetracer_container (time, user, wid, x, y, z, type, data, amount, metadata, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                return "INSERT INTO minetracer_container (time, sid, user, wid, x, y, z, type, data, amount, metadata, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             case BLOCK:
-                return "INSERT INTO minetracer_block (time, user, wid, x, y, z, type, data, nbt, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                return "INSERT INTO minetracer_block (time, sid, user, wid, x, y, z, type, data, nbt, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             case SIGN:
-                return "INSERT INTO minetracer_sign (time, user, wid, x, y, z, action, text, nbt, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                return "INSERT INTO minetracer_sign (time, sid, user, wid, x, y, z, action, text, nbt, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             case KILL:
-                return "INSERT INTO minetracer_kill (time, killer_user, victim_name, wid, x, y, z, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                return "INSERT INTO minetracer_kill (time, sid, killer_user, victim_name, wid, x, y, z, rolled_back, count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             case ITEM_PICKUP_DROP:
-                return "INSERT INTO minetracer_item (time, user, wid, x, y, z, type, data, amount, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                return "INSERT INTO minetracer_item (time, sid, user, wid, x, y, z, type, data, amount, action, rolled_back) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
             case USER:
-                return "INSERT OR IGNORE INTO minetracer_user (time, user, uuid) VALUES (?, ?, ?)";
+                return dialect.insertIgnore() + " INTO minetracer_user (time, user, uuid) VALUES (?, ?, ?)";
             case WORLD:
-                return "INSERT OR IGNORE INTO minetracer_world (id, world) VALUES (?, ?)";
+                return dialect.insertIgnore() + " INTO minetracer_world (id, world) VALUES (?, ?)";
             default:
                 return null;
         }
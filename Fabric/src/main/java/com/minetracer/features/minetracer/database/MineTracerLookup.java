@@ -1,37 +1,27 @@
 package com.minetracer.features.minetracer.database;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.time.Instant;
 
-import com.minetracer.features.minetracer.cache.UserCache;
-
 import net.minecraft.item.ItemStack;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.StringNbtReader;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.registry.Registries;
 
 /**
  * MineTracer Database Lookup System
- * High-performance queries with proper indexing and user caching
+ * Merges entries still waiting in the consumer queue with rows from the storage backend
  */
 public class MineTracerLookup {
     
-    private static final ExecutorService queryExecutor = Executors.newFixedThreadPool(4, r -> {
-        Thread t = new Thread(r, "MineTracer-Lookup");
-        t.setDaemon(true);
-        return t;
-    });
+    // Callers that do not pick a lane run as ordinary command lookups
+    private static final Executor DEFAULT_EXECUTOR = LookupScheduler.executor(LookupScheduler.Priority.COMMAND, null);
     
     /**
      * Container log entry from database
@@ -43,15 +33,36 @@ public class MineTracerLookup {
         public final ItemStack stack;
         public final Instant timestamp;
         public final boolean rolledBack;
+        // Database row id, or 0 if the row has not been committed yet
+        public final long rowId;
+        // Queue entry this row came from if it has not been committed yet, otherwise null
+        public final MineTracerConsumer.QueueEntry pendingEntry;
         
         public ContainerLogEntry(String action, String playerName, BlockPos pos, ItemStack stack, 
                                Instant timestamp, boolean rolledBack) {
+            this(action, playerName, pos, stack, timestamp, rolledBack, null);
+        }
+        
+        public ContainerLogEntry(String action, String playerName, BlockPos pos, ItemStack stack, 
+                               Instant timestamp, boolean rolledBack, MineTracerConsumer.QueueEntry pendingEntry) {
+            this(action, playerName, pos, stack, timestamp, rolledBack, 0, pendingEntry);
+        }
+        
+        public ContainerLogEntry(String action, String playerName, BlockPos pos, ItemStack stack, 
+                               Instant timestamp, boolean rolledBack, long rowId) {
+            this(action, playerName, pos, stack, timestamp, rolledBack, rowId, null);
+        }
+        
+        public ContainerLogEntry(String action, String playerName, BlockPos pos, ItemStack stack, 
+                               Instant timestamp, boolean rolledBack, long rowId, MineTracerConsumer.QueueEntry pendingEntry) {
             this.action = action;
             this.playerName = playerName;
             this.pos = pos;
             this.stack = stack;
             this.timestamp = timestamp;
             this.rolledBack = rolledBack;
+            this.rowId = rowId;
+            this.pendingEntry = pendingEntry;
         }
     }
     
@@ -66,9 +77,28 @@ public class MineTracerLookup {
         public final String nbt;
         public final Instant timestamp;
         public final boolean rolledBack;
+        // Database row id, or 0 if the row has not been committed yet
+        public final long rowId;
+        // Queue entry this row came from if it has not been committed yet, otherwise null
+        public final MineTracerConsumer.QueueEntry pendingEntry;
         
         public BlockLogEntry(String action, String playerName, BlockPos pos, String blockId, 
                            String nbt, Instant timestamp, boolean rolledBack) {
+            this(action, playerName, pos, blockId, nbt, timestamp, rolledBack, null);
+        }
+        
+        public BlockLogEntry(String action, String playerName, BlockPos pos, String blockId, 
+                           String nbt, Instant timestamp, boolean rolledBack, MineTracerConsumer.QueueEntry pendingEntry) {
+            this(action, playerName, pos, blockId, nbt, timestamp, rolledBack, 0, pendingEntry);
+        }
+        
+        public BlockLogEntry(String action, String playerName, BlockPos pos, String blockId, 
+                           String nbt, Instant timestamp, boolean rolledBack, long rowId) {
+            this(action, playerName, pos, blockId, nbt, timestamp, rolledBack, rowId, null);
+        }
+        
+        public BlockLogEntry(String action, String playerName, BlockPos pos, String blockId, 
+                           String nbt, Instant timestamp, boolean rolledBack, long rowId, MineTracerConsumer.QueueEntry pendingEntry) {
             this.action = action;
             this.playerName = playerName;
             this.pos = pos;
@@ -76,6 +106,8 @@ public class MineTracerLookup {
             this.nbt = nbt;
             this.timestamp = timestamp;
             this.rolledBack = rolledBack;
+            this.rowId = rowId;
+            this.pendingEntry = pendingEntry;
         }
     }
     
@@ -90,9 +122,28 @@ public class MineTracerLookup {
         public final String nbt;
         public final Instant timestamp;
         public final boolean rolledBack;
+        // Database row id, or 0 if the row has not been committed yet
+        public final long rowId;
+        // Queue entry this row came from if it has not been committed yet, otherwise null
+        public final MineTracerConsumer.QueueEntry pendingEntry;
         
         public SignLogEntry(String action, String playerName, BlockPos pos, String text, 
                           String nbt, Instant timestamp, boolean rolledBack) {
+            this(action, playerName, pos, text, nbt, timestamp, rolledBack, null);
+        }
+        
+        public SignLogEntry(String action, String playerName, BlockPos pos, String text, 
+                          String nbt, Instant timestamp, boolean rolledBack, MineTracerConsumer.QueueEntry pendingEntry) {
+            this(action, playerName, pos, text, nbt, timestamp, rolledBack, 0, pendingEntry);
+        }
+        
+        public SignLogEntry(String action, String playerName, BlockPos pos, String text, 
+                          String nbt, Instant timestamp, boolean rolledBack, long rowId) {
+            this(action, playerName, pos, text, nbt, timestamp, rolledBack, rowId, null);
+        }
+        
+        public SignLogEntry(String action, String playerName, BlockPos pos, String text, 
+                          String nbt, Instant timestamp, boolean rolledBack, long rowId, MineTracerConsumer.QueueEntry pendingEntry) {
             this.action = action;
             this.playerName = playerName;
             this.pos = pos;
@@ -100,6 +151,8 @@ public class MineTracerLookup {
             this.nbt = nbt;
             this.timestamp = timestamp;
             this.rolledBack = rolledBack;
+            this.rowId = rowId;
+            this.pendingEntry = pendingEntry;
         }
     }
     
@@ -115,9 +168,17 @@ public class MineTracerLookup {
         public final String world;
         public final Instant timestamp;
         public final boolean rolledBack;
+        // Kills this entry stands for; above 1 for a rollup of unnamed mobs
+        public final int count;
         
         public KillLogEntry(String killerName, String victimName, BlockPos pos, String world, 
                           Instant timestamp, boolean rolledBack) {
+            this(killerName, victimName, pos, world, timestamp, rolledBack, 1);
+        }
+        
+        public KillLogEntry(String killerName, String victimName, BlockPos pos, String world, 
+                          Instant timestamp, boolean rolledBack, int count) {
+            this.count = count;
             this.killerName = killerName;
             this.playerName = killerName; // For compatibility with command filtering
             this.victimName = victimName;
@@ -152,74 +213,30 @@ public class MineTracerLookup {
         }
     }
     
+    @FunctionalInterface
+    private interface OverlayRead<T> {
+        List<T> read(BlockPos center, int range, String userFilter, String worldName);
+    }
+    
+    @FunctionalInterface
+    private interface BackendRead<T> {
+        List<T> read(StorageBackend backend, LogQuery query) throws Exception;
+    }
+    
     /**
      * Get container logs in range (async)
      */
     public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsInRangeAsync(
             BlockPos center, int range, String userFilter, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<ContainerLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                StringBuilder query = new StringBuilder(
-                    "SELECT c.time, u.user, c.x, c.y, c.z, c.type, c.data, c.amount, c.action, c.rolled_back " +
-                    "FROM minetracer_container c " +
-                    "JOIN minetracer_user u ON c.user = u.id " +
-                    "JOIN minetracer_world w ON c.wid = w.id " +
-                    "WHERE w.world = ? "
-                );
-                
-                List<Object> params = new ArrayList<>();
-                params.add(worldName);
-                
-                if (userFilter != null && !userFilter.isEmpty()) {
-                    query.append("AND u.user = ? ");
-                    params.add(userFilter);
-                }
-                
-                // Range filter (including Y coordinate for exact matching)
-                if (range == 0) {
-                    // Exact position match
-                    query.append("AND c.x = ? AND c.y = ? AND c.z = ? ");
-                    params.add(center.getX());
-                    params.add(center.getY());
-                    params.add(center.getZ());
-                } else {
-                    // Range match
-                    query.append("AND c.x BETWEEN ? AND ? AND c.y BETWEEN ? AND ? AND c.z BETWEEN ? AND ? ");
-                    params.add(center.getX() - range);
-                    params.add(center.getX() + range);
-                    params.add(center.getY() - range);
-                    params.add(center.getY() + range);
-                    params.add(center.getZ() - range);
-                    params.add(center.getZ() + range);
-                }
-                
-                query.append("ORDER BY c.time DESC LIMIT 1000");
-                
-                try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
-                    for (int i = 0; i < params.size(); i++) {
-                        stmt.setObject(i + 1, params.get(i));
-                    }
-                    
-                    ResultSet rs = stmt.executeQuery();
-                    while (rs.next()) {
-                        ContainerLogEntry entry = parseContainerEntry(rs, center, range);
-                        if (entry != null) {
-                            results.add(entry);
-                        }
-                    }
-                }
-                
-            } catch (Exception e) {
-                System.err.println("[MineTracer] Error in container lookup: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        }, queryExecutor);
+        return getContainerLogsInRangeAsync(center, range, userFilter, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsInRangeAsync(
+            BlockPos center, int range, String userFilter, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.inRange(center, range, userFilter, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getContainerEntries, StorageBackend::queryContainers, e -> e.timestamp,
+                "container lookup"), executor);
     }
     
     /**
@@ -227,225 +244,98 @@ public class MineTracerLookup {
      */
     public static CompletableFuture<List<BlockLogEntry>> getBlockLogsInRangeAsync(
             BlockPos center, int range, String userFilter, String worldName) {
-        return getBlockLogsInRangeAsync(center, range, userFilter, worldName, 1000);
+        return getBlockLogsInRangeAsync(center, range, userFilter, worldName, LogQuery.DEFAULT_LIMIT);
     }
 
     public static CompletableFuture<List<BlockLogEntry>> getBlockLogsInRangeAsync(
             BlockPos center, int range, String userFilter, String worldName, int limit) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<BlockLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                StringBuilder query = new StringBuilder(
-                    "SELECT b.time, u.user, b.x, b.y, b.z, b.type, b.nbt, b.action, b.rolled_back " +
-                    "FROM minetracer_block b " +
-                    "JOIN minetracer_user u ON b.user = u.id " +
-                    "JOIN minetracer_world w ON b.wid = w.id " +
-                    "WHERE w.world = ? "
-                );
-                
-                List<Object> params = new ArrayList<>();
-                params.add(worldName);
-                
-                if (userFilter != null && !userFilter.isEmpty()) {
-                    query.append("AND u.user = ? ");
-                    params.add(userFilter);
-                }
-                
-                // Range filter (including Y coordinate for exact matching)
-                if (range == 0) {
-                    // Exact position match
-                    query.append("AND b.x = ? AND b.y = ? AND b.z = ? ");
-                    params.add(center.getX());
-                    params.add(center.getY());
-                    params.add(center.getZ());
-                } else {
-                    // Range match
-                    query.append("AND b.x BETWEEN ? AND ? AND b.y BETWEEN ? AND ? AND b.z BETWEEN ? AND ? ");
-                    params.add(center.getX() - range);
-                    params.add(center.getX() + range);
-                    params.add(center.getY() - range);
-                    params.add(center.getY() + range);
-                    params.add(center.getZ() - range);
-                    params.add(center.getZ() + range);
-                }
-                
-                if (limit > 0 && limit < Integer.MAX_VALUE) {
-                    query.append("ORDER BY b.time DESC LIMIT ").append(limit);
-                } else {
-                    query.append("ORDER BY b.time DESC");
-                }
-
-                try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
-                    for (int i = 0; i < params.size(); i++) {
-                        stmt.setObject(i + 1, params.get(i));
-                    }
-
-                    ResultSet rs = stmt.executeQuery();
-                    while (rs.next()) {
-                        BlockLogEntry entry = parseBlockEntry(rs, center, range);
-                        if (entry != null) {
-                            results.add(entry);
-                        }
-                    }
-                }
-                
-            } catch (Exception e) {
-                System.err.println("[MineTracer] Error in block lookup: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        }, queryExecutor);
+        return getBlockLogsInRangeAsync(center, range, userFilter, worldName, limit, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<BlockLogEntry>> getBlockLogsInRangeAsync(
+            BlockPos center, int range, String userFilter, String worldName, int limit, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.inRange(center, range, userFilter, worldName, limit),
+                RecentWriteOverlay::getBlockEntries, StorageBackend::queryBlocks, e -> e.timestamp,
+                "block lookup"), executor);
     }
     
     /**
      * Get logs for specific user (async)
      */
     public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsForUserAsync(String userName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<ContainerLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                String query = "SELECT c.time, u.user, c.x, c.y, c.z, c.type, c.data, c.amount, c.action, c.rolled_back " +
-                              "FROM minetracer_container c " +
-                              "JOIN minetracer_user u ON c.user = u.id " +
-                              "WHERE u.user = ? " +
-                              "ORDER BY c.time DESC LIMIT 1000";
-                
-                try (PreparedStatement stmt = connection.prepareStatement(query)) {
-                    stmt.setString(1, userName);
-                    
-                    ResultSet rs = stmt.executeQuery();
-                    while (rs.next()) {
-                        ContainerLogEntry entry = parseContainerEntry(rs, null, Integer.MAX_VALUE);
-                        if (entry != null) {
-                            results.add(entry);
-                        }
-                    }
-                }
-                
-            } catch (Exception e) {
-                System.err.println("[MineTracer] Error in user container lookup: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        }, queryExecutor);
+        return getContainerLogsForUserAsync(userName, DEFAULT_EXECUTOR);
     }
     
-    /**
-     * Parse container entry from ResultSet
-     */
-    private static ContainerLogEntry parseContainerEntry(ResultSet rs, BlockPos center, int range) throws SQLException {
-        long time = rs.getLong("time");
-        String user = rs.getString("user");
-        int x = rs.getInt("x");
-        int y = rs.getInt("y");
-        int z = rs.getInt("z");
-        int type = rs.getInt("type");
-        byte[] data = rs.getBytes("data");
-        int amount = rs.getInt("amount");
-        int action = rs.getInt("action");
-        boolean rolledBack = rs.getInt("rolled_back") > 0;
-        
-        BlockPos pos = new BlockPos(x, y, z);
-        
-        // Range check if needed
-        if (center != null && pos.getSquaredDistance(center) > range * range) {
-            return null;
-        }
-        
-        ItemStack stack = deserializeItemStack(data, type, amount);
-        String actionString = action == 1 ? "deposited" : "withdrew";
-        
-        return new ContainerLogEntry(actionString, user, pos, stack, 
-                                   Instant.ofEpochSecond(time), rolledBack);
+    public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsForUserAsync(String userName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, null, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getContainerEntries, StorageBackend::queryContainers, e -> e.timestamp,
+                "user container lookup"), executor);
     }
     
     /**
-     * Parse block entry from ResultSet
+     * Read the overlay and the backend as of the same moment and merge them newest first
      */
-    private static BlockLogEntry parseBlockEntry(ResultSet rs, BlockPos center, int range) throws SQLException {
-        long time = rs.getLong("time");
-        String user = rs.getString("user");
-        int x = rs.getInt("x");
-        int y = rs.getInt("y");
-        int z = rs.getInt("z");
-        String type = rs.getString("type");
-        String nbt = rs.getString("nbt");
-        String action = rs.getString("action");
-        boolean rolledBack = rs.getInt("rolled_back") > 0;
-        
-        BlockPos pos = new BlockPos(x, y, z);
+    private static <T> List<T> lookup(LogQuery query, OverlayRead<T> overlay, BackendRead<T> backend,
+                                      Function<T, Instant> timeOf, String description) {
+        List<T> results = new ArrayList<>();
+        int pendingCount = 0;
+        StorageBackend storage = StorageBackends.get();
+        StorageBackend.ReadSnapshot snapshot = null;
+
+        // Hold off commits while reading so queued entries show up exactly once
+        Lock lookupLock = RecentWriteOverlay.lookupLock();
+        lookupLock.lock();
+        try {
+            results.addAll(overlay.read(query.center, query.range, query.user, query.world));
+            pendingCount = results.size();
+            // With a snapshot the backend query can run after commits resume
+            snapshot = storage.openSnapshot();
+            if (snapshot == null) {
+                results.addAll(backend.read(storage, query));
+            }
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Error in " + description + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            lookupLock.unlock();
+        }
         
-        // Range check if needed
-        if (center != null && pos.getSquaredDistance(center) > range * range) {
-            return null;
+        if (snapshot != null) {
+            try (StorageBackend.ReadSnapshot pinned = snapshot) {
+                results.addAll(backend.read(storage, query));
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Error in " + description + ": " + e.getMessage());
+                e.printStackTrace();
+            }
         }
         
-        return new BlockLogEntry(action, user, pos, type, nbt, 
-                               Instant.ofEpochSecond(time), rolledBack);
+        return mergePending(results, pendingCount, timeOf, query.limit);
     }
     
     /**
-     * Deserialize ItemStack from database
+     * Merge overlay entries (first pendingCount elements) with committed rows, newest first,
+     * and cut the result to the limit. Committed rows alone are already ordered and limited.
      */
-    private static ItemStack deserializeItemStack(byte[] data, int typeId, int amount) {
-        try {
-            if (data != null && data.length > 0) {
-                // Try to parse NBT data
-                String nbtString = new String(data, "UTF-8");
-                if (!nbtString.trim().isEmpty() && !nbtString.equals("{}")) {
-                    try {
-                        NbtCompound nbt = StringNbtReader.parse(nbtString);
-                        if (!nbt.isEmpty()) {
-                            ItemStack result = ItemStack.fromNbt(nbt);
-                            if (!result.isEmpty()) {
-                                return result;
-                            }
-                        }
-                    } catch (Exception nbtException) {
-                        // Silent fallback to registry lookup
-                    }
-                }
-            }
-
-            // Enhanced fallback: create from type ID and amount with better error handling
-            if (typeId > 0 && amount > 0) {
-                try {
-                    // Get item from registry using ID
-                    net.minecraft.item.Item item = Registries.ITEM.get(typeId);
-                    if (item != null && item != net.minecraft.item.Items.AIR) {
-                        return new ItemStack(item, amount);
-                    }
-                } catch (Exception registryException) {
-                    // Silent fallback to placeholder
-                }
-            }
-
-            // Last resort: create a barrier item with a warning name to indicate corruption
-            ItemStack placeholder = new ItemStack(net.minecraft.item.Items.BARRIER, Math.max(1, amount));
-            placeholder.setCustomName(net.minecraft.text.Text.literal("§c[Corrupted Item Data]"));
-            return placeholder;
-
-        } catch (Exception e) {
-            // Return placeholder barrier item for corrupted data
-            ItemStack placeholder = new ItemStack(net.minecraft.item.Items.BARRIER, 1);
-            placeholder.setCustomName(net.minecraft.text.Text.literal("§c[Critical Error - Item Data Lost]"));
-            return placeholder;
+    private static <T> List<T> mergePending(List<T> results, int pendingCount, Function<T, Instant> timeOf, int limit) {
+        if (pendingCount == 0) {
+            return results;
         }
+        
+        // Stable sort keeps pending entries ahead of committed rows from the same second
+        results.sort(Comparator.comparing(timeOf).reversed());
+        if (limit > 0 && results.size() > limit) {
+            return new ArrayList<>(results.subList(0, limit));
+        }
+        return results;
     }
     
     /**
      * Shutdown lookup executor
      */
     public static void shutdown() {
-        queryExecutor.shutdown();
+        LookupScheduler.shutdown();
     }
     
     // Synchronous wrapper methods for backward compatibility
@@ -469,245 +359,83 @@ public class MineTracerLookup {
      * Get all unique player names from the database
      */
     public static Set<String> getAllPlayerNames() {
-        Set<String> playerNames = new HashSet<>();
-        
-        try (Connection conn = MineTracerDatabase.getConnection()) {
-            String sql = "SELECT DISTINCT user FROM minetracer_user";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                while (rs.next()) {
-                    playerNames.add(rs.getString("user"));
-                }
-            }
-        } catch (SQLException e) {
+        try {
+            return StorageBackends.get().getUserNames();
+        } catch (Exception e) {
             System.err.println("[MineTracer] Error getting all player names: " + e.getMessage());
             e.printStackTrace();
+            return new HashSet<>();
         }
-        
-        return playerNames;
     }
 
     /**
      * Get block logs for specific user with world filter (async)
      */
     public static CompletableFuture<List<BlockLogEntry>> getBlockLogsForUserAsync(String userName, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<BlockLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                String query = "SELECT b.time, u.user, b.x, b.y, b.z, b.type, b.nbt, b.data, b.action, b.rolled_back " +
-                              "FROM minetracer_block b " +
-                              "JOIN minetracer_user u ON b.user = u.id " +
-                              "JOIN minetracer_world w ON b.wid = w.id " +
-                              "WHERE u.user = ? AND w.world = ? " +
-                              "ORDER BY b.time DESC LIMIT 1000";
-                
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, userName);
-                statement.setString(2, worldName);
-                
-                ResultSet rs = statement.executeQuery();
-                while (rs.next()) {
-                    BlockLogEntry entry = parseBlockEntry(rs, null, Integer.MAX_VALUE);
-                    if (entry != null) {
-                        results.add(entry);
-                    }
-                }
-                
-            } catch (SQLException e) {
-                System.err.println("[MineTracer] Error getting block logs for user: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        });
+        return getBlockLogsForUserAsync(userName, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<BlockLogEntry>> getBlockLogsForUserAsync(String userName, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getBlockEntries, StorageBackend::queryBlocks, e -> e.timestamp,
+                "user block lookup"), executor);
     }
 
     /**
      * Get container logs for specific user with world filter (async)
      */
     public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsForUserAsync(String userName, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<ContainerLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                String query = "SELECT c.time, u.user, c.x, c.y, c.z, c.type, c.data, c.amount, c.action, c.rolled_back " +
-                              "FROM minetracer_container c " +
-                              "JOIN minetracer_user u ON c.user = u.id " +
-                              "JOIN minetracer_world w ON c.wid = w.id " +
-                              "WHERE u.user = ? AND w.world = ? " +
-                              "ORDER BY c.time DESC LIMIT 1000";
-                
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, userName);
-                statement.setString(2, worldName);
-                
-                ResultSet rs = statement.executeQuery();
-                while (rs.next()) {
-                    ContainerLogEntry entry = parseContainerEntry(rs, null, Integer.MAX_VALUE);
-                    if (entry != null) {
-                        results.add(entry);
-                    }
-                }
-                
-            } catch (SQLException e) {
-                System.err.println("[MineTracer] Error getting container logs for user: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        });
+        return getContainerLogsForUserAsync(userName, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<ContainerLogEntry>> getContainerLogsForUserAsync(String userName, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getContainerEntries, StorageBackend::queryContainers, e -> e.timestamp,
+                "user container lookup"), executor);
     }
 
     /**
      * Get kill logs for specific user with world filter (async)
      */
     public static CompletableFuture<List<KillLogEntry>> getKillLogsForUserAsync(String userName, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<KillLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                String query = "SELECT k.time, u.user, k.x, k.y, k.z, k.victim_name, k.rolled_back " +
-                              "FROM minetracer_kill k " +
-                              "JOIN minetracer_user u ON k.killer_user = u.id " +
-                              "JOIN minetracer_world w ON k.wid = w.id " +
-                              "WHERE u.user = ? AND w.world = ? " +
-                              "ORDER BY k.time DESC LIMIT 1000";
-                
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, userName);
-                statement.setString(2, worldName);
-                
-                ResultSet rs = statement.executeQuery();
-                while (rs.next()) {
-                    long time = rs.getLong("time");
-                    String user = rs.getString("user");
-                    int x = rs.getInt("x");
-                    int y = rs.getInt("y");
-                    int z = rs.getInt("z");
-                    String target = rs.getString("victim_name");
-                    boolean rolledBack = rs.getInt("rolled_back") > 0;
-                    
-                    BlockPos pos = new BlockPos(x, y, z);
-                    results.add(new KillLogEntry(user, target, pos, worldName, 
-                                               Instant.ofEpochSecond(time), rolledBack));
-                }
-                
-            } catch (SQLException e) {
-                System.err.println("[MineTracer] Error getting kill logs for user: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        });
+        return getKillLogsForUserAsync(userName, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<KillLogEntry>> getKillLogsForUserAsync(String userName, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getKillEntries, StorageBackend::queryKills, e -> e.timestamp,
+                "user kill lookup"), executor);
     }
 
     /**
      * Get item pickup/drop logs for specific user with world filter (async)
      */
     public static CompletableFuture<List<ItemPickupDropLogEntry>> getItemPickupDropLogsForUserAsync(String userName, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<ItemPickupDropLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                String query = "SELECT i.time, u.user, i.x, i.y, i.z, i.type, i.data, i.amount, i.action, i.rolled_back " +
-                              "FROM minetracer_item i " +
-                              "JOIN minetracer_user u ON i.user = u.id " +
-                              "JOIN minetracer_world w ON i.wid = w.id " +
-                              "WHERE u.user = ? AND w.world = ? " +
-                              "ORDER BY i.time DESC LIMIT 1000";
-                
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, userName);
-                statement.setString(2, worldName);
-                
-                ResultSet rs = statement.executeQuery();
-                while (rs.next()) {
-                    long time = rs.getLong("time");
-                    String user = rs.getString("user");
-                    int x = rs.getInt("x");
-                    int y = rs.getInt("y");
-                    int z = rs.getInt("z");
-                    int type = rs.getInt("type");
-                    byte[] data = rs.getBytes("data");
-                    int amount = rs.getInt("amount");
-                    int action = rs.getInt("action");
-                    boolean rolledBack = rs.getInt("rolled_back") > 0;
-                    
-                    BlockPos pos = new BlockPos(x, y, z);
-                    ItemStack stack = deserializeItemStack(data, type, amount);
-                    String actionString = action == 0 ? "pickup" : "drop";
-                    
-                    results.add(new ItemPickupDropLogEntry(actionString, user, pos, stack, worldName,
-                                                         Instant.ofEpochSecond(time), rolledBack));
-                }
-                
-            } catch (SQLException e) {
-                System.err.println("[MineTracer] Error getting item logs for user: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        });
+        return getItemPickupDropLogsForUserAsync(userName, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<ItemPickupDropLogEntry>> getItemPickupDropLogsForUserAsync(String userName, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getItemEntries, StorageBackend::queryItems, e -> e.timestamp,
+                "user item lookup"), executor);
     }
 
     /**
      * Get sign logs for specific user with world filter (async)
      */
     public static CompletableFuture<List<SignLogEntry>> getSignLogsForUserAsync(String userName, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<SignLogEntry> results = new ArrayList<>();
-
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) {
-                    return results;
-                }
-
-                String query = "SELECT s.time, u.user, s.x, s.y, s.z, s.action, s.text, s.nbt, s.rolled_back " +
-                              "FROM minetracer_sign s " +
-                              "JOIN minetracer_user u ON s.user = u.id " +
-                              "JOIN minetracer_world w ON s.wid = w.id " +
-                              "WHERE u.user = ? AND w.world = ? " +
-                              "ORDER BY s.time DESC LIMIT 1000";
-
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.setString(1, userName);
-                statement.setString(2, worldName);
-
-                ResultSet rs = statement.executeQuery();
-                while (rs.next()) {
-                    long time = rs.getLong("time");
-                    String user = rs.getString("user");
-                    int x = rs.getInt("x");
-                    int y = rs.getInt("y");
-                    int z = rs.getInt("z");
-                    String action = rs.getString("action");
-                    String text = rs.getString("text");
-                    String nbt = rs.getString("nbt");
-                    boolean rolledBack = rs.getInt("rolled_back") > 0;
-
-                    BlockPos pos = new BlockPos(x, y, z);
-                    results.add(new SignLogEntry(action, user, pos, text, nbt,
-                                               Instant.ofEpochSecond(time), rolledBack));
-                }
-
-            } catch (SQLException e) {
-                System.err.println("[MineTracer] Error getting sign logs for user: " + e.getMessage());
-                e.printStackTrace();
-            }
-
-            return results;
-        }, queryExecutor);
+        return getSignLogsForUserAsync(userName, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<SignLogEntry>> getSignLogsForUserAsync(String userName, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.forUser(userName, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getSignEntries, StorageBackend::querySigns, e -> e.timestamp,
+                "user sign lookup"), executor);
     }
 
     /**
@@ -715,84 +443,15 @@ public class MineTracerLookup {
      */
     public static CompletableFuture<List<SignLogEntry>> getSignLogsInRangeAsync(
             BlockPos center, int range, String userFilter, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<SignLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                StringBuilder query = new StringBuilder(
-                    "SELECT s.time, u.user, s.x, s.y, s.z, s.action, s.text, s.nbt, s.rolled_back " +
-                    "FROM minetracer_sign s " +
-                    "JOIN minetracer_user u ON s.user = u.id " +
-                    "JOIN minetracer_world w ON s.wid = w.id " +
-                    "WHERE w.world = ? "
-                );
-                
-                List<Object> params = new ArrayList<>();
-                params.add(worldName);
-                
-                if (userFilter != null && !userFilter.isEmpty()) {
-                    query.append("AND u.user = ? ");
-                    params.add(userFilter);
-                }
-                
-                // Range filter (including Y coordinate for exact matching)
-                if (range == 0) {
-                    // Exact position match
-                    query.append("AND s.x = ? AND s.y = ? AND s.z = ? ");
-                    params.add(center.getX());
-                    params.add(center.getY());
-                    params.add(center.getZ());
-                } else {
-                    // Range match
-                    query.append("AND s.x BETWEEN ? AND ? AND s.y BETWEEN ? AND ? AND s.z BETWEEN ? AND ? ");
-                    params.add(center.getX() - range);
-                    params.add(center.getX() + range);
-                    params.add(center.getY() - range);
-                    params.add(center.getY() + range);
-                    params.add(center.getZ() - range);
-                    params.add(center.getZ() + range);
-                }
-                
-                query.append("ORDER BY s.time DESC LIMIT 1000");
-                
-                try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
-                    for (int i = 0; i < params.size(); i++) {
-                        stmt.setObject(i + 1, params.get(i));
-                    }
-                    
-                    ResultSet rs = stmt.executeQuery();
-                    while (rs.next()) {
-                        long time = rs.getLong("time");
-                        String user = rs.getString("user");
-                        int x = rs.getInt("x");
-                        int y = rs.getInt("y");
-                        int z = rs.getInt("z");
-                        String action = rs.getString("action");
-                        String text = rs.getString("text");
-                        String nbt = rs.getString("nbt");
-                        boolean rolledBack = rs.getInt("rolled_back") > 0;
-                        
-                        BlockPos pos = new BlockPos(x, y, z);
-                        
-                        // Range check if needed
-                        if (center != null && pos.getSquaredDistance(center) > range * range) {
-                            continue;
-                        }
-                        
-                        results.add(new SignLogEntry(action, user, pos, text, nbt, 
-                                                   Instant.ofEpochSecond(time), rolledBack));
-                    }
-                }
-                
-            } catch (Exception e) {
-                System.err.println("[MineTracer] Error in sign lookup: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        }, queryExecutor);
+        return getSignLogsInRangeAsync(center, range, userFilter, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<SignLogEntry>> getSignLogsInRangeAsync(
+            BlockPos center, int range, String userFilter, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.inRange(center, range, userFilter, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getSignEntries, StorageBackend::querySigns, e -> e.timestamp,
+                "sign lookup"), executor);
     }
 
     /**
@@ -800,81 +459,14 @@ public class MineTracerLookup {
      */
     public static CompletableFuture<List<KillLogEntry>> getKillLogsInRangeAsync(
             BlockPos center, int range, String userFilter, String worldName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<KillLogEntry> results = new ArrayList<>();
-            
-            try (Connection connection = MineTracerDatabase.getConnection()) {
-                if (connection == null) return results;
-                
-                StringBuilder query = new StringBuilder(
-                    "SELECT k.time, u.user, k.x, k.y, k.z, k.victim_name, k.rolled_back " +
-                    "FROM minetracer_kill k " +
-                    "JOIN minetracer_user u ON k.killer_user = u.id " +
-                    "JOIN minetracer_world w ON k.wid = w.id " +
-                    "WHERE w.world = ? "
-                );
-                
-                List<Object> params = new ArrayList<>();
-                params.add(worldName);
-                
-                if (userFilter != null && !userFilter.isEmpty()) {
-                    query.append("AND u.user = ? ");
-                    params.add(userFilter);
-                }
-                
-                // Range filter (including Y coordinate for exact matching)
-                if (range == 0) {
-                    // Exact position match
-                    query.append("AND k.x = ? AND k.y = ? AND k.z = ? ");
-                    params.add(center.getX());
-                    params.add(center.getY());
-                    params.add(center.getZ());
-                } else {
-                    // Range match
-                    query.append("AND k.x BETWEEN ? AND ? AND k.y BETWEEN ? AND ? AND k.z BETWEEN ? AND ? ");
-                    params.add(center.getX() - range);
-                    params.add(center.getX() + range);
-                    params.add(center.getY() - range);
-                    params.add(center.getY() + range);
-                    params.add(center.getZ() - range);
-                    params.add(center.getZ() + range);
-                }
-                
-                query.append("ORDER BY k.time DESC LIMIT 1000");
-                
-                try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
-                    for (int i = 0; i < params.size(); i++) {
-                        stmt.setObject(i + 1, params.get(i));
-                    }
-                    
-                    ResultSet rs = stmt.executeQuery();
-                    while (rs.next()) {
-                        long time = rs.getLong("time");
-                        String user = rs.getString("user");
-                        int x = rs.getInt("x");
-                        int y = rs.getInt("y");
-                        int z = rs.getInt("z");
-                        String target = rs.getString("victim_name");
-                        boolean rolledBack = rs.getInt("rolled_back") > 0;
-                        
-                        BlockPos pos = new BlockPos(x, y, z);
-                        
-                        // Range check if needed
-                        if (center != null && pos.getSquaredDistance(center) > range * range) {
-                            continue;
-                        }
-                        
-                        results.add(new KillLogEntry(user, target, pos, worldName,
-                                                   Instant.ofEpochSecond(time), rolledBack));
-                    }
-                }
-                
-            } catch (Exception e) {
-                System.err.println("[MineTracer] Error in kill lookup: " + e.getMessage());
-                e.printStackTrace();
-            }
-            
-            return results;
-        }, queryExecutor);
+        return getKillLogsInRangeAsync(center, range, userFilter, worldName, DEFAULT_EXECUTOR);
+    }
+    
+    public static CompletableFuture<List<KillLogEntry>> getKillLogsInRangeAsync(
+            BlockPos center, int range, String userFilter, String worldName, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> lookup(
+                LogQuery.inRange(center, range, userFilter, worldName, LogQuery.DEFAULT_LIMIT),
+                RecentWriteOverlay::getKillEntries, StorageBackend::queryKills, e -> e.timestamp,
+                "kill lookup"), executor);
     }
-}
\ No newline at end of file
+}
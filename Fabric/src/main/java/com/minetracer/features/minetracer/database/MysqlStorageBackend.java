@@ -0,0 +1,121 @@
+package com.minetracer.features.minetracer.database;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Storage on a MySQL or MariaDB server shared by every server of a network, reached through a
+ * connection pool. Each server tags its rows with database.server-id, so one database holds the
+ * whole network's history.
+ */
+public class MysqlStorageBackend extends JdbcStorageBackend {
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private volatile HikariDataSource pool;
+
+    /**
+     * Backend over the server configured under database.url
+     */
+    public MysqlStorageBackend() {
+        this(MineTracerConfig.DATABASE_URL, MineTracerConfig.DATABASE_USERNAME, MineTracerConfig.DATABASE_PASSWORD);
+    }
+
+    public MysqlStorageBackend(String url, String username, String password) {
+        super(SqlDialect.MYSQL);
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Backend over an embedded H2 database in MySQL mode, so the conformance tests exercise the
+     * MySQL dialect without a server. H2 is only on the test classpath.
+     */
+    public static MysqlStorageBackend embedded(Path directory) {
+        String file = directory.resolve("conformance").toAbsolutePath().toString().replace('\\', '/');
+        return new MysqlStorageBackend("jdbc:h2:file:" + file + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER", "sa", "");
+    }
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public boolean initialize() {
+        try {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("MineTracer");
+            config.setDriverClassName(SqlDialect.driverClass(url));
+            config.setJdbcUrl(url);
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setMaximumPoolSize(Math.max(2, MineTracerConfig.MAX_POOL_SIZE));
+            config.setMinimumIdle(1);
+            // Under REPEATABLE READ the read view taken by the first id lookup would hide a name
+            // another server inserts concurrently, so the INSERT IGNORE fallback could not find it
+            config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+            if (SqlDialect.MYSQL_DRIVERS.contains(config.getDriverClassName())) {
+                // Let the driver send a batch as multi-row inserts and keep statements prepared server-side
+                config.addDataSourceProperty("rewriteBatchedStatements", "true");
+                config.addDataSourceProperty("cachePrepStmts", "true");
+                config.addDataSourceProperty("useServerPrepStmts", "true");
+            }
+            pool = new HikariDataSource(config);
+
+            try (Connection connection = connect()) {
+                createSchema(connection);
+            }
+            startMigrations();
+            System.out.println("[MineTracer] Connected to shared database as server " + MineTracerConfig.SERVER_ID);
+            return true;
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to connect to " + url + ": " + e.getMessage());
+            e.printStackTrace();
+            shutdown();
+            return false;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stopMigrations();
+        HikariDataSource current = pool;
+        pool = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    @Override
+    protected Connection connect() throws SQLException {
+        HikariDataSource current = pool;
+        if (current == null) {
+            throw new SQLException("Shared database is not connected");
+        }
+        return current.getConnection();
+    }
+
+    @Override
+    protected long sizeBytes() {
+        try (Connection connection = connect();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "SELECT SUM(data_length + index_length) FROM information_schema.tables "
+                             + "WHERE table_schema = DATABASE() AND table_name LIKE 'minetracer_%'");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            // Not every MySQL-compatible engine reports table sizes
+            return -1;
+        }
+    }
+}
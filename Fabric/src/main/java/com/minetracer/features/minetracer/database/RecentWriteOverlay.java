@@ -0,0 +1,293 @@
+package com.minetracer.features.minetracer.database;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * In-memory view of log entries that have been queued but not yet committed.
+ * Entries are indexed per world and chunk so that lookups can merge them into
+ * database results without waiting for the consumer to flush.
+ */
+public class RecentWriteOverlay {
+
+    // Held (write) by the consumer around commit + evict, (read) by lookups around
+    // snapshot + query, so an entry is always visible in exactly one of the two
+    private static final ReadWriteLock COMMIT_LOCK = new ReentrantReadWriteLock();
+
+    private static final Object indexLock = new Object();
+    private static final Map<String, Long2ObjectMap<List<MineTracerConsumer.QueueEntry>>> index = new HashMap<>();
+    private static int size = 0;
+
+    private static final Comparator<MineTracerConsumer.QueueEntry> NEWEST_FIRST =
+            (a, b) -> Long.compare(b.timestamp, a.timestamp);
+
+    /**
+     * Lock taken by lookups while they snapshot the overlay and query the database
+     */
+    public static Lock lookupLock() {
+        return COMMIT_LOCK.readLock();
+    }
+
+    /**
+     * Lock taken by the consumer while it commits a batch and evicts it from the overlay
+     */
+    public static Lock commitLock() {
+        return COMMIT_LOCK.writeLock();
+    }
+
+    /**
+     * Register a freshly queued entry
+     */
+    static void add(MineTracerConsumer.QueueEntry entry) {
+        String world = getWorld(entry);
+        BlockPos pos = getPos(entry);
+        if (world == null || pos == null) {
+            return;
+        }
+
+        long chunkKey = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        synchronized (indexLock) {
+            index.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>())
+                 .computeIfAbsent(chunkKey, k -> new ArrayList<>())
+                 .add(entry);
+            size++;
+        }
+    }
+
+    /**
+     * Remove a processed batch (committed or failed) from the overlay
+     */
+    static void evict(List<MineTracerConsumer.QueueEntry> batch) {
+        synchronized (indexLock) {
+            for (MineTracerConsumer.QueueEntry entry : batch) {
+                String world = getWorld(entry);
+                BlockPos pos = getPos(entry);
+                if (world == null || pos == null) {
+                    continue;
+                }
+
+                Long2ObjectMap<List<MineTracerConsumer.QueueEntry>> chunks = index.get(world);
+                if (chunks == null) {
+                    continue;
+                }
+
+                long chunkKey = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+                List<MineTracerConsumer.QueueEntry> bucket = chunks.get(chunkKey);
+                if (bucket != null && bucket.remove(entry)) {
+                    size--;
+                    if (bucket.isEmpty()) {
+                        chunks.remove(chunkKey);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of entries currently held in the overlay
+     */
+    public static int size() {
+        synchronized (indexLock) {
+            return size;
+        }
+    }
+
+    // =========================
+    // TYPED SNAPSHOTS
+    // =========================
+
+    public static List<MineTracerLookup.ContainerLogEntry> getContainerEntries(BlockPos center, int range, String userFilter, String worldName) {
+        List<MineTracerLookup.ContainerLogEntry> results = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : snapshot(MineTracerConsumer.PROCESS_CONTAINER, center, range, userFilter, worldName)) {
+            Object[] data = entry.data;
+            ItemStack stack = ((ItemStack) data[3]).copy();
+            results.add(new MineTracerLookup.ContainerLogEntry((String) data[0], (String) data[1], (BlockPos) data[2],
+                    stack, Instant.ofEpochSecond(entry.timestamp / 1000), entry.rolledBack, entry));
+        }
+        return results;
+    }
+
+    public static List<MineTracerLookup.BlockLogEntry> getBlockEntries(BlockPos center, int range, String userFilter, String worldName) {
+        List<MineTracerLookup.BlockLogEntry> results = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : snapshot(MineTracerConsumer.PROCESS_BLOCK, center, range, userFilter, worldName)) {
+            Object[] data = entry.data;
+            results.add(new MineTracerLookup.BlockLogEntry((String) data[0], (String) data[1], (BlockPos) data[2],
+                    (String) data[3], (String) data[4], Instant.ofEpochSecond(entry.timestamp / 1000), entry.rolledBack, entry));
+        }
+        return results;
+    }
+
+    public static List<MineTracerLookup.SignLogEntry> getSignEntries(BlockPos center, int range, String userFilter, String worldName) {
+        List<MineTracerLookup.SignLogEntry> results = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : snapshot(MineTracerConsumer.PROCESS_SIGN, center, range, userFilter, worldName)) {
+            Object[] data = entry.data;
+            results.add(new MineTracerLookup.SignLogEntry((String) data[0], (String) data[1], (BlockPos) data[2],
+                    (String) data[3], (String) data[4], Instant.ofEpochSecond(entry.timestamp / 1000), entry.rolledBack, entry));
+        }
+        return results;
+    }
+
+    public static List<MineTracerLookup.KillLogEntry> getKillEntries(BlockPos center, int range, String userFilter, String worldName) {
+        List<MineTracerLookup.KillLogEntry> results = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : snapshot(MineTracerConsumer.PROCESS_KILL, center, range, userFilter, worldName)) {
+            Object[] data = entry.data;
+            results.add(new MineTracerLookup.KillLogEntry((String) data[0], (String) data[1], (BlockPos) data[2],
+                    (String) data[3], Instant.ofEpochSecond(entry.timestamp / 1000), entry.rolledBack,
+                    data.length > 4 ? (Integer) data[4] : 1));
+        }
+        return results;
+    }
+
+    public static List<MineTracerLookup.ItemPickupDropLogEntry> getItemEntries(BlockPos center, int range, String userFilter, String worldName) {
+        List<MineTracerLookup.ItemPickupDropLogEntry> results = new ArrayList<>();
+        for (MineTracerConsumer.QueueEntry entry : snapshot(MineTracerConsumer.PROCESS_ITEM, center, range, userFilter, worldName)) {
+            Object[] data = entry.data;
+            ItemStack stack = ((ItemStack) data[3]).copy();
+            results.add(new MineTracerLookup.ItemPickupDropLogEntry((String) data[0], (String) data[1], (BlockPos) data[2],
+                    stack, (String) data[4], Instant.ofEpochSecond(entry.timestamp / 1000), entry.rolledBack));
+        }
+        return results;
+    }
+
+    /**
+     * Collect matching entries of one process type, newest first.
+     * A null center means no spatial restriction and a null world searches every world.
+     */
+    private static List<MineTracerConsumer.QueueEntry> snapshot(int processType, BlockPos center, int range,
+                                                                String userFilter, String worldName) {
+        List<MineTracerConsumer.QueueEntry> matches = new ArrayList<>();
+        synchronized (indexLock) {
+            if (worldName == null) {
+                // Cross-world user lookups
+                for (Long2ObjectMap<List<MineTracerConsumer.QueueEntry>> chunks : index.values()) {
+                    for (List<MineTracerConsumer.QueueEntry> bucket : chunks.values()) {
+                        collect(bucket, processType, null, range, userFilter, matches);
+                    }
+                }
+                matches.sort(NEWEST_FIRST);
+                return matches;
+            }
+
+            Long2ObjectMap<List<MineTracerConsumer.QueueEntry>> chunks = index.get(worldName);
+            if (chunks == null || chunks.isEmpty()) {
+                return matches;
+            }
+
+            if (center == null) {
+                for (List<MineTracerConsumer.QueueEntry> bucket : chunks.values()) {
+                    collect(bucket, processType, null, range, userFilter, matches);
+                }
+            } else {
+                int minChunkX = (center.getX() - range) >> 4;
+                int maxChunkX = (center.getX() + range) >> 4;
+                int minChunkZ = (center.getZ() - range) >> 4;
+                int maxChunkZ = (center.getZ() + range) >> 4;
+                long chunkSpan = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+
+                if (chunkSpan > chunks.size()) {
+                    // Huge ranges: scanning populated chunks is cheaper than probing empty ones
+                    for (List<MineTracerConsumer.QueueEntry> bucket : chunks.values()) {
+                        collect(bucket, processType, center, range, userFilter, matches);
+                    }
+                } else {
+                    for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+                        for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                            List<MineTracerConsumer.QueueEntry> bucket = chunks.get(ChunkPos.toLong(cx, cz));
+                            if (bucket != null) {
+                                collect(bucket, processType, center, range, userFilter, matches);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        matches.sort(NEWEST_FIRST);
+        return matches;
+    }
+
+    private static void collect(List<MineTracerConsumer.QueueEntry> bucket, int processType, BlockPos center,
+                                int range, String userFilter, List<MineTracerConsumer.QueueEntry> out) {
+        for (MineTracerConsumer.QueueEntry entry : bucket) {
+            if (entry.processType != processType) {
+                continue;
+            }
+            if (userFilter != null && !userFilter.isEmpty() && !userFilter.equals(getUser(entry))) {
+                continue;
+            }
+            if (center != null && !inRange(getPos(entry), center, range)) {
+                continue;
+            }
+            out.add(entry);
+        }
+    }
+
+    /**
+     * Same semantics as the database lookups: bounding box, then spherical distance check
+     */
+    private static boolean inRange(BlockPos pos, BlockPos center, int range) {
+        if (range == 0) {
+            return pos.equals(center);
+        }
+        if (Math.abs(pos.getX() - center.getX()) > range
+                || Math.abs(pos.getY() - center.getY()) > range
+                || Math.abs(pos.getZ() - center.getZ()) > range) {
+            return false;
+        }
+        return pos.getSquaredDistance(center) <= (double) range * range;
+    }
+
+    // =========================
+    // QUEUE ENTRY LAYOUT
+    // =========================
+
+    private static String getWorld(MineTracerConsumer.QueueEntry entry) {
+        Object[] data = entry.data;
+        switch (entry.processType) {
+            case MineTracerConsumer.PROCESS_CONTAINER:
+            case MineTracerConsumer.PROCESS_ITEM:
+                return (String) data[4];
+            case MineTracerConsumer.PROCESS_BLOCK:
+            case MineTracerConsumer.PROCESS_SIGN:
+                return (String) data[5];
+            case MineTracerConsumer.PROCESS_KILL:
+                return (String) data[3];
+            default:
+                return null;
+        }
+    }
+
+    private static BlockPos getPos(MineTracerConsumer.QueueEntry entry) {
+        switch (entry.processType) {
+            case MineTracerConsumer.PROCESS_CONTAINER:
+            case MineTracerConsumer.PROCESS_ITEM:
+            case MineTracerConsumer.PROCESS_BLOCK:
+            case MineTracerConsumer.PROCESS_SIGN:
+            case MineTracerConsumer.PROCESS_KILL:
+                return (BlockPos) entry.data[2];
+            default:
+                return null;
+        }
+    }
+
+    private static String getUser(MineTracerConsumer.QueueEntry entry) {
+        // Kill entries store the killer first, everything else stores the action first
+        return entry.processType == MineTracerConsumer.PROCESS_KILL
+                ? (String) entry.data[0]
+                : (String) entry.data[1];
+    }
+}
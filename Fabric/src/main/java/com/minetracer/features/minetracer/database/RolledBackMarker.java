@@ -0,0 +1,143 @@
+package com.minetracer.features.minetracer.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * Collects entries marked as rolled back and writes the flags in batches.
+ * Rows are addressed by id and handed to the storage backend in one call per
+ * flush, instead of one connection and one coordinate/timestamp match per entry.
+ */
+public class RolledBackMarker {
+
+    // Wait before retrying entries whose row id was not assigned yet
+    private static final long RETRY_DELAY_MS = 1000;
+    // Give up on an entry whose batch never made it to the database
+    private static final long PENDING_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private static final Object lock = new Object();
+    private static LongList containerIds = new LongArrayList();
+    private static LongList blockIds = new LongArrayList();
+    private static LongList signIds = new LongArrayList();
+    // Entries that had no row id yet when they were marked
+    private static List<MineTracerConsumer.QueueEntry> pending = new ArrayList<>();
+
+    public static void markContainer(MineTracerLookup.ContainerLogEntry entry) {
+        mark(MineTracerDatabase.CONTAINER, entry.rowId, entry.pendingEntry);
+    }
+
+    public static void markBlock(MineTracerLookup.BlockLogEntry entry) {
+        mark(MineTracerDatabase.BLOCK, entry.rowId, entry.pendingEntry);
+    }
+
+    public static void markSign(MineTracerLookup.SignLogEntry entry) {
+        mark(MineTracerDatabase.SIGN, entry.rowId, entry.pendingEntry);
+    }
+
+    private static void mark(int table, long rowId, MineTracerConsumer.QueueEntry pendingEntry) {
+        if (pendingEntry != null) {
+            // Not committed yet - the consumer writes the flag when it inserts the row
+            pendingEntry.rolledBack = true;
+        }
+
+        synchronized (lock) {
+            if (rowId > 0) {
+                idsFor(table).add(rowId);
+            } else if (pendingEntry != null) {
+                pending.add(pendingEntry);
+            }
+        }
+    }
+
+    /**
+     * Write all collected flags in one background transaction
+     */
+    public static CompletableFuture<Void> flush() {
+        LongList containers;
+        LongList blocks;
+        LongList signs;
+        List<MineTracerConsumer.QueueEntry> queued;
+        synchronized (lock) {
+            if (containerIds.isEmpty() && blockIds.isEmpty() && signIds.isEmpty() && pending.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            containers = containerIds;
+            blocks = blockIds;
+            signs = signIds;
+            queued = pending;
+            containerIds = new LongArrayList();
+            blockIds = new LongArrayList();
+            signIds = new LongArrayList();
+            pending = new ArrayList<>();
+        }
+
+        return CompletableFuture.runAsync(() -> {
+            // An entry that was inserted before its flag was set has a row id once its batch commits
+            List<MineTracerConsumer.QueueEntry> unassigned = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (MineTracerConsumer.QueueEntry entry : queued) {
+                long rowId = entry.rowId;
+                if (rowId <= 0) {
+                    // It may already be bound with rolled_back = 0, so keep it until it has an id
+                    if (now - entry.timestamp < PENDING_TIMEOUT_MS) {
+                        unassigned.add(entry);
+                    }
+                    continue;
+                }
+                switch (entry.processType) {
+                    case MineTracerConsumer.PROCESS_CONTAINER:
+                        containers.add(rowId);
+                        break;
+                    case MineTracerConsumer.PROCESS_BLOCK:
+                        blocks.add(rowId);
+                        break;
+                    case MineTracerConsumer.PROCESS_SIGN:
+                        signs.add(rowId);
+                        break;
+                }
+            }
+            if (!unassigned.isEmpty()) {
+                synchronized (lock) {
+                    pending.addAll(unassigned);
+                }
+                CompletableFuture.delayedExecutor(RETRY_DELAY_MS, TimeUnit.MILLISECONDS).execute(RolledBackMarker::flush);
+            }
+            if (!containers.isEmpty() || !blocks.isEmpty() || !signs.isEmpty()) {
+                write(containers, blocks, signs);
+            }
+        });
+    }
+
+    /**
+     * Write the flags; a failure completes the flush exceptionally so callers can tell
+     */
+    private static void write(LongList containers, LongList blocks, LongList signs) {
+        try {
+            int updated = StorageBackends.get().markRolledBack(containers, blocks, signs);
+            if (updated > 1000) {
+                System.out.println("[MineTracer] Marked " + updated + " entries as rolled back");
+            }
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to mark entries as rolled back: " + e.getMessage());
+            e.printStackTrace();
+            throw new CompletionException(e);
+        }
+    }
+
+    private static LongList idsFor(int table) {
+        switch (table) {
+            case MineTracerDatabase.CONTAINER:
+                return containerIds;
+            case MineTracerDatabase.BLOCK:
+                return blockIds;
+            default:
+                return signIds;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.minetracer.features.minetracer.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings an existing database up to MineTracerDatabase.SCHEMA_VERSION in the background while
+ * the server keeps logging. Migrations run in version order on their own thread; each one
+ * records its version when it is done, and the steps themselves pick up where they left off,
+ * so a migration interrupted by a shutdown simply continues on the next start.
+ *
+ * Tables are rebuilt by copying into a shadow table in short chunks under the backend's
+ * writer lock, so the consumer gets the lock between chunks and ingest keeps flowing.
+ */
+public class SchemaMigrator {
+
+    // Rows copied per writer-locked transaction
+    private static final int COPY_CHUNK_ROWS = 5000;
+    // Pause between chunks so the consumer is never starved
+    private static final long CHUNK_PAUSE_MS = 20;
+
+    // Indexes of the first layout, superseded by MineTracerDatabase.createLogIndexes
+    private static final Map<String, List<String>> V1_INDEXES = Map.of(
+        "minetracer_container", List.of("idx_container_location", "idx_container_lookup", "idx_container_user",
+            "idx_container_type", "idx_container_time_user", "idx_container_rolled_back"),
+        "minetracer_block", List.of("idx_block_location", "idx_block_lookup", "idx_block_user",
+            "idx_block_type", "idx_block_time_user", "idx_block_rolled_back"),
+        "minetracer_sign", List.of("idx_sign_location", "idx_sign_user", "idx_sign_time"),
+        "minetracer_kill", List.of("idx_kill_location", "idx_kill_killer", "idx_kill_victim"),
+        "minetracer_item", List.of("idx_item_location", "idx_item_user", "idx_item_type")
+    );
+
+    @FunctionalInterface
+    private interface Step {
+        void run(SchemaMigrator migrator) throws Exception;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // In version order; the last one matches SCHEMA_VERSION
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(2, "rebuild log tables with the lookup index set", SchemaMigrator::migrateIndexes)
+    );
+
+    private final JdbcStorageBackend backend;
+    private volatile boolean stopping;
+    private Thread thread;
+
+    public SchemaMigrator(JdbcStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        stopping = false;
+        thread = new Thread(this::run, "MineTracer-Migration");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop after the current chunk; the migration resumes on the next start
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        stopping = true;
+        thread.interrupt();
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void run() {
+        try {
+            int version = withWriter(MineTracerDatabase::getSchemaVersion);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                System.out.println("[MineTracer] Migrating database to schema " + migration.version + ": " + migration.description);
+                long started = System.currentTimeMillis();
+                migration.step.run(this);
+                if (stopping) {
+                    System.out.println("[MineTracer] Schema migration paused, it will resume on the next start");
+                    return;
+                }
+                withWriter(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        MineTracerDatabase.recordSchemaVersion(statement, migration.version);
+                    }
+                    connection.commit();
+                    return null;
+                });
+                version = migration.version;
+                System.out.println("[MineTracer] Schema " + version + " ready after " + (System.currentTimeMillis() - started) / 1000 + " s");
+            }
+        } catch (InterruptedException e) {
+            // Stopped mid-step
+        } catch (Exception e) {
+            if (!stopping) {
+                System.err.println("[MineTracer] Schema migration failed, it will be retried on the next start: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // ---- Version 2 ----
+
+    private static void migrateIndexes(SchemaMigrator migrator) throws Exception {
+        if (migrator.backend.dialect == SqlDialect.SQLITE) {
+            // SQLite builds an index in one exclusive transaction and cannot change a key
+            // column in place, so each table is rebuilt alongside the old one
+            for (String table : MineTracerDatabase.LOG_TABLES) {
+                if (!migrator.rebuildTable(table)) {
+                    return;
+                }
+            }
+        } else {
+            // InnoDB adds and drops secondary indexes online without blocking inserts
+            for (String table : MineTracerDatabase.LOG_TABLES) {
+                if (migrator.stopping) {
+                    return;
+                }
+                try (Connection connection = migrator.backend.connect();
+                     Statement statement = connection.createStatement()) {
+                    MineTracerDatabase.createLogIndexes(statement, SqlDialect.MYSQL, table, table);
+                    for (String index : V1_INDEXES.get(table)) {
+                        SqlDialect.MYSQL.dropIndex(statement, index, table);
+                    }
+                }
+            }
+        }
+
+        // Both duplicate the index of the column's own UNIQUE or PRIMARY KEY constraint
+        migrator.withWriter(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                migrator.backend.dialect.dropIndex(statement, "idx_user_name", "minetracer_user");
+                migrator.backend.dialect.dropIndex(statement, "idx_world_id", "minetracer_world");
+            }
+            connection.commit();
+            return null;
+        });
+    }
+
+    /**
+     * Rebuild one log table into the current layout. Rows are copied in id order into
+     * table_v2, which triggers keep in step with rollback marks and purges of rows already
+     * copied; the chunk that comes up short swaps the tables in the same transaction, so no
+     * insert can slip in between. Returns false if stopped before finishing.
+     */
+    private boolean rebuildTable(String table) throws Exception {
+        String shadow = table + "_v2";
+        String retired = table + "_v1";
+        String shortName = table.substring("minetracer_".length());
+        String columns = MineTracerDatabase.logColumns(table);
+
+        // Left behind if the last run stopped between the swap and the drop
+        dropTableIfExists(retired);
+
+        boolean rebuilt = withWriter(connection ->
+                MineTracerDatabase.indexExists(connection, table, MineTracerDatabase.positionIndex(table))
+                        && !MineTracerDatabase.tableExists(connection, shadow));
+        if (rebuilt) {
+            return true;
+        }
+
+        withWriter(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                MineTracerDatabase.createLogTable(statement, SqlDialect.SQLITE, table, shadow);
+                MineTracerDatabase.createLogIndexes(statement, SqlDialect.SQLITE, table, shadow);
+                statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_" + shortName + "_v2_update "
+                        + "AFTER UPDATE OF rolled_back ON " + table + " BEGIN "
+                        + "UPDATE " + shadow + " SET rolled_back = NEW.rolled_back WHERE id = NEW.id; END;");
+                statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_" + shortName + "_v2_delete "
+                        + "AFTER DELETE ON " + table + " BEGIN "
+                        + "DELETE FROM " + shadow + " WHERE id = OLD.id; END;");
+            }
+            connection.commit();
+            return null;
+        });
+
+        String copy = "INSERT INTO " + shadow + " (" + columns + ") SELECT " + columns
+                + " FROM " + table + " WHERE id > ? ORDER BY id LIMIT " + COPY_CHUNK_ROWS;
+        long copied = 0;
+        while (true) {
+            if (stopping) {
+                return false;
+            }
+            int rows = withWriter(connection -> {
+                long cursor;
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + shadow)) {
+                    cursor = rs.next() ? rs.getLong(1) : 0;
+                }
+                int inserted;
+                try (PreparedStatement stmt = connection.prepareStatement(copy)) {
+                    stmt.setLong(1, cursor);
+                    inserted = stmt.executeUpdate();
+                }
+                if (inserted < COPY_CHUNK_ROWS) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate("DROP TRIGGER IF EXISTS trg_" + shortName + "_v2_update;");
+                        statement.executeUpdate("DROP TRIGGER IF EXISTS trg_" + shortName + "_v2_delete;");
+                        statement.executeUpdate("ALTER TABLE " + table + " RENAME TO " + retired + ";");
+                        statement.executeUpdate("ALTER TABLE " + shadow + " RENAME TO " + table + ";");
+                    }
+                }
+                connection.commit();
+                return inserted;
+            });
+            copied += rows;
+            if (rows < COPY_CHUNK_ROWS) {
+                break;
+            }
+            Thread.sleep(CHUNK_PAUSE_MS);
+        }
+
+        dropTableIfExists(retired);
+        System.out.println("[MineTracer] Rebuilt " + table + " (" + copied + " rows copied)");
+        return true;
+    }
+
+    private void dropTableIfExists(String table) throws Exception {
+        withWriter(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DROP TABLE IF EXISTS " + table + ";");
+            }
+            connection.commit();
+            return null;
+        });
+    }
+
+    @FunctionalInterface
+    private interface WriterTask<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Run one transaction on the backend's writer connection; the task commits, anything
+     * it leaves uncommitted is rolled back
+     */
+    private <T> T withWriter(WriterTask<T> task) throws SQLException {
+        Connection connection = backend.acquireWriter();
+        try {
+            connection.setAutoCommit(false);
+            T result = task.run(connection);
+            connection.rollback();
+            return result;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollback) {
+                System.err.println("[MineTracer] Rollback failed: " + rollback.getMessage());
+            }
+            throw e;
+        } finally {
+            backend.releaseWriter(connection);
+        }
+    }
+}
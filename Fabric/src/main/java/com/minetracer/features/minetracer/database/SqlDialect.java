@@ -0,0 +1,224 @@
+package com.minetracer.features.minetracer.database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The SQL differences between the engines the JDBC backends run on. Table layouts, queries
+ * and inserts are shared; only column types, key generation, idempotent DDL and result
+ * streaming go through here.
+ */
+public enum SqlDialect {
+
+    SQLITE {
+        @Override
+        public String autoIncrementKey() {
+            // The rowid alias is generated anyway; AUTOINCREMENT would also update sqlite_sequence on every insert
+            return "INTEGER PRIMARY KEY";
+        }
+
+        @Override
+        public String integerKey() {
+            return "INTEGER PRIMARY KEY";
+        }
+
+        @Override
+        public String bigint() {
+            return "INTEGER";
+        }
+
+        @Override
+        public String varchar(int length) {
+            return "TEXT";
+        }
+
+        @Override
+        public String text() {
+            return "TEXT";
+        }
+
+        @Override
+        public String blob() {
+            return "BLOB";
+        }
+
+        @Override
+        public String tableOptions() {
+            return "";
+        }
+
+        @Override
+        public String insertIgnore() {
+            return "INSERT OR IGNORE";
+        }
+
+        @Override
+        public boolean batchGeneratedKeys() {
+            // sqlite-jdbc only reports the last key of a batch
+            return false;
+        }
+
+        @Override
+        public int fetchSize() {
+            // Rows are read straight from the file, there is nothing to page
+            return 0;
+        }
+
+        @Override
+        public void createIndex(Statement statement, String name, String table, String columns) throws SQLException {
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + name + " ON " + table + "(" + columns + ");");
+        }
+
+        @Override
+        public void dropIndex(Statement statement, String name, String table) throws SQLException {
+            statement.executeUpdate("DROP INDEX IF EXISTS " + name + ";");
+        }
+    },
+
+    MYSQL {
+        @Override
+        public String autoIncrementKey() {
+            return "BIGINT PRIMARY KEY AUTO_INCREMENT";
+        }
+
+        @Override
+        public String integerKey() {
+            return "INTEGER PRIMARY KEY AUTO_INCREMENT";
+        }
+
+        @Override
+        public String bigint() {
+            return "BIGINT";
+        }
+
+        @Override
+        public String varchar(int length) {
+            return "VARCHAR(" + length + ")";
+        }
+
+        @Override
+        public String text() {
+            return "MEDIUMTEXT";
+        }
+
+        @Override
+        public String blob() {
+            // Stack NBT can exceed the 64 KB of a plain BLOB
+            return "LONGBLOB";
+        }
+
+        @Override
+        public String tableOptions() {
+            return " ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+        }
+
+        @Override
+        public String insertIgnore() {
+            return "INSERT IGNORE";
+        }
+
+        @Override
+        public boolean batchGeneratedKeys() {
+            return true;
+        }
+
+        @Override
+        public int fetchSize() {
+            // Lets the driver stream a lookup in rounds of this many rows instead of buffering it
+            // whole; results are still collected in one query, there is no keyset paging
+            return 500;
+        }
+
+        @Override
+        public void createIndex(Statement statement, String name, String table, String columns) throws SQLException {
+            // MySQL has no CREATE INDEX IF NOT EXISTS
+            if (MineTracerDatabase.indexExists(statement.getConnection(), table, name)) {
+                return;
+            }
+            statement.executeUpdate("CREATE INDEX " + name + " ON " + table + "(" + columns + ")");
+        }
+
+        @Override
+        public void dropIndex(Statement statement, String name, String table) throws SQLException {
+            // Nor DROP INDEX IF EXISTS
+            if (MineTracerDatabase.indexExists(statement.getConnection(), table, name)) {
+                statement.executeUpdate("DROP INDEX " + name + " ON " + table);
+            }
+        }
+    };
+
+    /**
+     * Drivers that talk to an actual MySQL or MariaDB server and accept its connection properties
+     */
+    public static final Set<String> MYSQL_DRIVERS = Set.of("org.mariadb.jdbc.Driver", "com.mysql.cj.jdbc.Driver");
+
+    /**
+     * Column definition of a generated 64-bit row id
+     */
+    public abstract String autoIncrementKey();
+
+    /**
+     * Column definition of a small generated key that may also be given explicitly
+     */
+    public abstract String integerKey();
+
+    /**
+     * Type of epoch-second and other 64-bit columns
+     */
+    public abstract String bigint();
+
+    /**
+     * Type of a short string that is indexed or unique
+     */
+    public abstract String varchar(int length);
+
+    /**
+     * Type of unbounded text such as NBT
+     */
+    public abstract String text();
+
+    public abstract String blob();
+
+    /**
+     * Appended after the closing parenthesis of CREATE TABLE
+     */
+    public abstract String tableOptions();
+
+    /**
+     * Insert keyword that skips rows violating a unique key
+     */
+    public abstract String insertIgnore();
+
+    /**
+     * Whether getGeneratedKeys returns one key per row after executeBatch
+     */
+    public abstract boolean batchGeneratedKeys();
+
+    /**
+     * Fetch size for lookup statements, 0 for the driver default
+     */
+    public abstract int fetchSize();
+
+    public abstract void createIndex(Statement statement, String name, String table, String columns) throws SQLException;
+
+    public abstract void dropIndex(Statement statement, String name, String table) throws SQLException;
+
+    /**
+     * Driver class for a JDBC URL, loaded explicitly because the mod class loader hides drivers from DriverManager
+     */
+    public static String driverClass(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("jdbc:sqlite:")) {
+            return "org.sqlite.JDBC";
+        }
+        if (lower.startsWith("jdbc:h2:")) {
+            return "org.h2.Driver";
+        }
+        if (lower.startsWith("jdbc:mysql:")) {
+            return "com.mysql.cj.jdbc.Driver";
+        }
+        return "org.mariadb.jdbc.Driver";
+    }
+}
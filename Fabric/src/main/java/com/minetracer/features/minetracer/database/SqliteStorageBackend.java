@@ -0,0 +1,214 @@
+package com.minetracer.features.minetracer.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+/**
+ * The SQLite storage backend: one database file per server, written through
+ * MineTracerDatabase connections.
+ *
+ * The consumer owns a single writer connection that maintenance writes borrow under a lock.
+ * Each lookup worker keeps its own read-only connection, so with WAL lookups read a
+ * snapshot in parallel with ingest instead of queueing behind it.
+ */
+public class SqliteStorageBackend extends JdbcStorageBackend {
+
+    // Null for the live database managed by MineTracerDatabase
+    private final Path file;
+
+    // Fair, so the consumer gets the writer between a migration's chunks
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    // Guarded by writerLock
+    private Connection writer;
+
+    private WalCheckpointer checkpointer;
+
+    private final ThreadLocal<Connection> lookupReader = new ThreadLocal<>();
+    private final Set<Connection> readers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Backend over the live database
+     */
+    public SqliteStorageBackend() {
+        this(null);
+    }
+
+    /**
+     * Backend over a separate database file, e.g. for a conformance run
+     */
+    public SqliteStorageBackend(Path file) {
+        super(SqlDialect.SQLITE);
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public boolean initialize() {
+        if (file == null) {
+            if (!MineTracerDatabase.initializeDatabase()) {
+                return false;
+            }
+            checkpointer = new WalCheckpointer(MineTracerDatabase.getDatabasePath());
+            checkpointer.start();
+            startMigrations();
+            return true;
+        }
+        try (Connection connection = connect()) {
+            createSchema(connection);
+            return true;
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to initialize database " + file + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stopMigrations();
+        if (checkpointer != null) {
+            checkpointer.stop();
+            checkpointer = null;
+        }
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+        for (Connection reader : readers) {
+            closeQuietly(reader);
+        }
+        readers.clear();
+        if (file == null) {
+            MineTracerDatabase.shutdown();
+        }
+    }
+
+    @Override
+    protected Connection connect() throws SQLException {
+        Connection connection = file == null ? MineTracerDatabase.getConnection() : MineTracerDatabase.openConnection(file);
+        if (connection == null) {
+            throw new SQLException("Failed to get database connection");
+        }
+        return connection;
+    }
+
+    @Override
+    protected Connection acquireWriter() throws SQLException {
+        writerLock.lock();
+        try {
+            if (writer == null || writer.isClosed()) {
+                writer = connect();
+            }
+            return writer;
+        } catch (SQLException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void releaseWriter(Connection connection) {
+        // The connection stays open for the next batch
+        writerLock.unlock();
+    }
+
+    @Override
+    protected Connection acquireReader() throws SQLException {
+        if (!LookupScheduler.isWorkerThread()) {
+            return openReader();
+        }
+        Connection reader = lookupReader.get();
+        if (reader == null || reader.isClosed()) {
+            if (reader != null) {
+                readers.remove(reader);
+            }
+            reader = openReader();
+            lookupReader.set(reader);
+            readers.add(reader);
+        }
+        return reader;
+    }
+
+    @Override
+    protected void releaseReader(Connection connection) {
+        // Lookup workers keep theirs; one-off readers from other threads are closed
+        if (lookupReader.get() != connection) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Start a read transaction on the worker's connection; WAL keeps serving it the pages as of
+     * this moment until it is closed, whatever the writer commits meanwhile
+     */
+    @Override
+    public ReadSnapshot openSnapshot() throws SQLException {
+        // Without WAL an open read transaction would block the writer's commits
+        if (!LookupScheduler.isWorkerThread() || !MineTracerConfig.ENABLE_WAL) {
+            return null;
+        }
+        Connection reader = acquireReader();
+        reader.setAutoCommit(false);
+        try (Statement statement = reader.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+            // The first read fixes the snapshot
+            rs.next();
+        } catch (SQLException e) {
+            reader.setAutoCommit(true);
+            throw e;
+        }
+        return () -> {
+            try {
+                reader.commit();
+                reader.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.err.println("[MineTracer] Failed to end read snapshot: " + e.getMessage());
+                closeQuietly(reader);
+            }
+        };
+    }
+
+    private Connection openReader() throws SQLException {
+        Connection connection = file == null ? MineTracerDatabase.getReadConnection() : MineTracerDatabase.openReadConnection(file);
+        if (connection == null) {
+            throw new SQLException("Failed to get read connection");
+        }
+        return connection;
+    }
+
+    @Override
+    protected long sizeBytes() {
+        Path database = file == null ? MineTracerDatabase.getDatabasePath() : file;
+        long size = 0;
+        try {
+            for (String suffix : new String[] {"", "-wal"}) {
+                Path part = database.resolveSibling(database.getFileName() + suffix);
+                if (Files.exists(part)) {
+                    size += Files.size(part);
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,93 @@
+package com.minetracer.features.minetracer.database;
+
+import java.util.List;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * Everything MineTracer needs from the engine its logs are kept in.
+ * Capture code only queues entries and commands only go through MineTracerLookup and
+ * RolledBackMarker, so trying another engine means implementing this interface, registering it
+ * in StorageBackends and passing StorageBackendConformance. Ingest is called from the consumer
+ * thread while queries run on the lookup threads, so implementations must allow both at once.
+ */
+public interface StorageBackend {
+
+    /**
+     * Name used for the database.backend config key
+     */
+    String getName();
+
+    /**
+     * Create or open the storage; false if it cannot be used
+     */
+    boolean initialize();
+
+    void shutdown();
+
+    /**
+     * Write a batch of queued entries without making it visible to queries yet. Container,
+     * block and sign entries have their row id set when this returns, so rollbacks can mark
+     * them. If this throws, nothing of the batch is kept.
+     */
+    StagedBatch ingest(List<MineTracerConsumer.QueueEntry> batch) throws Exception;
+
+    List<MineTracerLookup.ContainerLogEntry> queryContainers(LogQuery query) throws Exception;
+
+    List<MineTracerLookup.BlockLogEntry> queryBlocks(LogQuery query) throws Exception;
+
+    List<MineTracerLookup.SignLogEntry> querySigns(LogQuery query) throws Exception;
+
+    List<MineTracerLookup.KillLogEntry> queryKills(LogQuery query) throws Exception;
+
+    List<MineTracerLookup.ItemPickupDropLogEntry> queryItems(LogQuery query) throws Exception;
+
+    Set<String> getUserNames() throws Exception;
+
+    /**
+     * Flag rows as rolled back by row id in one transaction; returns the number of rows changed
+     */
+    int markRolledBack(LongList containerIds, LongList blockIds, LongList signIds) throws Exception;
+
+    /**
+     * Delete every row logged before the given epoch second; returns the number of rows removed
+     */
+    long purge(long beforeEpochSecond) throws Exception;
+
+    StorageStats getStats() throws Exception;
+
+    /**
+     * Pin the data the calling thread's next queries will see, so they can run after the lookup
+     * lock is released without missing or repeating a batch committed in between. Returns null
+     * if the backend cannot, in which case lookups query it while holding the lock.
+     */
+    default ReadSnapshot openSnapshot() throws Exception {
+        return null;
+    }
+
+    /**
+     * A pinned view for queries on the thread that opened it
+     */
+    interface ReadSnapshot extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * A written but not yet visible batch
+     */
+    interface StagedBatch {
+
+        /**
+         * Make the batch visible to queries
+         */
+        void commit() throws Exception;
+
+        /**
+         * Discard the batch
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,54 @@
+package com.minetracer.features.minetracer.database;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.segment.SegmentStorageBackend;
+
+/**
+ * Picks the storage backend named by database.backend and creates backends by name
+ */
+public class StorageBackends {
+
+    public static final List<String> NAMES = List.of("sqlite", "segments", "mysql");
+
+    private static volatile StorageBackend active = null;
+
+    /**
+     * The configured backend, created on first use
+     */
+    public static StorageBackend get() {
+        StorageBackend backend = active;
+        if (backend == null) {
+            synchronized (StorageBackends.class) {
+                if (active == null) {
+                    active = create(MineTracerConfig.STORAGE_BACKEND, null);
+                }
+                backend = active;
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Create a backend by name. A null directory opens the live database; conformance runs
+     * pass a scratch directory instead, which for mysql holds an embedded H2 database in
+     * MySQL mode.
+     */
+    public static StorageBackend create(String name, Path directory) {
+        String key = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        switch (key) {
+            case "sqlite":
+                return directory == null ? new SqliteStorageBackend() : new SqliteStorageBackend(directory.resolve("database.db"));
+            case "segments":
+                return new SegmentStorageBackend(directory == null ? Path.of("config", "minetracer", "segments") : directory);
+            case "mysql":
+                return directory == null ? new MysqlStorageBackend() : MysqlStorageBackend.embedded(directory);
+            default:
+                System.err.println("[MineTracer] Unknown storage backend '" + name + "', using sqlite");
+                return create("sqlite", directory);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.minetracer.features.minetracer.database;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size of what a storage backend holds, for status output and the conformance run
+ */
+public class StorageStats {
+
+    public final String backend;
+    // Rows per log type, in display order
+    public final Map<String, Long> rows;
+    // Bytes on disk, or -1 if the backend cannot tell
+    public final long sizeBytes;
+
+    public StorageStats(String backend, LinkedHashMap<String, Long> rows, long sizeBytes) {
+        this.backend = backend;
+        this.rows = Collections.unmodifiableMap(rows);
+        this.sizeBytes = sizeBytes;
+    }
+
+    public long totalRows() {
+        long total = 0;
+        for (long count : rows.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * One-line summary for operators
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Storage: ").append(backend).append(", ")
+                .append(totalRows()).append(" rows (");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : rows.entrySet()) {
+            if (!first) {
+                summary.append(", ");
+            }
+            summary.append(entry.getKey()).append(' ').append(entry.getValue());
+            first = false;
+        }
+        summary.append(')');
+        if (sizeBytes >= 0) {
+            summary.append(String.format(", %.1f MB on disk", sizeBytes / (1024.0 * 1024.0)));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.minetracer.features.minetracer.database;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+/**
+ * Moves WAL checkpoints out of the consumer's commits. Every database.checkpoint-interval-seconds
+ * the WAL is checkpointed from a connection of its own, but only once the consumer has been
+ * idle for a moment, so the copy back into the database never lands in the middle of a write
+ * storm. A WAL over database.wal-truncate-mb is truncated back to zero in a quiet period, and
+ * checkpointed passively even under load once it reaches four times that, so it cannot grow
+ * without bound. PRAGMA optimize runs every database.optimize-interval-minutes.
+ */
+public class WalCheckpointer {
+
+    // Consumer idle time that counts as quiet
+    private static final long QUIET_MS = 2000;
+    // Backlog the consumer may still have in a quiet period
+    private static final int QUIET_QUEUE_DEPTH = 100;
+
+    private final Path database;
+    private final Path wal;
+    private ScheduledExecutorService scheduler;
+    private Connection connection;
+    private long lastOptimizeMs;
+
+    public WalCheckpointer(Path database) {
+        this.database = database;
+        this.wal = database.resolveSibling(database.getFileName() + "-wal");
+    }
+
+    public synchronized void start() {
+        if (scheduler != null || !MineTracerConfig.ENABLE_WAL || MineTracerConfig.CHECKPOINT_INTERVAL_SECONDS <= 0) {
+            return;
+        }
+        lastOptimizeMs = System.currentTimeMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MineTracer-Checkpoint");
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        long interval = MineTracerConfig.CHECKPOINT_INTERVAL_SECONDS;
+        scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("[MineTracer] Failed to close checkpoint connection: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    private void run() {
+        try {
+            long walBytes = Files.exists(wal) ? Files.size(wal) : 0;
+            long truncateBytes = MineTracerConfig.WAL_TRUNCATE_MB * 1024L * 1024L;
+            boolean quiet = MineTracerConsumer.getQueueSize() <= QUIET_QUEUE_DEPTH
+                    && System.currentTimeMillis() - LoadGovernor.getLastCommitAt() >= QUIET_MS;
+
+            if (quiet && walBytes > 0) {
+                checkpoint(walBytes >= truncateBytes ? "TRUNCATE" : "PASSIVE");
+            } else if (walBytes >= truncateBytes * 4) {
+                checkpoint("PASSIVE");
+            }
+
+            long optimizeMs = MineTracerConfig.OPTIMIZE_INTERVAL_MINUTES * 60_000L;
+            if (quiet && optimizeMs > 0 && System.currentTimeMillis() - lastOptimizeMs >= optimizeMs) {
+                lastOptimizeMs = System.currentTimeMillis();
+                try (Statement statement = connect().createStatement()) {
+                    statement.execute("PRAGMA optimize;");
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Background checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    private void checkpoint(String mode) throws SQLException {
+        long started = System.currentTimeMillis();
+        try (Statement statement = connect().createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA wal_checkpoint(" + mode + ");")) {
+            // busy, frames in the WAL, frames copied back
+            if (rs.next() && mode.equals("TRUNCATE")) {
+                System.out.println("[MineTracer] Truncated WAL after copying " + rs.getInt(3) + " frames in "
+                        + (System.currentTimeMillis() - started) + " ms" + (rs.getInt(1) != 0 ? " (busy)" : ""));
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = MineTracerDatabase.openConnection(database);
+            if (connection == null) {
+                throw new SQLException("Failed to open checkpoint connection");
+            }
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,170 @@
+package com.minetracer.features.minetracer.database.segment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Growable columns of rows that are not in a segment file yet: the open segment and the
+ * rows of a batch being staged. Rows are written to the journal in the same field order.
+ */
+class RowBuffer implements RowSource {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final LongArrayList time = new LongArrayList();
+    private final ByteArrayList kind = new ByteArrayList();
+    private final IntArrayList user = new IntArrayList();
+    private final IntArrayList world = new IntArrayList();
+    private final IntArrayList x = new IntArrayList();
+    private final IntArrayList y = new IntArrayList();
+    private final IntArrayList z = new IntArrayList();
+    private final IntArrayList action = new IntArrayList();
+    private final IntArrayList amount = new IntArrayList();
+    private final IntArrayList item = new IntArrayList();
+    private final ObjectArrayList<byte[]> text0 = new ObjectArrayList<>();
+    private final ObjectArrayList<byte[]> text1 = new ObjectArrayList<>();
+
+    void add(long time, int kind, int user, int world, int x, int y, int z, int action, int amount, int item,
+             byte[] text0, byte[] text1) {
+        this.time.add(time);
+        this.kind.add((byte) kind);
+        this.user.add(user);
+        this.world.add(world);
+        this.x.add(x);
+        this.y.add(y);
+        this.z.add(z);
+        this.action.add(action);
+        this.amount.add(amount);
+        this.item.add(item);
+        this.text0.add(text0 == null ? EMPTY : text0);
+        this.text1.add(text1 == null ? EMPTY : text1);
+    }
+
+    void addAll(RowBuffer other) {
+        for (int row = 0; row < other.size(); row++) {
+            add(other.time(row), other.kind(row), other.user(row), other.world(row), other.x(row), other.y(row),
+                    other.z(row), other.action(row), other.amount(row), other.item(row),
+                    other.text0.get(row), other.text1.get(row));
+        }
+    }
+
+    void writeRow(DataOutput out, int row) throws IOException {
+        out.writeLong(time.getLong(row));
+        out.writeByte(kind.getByte(row));
+        out.writeInt(user.getInt(row));
+        out.writeInt(world.getInt(row));
+        out.writeInt(x.getInt(row));
+        out.writeInt(y.getInt(row));
+        out.writeInt(z.getInt(row));
+        out.writeInt(action.getInt(row));
+        out.writeInt(amount.getInt(row));
+        out.writeInt(item.getInt(row));
+        writeBytes(out, text0.get(row));
+        writeBytes(out, text1.get(row));
+    }
+
+    void readRow(DataInput in) throws IOException {
+        long rowTime = in.readLong();
+        int rowKind = in.readByte();
+        int rowUser = in.readInt();
+        int rowWorld = in.readInt();
+        int rowX = in.readInt();
+        int rowY = in.readInt();
+        int rowZ = in.readInt();
+        int rowAction = in.readInt();
+        int rowAmount = in.readInt();
+        int rowItem = in.readInt();
+        byte[] rowText0 = readBytes(in);
+        byte[] rowText1 = readBytes(in);
+        add(rowTime, rowKind, rowUser, rowWorld, rowX, rowY, rowZ, rowAction, rowAmount, rowItem, rowText0, rowText1);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > Segment.MAX_TEXT_BYTES) {
+            throw new IOException("Corrupt row, text length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Raw bytes of a text column including empty ones, for writing a segment
+     */
+    byte[] rawText(int column, int row) {
+        return column == 0 ? text0.get(row) : text1.get(row);
+    }
+
+    @Override
+    public int size() {
+        return time.size();
+    }
+
+    @Override
+    public long time(int row) {
+        return time.getLong(row);
+    }
+
+    @Override
+    public int kind(int row) {
+        return kind.getByte(row);
+    }
+
+    @Override
+    public int user(int row) {
+        return user.getInt(row);
+    }
+
+    @Override
+    public int world(int row) {
+        return world.getInt(row);
+    }
+
+    @Override
+    public int x(int row) {
+        return x.getInt(row);
+    }
+
+    @Override
+    public int y(int row) {
+        return y.getInt(row);
+    }
+
+    @Override
+    public int z(int row) {
+        return z.getInt(row);
+    }
+
+    @Override
+    public int action(int row) {
+        return action.getInt(row);
+    }
+
+    @Override
+    public int amount(int row) {
+        return amount.getInt(row);
+    }
+
+    @Override
+    public int item(int row) {
+        return item.getInt(row);
+    }
+
+    @Override
+    public byte[] text(int column, int row) {
+        byte[] bytes = rawText(column, row);
+        return bytes.length == 0 ? null : bytes;
+    }
+}
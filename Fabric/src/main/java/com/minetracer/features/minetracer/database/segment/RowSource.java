@@ -0,0 +1,39 @@
+package com.minetracer.features.minetracer.database.segment;
+
+/**
+ * Column access to a run of log rows, either the open in-memory segment or a sealed file.
+ * Rows are in ingest order, so the last row is the newest.
+ *
+ * Every log type shares the same columns: {@code amount} is the item count or the kill
+ * count, {@code item} the raw item id, {@code text(0)} the item stack, block id, sign text or
+ * victim name and {@code text(1)} the block or sign NBT.
+ */
+interface RowSource {
+
+    int size();
+
+    long time(int row);
+
+    int kind(int row);
+
+    int user(int row);
+
+    int world(int row);
+
+    int x(int row);
+
+    int y(int row);
+
+    int z(int row);
+
+    int action(int row);
+
+    int amount(int row);
+
+    int item(int row);
+
+    /**
+     * Bytes of a text column, or null if empty
+     */
+    byte[] text(int column, int row);
+}
@@ -0,0 +1,303 @@
+package com.minetracer.features.minetracer.database.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import com.minetracer.features.minetracer.database.MineTracerConsumer;
+
+/**
+ * An immutable, memory-mapped segment file: a header with the zone map followed by one
+ * column per field. Queries test the zone map first and only touch the columns of segments
+ * that can hold a match; the columns themselves are read straight from the page cache.
+ *
+ * Layout: magic, version, row count, min/max time, min/max x, min/max z, rows per log type,
+ * user and world bitmaps, then the time, kind, user, world, x, y, z, action, amount and item
+ * columns and two text columns stored as offsets plus bytes.
+ */
+class Segment implements RowSource {
+
+    static final int MAGIC = 0x4D545347; // "MTSG"
+    static final int VERSION = 1;
+    // Largest text value accepted when reading; stacks with huge NBT stay well below this
+    static final int MAX_TEXT_BYTES = 16 * 1024 * 1024;
+    private static final int KINDS = MineTracerConsumer.PROCESS_ITEM + 1;
+
+    final long id;
+    final Path file;
+    final int rows;
+    final long minTime;
+    final long maxTime;
+    final int minX;
+    final int maxX;
+    final int minZ;
+    final int maxZ;
+    final int[] kindCounts;
+    final BitSet users;
+    final BitSet worlds;
+
+    private final MappedByteBuffer buffer;
+    private final int timePos;
+    private final int kindPos;
+    private final int userPos;
+    private final int worldPos;
+    private final int xPos;
+    private final int yPos;
+    private final int zPos;
+    private final int actionPos;
+    private final int amountPos;
+    private final int itemPos;
+    private final int[] textOffsetPos = new int[2];
+    private final int[] textHeapPos = new int[2];
+
+    private Segment(long id, Path file, MappedByteBuffer buffer) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a MineTracer segment: " + file);
+        }
+        int pos = 8;
+        rows = buffer.getInt(pos);
+        pos += 4;
+        minTime = buffer.getLong(pos);
+        maxTime = buffer.getLong(pos + 8);
+        pos += 16;
+        minX = buffer.getInt(pos);
+        maxX = buffer.getInt(pos + 4);
+        minZ = buffer.getInt(pos + 8);
+        maxZ = buffer.getInt(pos + 12);
+        pos += 16;
+        kindCounts = new int[KINDS];
+        for (int i = 0; i < KINDS; i++) {
+            kindCounts[i] = buffer.getInt(pos);
+            pos += 4;
+        }
+        long[] words = new long[buffer.getInt(pos)];
+        pos += 4;
+        for (int i = 0; i < words.length; i++, pos += 8) {
+            words[i] = buffer.getLong(pos);
+        }
+        users = BitSet.valueOf(words);
+        words = new long[buffer.getInt(pos)];
+        pos += 4;
+        for (int i = 0; i < words.length; i++, pos += 8) {
+            words[i] = buffer.getLong(pos);
+        }
+        worlds = BitSet.valueOf(words);
+
+        timePos = pos;
+        kindPos = timePos + 8 * rows;
+        userPos = kindPos + rows;
+        worldPos = userPos + 4 * rows;
+        xPos = worldPos + 4 * rows;
+        yPos = xPos + 4 * rows;
+        zPos = yPos + 4 * rows;
+        actionPos = zPos + 4 * rows;
+        amountPos = actionPos + 4 * rows;
+        itemPos = amountPos + 4 * rows;
+        textOffsetPos[0] = itemPos + 4 * rows;
+        textHeapPos[0] = textOffsetPos[0] + 4 * (rows + 1);
+        textOffsetPos[1] = textHeapPos[0] + buffer.getInt(textOffsetPos[0] + 4 * rows);
+        textHeapPos[1] = textOffsetPos[1] + 4 * (rows + 1);
+    }
+
+    static Segment open(long id, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new Segment(id, file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write rows as a segment file. The file appears under its final name only once complete.
+     */
+    static void write(Path file, RowBuffer rows) throws IOException {
+        int count = rows.size();
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        int[] kindCounts = new int[KINDS];
+        BitSet users = new BitSet();
+        BitSet worlds = new BitSet();
+        for (int row = 0; row < count; row++) {
+            minTime = Math.min(minTime, rows.time(row));
+            maxTime = Math.max(maxTime, rows.time(row));
+            minX = Math.min(minX, rows.x(row));
+            maxX = Math.max(maxX, rows.x(row));
+            minZ = Math.min(minZ, rows.z(row));
+            maxZ = Math.max(maxZ, rows.z(row));
+            kindCounts[rows.kind(row)]++;
+            users.set(rows.user(row));
+            worlds.set(rows.world(row));
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            out.writeInt(minX);
+            out.writeInt(maxX);
+            out.writeInt(minZ);
+            out.writeInt(maxZ);
+            for (int kindCount : kindCounts) {
+                out.writeInt(kindCount);
+            }
+            writeBitmap(out, users);
+            writeBitmap(out, worlds);
+
+            for (int row = 0; row < count; row++) {
+                out.writeLong(rows.time(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeByte(rows.kind(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.user(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.world(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.x(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.y(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.z(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.action(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.amount(row));
+            }
+            for (int row = 0; row < count; row++) {
+                out.writeInt(rows.item(row));
+            }
+            for (int column = 0; column < 2; column++) {
+                int offset = 0;
+                for (int row = 0; row < count; row++) {
+                    out.writeInt(offset);
+                    offset += rows.rawText(column, row).length;
+                }
+                out.writeInt(offset);
+                for (int row = 0; row < count; row++) {
+                    out.write(rows.rawText(column, row));
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeBitmap(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Zone map test: false if no row of this segment can match
+     */
+    boolean mayContain(int kind, int world, int user, int boxMinX, int boxMaxX, int boxMinZ, int boxMaxZ) {
+        if (kindCounts[kind] == 0) {
+            return false;
+        }
+        if (world >= 0 && !worlds.get(world)) {
+            return false;
+        }
+        if (user >= 0 && !users.get(user)) {
+            return false;
+        }
+        return boxMaxX >= minX && boxMinX <= maxX && boxMaxZ >= minZ && boxMinZ <= maxZ;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public long time(int row) {
+        return buffer.getLong(timePos + 8 * row);
+    }
+
+    @Override
+    public int kind(int row) {
+        return buffer.get(kindPos + row);
+    }
+
+    @Override
+    public int user(int row) {
+        return buffer.getInt(userPos + 4 * row);
+    }
+
+    @Override
+    public int world(int row) {
+        return buffer.getInt(worldPos + 4 * row);
+    }
+
+    @Override
+    public int x(int row) {
+        return buffer.getInt(xPos + 4 * row);
+    }
+
+    @Override
+    public int y(int row) {
+        return buffer.getInt(yPos + 4 * row);
+    }
+
+    @Override
+    public int z(int row) {
+        return buffer.getInt(zPos + 4 * row);
+    }
+
+    @Override
+    public int action(int row) {
+        return buffer.getInt(actionPos + 4 * row);
+    }
+
+    @Override
+    public int amount(int row) {
+        return buffer.getInt(amountPos + 4 * row);
+    }
+
+    @Override
+    public int item(int row) {
+        return buffer.getInt(itemPos + 4 * row);
+    }
+
+    @Override
+    public byte[] text(int column, int row) {
+        int offsets = textOffsetPos[column];
+        int start = buffer.getInt(offsets + 4 * row);
+        int end = buffer.getInt(offsets + 4 * (row + 1));
+        if (end <= start) {
+            return null;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(textHeapPos[column] + start, bytes);
+        return bytes;
+    }
+}
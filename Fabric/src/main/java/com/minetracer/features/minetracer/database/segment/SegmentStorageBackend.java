@@ -0,0 +1,646 @@
+package com.minetracer.features.minetracer.database.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.ItemStackCodec;
+import com.minetracer.features.minetracer.database.LogQuery;
+import com.minetracer.features.minetracer.database.MineTracerConsumer;
+import com.minetracer.features.minetracer.database.MineTracerLookup;
+import com.minetracer.features.minetracer.database.StorageBackend;
+import com.minetracer.features.minetracer.database.StorageStats;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Append-only columnar storage for write-heavy servers.
+ * Committed rows go to a sequential journal and an in-memory open segment. Once the open
+ * segment holds database.segment-rows rows it is sealed into an immutable, time-ordered
+ * segment file with a zone map (time, x and z bounds, users, worlds) that lookups read through
+ * a memory mapping, skipping every segment whose zone map rules the query out.
+ * Names are stored once in a dictionary, rollback flags in an append-only side file, and
+ * purging moves a cutoff forward and deletes segments that are wholly older as files.
+ */
+public class SegmentStorageBackend implements StorageBackend {
+
+    private static final String[] LOG_NAMES = {"container", "block", "sign", "kill", "item"};
+    private static final int KINDS = LOG_NAMES.length;
+
+    private final Path directory;
+    private final StringDictionary dictionary;
+
+    // Guards the open segment, the segment list and the purge cutoff
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held from ingest until the staged batch is committed or aborted; the consumer writes one batch at a time
+    private final ReentrantLock ingestLock = new ReentrantLock();
+
+    private volatile List<Segment> segments = new ArrayList<>();
+    private RowBuffer open = new RowBuffer();
+    private long openId = 1;
+    private volatile long cutoff = Long.MIN_VALUE;
+    private FileChannel journal;
+
+    private final LongOpenHashSet rolledBack = new LongOpenHashSet();
+    private DataOutputStream rolledBackOut;
+
+    public SegmentStorageBackend(Path directory) {
+        this.directory = directory;
+        this.dictionary = new StringDictionary(directory.resolve("strings.dat"));
+    }
+
+    @Override
+    public String getName() {
+        return "segments";
+    }
+
+    private static long rowId(long segment, int row) {
+        return (segment << 32) | row;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("segment-%010d.seg", id));
+    }
+
+    // ---- Lifecycle ----
+
+    @Override
+    public boolean initialize() {
+        try {
+            Files.createDirectories(directory);
+            dictionary.load();
+            loadCutoff();
+            loadRolledBack();
+
+            List<Segment> loaded = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".seg.tmp")) {
+                        // Left over from a seal that never finished; its rows are still in the journal
+                        Files.delete(file);
+                    } else if (name.startsWith("segment-") && name.endsWith(".seg")) {
+                        long id = Long.parseLong(name.substring(8, name.length() - 4));
+                        Segment segment = Segment.open(id, file);
+                        if (segment.maxTime < cutoff) {
+                            Files.deleteIfExists(file);
+                        } else {
+                            loaded.add(segment);
+                        }
+                        openId = Math.max(openId, id + 1);
+                    }
+                }
+            }
+            segments = loaded;
+            replayJournal();
+
+            System.out.println("[MineTracer] Segment store opened: " + loaded.size() + " segments, "
+                    + open.size() + " rows in the open segment");
+            return true;
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to open segment store in " + directory + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            // The open segment stays in the journal and is replayed on the next start
+            if (journal != null) {
+                journal.force(false);
+                journal.close();
+            }
+            if (rolledBackOut != null) {
+                rolledBackOut.close();
+            }
+            dictionary.close();
+        } catch (IOException e) {
+            System.err.println("[MineTracer] Error closing segment store: " + e.getMessage());
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        Path file = directory.resolve("journal.log");
+        long valid = 0;
+        if (Files.exists(file)) {
+            byte[] bytes = Files.readAllBytes(file);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            try {
+                if (bytes.length >= 8 && in.readLong() == openId) {
+                    valid = 8;
+                    while (in.available() > 0) {
+                        open.readRow(in);
+                        valid = bytes.length - in.available();
+                    }
+                }
+            } catch (EOFException e) {
+                // A batch cut short by a crash was never committed
+            }
+        }
+
+        journal = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (valid == 0) {
+            // Missing, or it belongs to a segment that was sealed before the journal was reset
+            startJournal();
+        } else {
+            journal.truncate(valid);
+            journal.position(valid);
+        }
+    }
+
+    private void startJournal() throws IOException {
+        journal.truncate(0);
+        journal.position(0);
+        ByteBuffer header = ByteBuffer.allocate(8).putLong(0, openId);
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        journal.force(false);
+    }
+
+    private void loadCutoff() throws IOException {
+        Path file = directory.resolve("cutoff.dat");
+        if (Files.exists(file)) {
+            cutoff = ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+        }
+    }
+
+    private void saveCutoff(long value) throws IOException {
+        Path file = directory.resolve("cutoff.dat");
+        Path temp = directory.resolve("cutoff.dat.tmp");
+        Files.write(temp, ByteBuffer.allocate(8).putLong(0, value).array());
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void loadRolledBack() throws IOException {
+        Path file = directory.resolve("rolledback.dat");
+        if (Files.exists(file)) {
+            ByteBuffer ids = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (ids.remaining() >= 8) {
+                rolledBack.add(ids.getLong());
+            }
+        }
+        rolledBackOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    // ---- Ingest ----
+
+    @Override
+    public StagedBatch ingest(List<MineTracerConsumer.QueueEntry> batch) throws Exception {
+        ingestLock.lock();
+        RowBuffer staged = new RowBuffer();
+        ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+        LongList markedIds = new LongArrayList();
+        try {
+            // Seal here rather than on commit, which runs while lookups are held off
+            if (open.size() >= MineTracerConfig.SEGMENT_ROWS) {
+                seal();
+            }
+
+            int base = open.size();
+            for (MineTracerConsumer.QueueEntry entry : batch) {
+                if (!stage(staged, entry)) {
+                    continue;
+                }
+                long id = rowId(openId, base + staged.size() - 1);
+                entry.rowId = id;
+                if (entry.rolledBack) {
+                    markedIds.add(id);
+                }
+            }
+
+            DataOutputStream out = new DataOutputStream(journalBytes);
+            for (int row = 0; row < staged.size(); row++) {
+                staged.writeRow(out, row);
+            }
+        } catch (Exception e) {
+            ingestLock.unlock();
+            throw e;
+        }
+
+        return new StagedBatch() {
+            // The processor aborts a batch whose commit failed, so the lock must only be released once
+            private boolean released = false;
+
+            @Override
+            public void commit() throws Exception {
+                long start = journal.position();
+                try {
+                    ByteBuffer bytes = ByteBuffer.wrap(journalBytes.toByteArray());
+                    while (bytes.hasRemaining()) {
+                        journal.write(bytes);
+                    }
+                } catch (IOException e) {
+                    // Cut off the partial batch so a replay never sees it
+                    journal.truncate(start);
+                    throw e;
+                }
+                lock.writeLock().lock();
+                try {
+                    open.addAll(staged);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                try {
+                    if (!markedIds.isEmpty()) {
+                        addRolledBack(markedIds);
+                    }
+                } finally {
+                    release();
+                }
+            }
+
+            @Override
+            public void abort() {
+                release();
+            }
+
+            private void release() {
+                if (!released) {
+                    released = true;
+                    ingestLock.unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Add one queued entry to the staged rows; false for entries that are not log rows
+     */
+    private boolean stage(RowBuffer staged, MineTracerConsumer.QueueEntry entry) throws IOException {
+        Object[] data = entry.data;
+        long time = entry.timestamp / 1000;
+        switch (entry.processType) {
+            case MineTracerConsumer.PROCESS_CONTAINER:
+            case MineTracerConsumer.PROCESS_ITEM: {
+                BlockPos pos = (BlockPos) data[2];
+                ItemStack stack = (ItemStack) data[3];
+                staged.add(time, entry.processType, dictionary.intern((String) data[1]), dictionary.intern((String) data[4]),
+                        pos.getX(), pos.getY(), pos.getZ(), dictionary.intern((String) data[0]), stack.getCount(),
+                        ItemStackCodec.materialId(stack), ItemStackCodec.serialize(stack), null);
+                return true;
+            }
+            case MineTracerConsumer.PROCESS_BLOCK:
+            case MineTracerConsumer.PROCESS_SIGN: {
+                BlockPos pos = (BlockPos) data[2];
+                staged.add(time, entry.processType, dictionary.intern((String) data[1]), dictionary.intern((String) data[5]),
+                        pos.getX(), pos.getY(), pos.getZ(), dictionary.intern((String) data[0]), 0, 0,
+                        utf8((String) data[3]), utf8((String) data[4]));
+                return true;
+            }
+            case MineTracerConsumer.PROCESS_KILL: {
+                BlockPos pos = (BlockPos) data[2];
+                int count = data.length > 4 ? (Integer) data[4] : 1;
+                staged.add(time, entry.processType, dictionary.intern((String) data[0]), dictionary.intern((String) data[3]),
+                        pos.getX(), pos.getY(), pos.getZ(), -1, count, 0, utf8((String) data[1]), null);
+                return true;
+            }
+            default:
+                // User and world rows only exist to give names ids, which the dictionary does on first use
+                return false;
+        }
+    }
+
+    private void seal() throws IOException {
+        if (open.size() == 0) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Path file = segmentPath(openId);
+        Segment.write(file, open);
+        Segment segment = Segment.open(openId, file);
+
+        lock.writeLock().lock();
+        try {
+            List<Segment> next = new ArrayList<>(segments);
+            next.add(segment);
+            segments = next;
+            open = new RowBuffer();
+            openId++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        startJournal();
+        System.out.println("[MineTracer] Sealed segment " + segment.id + " (" + segment.rows + " rows) in "
+                + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    // ---- Queries ----
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(RowSource rows, int row, long id, BlockPos pos);
+    }
+
+    @Override
+    public List<MineTracerLookup.ContainerLogEntry> queryContainers(LogQuery query) {
+        return scan(query, MineTracerConsumer.PROCESS_CONTAINER, (rows, row, id, pos) ->
+                new MineTracerLookup.ContainerLogEntry(dictionary.name(rows.action(row)), dictionary.name(rows.user(row)), pos,
+                        ItemStackCodec.deserialize(rows.text(0, row), rows.item(row), rows.amount(row)),
+                        Instant.ofEpochSecond(rows.time(row)), isRolledBack(id), id));
+    }
+
+    @Override
+    public List<MineTracerLookup.BlockLogEntry> queryBlocks(LogQuery query) {
+        return scan(query, MineTracerConsumer.PROCESS_BLOCK, (rows, row, id, pos) ->
+                new MineTracerLookup.BlockLogEntry(dictionary.name(rows.action(row)), dictionary.name(rows.user(row)), pos,
+                        string(rows.text(0, row)), string(rows.text(1, row)),
+                        Instant.ofEpochSecond(rows.time(row)), isRolledBack(id), id));
+    }
+
+    @Override
+    public List<MineTracerLookup.SignLogEntry> querySigns(LogQuery query) {
+        return scan(query, MineTracerConsumer.PROCESS_SIGN, (rows, row, id, pos) ->
+                new MineTracerLookup.SignLogEntry(dictionary.name(rows.action(row)), dictionary.name(rows.user(row)), pos,
+                        string(rows.text(0, row)), string(rows.text(1, row)),
+                        Instant.ofEpochSecond(rows.time(row)), isRolledBack(id), id));
+    }
+
+    @Override
+    public List<MineTracerLookup.KillLogEntry> queryKills(LogQuery query) {
+        return scan(query, MineTracerConsumer.PROCESS_KILL, (rows, row, id, pos) ->
+                new MineTracerLookup.KillLogEntry(dictionary.name(rows.user(row)), string(rows.text(0, row)), pos,
+                        dictionary.name(rows.world(row)), Instant.ofEpochSecond(rows.time(row)), isRolledBack(id),
+                        rows.amount(row)));
+    }
+
+    @Override
+    public List<MineTracerLookup.ItemPickupDropLogEntry> queryItems(LogQuery query) {
+        return scan(query, MineTracerConsumer.PROCESS_ITEM, (rows, row, id, pos) ->
+                new MineTracerLookup.ItemPickupDropLogEntry(dictionary.name(rows.action(row)), dictionary.name(rows.user(row)), pos,
+                        ItemStackCodec.deserialize(rows.text(0, row), rows.item(row), rows.amount(row)),
+                        dictionary.name(rows.world(row)), Instant.ofEpochSecond(rows.time(row)), isRolledBack(id)));
+    }
+
+    /**
+     * Newest-first scan of the open segment and then every sealed segment whose zone map
+     * allows a match, stopping at the query limit
+     */
+    private <T> List<T> scan(LogQuery query, int kind, RowMapper<T> mapper) {
+        List<T> results = new ArrayList<>();
+        int world = -1;
+        int user = -1;
+        if (query.world != null && (world = dictionary.find(query.world)) < 0) {
+            return results;
+        }
+        if (query.hasUser() && (user = dictionary.find(query.user)) < 0) {
+            return results;
+        }
+        int minX = Integer.MIN_VALUE;
+        int maxX = Integer.MAX_VALUE;
+        int minY = Integer.MIN_VALUE;
+        int maxY = Integer.MAX_VALUE;
+        int minZ = Integer.MIN_VALUE;
+        int maxZ = Integer.MAX_VALUE;
+        if (query.center != null) {
+            minX = query.center.getX() - query.range;
+            maxX = query.center.getX() + query.range;
+            minY = query.center.getY() - query.range;
+            maxY = query.center.getY() + query.range;
+            minZ = query.center.getZ() - query.range;
+            maxZ = query.center.getZ() + query.range;
+        }
+        int limit = query.hasLimit() ? query.limit : Integer.MAX_VALUE;
+        long from = cutoff;
+
+        List<Segment> sealed;
+        lock.readLock().lock();
+        try {
+            sealed = segments;
+            scanRows(open, openId, from, kind, world, user, minX, maxX, minY, maxY, minZ, maxZ, query, limit, mapper, results);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (int i = sealed.size() - 1; i >= 0 && results.size() < limit; i--) {
+            Segment segment = sealed.get(i);
+            if (segment.maxTime >= from && segment.mayContain(kind, world, user, minX, maxX, minZ, maxZ)) {
+                scanRows(segment, segment.id, from, kind, world, user, minX, maxX, minY, maxY, minZ, maxZ, query, limit, mapper, results);
+            }
+        }
+        return results;
+    }
+
+    private <T> void scanRows(RowSource rows, long segmentId, long from, int kind, int world, int user,
+                              int minX, int maxX, int minY, int maxY, int minZ, int maxZ,
+                              LogQuery query, int limit, RowMapper<T> mapper, List<T> results) {
+        for (int row = rows.size() - 1; row >= 0 && results.size() < limit; row--) {
+            if (rows.kind(row) != kind || rows.time(row) < from
+                    || (world >= 0 && rows.world(row) != world) || (user >= 0 && rows.user(row) != user)) {
+                continue;
+            }
+            int x = rows.x(row);
+            int y = rows.y(row);
+            int z = rows.z(row);
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                continue;
+            }
+            BlockPos pos = new BlockPos(x, y, z);
+            if (query.contains(pos)) {
+                results.add(mapper.map(rows, row, rowId(segmentId, row), pos));
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getUserNames() {
+        BitSet users = new BitSet();
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < open.size(); row++) {
+                users.set(open.user(row));
+            }
+            for (Segment segment : segments) {
+                users.or(segment.users);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Set<String> names = new HashSet<>();
+        for (int id = users.nextSetBit(0); id >= 0; id = users.nextSetBit(id + 1)) {
+            names.add(dictionary.name(id));
+        }
+        return names;
+    }
+
+    // ---- Maintenance ----
+
+    private boolean isRolledBack(long id) {
+        synchronized (rolledBack) {
+            return rolledBack.contains(id);
+        }
+    }
+
+    private int addRolledBack(LongList ids) throws IOException {
+        int added = 0;
+        synchronized (rolledBack) {
+            for (int i = 0; i < ids.size(); i++) {
+                long id = ids.getLong(i);
+                if (rolledBack.add(id)) {
+                    rolledBackOut.writeLong(id);
+                    added++;
+                }
+            }
+            rolledBackOut.flush();
+        }
+        return added;
+    }
+
+    @Override
+    public int markRolledBack(LongList containerIds, LongList blockIds, LongList signIds) throws IOException {
+        LongList existing = new LongArrayList();
+        lock.readLock().lock();
+        try {
+            for (LongList ids : List.of(containerIds, blockIds, signIds)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    if (exists(ids.getLong(i))) {
+                        existing.add(ids.getLong(i));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return addRolledBack(existing);
+    }
+
+    private boolean exists(long id) {
+        long segmentId = id >>> 32;
+        int row = (int) id;
+        if (segmentId == openId) {
+            return row >= 0 && row < open.size();
+        }
+        for (Segment segment : segments) {
+            if (segment.id == segmentId) {
+                return row >= 0 && row < segment.rows;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long purge(long beforeEpochSecond) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long previous = cutoff;
+            if (beforeEpochSecond <= previous) {
+                return 0;
+            }
+            long removed = countBetween(open, previous, beforeEpochSecond);
+            List<Segment> kept = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.minTime >= previous && segment.maxTime < beforeEpochSecond) {
+                    removed += segment.rows;
+                } else {
+                    removed += countBetween(segment, previous, beforeEpochSecond);
+                }
+                if (segment.maxTime < beforeEpochSecond) {
+                    // Retention drops whole files; a mapping that is still in use keeps the data readable until it is released
+                    try {
+                        Files.deleteIfExists(segment.file);
+                    } catch (IOException e) {
+                        System.err.println("[MineTracer] Could not delete " + segment.file + ", will retry on restart: " + e.getMessage());
+                    }
+                } else {
+                    kept.add(segment);
+                }
+            }
+            saveCutoff(beforeEpochSecond);
+            cutoff = beforeEpochSecond;
+            segments = kept;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long countBetween(RowSource rows, long from, long to) {
+        long count = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            long time = rows.time(row);
+            if (time >= from && time < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public StorageStats getStats() throws IOException {
+        long[] counts = new long[KINDS];
+        long from = cutoff;
+        lock.readLock().lock();
+        try {
+            countKinds(open, from, counts);
+            for (Segment segment : segments) {
+                if (segment.minTime >= from) {
+                    for (int kind = 0; kind < KINDS; kind++) {
+                        counts[kind] += segment.kindCounts[kind];
+                    }
+                } else {
+                    countKinds(segment, from, counts);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LinkedHashMap<String, Long> rows = new LinkedHashMap<>();
+        for (int kind = 0; kind < KINDS; kind++) {
+            rows.put(LOG_NAMES[kind], counts[kind]);
+        }
+        long size = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+        }
+        return new StorageStats(getName(), rows, size);
+    }
+
+    private static void countKinds(RowSource rows, long from, long[] counts) {
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.time(row) >= from) {
+                counts[rows.kind(row)]++;
+            }
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
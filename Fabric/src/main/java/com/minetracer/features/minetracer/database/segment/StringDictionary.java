@@ -0,0 +1,109 @@
+package com.minetracer.features.minetracer.database.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Append-only table of the user, world and action names the segments refer to by id.
+ * Ids are positions in the file, so a name keeps its id for the life of the store.
+ * Reads are lock-free; new names are added from the consumer thread.
+ */
+class StringDictionary {
+
+    private final Path file;
+    private final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int count = 0;
+    private DataOutputStream out;
+
+    StringDictionary(Path file) {
+        this.file = file;
+        ids.defaultReturnValue(-1);
+    }
+
+    void load() throws IOException {
+        long valid = 0;
+        if (Files.exists(file)) {
+            byte[] bytes = Files.readAllBytes(file);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            try {
+                while (in.available() > 0) {
+                    append(in.readUTF());
+                    valid = bytes.length - in.available();
+                }
+            } catch (EOFException e) {
+                // A name cut short by a crash is dropped; only rows that were never committed refer to it
+            }
+            if (valid < bytes.length) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * Id of a name, adding it if it is new
+     */
+    synchronized int intern(String name) throws IOException {
+        if (name == null) {
+            name = "";
+        }
+        int id = ids.getInt(name);
+        if (id >= 0) {
+            return id;
+        }
+        out.writeUTF(name);
+        out.flush();
+        return append(name);
+    }
+
+    /**
+     * Id of a known name, or -1
+     */
+    synchronized int find(String name) {
+        return ids.getInt(name);
+    }
+
+    String name(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    int size() {
+        return count;
+    }
+
+    synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private int append(String name) {
+        int id = count;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = name;
+        names = current;
+        ids.put(name, id);
+        count = id + 1;
+        return id;
+    }
+}
@@ -1,8 +1,10 @@
 package com.minetracer.features.minetracer.inspector;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.LookupScheduler;
 
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
@@ -51,6 +53,13 @@ public abstract class BaseInspector {
         lookupThrottle.put(playerName, new Object[] { false, System.currentTimeMillis() });
     }
     
+    /**
+     * Executor for inspector queries - highest priority lane, limited per player
+     */
+    protected Executor lookupExecutor(ServerPlayerEntity player) {
+        return LookupScheduler.executor(LookupScheduler.Priority.INTERACTIVE, player.getUuid());
+    }
+    
     /**
      * Send a formatted message to the player (CoreProtect style)
      */
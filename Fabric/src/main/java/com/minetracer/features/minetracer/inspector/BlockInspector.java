@@ -1,8 +1,5 @@
 package com.minetracer.features.minetracer.inspector;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-
 import com.minetracer.features.minetracer.database.MineTracerLookup;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.BlockPos;
@@ -17,20 +14,19 @@ public class BlockInspector extends BaseInspector {
      * Perform block lookup for left-clicked block (CoreProtect style)
      */
     public void performBlockLookup(ServerPlayerEntity player, BlockPos pos) {
-        // Run in separate thread like CoreProtect does
-        CompletableFuture.runAsync(() -> {
-            try {
-                checkPreconditions(player);
-                startInspection(player);
-                
-                String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
-                
-                // Get recent block logs at this position (limit to recent activity)
-                CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture = 
-                    MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName); // 0 range = exact position
-                
-                List<MineTracerLookup.BlockLogEntry> blockLogs = blockLogsFuture.get();
-                
+        try {
+            checkPreconditions(player);
+        } catch (InspectionException e) {
+            sendMessage(player, e.getMessage());
+            return;
+        }
+        startInspection(player);
+        
+        String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
+        
+        // Get recent block logs at this position (limit to recent activity)
+        MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName, 1000, lookupExecutor(player)) // 0 range = exact position
+            .thenAccept(blockLogs -> {
                 if (blockLogs.isEmpty()) {
                     sendMessage(player, "§3MineTracer §f- §7No block data found.");
                     return;
@@ -55,35 +51,32 @@ public class BlockInspector extends BaseInspector {
                 if (flatList.size() > queryContext.entriesPerPage) {
                     sendMessage(player, "§3MineTracer §f- §7Use §6/minetracer page <number> §7to view more results.");
                 }
-                
-            } catch (InspectionException e) {
-                sendMessage(player, e.getMessage());
-            } catch (Exception e) {
+            })
+            .exceptionally(throwable -> {
                 sendMessage(player, "§3MineTracer §f- §cError performing lookup.");
-                e.printStackTrace();
-            } finally {
-                finishInspection(player);
-            }
-        });
+                throwable.printStackTrace();
+                return null;
+            })
+            .whenComplete((ignored, throwable) -> finishInspection(player));
     }
     
     /**
      * Perform lookup for air blocks (when clicking on empty space)
      */
     public void performAirBlockLookup(ServerPlayerEntity player, BlockPos pos) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                checkPreconditions(player);
-                startInspection(player);
-                
-                String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
-                
-                // Get recent block logs at this position
-                CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture = 
-                    MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName);
-                
-                List<MineTracerLookup.BlockLogEntry> blockLogs = blockLogsFuture.get();
-                
+        try {
+            checkPreconditions(player);
+        } catch (InspectionException e) {
+            sendMessage(player, e.getMessage());
+            return;
+        }
+        startInspection(player);
+        
+        String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
+        
+        // Get recent block logs at this position
+        MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName, 1000, lookupExecutor(player))
+            .thenAccept(blockLogs -> {
                 if (blockLogs.isEmpty()) {
                     sendMessage(player, "§3MineTracer §f- §7No data found.");
                     return;
@@ -109,16 +102,13 @@ public class BlockInspector extends BaseInspector {
                     sendMessage(player, message);
                     count++;
                 }
-                
-            } catch (InspectionException e) {
-                sendMessage(player, e.getMessage());
-            } catch (Exception e) {
+            })
+            .exceptionally(throwable -> {
                 sendMessage(player, "§3MineTracer §f- §cError performing lookup.");
-                e.printStackTrace();
-            } finally {
-                finishInspection(player);
-            }
-        });
+                throwable.printStackTrace();
+                return null;
+            })
+            .whenComplete((ignored, throwable) -> finishInspection(player));
     }
     
     /**
@@ -2,6 +2,7 @@ package com.minetracer.features.minetracer.inspector;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.minetracer.features.minetracer.database.MineTracerLookup;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -18,73 +19,70 @@ public class ContainerInspector extends BaseInspector {
      * Perform container lookup for right-clicked container (CoreProtect style)
      */
     public void performContainerLookup(ServerPlayerEntity player, BlockPos pos) {
-        // Run in separate thread like CoreProtect does
-        CompletableFuture.runAsync(() -> {
-            try {
-                checkPreconditions(player);
-                startInspection(player);
-                
-                String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
-                
-                // Get recent container logs at this position (limit to recent activity)
-                CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> containerLogsFuture = 
-                    MineTracerLookup.getContainerLogsInRangeAsync(pos, 0, null, worldName); // 0 range = exact position
-                
-                List<MineTracerLookup.ContainerLogEntry> containerLogs = containerLogsFuture.get();
-                
-                if (containerLogs.isEmpty()) {
-                    // Try a 2-block radius search (handles double chests properly)
-                    CompletableFuture<List<MineTracerLookup.ContainerLogEntry>> nearbyLogsFuture =
-                        MineTracerLookup.getContainerLogsInRangeAsync(pos, 2, null, worldName);
-                    List<MineTracerLookup.ContainerLogEntry> nearbyLogs = nearbyLogsFuture.get();
-
-                    if (!nearbyLogs.isEmpty()) {
-                        containerLogs = nearbyLogs; // Use the nearby logs
-                    } else {
-                        // Let's also check if there are any container logs at all in the database
-                        try {
-                            List<MineTracerLookup.ContainerLogEntry> allLogs = MineTracerLookup.getContainerLogsInRangeAsync(pos, 100, null, worldName).get();
+        try {
+            checkPreconditions(player);
+        } catch (InspectionException e) {
+            sendMessage(player, e.getMessage());
+            return;
+        }
+        startInspection(player);
+        
+        String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
+        Executor executor = lookupExecutor(player);
+        
+        // Chain the fallbacks instead of blocking a worker on each query
+        MineTracerLookup.getContainerLogsInRangeAsync(pos, 0, null, worldName, executor) // 0 range = exact position
+            .thenCompose(containerLogs -> {
+                if (!containerLogs.isEmpty()) {
+                    return CompletableFuture.completedFuture(containerLogs);
+                }
+                // Try a 2-block radius search (handles double chests properly)
+                return MineTracerLookup.getContainerLogsInRangeAsync(pos, 2, null, worldName, executor);
+            })
+            .thenCompose(containerLogs -> {
+                if (!containerLogs.isEmpty()) {
+                    displayResults(player, pos, containerLogs);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                // Let's also check if there are any container logs at all in the database
+                return MineTracerLookup.getContainerLogsInRangeAsync(pos, 100, null, worldName, executor)
+                    .<Void>handle((allLogs, error) -> {
+                        if (error == null) {
                             sendMessage(player, "§3MineTracer §f- §7No container data found at exact position. Found " + allLogs.size() + " entries in 100-block range.");
-                        } catch (Exception e2) {
+                        } else {
                             sendMessage(player, "§3MineTracer §f- §7No container data found.");
                         }
-                        return;
-                    }
-                }
-                
-                if (containerLogs.isEmpty()) {
-                    return; // Still no logs after nearby search
-                }
-                
-                // Convert to FlatLogEntry format for paging system integration
-                java.util.List<com.minetracer.features.minetracer.MineTracerCommand.FlatLogEntry> flatList = new java.util.ArrayList<>();
-                for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
-                    flatList.add(new com.minetracer.features.minetracer.MineTracerCommand.FlatLogEntry(entry, "container"));
-                }
-                
-                // Store results in the paging system like regular lookup commands
-                String inspectorQuery = "inspector:container:" + pos.getX() + "," + pos.getY() + "," + pos.getZ();
-                com.minetracer.features.minetracer.MineTracerCommand.QueryContext queryContext = 
-                    new com.minetracer.features.minetracer.MineTracerCommand.QueryContext(flatList, inspectorQuery, pos);
-                com.minetracer.features.minetracer.MineTracerCommand.lastQueries.put(player.getUuid(), queryContext);
-                
-                // Display first page using existing display system
-                com.minetracer.features.minetracer.MineTracerCommand.displayPage(
-                    player.getCommandSource(), flatList, 1, queryContext.entriesPerPage);
-                
-                if (flatList.size() > queryContext.entriesPerPage) {
-                    sendMessage(player, "§3MineTracer §f- §7Use §6/minetracer page <number> §7to view more results.");
-                }
-                
-            } catch (InspectionException e) {
-                sendMessage(player, e.getMessage());
-            } catch (Exception e) {
+                        return null;
+                    });
+            })
+            .exceptionally(throwable -> {
                 sendMessage(player, "§3MineTracer §f- §cError performing container lookup.");
-                e.printStackTrace();
-            } finally {
-                finishInspection(player);
-            }
-        });
+                throwable.printStackTrace();
+                return null;
+            })
+            .whenComplete((ignored, throwable) -> finishInspection(player));
+    }
+    
+    private void displayResults(ServerPlayerEntity player, BlockPos pos, List<MineTracerLookup.ContainerLogEntry> containerLogs) {
+        // Convert to FlatLogEntry format for paging system integration
+        java.util.List<com.minetracer.features.minetracer.MineTracerCommand.FlatLogEntry> flatList = new java.util.ArrayList<>();
+        for (MineTracerLookup.ContainerLogEntry entry : containerLogs) {
+            flatList.add(new com.minetracer.features.minetracer.MineTracerCommand.FlatLogEntry(entry, "container"));
+        }
+        
+        // Store results in the paging system like regular lookup commands
+        String inspectorQuery = "inspector:container:" + pos.getX() + "," + pos.getY() + "," + pos.getZ();
+        com.minetracer.features.minetracer.MineTracerCommand.QueryContext queryContext = 
+            new com.minetracer.features.minetracer.MineTracerCommand.QueryContext(flatList, inspectorQuery, pos);
+        com.minetracer.features.minetracer.MineTracerCommand.lastQueries.put(player.getUuid(), queryContext);
+        
+        // Display first page using existing display system
+        com.minetracer.features.minetracer.MineTracerCommand.displayPage(
+            player.getCommandSource(), flatList, 1, queryContext.entriesPerPage);
+        
+        if (flatList.size() > queryContext.entriesPerPage) {
+            sendMessage(player, "§3MineTracer §f- §7Use §6/minetracer page <number> §7to view more results.");
+        }
     }
     
     /**
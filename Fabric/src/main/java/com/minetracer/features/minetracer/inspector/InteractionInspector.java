@@ -1,8 +1,5 @@
 package com.minetracer.features.minetracer.inspector;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-
 import com.minetracer.features.minetracer.database.MineTracerLookup;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.BlockPos;
@@ -17,20 +14,19 @@ public class InteractionInspector extends BaseInspector {
      * Perform interaction lookup for right-clicked block (CoreProtect style)
      */
     public void performInteractionLookup(ServerPlayerEntity player, BlockPos pos) {
-        // Run in separate thread like CoreProtect does
-        CompletableFuture.runAsync(() -> {
-            try {
-                checkPreconditions(player);
-                startInspection(player);
-                
-                String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
-                
-                // Get recent block logs at this position (shows who placed/broke what)
-                CompletableFuture<List<MineTracerLookup.BlockLogEntry>> blockLogsFuture = 
-                    MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName); // 0 range = exact position
-                
-                List<MineTracerLookup.BlockLogEntry> blockLogs = blockLogsFuture.get();
-                
+        try {
+            checkPreconditions(player);
+        } catch (InspectionException e) {
+            sendMessage(player, e.getMessage());
+            return;
+        }
+        startInspection(player);
+        
+        String worldName = player.getServerWorld().getRegistryKey().getValue().toString();
+        
+        // Get recent block logs at this position (shows who placed/broke what)
+        MineTracerLookup.getBlockLogsInRangeAsync(pos, 0, null, worldName, 1000, lookupExecutor(player)) // 0 range = exact position
+            .thenAccept(blockLogs -> {
                 if (blockLogs.isEmpty()) {
                     sendMessage(player, "§3MineTracer §f- §7No interaction data found.");
                     return;
@@ -55,16 +51,13 @@ public class InteractionInspector extends BaseInspector {
                 if (flatList.size() > queryContext.entriesPerPage) {
                     sendMessage(player, "§3MineTracer §f- §7Use §6/minetracer page <number> §7to view more results.");
                 }
-                
-            } catch (InspectionException e) {
-                sendMessage(player, e.getMessage());
-            } catch (Exception e) {
+            })
+            .exceptionally(throwable -> {
                 sendMessage(player, "§3MineTracer §f- §cError performing interaction lookup.");
-                e.printStackTrace();
-            } finally {
-                finishInspection(player);
-            }
-        });
+                throwable.printStackTrace();
+                return null;
+            })
+            .whenComplete((ignored, throwable) -> finishInspection(player));
     }
     
     /**
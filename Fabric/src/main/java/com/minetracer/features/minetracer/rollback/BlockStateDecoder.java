@@ -0,0 +1,141 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.StringNbtReader;
+import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Turns the stored block id and nbt string of a block log entry into a ready-to-place
+ * BlockState plus optional block entity NBT. Pure and thread-safe, so rollback plans
+ * are decoded on a ForkJoin pool and the server thread only places the results.
+ */
+public class BlockStateDecoder {
+
+    /**
+     * Decoded form of one block log entry
+     */
+    public static class Decoded {
+        public final BlockState state;
+        // Block entity data to restore, or null; callers must copy before modifying
+        public final NbtCompound blockEntityNbt;
+
+        Decoded(BlockState state, NbtCompound blockEntityNbt) {
+            this.state = state;
+            this.blockEntityNbt = blockEntityNbt;
+        }
+    }
+
+    // (blockId, properties string) -> state; block states are immutable and shared
+    private static final Cache<String, BlockState> stateCache = Caffeine.newBuilder()
+            .maximumSize(4096)
+            .build();
+
+    /**
+     * Decode every block step of a plan in parallel
+     */
+    public static void decodeAll(List<RollbackStep> steps) {
+        ForkJoinPool.commonPool().submit(() -> steps.parallelStream()
+                .filter(step -> step.kind == RollbackStep.Kind.BLOCK)
+                .forEach(RollbackStep::decode)).join();
+    }
+
+    /**
+     * Decode a stored block. Returns null if the block id is malformed, unknown or air.
+     * Handles three formats in priority order:
+     *   1. "[snowy=false,facing=north]" - new CoreProtect-style bracket format
+     *   2. "{Properties:{snowy:\"false\"}}" - previous SNBT format
+     *   3. "Block{minecraft:grass_block}[snowy=false]" - legacy toString format
+     */
+    public static Decoded decode(String blockId, String nbt) {
+        // A malformed id must only skip this entry, not fail the whole plan
+        Identifier id = blockId != null ? Identifier.tryParse(blockId) : null;
+        if (id == null) {
+            return null;
+        }
+        Block block = Registries.BLOCK.get(id);
+        if (block == null || block == Blocks.AIR) {
+            return null;
+        }
+
+        String propsSection = null;
+        NbtCompound blockEntityNbt = null;
+
+        if (nbt != null && !nbt.isEmpty()) {
+            if (nbt.startsWith("[")) {
+                // Format 1: CoreProtect-style bracket properties
+                int end = nbt.indexOf(']');
+                if (end > 1) {
+                    propsSection = nbt.substring(1, end);
+                }
+            } else if (nbt.startsWith("{")) {
+                // Format 2: SNBT
+                NbtCompound compound;
+                try {
+                    compound = StringNbtReader.parse(nbt);
+                } catch (Exception ex) {
+                    compound = new NbtCompound();
+                }
+                if (compound.contains("Properties") && compound.get("Properties") instanceof NbtCompound props) {
+                    StringBuilder sb = new StringBuilder();
+                    for (String key : props.getKeys()) {
+                        if (sb.length() > 0) sb.append(',');
+                        sb.append(key).append('=').append(props.getString(key));
+                    }
+                    propsSection = sb.toString();
+                }
+                if (compound.contains("BlockEntityTag") && compound.get("BlockEntityTag") instanceof NbtCompound bet) {
+                    blockEntityNbt = bet;
+                }
+            } else if (nbt.startsWith("Block{")) {
+                // Format 3: legacy toString
+                int bracketStart = nbt.indexOf('[');
+                int bracketEnd = nbt.lastIndexOf(']');
+                if (bracketStart != -1 && bracketEnd > bracketStart) {
+                    propsSection = nbt.substring(bracketStart + 1, bracketEnd);
+                }
+            }
+        }
+
+        String props = propsSection != null ? propsSection : "";
+        BlockState state = stateCache.get(blockId + '|' + props, key -> applyProperties(block.getDefaultState(), props));
+        return new Decoded(state, blockEntityNbt);
+    }
+
+    private static BlockState applyProperties(BlockState blockState, String propsSection) {
+        if (propsSection.isEmpty()) {
+            return blockState;
+        }
+        for (String kv : propsSection.split(",")) {
+            String[] pair = kv.trim().split("=", 2);
+            if (pair.length == 2) {
+                String key = pair[0].trim();
+                String value = pair[1].trim();
+                Property<?> prop = blockState.getBlock().getStateManager().getProperty(key);
+                if (prop != null) {
+                    blockState = withProperty(blockState, prop, value);
+                }
+            }
+        }
+        return blockState;
+    }
+
+    private static <T extends Comparable<T>> BlockState withProperty(BlockState state, Property<T> property, String value) {
+        Optional<T> parsedValue = property.parse(value);
+        if (parsedValue.isPresent()) {
+            return state.with(property, parsedValue.get());
+        }
+        return state;
+    }
+}
@@ -0,0 +1,63 @@
+package com.minetracer.features.minetracer.rollback;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-container totals of a rollback job, reported when the job finishes
+ */
+public class ContainerReport {
+
+    private static final int MAX_LINES = 10;
+
+    private static class Totals {
+        int added = 0;
+        int removed = 0;
+        // Items that could not be added (container full) or removed (no longer there)
+        int missing = 0;
+    }
+
+    private final Long2ObjectLinkedOpenHashMap<Totals> containers = new Long2ObjectLinkedOpenHashMap<>();
+
+    void record(BlockPos pos, int requested, int applied) {
+        Totals totals = containers.computeIfAbsent(pos.asLong(), k -> new Totals());
+        if (applied > 0) {
+            totals.added += applied;
+        } else {
+            totals.removed -= applied;
+        }
+        totals.missing += Math.abs(requested) - Math.abs(applied);
+    }
+
+    boolean isEmpty() {
+        return containers.isEmpty();
+    }
+
+    /**
+     * One line per container, capped so a large rollback does not flood the chat
+     */
+    List<Text> toLines() {
+        List<Text> lines = new ArrayList<>();
+        for (Long2ObjectLinkedOpenHashMap.Entry<Totals> entry : containers.long2ObjectEntrySet()) {
+            if (lines.size() == MAX_LINES) {
+                lines.add(Text.literal("  ... and " + (containers.size() - MAX_LINES) + " more containers")
+                        .formatted(Formatting.GRAY));
+                break;
+            }
+            Totals totals = entry.getValue();
+            BlockPos pos = BlockPos.fromLong(entry.getLongKey());
+            String line = "  " + pos.getX() + " " + pos.getY() + " " + pos.getZ() + ": +" + totals.added + " / -" + totals.removed + " items";
+            if (totals.missing > 0) {
+                line += " (" + totals.missing + " could not be applied)";
+            }
+            lines.add(Text.literal(line).formatted(totals.missing > 0 ? Formatting.YELLOW : Formatting.GRAY));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,255 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.minetracer.features.minetracer.database.MineTracerLookup;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Client-side ghost block previews of a rollback.
+ * The compacted plan is turned into one ChunkDeltaUpdate packet per chunk section off the
+ * server thread; the packets are then streamed to the player a few sections per tick, nearest
+ * first. Every previewed section is remembered so the preview can be reverted by resending
+ * the real blocks.
+ */
+public class GhostPreview {
+
+    private static final int SECTIONS_PER_TICK = 32;
+
+    /**
+     * One section to send: a prebuilt preview packet, or a revert (packet == null)
+     */
+    private static class PendingSection {
+        final long sectionKey;
+        final ShortSet positions;
+        final ChunkDeltaUpdateS2CPacket packet;
+
+        PendingSection(long sectionKey, ShortSet positions, ChunkDeltaUpdateS2CPacket packet) {
+            this.sectionKey = sectionKey;
+            this.positions = positions;
+            this.packet = packet;
+        }
+    }
+
+    private static class Session {
+        final RegistryKey<World> world;
+        final ArrayDeque<PendingSection> queue = new ArrayDeque<>();
+        // Sections the client currently shows ghost blocks in
+        final Long2ObjectMap<ShortSet> shown = new Long2ObjectOpenHashMap<>();
+
+        Session(RegistryKey<World> world) {
+            this.world = world;
+        }
+    }
+
+    // Server thread only
+    private static final Map<UUID, Session> sessions = new HashMap<>();
+    private static final Map<UUID, Long> latestRequest = new HashMap<>();
+    private static long nextRequest = 0;
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(GhostPreview::tick);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            sessions.remove(handler.player.getUuid());
+            latestRequest.remove(handler.player.getUuid());
+        });
+    }
+
+    /**
+     * Preview a rollback plan for a player, replacing any preview they already see.
+     * Completes on the server thread with the number of ghost blocks queued.
+     */
+    public static CompletableFuture<Integer> show(ServerPlayerEntity player, ServerWorld world, List<RollbackStep> steps) {
+        UUID playerId = player.getUuid();
+        long request = ++nextRequest;
+        latestRequest.put(playerId, request);
+        long origin = ChunkSectionPos.from(player.getBlockPos()).asLong();
+
+        return CompletableFuture.supplyAsync(() -> build(steps, origin), ForkJoinPool.commonPool())
+                .thenApplyAsync(sections -> {
+                    Long latest = latestRequest.get(playerId);
+                    if (latest == null || latest != request) {
+                        // Superseded by a newer preview or the player left
+                        return 0;
+                    }
+                    Session session = revert(playerId, world.getRegistryKey());
+                    int blocks = 0;
+                    for (PendingSection section : sections) {
+                        session.queue.add(section);
+                        blocks += section.positions.size();
+                    }
+                    return blocks;
+                }, world.getServer());
+    }
+
+    /**
+     * Remove a player's preview. Returns false if they have none.
+     */
+    public static boolean clear(ServerPlayerEntity player) {
+        Session session = sessions.get(player.getUuid());
+        if (session == null) {
+            return false;
+        }
+        latestRequest.remove(player.getUuid());
+        revert(player.getUuid(), session.world);
+        return true;
+    }
+
+    /**
+     * Drop unsent preview sections and queue a revert of every shown section.
+     * Returns the player's session for the given world.
+     */
+    private static Session revert(UUID playerId, RegistryKey<World> world) {
+        Session old = sessions.get(playerId);
+        Session session = new Session(world);
+        if (old != null && old.world == world) {
+            for (Long2ObjectMap.Entry<ShortSet> entry : old.shown.long2ObjectEntrySet()) {
+                session.queue.add(new PendingSection(entry.getLongKey(), entry.getValue(), null));
+            }
+        }
+        sessions.put(playerId, session);
+        return session;
+    }
+
+    /**
+     * Group the plan's block outcomes by section and encode one packet per section.
+     * Runs off the server thread.
+     */
+    private static List<PendingSection> build(List<RollbackStep> steps, long origin) {
+        List<RollbackStep> blockSteps = new ArrayList<>();
+        for (RollbackStep step : steps) {
+            if (step.kind == RollbackStep.Kind.BLOCK) {
+                blockSteps.add(step);
+            }
+        }
+
+        Long2ObjectMap<Short2ObjectMap<BlockState>> bySection = new Long2ObjectOpenHashMap<>();
+        for (RollbackStep step : RollbackPlanner.compact(blockSteps)) {
+            MineTracerLookup.BlockLogEntry entry = (MineTracerLookup.BlockLogEntry) step.entry;
+            BlockState state;
+            if ("broke".equals(entry.action)) {
+                BlockStateDecoder.Decoded decoded = BlockStateDecoder.decode(entry.blockId, entry.nbt);
+                if (decoded == null) {
+                    continue;
+                }
+                state = decoded.state;
+            } else if ("placed".equals(entry.action)) {
+                state = Blocks.AIR.getDefaultState();
+            } else {
+                continue;
+            }
+            BlockPos pos = entry.pos;
+            bySection.computeIfAbsent(ChunkSectionPos.from(pos).asLong(), k -> new Short2ObjectOpenHashMap<>())
+                    .put(ChunkSectionPos.packLocal(pos), state);
+        }
+
+        // Nearest sections first so the player sees the area around them right away
+        ChunkSectionPos center = ChunkSectionPos.from(origin);
+        List<Long> keys = new ArrayList<>(bySection.keySet());
+        keys.sort(Comparator.comparingLong(key -> {
+            ChunkSectionPos pos = ChunkSectionPos.from(key);
+            long dx = pos.getSectionX() - center.getSectionX();
+            long dy = pos.getSectionY() - center.getSectionY();
+            long dz = pos.getSectionZ() - center.getSectionZ();
+            return dx * dx + dy * dy + dz * dz;
+        }));
+
+        List<PendingSection> sections = new ArrayList<>(keys.size());
+        for (long key : keys) {
+            Short2ObjectMap<BlockState> states = bySection.get(key);
+            sections.add(new PendingSection(key, new ShortOpenHashSet(states.keySet()), encode(key, states)));
+        }
+        return sections;
+    }
+
+    /**
+     * Encode a section update from states that are not in the world, in the packet's wire format
+     */
+    private static ChunkDeltaUpdateS2CPacket encode(long sectionKey, Short2ObjectMap<BlockState> states) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        buf.writeLong(sectionKey);
+        buf.writeVarInt(states.size());
+        for (Short2ObjectMap.Entry<BlockState> entry : states.short2ObjectEntrySet()) {
+            buf.writeVarLong((long) Block.getRawIdFromState(entry.getValue()) << 12 | entry.getShortKey());
+        }
+        return new ChunkDeltaUpdateS2CPacket(buf);
+    }
+
+    private static void tick(MinecraftServer server) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+
+        Iterator<Map.Entry<UUID, Session>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Session> entry = it.next();
+            Session session = entry.getValue();
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            if (player == null || player.getServerWorld().getRegistryKey() != session.world) {
+                // Changing dimension reloads every chunk on the client
+                it.remove();
+                continue;
+            }
+
+            ServerWorld world = player.getServerWorld();
+            for (int sent = 0; sent < SECTIONS_PER_TICK && !session.queue.isEmpty(); sent++) {
+                PendingSection section = session.queue.poll();
+                if (section.packet != null) {
+                    player.networkHandler.sendPacket(section.packet);
+                    ShortSet shown = session.shown.computeIfAbsent(section.sectionKey, k -> new ShortOpenHashSet());
+                    shown.addAll(section.positions);
+                } else {
+                    sendRealBlocks(player, world, section);
+                    session.shown.remove(section.sectionKey);
+                }
+            }
+
+            if (session.queue.isEmpty() && session.shown.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static void sendRealBlocks(ServerPlayerEntity player, ServerWorld world, PendingSection section) {
+        ChunkSectionPos sectionPos = ChunkSectionPos.from(section.sectionKey);
+        // The client drops unloaded chunks along with their ghost blocks
+        if (!world.getChunkManager().isChunkLoaded(sectionPos.getSectionX(), sectionPos.getSectionZ())) {
+            return;
+        }
+        ChunkSection chunkSection = world.getChunk(sectionPos.getSectionX(), sectionPos.getSectionZ())
+                .getSection(world.sectionCoordToIndex(sectionPos.getSectionY()));
+        player.networkHandler.sendPacket(new ChunkDeltaUpdateS2CPacket(sectionPos, section.positions, chunkSection));
+    }
+}
@@ -0,0 +1,120 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the chunks a rollback job is about to touch loaded with temporary chunk tickets.
+ * Chunks ahead of the job's cursor are requested early so the chunk system loads them off
+ * the server thread; the job only applies a step once its chunk is ready, and each ticket
+ * is released as soon as the job has applied every step it was requested for. Steps of
+ * different kinds revisit the same chunks, so a chunk may be ticketed again later on.
+ * Server thread only.
+ */
+public class RollbackChunkLoader {
+
+    // Ticket level 33: chunk fully loaded but not ticking, and kept until removed
+    public static final ChunkTicketType<ChunkPos> ROLLBACK_TICKET =
+            ChunkTicketType.create("minetracer_rollback", Comparator.comparingLong(ChunkPos::toLong));
+
+    private final List<RollbackStep> steps;
+    // Chunk -> prefetched steps in that chunk that have not been applied yet
+    private final Long2IntOpenHashMap pending = new Long2IntOpenHashMap();
+    private final LongLinkedOpenHashSet tickets = new LongLinkedOpenHashSet();
+    private ServerWorld world = null;
+    private int prefetchCursor = 0;
+
+    RollbackChunkLoader(List<RollbackStep> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Request tickets for upcoming chunks and report whether the step at the cursor can be applied
+     */
+    boolean isReady(ServerWorld world, int cursor) {
+        if (this.world != world) {
+            releaseAll();
+            this.world = world;
+        }
+        if (prefetchCursor < cursor) {
+            prefetchCursor = cursor;
+        }
+
+        // Look ahead until the ticket budget is used; consecutive steps mostly share a chunk
+        int limit = Math.max(1, MineTracerConfig.ROLLBACK_MAX_LOADED_CHUNKS);
+        while (prefetchCursor < steps.size()) {
+            long key = chunkKey(steps.get(prefetchCursor).getPos());
+            if (!tickets.contains(key)) {
+                if (tickets.size() >= limit) {
+                    break;
+                }
+                addTicket(key);
+            }
+            pending.addTo(key, 1);
+            prefetchCursor++;
+        }
+
+        // Never wait on the budget for the chunk the job is standing in
+        BlockPos pos = steps.get(cursor).getPos();
+        long key = chunkKey(pos);
+        if (!tickets.contains(key)) {
+            addTicket(key);
+        }
+        return world.getChunkManager().isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    /**
+     * Release the ticket of a chunk once the job has applied every prefetched step there
+     */
+    void stepDone(int index) {
+        long key = chunkKey(steps.get(index).getPos());
+        if (index < prefetchCursor && pending.addTo(key, -1) > 1) {
+            return;
+        }
+        pending.remove(key);
+        if (tickets.remove(key) && world != null) {
+            ChunkPos chunkPos = new ChunkPos(key);
+            world.getChunkManager().removeTicket(ROLLBACK_TICKET, chunkPos, 0, chunkPos);
+        }
+    }
+
+    private void addTicket(long key) {
+        ChunkPos chunkPos = new ChunkPos(key);
+        world.getChunkManager().addTicket(ROLLBACK_TICKET, chunkPos, 0, chunkPos);
+        tickets.add(key);
+    }
+
+    /**
+     * Drop every ticket this job holds, e.g. when it is paused, cancelled or finished
+     */
+    void releaseAll() {
+        if (world != null) {
+            ServerChunkManager chunkManager = world.getChunkManager();
+            LongIterator it = tickets.iterator();
+            while (it.hasNext()) {
+                ChunkPos chunkPos = new ChunkPos(it.nextLong());
+                chunkManager.removeTicket(ROLLBACK_TICKET, chunkPos, 0, chunkPos);
+            }
+        }
+        tickets.clear();
+        pending.clear();
+        prefetchCursor = 0;
+        world = null;
+    }
+
+    private static long chunkKey(BlockPos pos) {
+        return ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+}
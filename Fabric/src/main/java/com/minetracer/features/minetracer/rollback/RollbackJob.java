@@ -0,0 +1,142 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A rollback, restore or undo operation applied incrementally over several ticks.
+ * The step list is fixed when the job is created; only the cursor and counters move.
+ */
+public class RollbackJob {
+
+    public enum State {
+        RUNNING,
+        PAUSED,
+        CANCELLED,
+        FINISHED
+    }
+
+    public final int id;
+    public final UUID owner;
+    public final String ownerName;
+    // "rollback", "restore" or "undo"
+    public final String type;
+    public final String worldKey;
+    public final List<RollbackStep> steps;
+    // Whether the finished job is stored as the owner's undoable operation
+    public final boolean recordUndo;
+    public final long createdAt;
+
+    volatile State state = State.RUNNING;
+    int cursor = 0;
+    int succeeded = 0;
+    int failed = 0;
+    long lastProgressReport = 0;
+    boolean dirty = false;
+    // Chunk tickets for the steps ahead of the cursor; not persisted
+    final RollbackChunkLoader chunkLoader;
+    // Per-container outcome of container steps; not persisted
+    final ContainerReport containerReport = new ContainerReport();
+    // Before-images of changed positions; null unless recordUndo
+    UndoJournal journal = null;
+
+    RollbackJob(int id, UUID owner, String ownerName, String type, String worldKey,
+                List<RollbackStep> steps, boolean recordUndo, long createdAt) {
+        this.id = id;
+        this.owner = owner;
+        this.ownerName = ownerName;
+        this.type = type;
+        this.worldKey = worldKey;
+        this.steps = steps;
+        this.recordUndo = recordUndo;
+        this.createdAt = createdAt;
+        this.chunkLoader = new RollbackChunkLoader(steps);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getProcessed() {
+        return cursor;
+    }
+
+    public int getTotal() {
+        return steps.size();
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public boolean isDone() {
+        return cursor >= steps.size();
+    }
+
+    public int getPercent() {
+        return steps.isEmpty() ? 100 : (int) (cursor * 100L / steps.size());
+    }
+
+    // =========================
+    // PERSISTENCE
+    // =========================
+
+    /**
+     * Full job description; written once when the job is created
+     */
+    JsonObject toJson() {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("id", id);
+        obj.addProperty("owner", owner != null ? owner.toString() : null);
+        obj.addProperty("ownerName", ownerName);
+        obj.addProperty("type", type);
+        obj.addProperty("world", worldKey);
+        obj.addProperty("recordUndo", recordUndo);
+        obj.addProperty("createdAt", createdAt);
+        JsonArray stepArray = new JsonArray();
+        for (RollbackStep step : steps) {
+            stepArray.add(step.toJson());
+        }
+        obj.add("steps", stepArray);
+        return obj;
+    }
+
+    /**
+     * Progress checkpoint; small enough to rewrite every few seconds
+     */
+    JsonObject progressToJson() {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("state", state.name());
+        obj.addProperty("cursor", cursor);
+        obj.addProperty("succeeded", succeeded);
+        obj.addProperty("failed", failed);
+        return obj;
+    }
+
+    static RollbackJob fromJson(JsonObject obj, JsonObject progress) throws Exception {
+        List<RollbackStep> steps = new ArrayList<>();
+        for (JsonElement element : obj.getAsJsonArray("steps")) {
+            steps.add(RollbackStep.fromJson(element.getAsJsonObject()));
+        }
+        UUID owner = obj.get("owner").isJsonNull() ? null : UUID.fromString(obj.get("owner").getAsString());
+        RollbackJob job = new RollbackJob(obj.get("id").getAsInt(), owner, obj.get("ownerName").getAsString(),
+                obj.get("type").getAsString(), obj.get("world").getAsString(), steps,
+                obj.get("recordUndo").getAsBoolean(), obj.get("createdAt").getAsLong());
+        if (progress != null) {
+            job.state = State.valueOf(progress.get("state").getAsString());
+            job.cursor = progress.get("cursor").getAsInt();
+            job.succeeded = progress.get("succeeded").getAsInt();
+            job.failed = progress.get("failed").getAsInt();
+        }
+        return job;
+    }
+}
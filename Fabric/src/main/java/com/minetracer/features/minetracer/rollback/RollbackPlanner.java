@@ -0,0 +1,128 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.minetracer.features.minetracer.database.MineTracerLookup;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.Registries;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds an ordered step list into one step per affected target before anything touches the world.
+ * A position broken and placed twenty times becomes a single block write, and every transaction
+ * on the same item in the same container becomes one net item delta.
+ */
+public class RollbackPlanner {
+
+    // Chunk column first, then section height; equal positions end up next to each other
+    private static final Comparator<RollbackStep> SECTION_ORDER = Comparator
+            .comparingInt((RollbackStep step) -> step.getPos().getX() >> 4)
+            .thenComparingInt(step -> step.getPos().getZ() >> 4)
+            .thenComparingInt(step -> step.getPos().getY() >> 4)
+            .thenComparingLong(step -> step.getPos().asLong());
+
+    /**
+     * Working state for one fold key
+     */
+    private static class Group {
+        final RollbackStep.Kind kind;
+        final boolean rollback;
+        Object decisive;
+        final List<Object> others = new ArrayList<>();
+        int delta = 0;
+
+        Group(RollbackStep.Kind kind, boolean rollback, Object first) {
+            this.kind = kind;
+            this.rollback = rollback;
+            this.decisive = first;
+        }
+    }
+
+    /**
+     * Compact a step list. Each target keeps the slot of its first step, so the relative
+     * order of blocks, containers and signs chosen by the command is preserved.
+     *
+     * Rolling back a run of entries leaves a position as it was before the oldest one,
+     * so the oldest entry decides the outcome. Restoring leaves it as it was after the
+     * newest one. Container transactions are summed per container and item.
+     */
+    public static List<RollbackStep> compact(List<RollbackStep> steps) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (RollbackStep step : steps) {
+            for (Object entry : step.getEntries()) {
+                String key = foldKey(step.kind, step.rollback, entry);
+                Group group = groups.get(key);
+                if (group == null) {
+                    group = new Group(step.kind, step.rollback, entry);
+                    groups.put(key, group);
+                } else if (decides(step.kind, step.rollback, entry, group.decisive)) {
+                    group.others.add(group.decisive);
+                    group.decisive = entry;
+                } else {
+                    group.others.add(entry);
+                }
+                if (step.kind == RollbackStep.Kind.CONTAINER) {
+                    group.delta += RollbackStep.containerDelta((MineTracerLookup.ContainerLogEntry) entry, step.rollback);
+                }
+            }
+        }
+
+        List<RollbackStep> planned = new ArrayList<>(groups.size());
+        for (Group group : groups.values()) {
+            planned.add(new RollbackStep(group.kind, group.rollback, group.decisive, group.others, group.delta));
+        }
+        orderBySection(planned);
+        return planned;
+    }
+
+    /**
+     * Sort each run of same-kind steps by chunk and then section, so a job finishes one
+     * section before moving to the next instead of jumping around the world.
+     * Runs keep their relative order, so blocks are still placed before their contents.
+     * All item changes of one container become adjacent and are applied in one inventory pass.
+     */
+    static void orderBySection(List<RollbackStep> steps) {
+        int start = 0;
+        while (start < steps.size()) {
+            RollbackStep.Kind kind = steps.get(start).kind;
+            boolean rollback = steps.get(start).rollback;
+            int end = start + 1;
+            while (end < steps.size() && steps.get(end).kind == kind && steps.get(end).rollback == rollback) {
+                end++;
+            }
+            steps.subList(start, end).sort(SECTION_ORDER);
+            start = end;
+        }
+    }
+
+    /**
+     * Whether a candidate entry should replace the current deciding entry.
+     * Lookup results arrive newest first, so on equal timestamps the later
+     * candidate is the older entry.
+     */
+    private static boolean decides(RollbackStep.Kind kind, boolean rollback, Object candidate, Object current) {
+        int cmp = RollbackStep.getTimestamp(kind, candidate).compareTo(RollbackStep.getTimestamp(kind, current));
+        return rollback ? cmp <= 0 : cmp > 0;
+    }
+
+    private static String foldKey(RollbackStep.Kind kind, boolean rollback, Object entry) {
+        StringBuilder key = new StringBuilder(64);
+        key.append(kind.name()).append(rollback ? '-' : '+').append(RollbackStep.getPos(kind, entry).asLong());
+        if (kind == RollbackStep.Kind.CONTAINER) {
+            // Stacks only cancel out when they would also merge in an inventory
+            MineTracerLookup.ContainerLogEntry e = (MineTracerLookup.ContainerLogEntry) entry;
+            NbtCompound nbt = e.stack.getNbt();
+            key.append('|').append(Registries.ITEM.getId(e.stack.getItem()));
+            if (nbt != null) {
+                key.append(nbt);
+            }
+        } else if (kind == RollbackStep.Kind.SIGN) {
+            key.append('|').append(((MineTracerLookup.SignLogEntry) entry).action);
+        }
+        return key.toString();
+    }
+}
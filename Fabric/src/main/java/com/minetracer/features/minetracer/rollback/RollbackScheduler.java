@@ -0,0 +1,468 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.minetracer.features.minetracer.MineTracerCommand;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import com.minetracer.features.minetracer.database.MineTracerLookup;
+import com.minetracer.features.minetracer.database.RolledBackMarker;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies rollback jobs on the server thread within a fixed time budget per tick.
+ * Jobs are persisted under config/minetracer/jobs so interrupted jobs resume after a restart.
+ * All job state is owned by the server thread; only file writes happen in the background.
+ */
+public class RollbackScheduler {
+
+    private static final Path JOBS_DIR = Path.of("config", "minetracer", "jobs");
+    private static final Gson GSON = new Gson();
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+    private static final int CHECKPOINT_INTERVAL_TICKS = 100;
+
+    private static final Map<Integer, RollbackJob> jobs = new LinkedHashMap<>();
+    private static int nextId = 1;
+    private static int roundRobin = 0;
+    private static int ticksSinceCheckpoint = 0;
+
+    private static final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "MineTracer-Jobs");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Register tick and lifecycle hooks
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(RollbackScheduler::loadJobs);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> checkpointAll(true));
+        ServerTickEvents.END_SERVER_TICK.register(RollbackScheduler::tick);
+    }
+
+    /**
+     * Create and start a job. Must be called on the server thread.
+     */
+    public static RollbackJob submit(UUID owner, String ownerName, String type, ServerWorld world,
+                                     List<RollbackStep> steps, boolean recordUndo) {
+        RollbackJob job = new RollbackJob(nextId++, owner, ownerName, type,
+                world.getRegistryKey().getValue().toString(), steps, recordUndo, System.currentTimeMillis());
+        if (recordUndo) {
+            job.journal = UndoJournal.create(journalFile(job.id), type, job.worldKey);
+        }
+        jobs.put(job.id, job);
+
+        // Steps are immutable from here on, so they can be serialized off-thread
+        ioExecutor.execute(() -> writeJson(jobFile(job.id), job.toJson()));
+        checkpoint(job);
+        return job;
+    }
+
+    /**
+     * Run a task on the job file writer once every file write queued so far has finished
+     */
+    public static void afterPendingWrites(Runnable task) {
+        ioExecutor.execute(task);
+    }
+
+    public static RollbackJob getJob(int id) {
+        return jobs.get(id);
+    }
+
+    public static Collection<RollbackJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public static boolean pause(int id) {
+        RollbackJob job = jobs.get(id);
+        if (job == null || job.state != RollbackJob.State.RUNNING) {
+            return false;
+        }
+        job.state = RollbackJob.State.PAUSED;
+        job.chunkLoader.releaseAll();
+        checkpoint(job);
+        return true;
+    }
+
+    public static boolean resume(int id) {
+        RollbackJob job = jobs.get(id);
+        if (job == null || job.state != RollbackJob.State.PAUSED) {
+            return false;
+        }
+        job.state = RollbackJob.State.RUNNING;
+        checkpoint(job);
+        return true;
+    }
+
+    /**
+     * Stop a job. Changes applied so far stay in the world and become the owner's undoable operation.
+     */
+    public static boolean cancel(int id) {
+        RollbackJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        job.state = RollbackJob.State.CANCELLED;
+        job.chunkLoader.releaseAll();
+        if (job.journal != null && !job.journal.isEmpty()) {
+            commitJournal(job);
+        }
+        RolledBackMarker.flush();
+        deleteFiles(job.id);
+        return true;
+    }
+
+    // =========================
+    // TICK PROCESSING
+    // =========================
+
+    private static void tick(MinecraftServer server) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        List<RollbackJob> running = new ArrayList<>();
+        for (RollbackJob job : jobs.values()) {
+            if (job.state == RollbackJob.State.RUNNING) {
+                running.add(job);
+            }
+        }
+
+        if (!running.isEmpty()) {
+            long deadline = System.nanoTime() + Math.max(1, MineTracerConfig.ROLLBACK_TICK_BUDGET_MS) * 1_000_000L;
+            // Rotate the starting job so concurrent jobs share the budget fairly
+            int start = roundRobin++ % running.size();
+            for (int i = 0; i < running.size(); i++) {
+                if (i > 0 && System.nanoTime() >= deadline) {
+                    break;
+                }
+                runJob(server, running.get((start + i) % running.size()), deadline);
+            }
+        }
+
+        if (++ticksSinceCheckpoint >= CHECKPOINT_INTERVAL_TICKS) {
+            ticksSinceCheckpoint = 0;
+            checkpointAll(false);
+        }
+    }
+
+    private static void runJob(MinecraftServer server, RollbackJob job, long deadline) {
+        ServerWorld world = resolveWorld(server, job.worldKey);
+        if (world == null) {
+            job.state = RollbackJob.State.PAUSED;
+            job.chunkLoader.releaseAll();
+            notifyOwner(server, job, Text.literal("[MineTracer] " + capitalize(job.type) + " job #" + job.id
+                    + " paused: world " + job.worldKey + " is not loaded.").formatted(Formatting.RED), false);
+            checkpoint(job);
+            return;
+        }
+
+        // Writes are batched per chunk section and flushed once at the end of this slice
+        SectionBatcher.begin(world);
+        try {
+            // Always make some progress, even if a single step exceeds the budget,
+            // but never force a synchronous chunk load: wait for the ticket instead
+            do {
+                if (!job.chunkLoader.isReady(world, job.cursor)) {
+                    break;
+                }
+                if (job.steps.get(job.cursor).kind == RollbackStep.Kind.CONTAINER) {
+                    applyContainerRun(world, job);
+                    continue;
+                }
+                int index = job.cursor++;
+                RollbackStep step = job.steps.get(index);
+                boolean success;
+                try {
+                    if (job.journal != null) {
+                        job.journal.capture(world, step);
+                    }
+                    success = step.apply(world);
+                } catch (Exception e) {
+                    success = false;
+                }
+                count(job, step, success);
+                job.chunkLoader.stepDone(index);
+            } while (!job.isDone() && System.nanoTime() < deadline);
+        } finally {
+            SectionBatcher.flush();
+        }
+        if (job.journal != null) {
+            job.journal.flush(ioExecutor);
+        }
+        job.dirty = true;
+
+        if (job.isDone()) {
+            finish(server, job, world);
+        } else {
+            long now = System.currentTimeMillis();
+            if (now - job.lastProgressReport >= PROGRESS_INTERVAL_MS) {
+                job.lastProgressReport = now;
+                notifyOwner(server, job, Text.literal("[MineTracer] " + capitalize(job.type) + " #" + job.id + ": "
+                        + job.getPercent() + "% (" + job.cursor + "/" + job.getTotal() + ")").formatted(Formatting.GRAY), true);
+            }
+        }
+    }
+
+    /**
+     * Apply every consecutive container step at the cursor's container together
+     */
+    private static void applyContainerRun(ServerWorld world, RollbackJob job) {
+        int start = job.cursor;
+        BlockPos pos = job.steps.get(start).getPos();
+        int end = start + 1;
+        while (end < job.steps.size() && job.steps.get(end).kind == RollbackStep.Kind.CONTAINER
+                && job.steps.get(end).getPos().equals(pos)) {
+            end++;
+        }
+        List<RollbackStep> run = job.steps.subList(start, end);
+        job.cursor = end;
+
+        boolean[] results;
+        try {
+            if (job.journal != null) {
+                job.journal.capture(world, run.get(0));
+            }
+            results = RollbackStep.applyContainers(world, run, job.containerReport);
+        } catch (Exception e) {
+            results = new boolean[run.size()];
+        }
+        for (int i = 0; i < run.size(); i++) {
+            count(job, run.get(i), results[i]);
+            job.chunkLoader.stepDone(start + i);
+        }
+    }
+
+    private static void count(RollbackJob job, RollbackStep step, boolean success) {
+        // Folded steps count every log entry they stand for
+        if (success) {
+            job.succeeded += step.getWeight();
+        } else {
+            job.failed += step.getWeight();
+        }
+    }
+
+    private static void finish(MinecraftServer server, RollbackJob job, ServerWorld world) {
+        jobs.remove(job.id);
+        job.state = RollbackJob.State.FINISHED;
+        job.chunkLoader.releaseAll();
+
+        // Geometrically re-link every adjacent identical-facing chest pair that was touched.
+        // This runs after ALL blocks are placed so both halves are guaranteed to be in the world.
+        List<MineTracerLookup.BlockLogEntry> blockEntries = new ArrayList<>();
+        for (RollbackStep step : job.steps) {
+            if (step.kind == RollbackStep.Kind.BLOCK) {
+                for (Object entry : step.getEntries()) {
+                    MineTracerLookup.BlockLogEntry blockEntry = (MineTracerLookup.BlockLogEntry) entry;
+                    // Chunks that were already unloaded again were saved with their final states
+                    if (world.getChunkManager().isChunkLoaded(blockEntry.pos.getX() >> 4, blockEntry.pos.getZ() >> 4)) {
+                        blockEntries.add(blockEntry);
+                    }
+                }
+            }
+        }
+        MineTracerCommand.relinkRestoredDoubleChests(world, blockEntries);
+
+        // Write every rolled_back flag of this job in one batched transaction
+        RolledBackMarker.flush();
+
+        String summary;
+        switch (job.type) {
+            case "rollback":
+                summary = "[MineTracer] Rollback complete: " + job.succeeded + " actions restored, " + job.failed + " failed.";
+                break;
+            case "restore":
+                summary = "[MineTracer] Restore complete: " + job.succeeded + " actions reapplied, " + job.failed + " failed.";
+                break;
+            default:
+                summary = "[MineTracer] Undo complete: " + job.succeeded + " changes reverted, " + job.failed + " failed.";
+                break;
+        }
+        notifyOwner(server, job, Text.literal(summary).formatted(Formatting.GREEN), false);
+        if (!job.containerReport.isEmpty()) {
+            notifyOwner(server, job, Text.literal("[MineTracer] Containers:").formatted(Formatting.AQUA), false);
+            for (Text line : job.containerReport.toLines()) {
+                notifyOwner(server, job, line, false);
+            }
+        }
+
+        if (job.journal != null && !job.journal.isEmpty()) {
+            commitJournal(job);
+            notifyOwner(server, job, Text.literal("[MineTracer] Use /minetracer undo to revert this " + job.type + ".")
+                    .formatted(Formatting.GRAY), false);
+        }
+
+        deleteFiles(job.id);
+    }
+
+    /**
+     * Make the job's journal its owner's undoable operation. Journals of console jobs are discarded.
+     */
+    private static void commitJournal(RollbackJob job) {
+        job.journal.commit(ioExecutor, job.owner);
+        job.journal = null;
+    }
+
+    private static void notifyOwner(MinecraftServer server, RollbackJob job, Text message, boolean actionBar) {
+        ServerPlayerEntity player = job.owner != null ? server.getPlayerManager().getPlayer(job.owner) : null;
+        if (player != null) {
+            player.sendMessage(message, actionBar);
+        } else if (!actionBar) {
+            System.out.println(message.getString());
+        }
+    }
+
+    private static ServerWorld resolveWorld(MinecraftServer server, String worldKey) {
+        try {
+            return server.getWorld(RegistryKey.of(RegistryKeys.WORLD, new Identifier(worldKey)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String capitalize(String type) {
+        return Character.toUpperCase(type.charAt(0)) + type.substring(1);
+    }
+
+    // =========================
+    // PERSISTENCE
+    // =========================
+
+    private static void checkpointAll(boolean wait) {
+        for (RollbackJob job : jobs.values()) {
+            if (job.dirty) {
+                checkpoint(job);
+            }
+        }
+        if (wait) {
+            // Server is stopping: make sure every pending write reaches disk
+            try {
+                RolledBackMarker.flush().get(10, TimeUnit.SECONDS);
+                ioExecutor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Timed out saving rollback jobs: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void checkpoint(RollbackJob job) {
+        job.dirty = false;
+        JsonObject progress = job.progressToJson();
+        int id = job.id;
+        // A resumed job skips every step before the saved cursor, so those steps' rows must be
+        // marked rolled back before the cursor is saved
+        CompletableFuture<Void> marked = RolledBackMarker.flush();
+        ioExecutor.execute(() -> {
+            try {
+                marked.get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Skipped checkpoint of rollback job #" + id + ": rolled back flags were not written");
+                return;
+            }
+            writeJson(progressFile(id), progress);
+        });
+    }
+
+    private static void deleteFiles(int id) {
+        ioExecutor.execute(() -> {
+            try {
+                Files.deleteIfExists(jobFile(id));
+                Files.deleteIfExists(progressFile(id));
+                Files.deleteIfExists(journalFile(id));
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Failed to delete rollback job files: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void loadJobs(MinecraftServer server) {
+        jobs.clear();
+        if (!Files.isDirectory(JOBS_DIR)) {
+            return;
+        }
+
+        int resumed = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(JOBS_DIR, "job-*.json")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(".progress.json")) {
+                    continue;
+                }
+                try {
+                    JsonObject obj = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), JsonObject.class);
+                    Path progressPath = progressFile(obj.get("id").getAsInt());
+                    JsonObject progress = Files.exists(progressPath)
+                            ? GSON.fromJson(Files.readString(progressPath, StandardCharsets.UTF_8), JsonObject.class)
+                            : null;
+                    RollbackJob job = RollbackJob.fromJson(obj, progress);
+                    if (job.recordUndo) {
+                        job.journal = UndoJournal.resume(journalFile(job.id), job.type, job.worldKey);
+                    }
+                    jobs.put(job.id, job);
+                    nextId = Math.max(nextId, job.id + 1);
+                    resumed++;
+                } catch (Exception e) {
+                    System.err.println("[MineTracer] Failed to load rollback job " + file.getFileName() + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to read rollback jobs: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        if (resumed > 0) {
+            System.out.println("[MineTracer] Resumed " + resumed + " interrupted rollback job(s)");
+        }
+    }
+
+    private static void writeJson(Path file, JsonObject obj) {
+        try {
+            Files.createDirectories(JOBS_DIR);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, GSON.toJson(obj), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to save rollback job: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path jobFile(int id) {
+        return JOBS_DIR.resolve("job-" + id + ".json");
+    }
+
+    private static Path progressFile(int id) {
+        return JOBS_DIR.resolve("job-" + id + ".progress.json");
+    }
+
+    private static Path journalFile(int id) {
+        return JOBS_DIR.resolve("job-" + id + ".journal");
+    }
+}
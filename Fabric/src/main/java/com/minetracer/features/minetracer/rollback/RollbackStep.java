@@ -0,0 +1,372 @@
+package com.minetracer.features.minetracer.rollback;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.minetracer.features.minetracer.MineTracerCommand;
+import com.minetracer.features.minetracer.database.MineTracerConsumer;
+import com.minetracer.features.minetracer.database.MineTracerLookup;
+import com.minetracer.features.minetracer.database.RolledBackMarker;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.StringNbtReader;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single world change applied by a rollback job.
+ * Wraps the log entry that decides the outcome together with the direction it is applied in.
+ * After planning, one step may also stand for several folded entries at the same position.
+ */
+public class RollbackStep {
+
+    public enum Kind {
+        BLOCK,
+        CONTAINER,
+        SIGN,
+        // Before-image from an undo journal
+        SNAPSHOT
+    }
+
+    public final Kind kind;
+    // true = undo the logged action, false = reapply it (restore)
+    public final boolean rollback;
+    // Entry whose action is applied to the world
+    public final Object entry;
+    // Entries folded into this step; they are marked rolled back but cause no world write of their own
+    public final List<Object> folded;
+    // CONTAINER only: items of entry.stack to add (> 0) or remove (< 0)
+    public final int delta;
+    // BLOCK only: state to place, decoded off-thread during planning; not persisted
+    private volatile BlockStateDecoder.Decoded decoded;
+
+    RollbackStep(Kind kind, boolean rollback, Object entry, List<Object> folded, int delta) {
+        this.kind = kind;
+        this.rollback = rollback;
+        this.entry = entry;
+        this.folded = folded;
+        this.delta = delta;
+    }
+
+    public static RollbackStep block(MineTracerLookup.BlockLogEntry entry, boolean rollback) {
+        return new RollbackStep(Kind.BLOCK, rollback, entry, Collections.emptyList(), 0);
+    }
+
+    public static RollbackStep container(MineTracerLookup.ContainerLogEntry entry, boolean rollback) {
+        return new RollbackStep(Kind.CONTAINER, rollback, entry, Collections.emptyList(), containerDelta(entry, rollback));
+    }
+
+    public static RollbackStep sign(MineTracerLookup.SignLogEntry entry, boolean rollback) {
+        return new RollbackStep(Kind.SIGN, rollback, entry, Collections.emptyList(), 0);
+    }
+
+    public static RollbackStep snapshot(UndoJournal.Image image) {
+        return new RollbackStep(Kind.SNAPSHOT, true, image, Collections.emptyList(), 0);
+    }
+
+    /**
+     * Signed item count a container entry contributes when applied in the given direction
+     */
+    static int containerDelta(MineTracerLookup.ContainerLogEntry entry, boolean rollback) {
+        int count = entry.stack.getCount();
+        if ("withdrew".equals(entry.action)) {
+            // Rolling back a withdrawal puts the items back
+            return rollback ? count : -count;
+        } else if ("deposited".equals(entry.action)) {
+            return rollback ? -count : count;
+        }
+        return 0;
+    }
+
+    /**
+     * Number of log entries this step accounts for
+     */
+    public int getWeight() {
+        return 1 + folded.size();
+    }
+
+    /**
+     * The deciding entry followed by every folded entry
+     */
+    public List<Object> getEntries() {
+        List<Object> all = new ArrayList<>(getWeight());
+        all.add(entry);
+        all.addAll(folded);
+        return all;
+    }
+
+    /**
+     * Pre-decode the block state this step places. Safe to call off the server thread.
+     */
+    void decode() {
+        if (kind == Kind.BLOCK && rollback) {
+            MineTracerLookup.BlockLogEntry e = (MineTracerLookup.BlockLogEntry) entry;
+            if ("broke".equals(e.action)) {
+                decoded = BlockStateDecoder.decode(e.blockId, e.nbt);
+            }
+        }
+    }
+
+    /**
+     * Apply this step to the world. Must be called on the server thread.
+     */
+    public boolean apply(ServerWorld world) {
+        boolean success;
+        switch (kind) {
+            case BLOCK: {
+                MineTracerLookup.BlockLogEntry e = (MineTracerLookup.BlockLogEntry) entry;
+                if ("broke".equals(e.action)) {
+                    // Steps restored from a checkpoint were never decoded
+                    success = rollback ? MineTracerCommand.performBlockPlaceRollback(world, e,
+                                             decoded != null ? decoded : BlockStateDecoder.decode(e.blockId, e.nbt))
+                                       : MineTracerCommand.performBlockBreakRestore(world, e);
+                } else if ("placed".equals(e.action)) {
+                    success = rollback ? MineTracerCommand.performBlockBreakRollback(world, e)
+                                       : MineTracerCommand.performBlockRestore(world, e);
+                } else {
+                    success = false;
+                }
+                if (success && rollback) {
+                    for (Object other : folded) {
+                        RolledBackMarker.markBlock((MineTracerLookup.BlockLogEntry) other);
+                    }
+                }
+                return success;
+            }
+            case CONTAINER: {
+                MineTracerLookup.ContainerLogEntry e = (MineTracerLookup.ContainerLogEntry) entry;
+                // A net delta of zero means the folded transactions cancel out
+                success = delta == 0 || MineTracerCommand.applyContainerDelta(world, e.pos, e.stack, delta);
+                if (success && rollback) {
+                    for (Object other : getEntries()) {
+                        RolledBackMarker.markContainer((MineTracerLookup.ContainerLogEntry) other);
+                    }
+                }
+                return success;
+            }
+            case SIGN: {
+                MineTracerLookup.SignLogEntry e = (MineTracerLookup.SignLogEntry) entry;
+                // Signs only support rolling back an edit
+                success = rollback && "edit".equals(e.action) && MineTracerCommand.performSignRollback(world, e);
+                if (success) {
+                    for (Object other : folded) {
+                        RolledBackMarker.markSign((MineTracerLookup.SignLogEntry) other);
+                    }
+                }
+                return success;
+            }
+            case SNAPSHOT:
+                return ((UndoJournal.Image) entry).apply(world);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Apply a run of CONTAINER steps that all target the same container in one pass over
+     * its inventory. Returns whether each step succeeded and adds the outcome to the report.
+     */
+    static boolean[] applyContainers(ServerWorld world, List<RollbackStep> run, ContainerReport report) {
+        BlockPos pos = run.get(0).getPos();
+        List<ItemStack> stacks = new ArrayList<>(run.size());
+        int[] deltas = new int[run.size()];
+        for (int i = 0; i < run.size(); i++) {
+            stacks.add(((MineTracerLookup.ContainerLogEntry) run.get(i).entry).stack);
+            deltas[i] = run.get(i).delta;
+        }
+
+        int[] applied = MineTracerCommand.applyContainerDeltas(world, pos, stacks, deltas);
+        boolean[] results = new boolean[run.size()];
+        for (int i = 0; i < run.size(); i++) {
+            RollbackStep step = run.get(i);
+            // A net delta of zero means the folded transactions cancel out
+            results[i] = step.delta == 0 || (applied != null && applied[i] != 0);
+            if (applied != null) {
+                report.record(pos, step.delta, applied[i]);
+            }
+            if (results[i] && step.rollback) {
+                for (Object other : step.getEntries()) {
+                    RolledBackMarker.markContainer((MineTracerLookup.ContainerLogEntry) other);
+                }
+            }
+        }
+        return results;
+    }
+
+    public BlockPos getPos() {
+        return getPos(kind, entry);
+    }
+
+    static BlockPos getPos(Kind kind, Object entry) {
+        switch (kind) {
+            case BLOCK:
+                return ((MineTracerLookup.BlockLogEntry) entry).pos;
+            case CONTAINER:
+                return ((MineTracerLookup.ContainerLogEntry) entry).pos;
+            case SNAPSHOT:
+                return ((UndoJournal.Image) entry).pos;
+            default:
+                return ((MineTracerLookup.SignLogEntry) entry).pos;
+        }
+    }
+
+    static Instant getTimestamp(Kind kind, Object entry) {
+        switch (kind) {
+            case BLOCK:
+                return ((MineTracerLookup.BlockLogEntry) entry).timestamp;
+            case CONTAINER:
+                return ((MineTracerLookup.ContainerLogEntry) entry).timestamp;
+            case SNAPSHOT:
+                // Journals hold one image per position, so there is nothing to order
+                return Instant.EPOCH;
+            default:
+                return ((MineTracerLookup.SignLogEntry) entry).timestamp;
+        }
+    }
+
+    /**
+     * Row id of an entry; falls back to the id assigned after a pending entry was committed
+     */
+    static long getRowId(Kind kind, Object entry) {
+        long rowId;
+        MineTracerConsumer.QueueEntry pendingEntry;
+        switch (kind) {
+            case SNAPSHOT:
+                return 0;
+            case BLOCK:
+                rowId = ((MineTracerLookup.BlockLogEntry) entry).rowId;
+                pendingEntry = ((MineTracerLookup.BlockLogEntry) entry).pendingEntry;
+                break;
+            case CONTAINER:
+                rowId = ((MineTracerLookup.ContainerLogEntry) entry).rowId;
+                pendingEntry = ((MineTracerLookup.ContainerLogEntry) entry).pendingEntry;
+                break;
+            default:
+                rowId = ((MineTracerLookup.SignLogEntry) entry).rowId;
+                pendingEntry = ((MineTracerLookup.SignLogEntry) entry).pendingEntry;
+                break;
+        }
+        return rowId > 0 || pendingEntry == null ? rowId : pendingEntry.rowId;
+    }
+
+    // =========================
+    // PERSISTENCE
+    // =========================
+
+    JsonObject toJson() {
+        JsonObject obj = entryToJson(kind, entry);
+        obj.addProperty("kind", kind.name());
+        obj.addProperty("rollback", rollback);
+        obj.addProperty("delta", delta);
+        if (!folded.isEmpty()) {
+            JsonArray foldedArray = new JsonArray();
+            for (Object other : folded) {
+                foldedArray.add(entryToJson(kind, other));
+            }
+            obj.add("folded", foldedArray);
+        }
+        return obj;
+    }
+
+    static RollbackStep fromJson(JsonObject obj) throws Exception {
+        Kind kind = Kind.valueOf(obj.get("kind").getAsString());
+        boolean rollback = obj.get("rollback").getAsBoolean();
+        Object entry = entryFromJson(kind, obj);
+        List<Object> folded = new ArrayList<>();
+        if (obj.has("folded")) {
+            for (JsonElement element : obj.getAsJsonArray("folded")) {
+                folded.add(entryFromJson(kind, element.getAsJsonObject()));
+            }
+        }
+        int delta = obj.has("delta") ? obj.get("delta").getAsInt()
+                : kind == Kind.CONTAINER ? containerDelta((MineTracerLookup.ContainerLogEntry) entry, rollback) : 0;
+        return new RollbackStep(kind, rollback, entry, folded, delta);
+    }
+
+    private static JsonObject entryToJson(Kind kind, Object entry) {
+        JsonObject obj = new JsonObject();
+        BlockPos pos = getPos(kind, entry);
+        obj.addProperty("x", pos.getX());
+        obj.addProperty("y", pos.getY());
+        obj.addProperty("z", pos.getZ());
+        if (kind == Kind.SNAPSHOT) {
+            UndoJournal.Image image = (UndoJournal.Image) entry;
+            obj.addProperty("state", NbtHelper.fromBlockState(image.state).toString());
+            if (image.blockEntityNbt != null) {
+                obj.addProperty("nbt", image.blockEntityNbt.toString());
+            }
+            return obj;
+        }
+        obj.addProperty("rowId", getRowId(kind, entry));
+        switch (kind) {
+            case BLOCK: {
+                MineTracerLookup.BlockLogEntry e = (MineTracerLookup.BlockLogEntry) entry;
+                obj.addProperty("action", e.action);
+                obj.addProperty("player", e.playerName);
+                obj.addProperty("blockId", e.blockId);
+                obj.addProperty("nbt", e.nbt);
+                obj.addProperty("time", e.timestamp.getEpochSecond());
+                obj.addProperty("rolledBack", e.rolledBack);
+                break;
+            }
+            case CONTAINER: {
+                MineTracerLookup.ContainerLogEntry e = (MineTracerLookup.ContainerLogEntry) entry;
+                obj.addProperty("action", e.action);
+                obj.addProperty("player", e.playerName);
+                obj.addProperty("item", e.stack.writeNbt(new NbtCompound()).toString());
+                obj.addProperty("time", e.timestamp.getEpochSecond());
+                obj.addProperty("rolledBack", e.rolledBack);
+                break;
+            }
+            case SIGN: {
+                MineTracerLookup.SignLogEntry e = (MineTracerLookup.SignLogEntry) entry;
+                obj.addProperty("action", e.action);
+                obj.addProperty("player", e.playerName);
+                obj.addProperty("text", e.text);
+                obj.addProperty("nbt", e.nbt);
+                obj.addProperty("time", e.timestamp.getEpochSecond());
+                obj.addProperty("rolledBack", e.rolledBack);
+                break;
+            }
+        }
+        return obj;
+    }
+
+    private static Object entryFromJson(Kind kind, JsonObject obj) throws Exception {
+        BlockPos pos = new BlockPos(obj.get("x").getAsInt(), obj.get("y").getAsInt(), obj.get("z").getAsInt());
+        if (kind == Kind.SNAPSHOT) {
+            String nbt = getString(obj, "nbt");
+            return new UndoJournal.Image(pos,
+                    NbtHelper.toBlockState(Registries.BLOCK.getReadOnlyWrapper(), StringNbtReader.parse(obj.get("state").getAsString())),
+                    nbt != null ? StringNbtReader.parse(nbt) : null);
+        }
+        String action = obj.get("action").getAsString();
+        String player = obj.get("player").getAsString();
+        Instant time = Instant.ofEpochSecond(obj.get("time").getAsLong());
+        boolean rolledBack = obj.get("rolledBack").getAsBoolean();
+        long rowId = obj.has("rowId") ? obj.get("rowId").getAsLong() : 0;
+        switch (kind) {
+            case BLOCK:
+                return new MineTracerLookup.BlockLogEntry(action, player, pos,
+                        obj.get("blockId").getAsString(), getString(obj, "nbt"), time, rolledBack, rowId);
+            case CONTAINER:
+                ItemStack stack = ItemStack.fromNbt(StringNbtReader.parse(obj.get("item").getAsString()));
+                return new MineTracerLookup.ContainerLogEntry(action, player, pos, stack, time, rolledBack, rowId);
+            default:
+                return new MineTracerLookup.SignLogEntry(action, player, pos,
+                        getString(obj, "text"), getString(obj, "nbt"), time, rolledBack, rowId);
+        }
+    }
+
+    private static String getString(JsonObject obj, String key) {
+        return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsString() : null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.minetracer.features.minetracer.rollback;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Batches the block writes of a rollback job per chunk section.
+ * While a batch is open, blocks are set without neighbor, shape, light or client updates.
+ * Flushing then runs one light and neighbor pass per touched section and sends each
+ * section to tracking players as a single ChunkDeltaUpdate packet.
+ * Server thread only.
+ */
+public class SectionBatcher {
+
+    // Skip neighbor updates, shape updates, client updates and light checks; never drop items
+    private static final int BULK_FLAGS = Block.FORCE_STATE | Block.SKIP_DROPS | Block.SKIP_LIGHTING_UPDATES;
+
+    private static ServerWorld batchWorld = null;
+    private static final Long2ObjectLinkedOpenHashMap<LongSet> sections = new Long2ObjectLinkedOpenHashMap<>();
+    private static final LongSet changed = new LongOpenHashSet();
+
+    /**
+     * Start collecting writes for a world
+     */
+    public static void begin(ServerWorld world) {
+        if (batchWorld != null) {
+            flush();
+        }
+        batchWorld = world;
+    }
+
+    /**
+     * Set a block for a rollback. Inside a batch the write is deferred-update; otherwise it
+     * behaves exactly like world.setBlockState with the given flags.
+     */
+    public static boolean setBlockState(ServerWorld world, BlockPos pos, BlockState state, int flags) {
+        if (world != batchWorld) {
+            return world.setBlockState(pos, state, flags);
+        }
+        boolean changedState = world.setBlockState(pos, state, BULK_FLAGS);
+        if (changedState) {
+            long key = pos.asLong();
+            if (changed.add(key)) {
+                sections.computeIfAbsent(ChunkSectionPos.from(pos).asLong(), k -> new LongOpenHashSet()).add(key);
+            }
+        }
+        return changedState;
+    }
+
+    /**
+     * Finish the batch: light, neighbor updates and client packets for every touched section
+     */
+    public static void flush() {
+        ServerWorld world = batchWorld;
+        batchWorld = null;
+        if (world == null || sections.isEmpty()) {
+            sections.clear();
+            changed.clear();
+            return;
+        }
+
+        try {
+            for (Long2ObjectLinkedOpenHashMap.Entry<LongSet> section : sections.long2ObjectEntrySet()) {
+                flushSection(world, ChunkSectionPos.from(section.getLongKey()), section.getValue());
+            }
+        } catch (Exception e) {
+            System.err.println("[MineTracer] Failed to flush rollback section updates: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            sections.clear();
+            changed.clear();
+        }
+    }
+
+    private static void flushSection(ServerWorld world, ChunkSectionPos sectionPos, LongSet positions) {
+        BlockPos.Mutable neighbor = new BlockPos.Mutable();
+        ShortSet packed = new ShortOpenHashSet(positions.size());
+        List<BlockEntity> blockEntities = new ArrayList<>();
+
+        LongIterator it = positions.iterator();
+        while (it.hasNext()) {
+            BlockPos pos = BlockPos.fromLong(it.nextLong());
+            BlockState state = world.getBlockState(pos);
+            packed.add(ChunkSectionPos.packLocal(pos));
+
+            // Deferred light: queued now, processed by the light engine in bulk
+            world.getChunkManager().getLightingProvider().checkBlock(pos);
+
+            // Interior states come straight from the log; only blocks bordering
+            // the rolled back area need shape and neighbor updates
+            for (Direction direction : Direction.values()) {
+                neighbor.set(pos, direction);
+                // Never pull an unloaded neighbor chunk in synchronously
+                if (changed.contains(neighbor.asLong())
+                        || !world.getChunkManager().isChunkLoaded(neighbor.getX() >> 4, neighbor.getZ() >> 4)) {
+                    continue;
+                }
+                BlockPos neighborPos = neighbor.toImmutable();
+                BlockState neighborState = world.getBlockState(neighborPos);
+                BlockState updated = neighborState.getStateForNeighborUpdate(direction.getOpposite(), state, world, neighborPos, pos);
+                if (updated != neighborState) {
+                    Block.replace(neighborState, updated, world, neighborPos, Block.NOTIFY_ALL);
+                }
+                world.updateNeighbor(neighborPos, state.getBlock(), pos);
+            }
+
+            BlockEntity blockEntity = world.getBlockEntity(pos);
+            if (blockEntity != null) {
+                blockEntities.add(blockEntity);
+            }
+        }
+
+        Collection<ServerPlayerEntity> players = PlayerLookup.tracking(world, sectionPos.toChunkPos());
+        if (players.isEmpty()) {
+            return;
+        }
+
+        WorldChunk chunk = world.getChunk(sectionPos.getSectionX(), sectionPos.getSectionZ());
+        ChunkSection section = chunk.getSection(world.sectionCoordToIndex(sectionPos.getSectionY()));
+        ChunkDeltaUpdateS2CPacket packet = new ChunkDeltaUpdateS2CPacket(sectionPos, packed, section);
+
+        List<Packet<ClientPlayPacketListener>> blockEntityPackets = new ArrayList<>(blockEntities.size());
+        for (BlockEntity blockEntity : blockEntities) {
+            Packet<ClientPlayPacketListener> update = blockEntity.toUpdatePacket();
+            if (update != null) {
+                blockEntityPackets.add(update);
+            }
+        }
+
+        for (ServerPlayerEntity player : players) {
+            player.networkHandler.sendPacket(packet);
+            for (Packet<ClientPlayPacketListener> update : blockEntityPackets) {
+                player.networkHandler.sendPacket(update);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.minetracer.features.minetracer.rollback;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.ChestBlock;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.block.enums.ChestType;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.registry.Registries;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Binary before-image journal of a rollback or restore job.
+ * Before a job first touches a position, the block state and block entity data there are
+ * appended to the journal. When the job ends the journal becomes its owner's undo file, and
+ * /minetracer undo replays the images through the regular rollback scheduler.
+ *
+ * Layout: header (magic, version, type, world, created) followed by records of
+ * position (long), palette index (varint; a new index is followed by the state as NBT),
+ * and a flag byte followed by block entity NBT when present.
+ */
+public class UndoJournal {
+
+    private static final Path UNDO_DIR = Path.of("config", "minetracer", "undo");
+    private static final int MAGIC = 0x4D54554A; // "MTUJ"
+    private static final int VERSION = 1;
+
+    /**
+     * Prior state of one position
+     */
+    public static class Image {
+        public final BlockPos pos;
+        public final BlockState state;
+        // Block entity data, or null if there was no block entity
+        public final NbtCompound blockEntityNbt;
+
+        Image(BlockPos pos, BlockState state, NbtCompound blockEntityNbt) {
+            this.pos = pos;
+            this.state = state;
+            this.blockEntityNbt = blockEntityNbt;
+        }
+
+        /**
+         * Put the position back into its recorded state. Server thread only.
+         */
+        boolean apply(ServerWorld world) {
+            SectionBatcher.setBlockState(world, pos, state, Block.NOTIFY_ALL | Block.FORCE_STATE);
+            if (blockEntityNbt != null) {
+                BlockEntity blockEntity = world.getBlockEntity(pos);
+                if (blockEntity == null) {
+                    return false;
+                }
+                // readNbt only fills the slots it finds, so start from an empty inventory
+                if (blockEntity instanceof Inventory inventory) {
+                    inventory.clear();
+                }
+                blockEntity.readNbt(blockEntityNbt.copy());
+                blockEntity.markDirty();
+                world.updateListeners(pos, state, state, Block.NOTIFY_ALL);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A journal read back from disk
+     */
+    public static class Contents {
+        public final String type;
+        public final String worldKey;
+        public final long createdAt;
+        public final List<Image> images;
+        // Bytes up to the end of the last complete record
+        final long length;
+
+        Contents(String type, String worldKey, long createdAt, List<Image> images, long length) {
+            this.type = type;
+            this.worldKey = worldKey;
+            this.createdAt = createdAt;
+            this.images = images;
+            this.length = length;
+        }
+    }
+
+    private final Path file;
+    private final LongSet captured = new LongOpenHashSet();
+    private final Object2IntMap<BlockState> palette = new Object2IntOpenHashMap<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(buffer);
+
+    private UndoJournal(Path file) {
+        this.file = file;
+        palette.defaultReturnValue(-1);
+    }
+
+    /**
+     * Start a new journal; the header is written with the first flush
+     */
+    static UndoJournal create(Path file, String type, String worldKey) {
+        UndoJournal journal = new UndoJournal(file);
+        try {
+            journal.out.writeInt(MAGIC);
+            journal.out.writeInt(VERSION);
+            journal.out.writeUTF(type);
+            journal.out.writeUTF(worldKey);
+            journal.out.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+        }
+        return journal;
+    }
+
+    /**
+     * Continue the journal of a job that was interrupted by a restart.
+     * Positions already in the file keep their original before-image.
+     */
+    static UndoJournal resume(Path file, String type, String worldKey) {
+        if (!Files.exists(file)) {
+            return create(file, type, worldKey);
+        }
+        UndoJournal journal = new UndoJournal(file);
+        try {
+            Contents contents = read(file);
+            for (Image image : contents.images) {
+                journal.captured.add(image.pos.asLong());
+                if (!journal.palette.containsKey(image.state)) {
+                    journal.palette.put(image.state, journal.palette.size());
+                }
+            }
+            // Cut off a record torn by the crash so new records follow the last complete one
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                if (channel.size() > contents.length) {
+                    channel.truncate(contents.length);
+                }
+            }
+        } catch (Exception e) {
+            // Appending to a file that cannot be read back would only lose the new images too
+            System.err.println("[MineTracer] Failed to resume undo journal " + file.getFileName() + ", starting a new one: " + e.getMessage());
+            e.printStackTrace();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException deleteFailed) {
+                System.err.println("[MineTracer] Failed to delete undo journal: " + deleteFailed.getMessage());
+            }
+            return create(file, type, worldKey);
+        }
+        return journal;
+    }
+
+    /**
+     * Record the before-image of every position a step is about to change
+     */
+    void capture(ServerWorld world, RollbackStep step) {
+        BlockPos pos = step.getPos();
+        capture(world, pos);
+        if (step.kind == RollbackStep.Kind.CONTAINER) {
+            // Double chest transfers can land in either half
+            BlockState state = world.getBlockState(pos);
+            if (state.getBlock() instanceof ChestBlock && state.get(ChestBlock.CHEST_TYPE) != ChestType.SINGLE) {
+                capture(world, pos.offset(ChestBlock.getFacing(state)));
+            }
+        }
+    }
+
+    private void capture(ServerWorld world, BlockPos pos) {
+        if (!captured.add(pos.asLong())) {
+            return;
+        }
+        BlockState state = world.getBlockState(pos);
+        BlockEntity blockEntity = world.getBlockEntity(pos);
+        try {
+            out.writeLong(pos.asLong());
+            int index = palette.getInt(state);
+            if (index < 0) {
+                index = palette.size();
+                palette.put(state, index);
+                writeVarInt(out, index);
+                NbtIo.write(NbtHelper.fromBlockState(state), out);
+            } else {
+                writeVarInt(out, index);
+            }
+            if (blockEntity != null) {
+                out.writeByte(1);
+                NbtIo.write(blockEntity.createNbt(), out);
+            } else {
+                out.writeByte(0);
+            }
+        } catch (IOException e) {
+            System.err.println("[MineTracer] Failed to journal " + pos.toShortString() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append everything captured since the last flush on the given executor
+     */
+    void flush(Executor executor) {
+        if (buffer.size() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        executor.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Failed to write undo journal: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+    }
+
+    boolean isEmpty() {
+        return captured.isEmpty();
+    }
+
+    /**
+     * Flush and make this journal the owner's undoable operation, replacing the previous one
+     */
+    void commit(Executor executor, UUID owner) {
+        flush(executor);
+        executor.execute(() -> {
+            try {
+                if (owner == null) {
+                    Files.deleteIfExists(file);
+                    return;
+                }
+                Files.createDirectories(UNDO_DIR);
+                Files.move(file, undoFile(owner), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                System.err.println("[MineTracer] Failed to save undo journal: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public static Path undoFile(UUID owner) {
+        return UNDO_DIR.resolve(owner + ".journal");
+    }
+
+    /**
+     * Read a journal file. Safe to call off the server thread. A truncated
+     * last record (e.g. after a crash) is ignored.
+     */
+    public static Contents read(Path file) throws IOException {
+        try (CountingInputStream stream = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an undo journal");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported undo journal version " + version);
+            }
+            String type = in.readUTF();
+            String worldKey = in.readUTF();
+            long createdAt = in.readLong();
+
+            List<BlockState> states = new ArrayList<>();
+            List<Image> images = new ArrayList<>();
+            long length = stream.count;
+            while (true) {
+                long pos;
+                try {
+                    pos = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                try {
+                    int index = readVarInt(in);
+                    if (index == states.size()) {
+                        states.add(NbtHelper.toBlockState(Registries.BLOCK.getReadOnlyWrapper(), NbtIo.read(in)));
+                    }
+                    NbtCompound blockEntityNbt = in.readByte() != 0 ? NbtIo.read(in) : null;
+                    images.add(new Image(BlockPos.fromLong(pos), states.get(index), blockEntityNbt));
+                    length = stream.count;
+                } catch (EOFException truncated) {
+                    break;
+                }
+            }
+            return new Contents(type, worldKey, createdAt, images, length);
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, to find where the last complete record ends
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,198 @@
+package com.minetracer.features.minetracer.util;
+
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.block.Block;
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.Registry;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which events are worth logging at all, from the filters section of the config.
+ * The block and item rules are compiled once the registries are complete into bitsets indexed
+ * by raw id, so a filtered event costs one bit test before anything is built for it. World
+ * and region rules are keyed by the interned world registry keys.
+ */
+public class CaptureFilter {
+
+    private static final class Compiled {
+        // Null means every block or item is captured
+        final BitSet blocks;
+        final BitSet items;
+        final Set<RegistryKey<World>> excludedWorlds;
+        // Per world, excluded boxes as consecutive minX, minZ, maxX, maxZ
+        final Map<RegistryKey<World>, int[]> excludedRegions;
+
+        Compiled(BitSet blocks, BitSet items, Set<RegistryKey<World>> excludedWorlds, Map<RegistryKey<World>, int[]> excludedRegions) {
+            this.blocks = blocks;
+            this.items = items;
+            this.excludedWorlds = excludedWorlds;
+            this.excludedRegions = excludedRegions;
+        }
+    }
+
+    private static volatile Compiled compiled = null;
+
+    public static void register() {
+        // Modded blocks and items are registered after our initializer, so compile once they are all in
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> compile());
+    }
+
+    public static void compile() {
+        BitSet blocks = compileIds(Registries.BLOCK, MineTracerConfig.FILTER_INCLUDE_BLOCKS, MineTracerConfig.FILTER_EXCLUDE_BLOCKS);
+        BitSet items = compileIds(Registries.ITEM, MineTracerConfig.FILTER_INCLUDE_ITEMS, MineTracerConfig.FILTER_EXCLUDE_ITEMS);
+
+        Set<RegistryKey<World>> worlds = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String world : MineTracerConfig.parseList(MineTracerConfig.FILTER_EXCLUDE_WORLDS, ",")) {
+            Identifier id = Identifier.tryParse(world);
+            if (id == null) {
+                System.err.println("[MineTracer] Ignoring invalid world in filters.exclude-worlds: " + world);
+                continue;
+            }
+            worlds.add(RegistryKey.of(RegistryKeys.WORLD, id));
+        }
+
+        Map<RegistryKey<World>, int[]> regions = new IdentityHashMap<>();
+        for (String region : MineTracerConfig.parseList(MineTracerConfig.FILTER_EXCLUDE_REGIONS, ";")) {
+            String[] parts = region.trim().split("\\s+");
+            try {
+                Identifier id = Identifier.tryParse(parts[0]);
+                if (parts.length != 5 || id == null) {
+                    throw new IllegalArgumentException();
+                }
+                int x1 = Integer.parseInt(parts[1]);
+                int z1 = Integer.parseInt(parts[2]);
+                int x2 = Integer.parseInt(parts[3]);
+                int z2 = Integer.parseInt(parts[4]);
+                int[] box = {Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2)};
+                regions.merge(RegistryKey.of(RegistryKeys.WORLD, id), box, CaptureFilter::concat);
+            } catch (IllegalArgumentException e) {
+                System.err.println("[MineTracer] Ignoring invalid region in filters.exclude-regions (expected \"<world> <x1> <z1> <x2> <z2>\"): " + region);
+            }
+        }
+
+        compiled = new Compiled(blocks, items, worlds, regions);
+        if (blocks != null || items != null || !worlds.isEmpty() || !regions.isEmpty()) {
+            System.out.println("[MineTracer] Capture filters active: "
+                    + (blocks != null ? (Registries.BLOCK.size() - blocks.cardinality()) + " blocks, " : "")
+                    + (items != null ? (Registries.ITEM.size() - items.cardinality()) + " items, " : "")
+                    + worlds.size() + " worlds and " + regions.size() + " worlds with regions excluded");
+        }
+    }
+
+    /**
+     * Whether anything in this world is logged
+     */
+    public static boolean shouldCaptureWorld(World world) {
+        Compiled filter = compiled;
+        return filter == null || !filter.excludedWorlds.contains(world.getRegistryKey());
+    }
+
+    /**
+     * Whether events at this position are logged
+     */
+    public static boolean shouldCapture(World world, BlockPos pos) {
+        Compiled filter = compiled;
+        if (filter == null) {
+            return true;
+        }
+        RegistryKey<World> key = world.getRegistryKey();
+        if (filter.excludedWorlds.contains(key)) {
+            return false;
+        }
+        if (filter.excludedRegions.isEmpty() || pos == null) {
+            return true;
+        }
+        int[] boxes = filter.excludedRegions.get(key);
+        if (boxes != null) {
+            int x = pos.getX();
+            int z = pos.getZ();
+            for (int i = 0; i < boxes.length; i += 4) {
+                if (x >= boxes[i] && z >= boxes[i + 1] && x <= boxes[i + 2] && z <= boxes[i + 3]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a change to this block at this position is logged
+     */
+    public static boolean shouldCaptureBlock(World world, BlockPos pos, Block block) {
+        Compiled filter = compiled;
+        if (filter != null && filter.blocks != null && !filter.blocks.get(Registries.BLOCK.getRawId(block))) {
+            return false;
+        }
+        return shouldCapture(world, pos);
+    }
+
+    /**
+     * Whether a movement of this item at this position is logged
+     */
+    public static boolean shouldCaptureItem(World world, BlockPos pos, Item item) {
+        Compiled filter = compiled;
+        if (filter != null && filter.items != null && !filter.items.get(Registries.ITEM.getRawId(item))) {
+            return false;
+        }
+        return shouldCapture(world, pos);
+    }
+
+    /**
+     * Bits set for the raw ids that are captured, or null when every entry is
+     */
+    private static <T> BitSet compileIds(Registry<T> registry, String include, String exclude) {
+        List<String> included = MineTracerConfig.parseList(include, ",");
+        List<String> excluded = MineTracerConfig.parseList(exclude, ",");
+        if (included.isEmpty() && excluded.isEmpty()) {
+            return null;
+        }
+        BitSet bits = new BitSet(registry.size());
+        if (included.isEmpty()) {
+            bits.set(0, registry.size());
+        } else {
+            for (String id : included) {
+                int rawId = rawId(registry, id);
+                if (rawId >= 0) {
+                    bits.set(rawId);
+                }
+            }
+        }
+        for (String id : excluded) {
+            int rawId = rawId(registry, id);
+            if (rawId >= 0) {
+                bits.clear(rawId);
+            }
+        }
+        return bits;
+    }
+
+    private static <T> int rawId(Registry<T> registry, String id) {
+        Identifier identifier = Identifier.tryParse(id);
+        if (identifier == null || !registry.containsId(identifier)) {
+            System.err.println("[MineTracer] Unknown id in capture filters: " + id);
+            return -1;
+        }
+        return registry.getRawId(registry.get(identifier));
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+}
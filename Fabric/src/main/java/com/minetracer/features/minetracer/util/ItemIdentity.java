@@ -0,0 +1,38 @@
+package com.minetracer.features.minetracer.util;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.util.Objects;
+
+/**
+ * Hashing of item stacks by item and NBT, ignoring the count.
+ * Lets item deltas be keyed by the stacks themselves instead of by string keys.
+ */
+public class ItemIdentity {
+
+    public static final Hash.Strategy<ItemStack> STRATEGY = new Hash.Strategy<ItemStack>() {
+        @Override
+        public int hashCode(ItemStack stack) {
+            return stack == null ? 0 : 31 * Item.getRawId(stack.getItem()) + Objects.hashCode(stack.getNbt());
+        }
+
+        @Override
+        public boolean equals(ItemStack a, ItemStack b) {
+            if (a == b) {
+                return true;
+            }
+            return a != null && b != null && ItemStack.canCombine(a, b);
+        }
+    };
+
+    /**
+     * New map from item identity to a count
+     */
+    public static Object2IntOpenCustomHashMap<ItemStack> newCounter() {
+        return new Object2IntOpenCustomHashMap<>(STRATEGY);
+    }
+}
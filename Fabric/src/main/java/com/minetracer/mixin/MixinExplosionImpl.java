@@ -9,6 +9,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import com.minetracer.features.minetracer.listeners.ExplosionEventListener;
+import com.minetracer.features.minetracer.util.CaptureFilter;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
@@ -37,13 +38,17 @@ public class MixinExplosionImpl {
                 return;
             }
             ServerWorld serverWorld = (ServerWorld) this.world;
+            if (!CaptureFilter.shouldCaptureWorld(serverWorld)) {
+                return;
+            }
             Explosion explosion = (Explosion) (Object) this;
             Entity entity = explosion.getEntity();
             List<BlockPos> affectedBlocks = explosion.getAffectedBlocks();
 
             for (BlockPos pos : affectedBlocks) {
                 BlockState state = serverWorld.getBlockState(pos);
-                if (!state.isAir() && state.getBlock() != Blocks.BEDROCK) {
+                if (!state.isAir() && state.getBlock() != Blocks.BEDROCK
+                        && CaptureFilter.shouldCaptureBlock(serverWorld, pos, state.getBlock())) {
                     ExplosionEventListener.processExplosionBlock(entity, serverWorld, pos, state);
                 }
             }
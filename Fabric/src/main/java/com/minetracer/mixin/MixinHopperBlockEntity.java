@@ -0,0 +1,51 @@
+package com.minetracer.mixin;
+import com.minetracer.features.minetracer.HopperFlowAggregator;
+import com.minetracer.features.minetracer.config.MineTracerConfig;
+import net.minecraft.block.entity.HopperBlockEntity;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.Direction;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+/**
+ * Every hopper, hopper minecart and dropper transfer goes through HopperBlockEntity.transfer.
+ * The moved amount is the stack's count going in minus what comes back.
+ */
+@Mixin(HopperBlockEntity.class)
+public class MixinHopperBlockEntity {
+    // The stack may end up in the destination or emptied, so its identity is kept up front
+    @Unique
+    private static Item minetracer$item;
+    @Unique
+    private static NbtCompound minetracer$nbt;
+    @Unique
+    private static int minetracer$count;
+    @Inject(method = "transfer(Lnet/minecraft/inventory/Inventory;Lnet/minecraft/inventory/Inventory;Lnet/minecraft/item/ItemStack;Lnet/minecraft/util/math/Direction;)Lnet/minecraft/item/ItemStack;",
+            at = @At("HEAD"))
+    private static void onTransferHead(Inventory from, Inventory to, ItemStack stack, Direction side, CallbackInfoReturnable<ItemStack> cir) {
+        if (!MineTracerConfig.HOPPER_TRANSACTIONS || stack.isEmpty()) {
+            minetracer$count = 0;
+            return;
+        }
+        minetracer$item = stack.getItem();
+        minetracer$nbt = stack.getNbt();
+        minetracer$count = stack.getCount();
+    }
+    @Inject(method = "transfer(Lnet/minecraft/inventory/Inventory;Lnet/minecraft/inventory/Inventory;Lnet/minecraft/item/ItemStack;Lnet/minecraft/util/math/Direction;)Lnet/minecraft/item/ItemStack;",
+            at = @At("RETURN"))
+    private static void onTransferReturn(Inventory from, Inventory to, ItemStack stack, Direction side, CallbackInfoReturnable<ItemStack> cir) {
+        if (minetracer$count == 0) {
+            return;
+        }
+        int moved = minetracer$count - cir.getReturnValue().getCount();
+        minetracer$count = 0;
+        HopperFlowAggregator.record(from, to, minetracer$item, minetracer$nbt, moved);
+        minetracer$item = null;
+        minetracer$nbt = null;
+    }
+}
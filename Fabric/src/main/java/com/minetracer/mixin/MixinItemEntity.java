@@ -10,24 +10,14 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(ItemEntity.class)
 public class MixinItemEntity {
-    private ItemStack minetracer$originalStack = null;
-    @Inject(method = "onPlayerCollision", at = @At("HEAD"))
-    private void onPlayerCollisionHead(PlayerEntity player, CallbackInfo ci) {
-        if (player instanceof ServerPlayerEntity) {
-            ItemEntity itemEntity = (ItemEntity)(Object)this;
-            if (!itemEntity.getStack().isEmpty()) {
-                minetracer$originalStack = itemEntity.getStack().copy();
-            }
-        }
-    }
-    @Inject(method = "onPlayerCollision", at = @At(value = "INVOKE", 
-            target = "Lnet/minecraft/entity/ItemEntity;discard()V"))
+    // Runs right after discard(), once the emptied stack has had its picked-up count restored
+    @Inject(method = "onPlayerCollision", at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/item/ItemStack;setCount(I)V", ordinal = 0, shift = At.Shift.AFTER))
     private void onItemPickup(PlayerEntity player, CallbackInfo ci) {
-        if (player instanceof ServerPlayerEntity && minetracer$originalStack != null) {
-            ServerPlayerEntity serverPlayer = (ServerPlayerEntity) player;
+        if (player instanceof ServerPlayerEntity) {
             ItemEntity itemEntity = (ItemEntity)(Object)this;
-            ItemPickupDropEventListener.logItemPickup(serverPlayer, itemEntity, minetracer$originalStack);
-            minetracer$originalStack = null; // Clean up
+            ItemStack stack = itemEntity.getStack();
+            ItemPickupDropEventListener.logItemPickup((ServerPlayerEntity) player, itemEntity, stack.getItem(), stack.getNbt(), stack.getCount());
         }
     }
 }
@@ -6,31 +6,38 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Item;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.Identifier;
-import net.minecraft.registry.Registries;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
-import com.minetracer.features.minetracer.OptimizedLogStorage;
+import com.minetracer.features.minetracer.ContainerSessionAggregator;
 import com.minetracer.features.minetracer.ContainerPositionTracker;
-import java.util.HashMap;
-import java.util.Map;
+import com.minetracer.features.minetracer.util.CaptureFilter;
+import com.minetracer.features.minetracer.util.ItemIdentity;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 @Mixin(ScreenHandler.class)
 public class MixinScreenHandler {
     private static final long DRAG_TIMEOUT_MS = 150; // ACCURACY UPDATE: Shorter timeout for better drag detection
     private static final long SLOT_999_DELAY_MS = 25; // ACCURACY UPDATE: Faster response time
     private boolean minetracer$isContainerInteraction = false;
     private long minetracer$lastInteractionTime = 0;
-    private Map<Integer, ItemStack> minetracer$trackedSlots = null;
-    private Map<Integer, ItemStack> minetracer$trackedPlayerSlots = null;
+    // Slot fingerprints from the last snapshot: item raw id (0 = empty), NBT hash and count.
+    // The stack reference is kept only to recover the NBT of an item that left its slot.
+    private boolean minetracer$hasSnapshot = false;
+    private boolean[] minetracer$isContainerSlot = null;
+    private int[] minetracer$slotItems = null;
+    private int[] minetracer$slotNbtHashes = null;
+    private int[] minetracer$slotCounts = null;
+    private ItemStack[] minetracer$slotStacks = null;
     private BlockPos minetracer$containerPos = null;
     private boolean minetracer$hasRelevantSlots = false;
     private boolean minetracer$isDragOperation = false;
     private long minetracer$lastClickTime = 0;
     private long minetracer$lastSlot999Time = 0;
-    private Map<String, Integer> minetracer$accumulatedContainerChanges = new HashMap<>();
-    private Map<String, Integer> minetracer$accumulatedPlayerChanges = new HashMap<>();
+    private final Object2IntMap<ItemStack> minetracer$containerChanges = ItemIdentity.newCounter();
+    private final Object2IntMap<ItemStack> minetracer$playerChanges = ItemIdentity.newCounter();
+    private final Object2IntMap<ItemStack> minetracer$accumulatedContainerChanges = ItemIdentity.newCounter();
+    private final Object2IntMap<ItemStack> minetracer$accumulatedPlayerChanges = ItemIdentity.newCounter();
     private boolean minetracer$isInmisBackpack(ScreenHandler handler) {
         if (handler.slots.isEmpty())
             return false;
@@ -49,50 +56,17 @@ public class MixinScreenHandler {
             minetracer$isContainerInteraction = false;
             return;
         }
-        minetracer$isContainerInteraction = self.getSlot(0).inventory != player.getInventory();
+        minetracer$isContainerInteraction = self.getSlot(0).inventory != player.getInventory()
+                && CaptureFilter.shouldCaptureWorld(player.getWorld());
         if (!minetracer$isContainerInteraction) {
             return;
         }
         if (slotIndex == -999 || actionType == SlotActionType.QUICK_CRAFT) {
             if (!minetracer$isDragOperation) {
                 minetracer$isDragOperation = true;
-                if (minetracer$trackedSlots == null) {
-                    minetracer$trackedSlots = new HashMap<>(27);
-                    minetracer$trackedPlayerSlots = new HashMap<>(36);
-                } else {
-                    minetracer$trackedSlots.clear();
-                    minetracer$trackedPlayerSlots.clear();
-                }
                 minetracer$accumulatedContainerChanges.clear();
                 minetracer$accumulatedPlayerChanges.clear();
-                minetracer$containerPos = null;
-                minetracer$hasRelevantSlots = false;
-                for (int i = 0; i < self.slots.size(); i++) {
-                    Slot slot = self.getSlot(i);
-                    ItemStack stack = slot.getStack();
-                    if (slot.inventory != player.getInventory()) {
-                        if (minetracer$containerPos == null
-                                && slot.inventory instanceof net.minecraft.block.entity.BlockEntity be) {
-                            // Use canonical position for consistent double chest handling
-                            minetracer$containerPos = ContainerPositionTracker.getContainerPosition(
-                                be.getWorld(), be.getPos());
-                            // Fallback to raw position if canonical detection fails
-                            if (minetracer$containerPos == null) {
-                                minetracer$containerPos = be.getPos();
-                            }
-                        }
-                        minetracer$trackedSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-                        if (!stack.isEmpty()) {
-                            minetracer$hasRelevantSlots = true;
-                        }
-                    } else {
-                        minetracer$trackedPlayerSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-                    }
-                }
-                // Fallback: Use last opened container position for SimpleInventory chests
-                if (minetracer$containerPos == null) {
-                    minetracer$containerPos = ContainerPositionTracker.getLastOpenedContainer(player.getUuid());
-                }
+                minetracer$snapshot(self, player);
             }
             minetracer$lastSlot999Time = System.currentTimeMillis();
             return;
@@ -105,56 +79,26 @@ public class MixinScreenHandler {
                 return;
             }
         }
-        if (minetracer$trackedSlots == null) {
-            minetracer$trackedSlots = new HashMap<>(27);
-            minetracer$trackedPlayerSlots = new HashMap<>(36);
-        } else if (!minetracer$isDragOperation) {
-            minetracer$trackedSlots.clear();
-            minetracer$trackedPlayerSlots.clear();
-        }
-        if (minetracer$trackedSlots.isEmpty() && minetracer$trackedPlayerSlots.isEmpty()) {
-            minetracer$containerPos = null;
-            minetracer$hasRelevantSlots = false;
-            for (int i = 0; i < self.slots.size(); i++) {
-                Slot slot = self.getSlot(i);
-                ItemStack stack = slot.getStack();
-                if (slot.inventory != player.getInventory()) {
-                    if (minetracer$containerPos == null
-                            && slot.inventory instanceof net.minecraft.block.entity.BlockEntity be) {
-                        // Use canonical position for consistent double chest handling
-                        minetracer$containerPos = ContainerPositionTracker.getContainerPosition(
-                            be.getWorld(), be.getPos());
-                        // Fallback to raw position if canonical detection fails
-                        if (minetracer$containerPos == null) {
-                            minetracer$containerPos = be.getPos();
-                        }
-                    }
-                    minetracer$trackedSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-                    if (!stack.isEmpty()) {
-                        minetracer$hasRelevantSlots = true;
-                    }
-                } else {
-                    minetracer$trackedPlayerSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-                }
-            }
-            // Fallback: Use last opened container position for SimpleInventory chests
-            if (minetracer$containerPos == null) {
-                minetracer$containerPos = ContainerPositionTracker.getLastOpenedContainer(player.getUuid());
-            }
+        if (!minetracer$isDragOperation || !minetracer$hasSnapshot) {
+            minetracer$snapshot(self, player);
         }
         minetracer$lastClickTime = System.currentTimeMillis();
     }
+    @Inject(method = "onClosed", at = @At("HEAD"))
+    private void minetracer$onClosed(PlayerEntity player, CallbackInfo ci) {
+        // Ends the container session: net item changes of this visit are written now
+        ContainerSessionAggregator.close(player);
+    }
     @Inject(method = "onSlotClick", at = @At("RETURN"))
     private void minetracer$logSlotClickReturn(int slotIndex, int button,
             SlotActionType actionType, PlayerEntity player, CallbackInfo ci) {
-        if (!minetracer$isContainerInteraction || minetracer$trackedSlots == null) {
+        if (!minetracer$isContainerInteraction || !minetracer$hasSnapshot) {
             return;
         }
         
         // Skip logging if we couldn't determine container position
         if (minetracer$containerPos == null) {
-            minetracer$trackedSlots.clear();
-            minetracer$trackedPlayerSlots.clear();
+            minetracer$hasSnapshot = false;
             minetracer$isContainerInteraction = false;
             return;
         }
@@ -162,8 +106,7 @@ public class MixinScreenHandler {
         ScreenHandler self = (ScreenHandler) (Object) this;
         minetracer$detectInventoryTransfers(self, player);
         if (!minetracer$isDragOperation) {
-            minetracer$trackedSlots.clear();
-            minetracer$trackedPlayerSlots.clear();
+            minetracer$hasSnapshot = false;
             minetracer$isContainerInteraction = false;
         } else {
             long currentTime = System.currentTimeMillis();
@@ -171,123 +114,143 @@ public class MixinScreenHandler {
                 minetracer$analyzeAccumulatedTransfers(player);
                 minetracer$isDragOperation = false;
                 minetracer$lastSlot999Time = 0;
-                minetracer$trackedSlots.clear();
-                minetracer$trackedPlayerSlots.clear();
+                minetracer$hasSnapshot = false;
                 minetracer$isContainerInteraction = false;
             } else if (currentTime - minetracer$lastClickTime > DRAG_TIMEOUT_MS) {
                 minetracer$analyzeAccumulatedTransfers(player);
                 minetracer$isDragOperation = false;
                 minetracer$lastSlot999Time = 0;
-                minetracer$trackedSlots.clear();
-                minetracer$trackedPlayerSlots.clear();
+                minetracer$hasSnapshot = false;
                 minetracer$isContainerInteraction = false;
             }
         }
     }
-    private void minetracer$detectInventoryTransfers(ScreenHandler handler, PlayerEntity player) {
-        Map<String, Integer> containerItemChanges = new HashMap<>();
-        Map<String, Integer> playerItemChanges = new HashMap<>();
-        for (int i = 0; i < handler.slots.size(); i++) {
-            Slot slot = handler.getSlot(i);
-            if (slot.inventory != player.getInventory()) {
-                ItemStack before = minetracer$trackedSlots.getOrDefault(i, ItemStack.EMPTY);
-                ItemStack after = slot.getStack();
-                if (!ItemStack.areItemsEqual(before, after) || before.getCount() != after.getCount()) {
-                    String itemKey = minetracer$getItemKey(before);
-                    containerItemChanges.merge(itemKey, -before.getCount(), Integer::sum);
-                    itemKey = minetracer$getItemKey(after);
-                    containerItemChanges.merge(itemKey, after.getCount(), Integer::sum);
+    private void minetracer$snapshot(ScreenHandler self, PlayerEntity player) {
+        int size = self.slots.size();
+        if (minetracer$slotItems == null || minetracer$slotItems.length != size) {
+            minetracer$isContainerSlot = new boolean[size];
+            minetracer$slotItems = new int[size];
+            minetracer$slotNbtHashes = new int[size];
+            minetracer$slotCounts = new int[size];
+            minetracer$slotStacks = new ItemStack[size];
+        }
+        minetracer$containerPos = null;
+        minetracer$hasRelevantSlots = false;
+        for (int i = 0; i < size; i++) {
+            Slot slot = self.getSlot(i);
+            ItemStack stack = slot.getStack();
+            boolean containerSlot = slot.inventory != player.getInventory();
+            minetracer$isContainerSlot[i] = containerSlot;
+            if (containerSlot) {
+                if (minetracer$containerPos == null
+                        && slot.inventory instanceof net.minecraft.block.entity.BlockEntity be) {
+                    // Use canonical position for consistent double chest handling
+                    minetracer$containerPos = ContainerPositionTracker.getContainerPosition(
+                        be.getWorld(), be.getPos());
+                    // Fallback to raw position if canonical detection fails
+                    if (minetracer$containerPos == null) {
+                        minetracer$containerPos = be.getPos();
+                    }
+                }
+                if (!stack.isEmpty()) {
+                    minetracer$hasRelevantSlots = true;
                 }
             }
+            minetracer$record(i, stack);
         }
-        for (int i = 0; i < handler.slots.size(); i++) {
-            Slot slot = handler.getSlot(i);
-            if (slot.inventory == player.getInventory()) {
-                ItemStack before = minetracer$trackedPlayerSlots.getOrDefault(i, ItemStack.EMPTY);
-                ItemStack after = slot.getStack();
-                if (!ItemStack.areItemsEqual(before, after) || before.getCount() != after.getCount()) {
-                    String itemKey = minetracer$getItemKey(before);
-                    playerItemChanges.merge(itemKey, -before.getCount(), Integer::sum);
-                    itemKey = minetracer$getItemKey(after);
-                    playerItemChanges.merge(itemKey, after.getCount(), Integer::sum);
-                }
+        // Fallback: Use last opened container position for SimpleInventory chests
+        if (minetracer$containerPos == null) {
+            minetracer$containerPos = ContainerPositionTracker.getLastOpenedContainer(player.getUuid());
+        }
+        minetracer$hasSnapshot = true;
+    }
+    private void minetracer$record(int slot, ItemStack stack) {
+        boolean empty = stack.isEmpty();
+        minetracer$slotItems[slot] = empty ? 0 : Item.getRawId(stack.getItem());
+        minetracer$slotNbtHashes[slot] = empty || !stack.hasNbt() ? 0 : stack.getNbt().hashCode();
+        minetracer$slotCounts[slot] = empty ? 0 : stack.getCount();
+        minetracer$slotStacks[slot] = empty ? null : stack;
+    }
+    /**
+     * Key for the item that was in a slot at snapshot time
+     */
+    private ItemStack minetracer$snapshotKey(int slot) {
+        ItemStack key = new ItemStack(Item.byRawId(minetracer$slotItems[slot]));
+        ItemStack previous = minetracer$slotStacks[slot];
+        // The stack object may have been emptied or moved, but its NBT is still attached
+        if (previous != null && previous.getNbt() != null
+                && previous.getNbt().hashCode() == minetracer$slotNbtHashes[slot]) {
+            key.setNbt(previous.getNbt().copy());
+        }
+        return key;
+    }
+    private void minetracer$detectInventoryTransfers(ScreenHandler handler, PlayerEntity player) {
+        minetracer$containerChanges.clear();
+        minetracer$playerChanges.clear();
+        // Only slots whose fingerprint changed are diffed and re-recorded
+        for (int i = 0; i < minetracer$slotItems.length; i++) {
+            ItemStack after = handler.getSlot(i).getStack();
+            boolean empty = after.isEmpty();
+            int item = empty ? 0 : Item.getRawId(after.getItem());
+            int count = empty ? 0 : after.getCount();
+            if (item == minetracer$slotItems[i] && count == minetracer$slotCounts[i]
+                    && (empty || (after.hasNbt() ? after.getNbt().hashCode() : 0) == minetracer$slotNbtHashes[i])) {
+                continue;
+            }
+            Object2IntMap<ItemStack> changes = minetracer$isContainerSlot[i]
+                    ? minetracer$containerChanges : minetracer$playerChanges;
+            if (minetracer$slotItems[i] != 0) {
+                changes.mergeInt(minetracer$snapshotKey(i), -minetracer$slotCounts[i], Integer::sum);
             }
+            if (!empty) {
+                ItemStack key = after.copy();
+                key.setCount(1);
+                changes.mergeInt(key, count, Integer::sum);
+            }
+            minetracer$record(i, after);
         }
         if (minetracer$isDragOperation) {
-            for (Map.Entry<String, Integer> entry : containerItemChanges.entrySet()) {
-                minetracer$accumulatedContainerChanges.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            for (Object2IntMap.Entry<ItemStack> entry : minetracer$containerChanges.object2IntEntrySet()) {
+                minetracer$accumulatedContainerChanges.mergeInt(entry.getKey(), entry.getIntValue(), Integer::sum);
             }
-            for (Map.Entry<String, Integer> entry : playerItemChanges.entrySet()) {
-                minetracer$accumulatedPlayerChanges.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            for (Object2IntMap.Entry<ItemStack> entry : minetracer$playerChanges.object2IntEntrySet()) {
+                minetracer$accumulatedPlayerChanges.mergeInt(entry.getKey(), entry.getIntValue(), Integer::sum);
             }
         } else {
-            minetracer$analyzeCurrentTransfers(containerItemChanges, playerItemChanges, player);
-        }
-        for (int i = 0; i < handler.slots.size(); i++) {
-            Slot slot = handler.getSlot(i);
-            ItemStack stack = slot.getStack();
-            if (slot.inventory != player.getInventory()) {
-                minetracer$trackedSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-            } else {
-                minetracer$trackedPlayerSlots.put(i, stack.isEmpty() ? ItemStack.EMPTY : stack.copy());
-            }
+            minetracer$analyzeCurrentTransfers(minetracer$containerChanges, player);
         }
     }
-    private void minetracer$analyzeCurrentTransfers(Map<String, Integer> containerItemChanges,
-            Map<String, Integer> playerItemChanges, PlayerEntity player) {
+    private void minetracer$analyzeCurrentTransfers(Object2IntMap<ItemStack> containerItemChanges, PlayerEntity player) {
         // Analyze accumulated changes and log final transfers
-        for (String itemKey : containerItemChanges.keySet()) {
-            if (itemKey.equals("air"))
-                continue;
-            int containerChange = containerItemChanges.get(itemKey);
+        for (Object2IntMap.Entry<ItemStack> entry : containerItemChanges.object2IntEntrySet()) {
+            int containerChange = entry.getIntValue();
             if (containerChange > 0) {
-                ItemStack itemStack = minetracer$createItemStackFromKey(itemKey);
-                if (!itemStack.isEmpty()) {
-                    itemStack.setCount(containerChange);
-                    OptimizedLogStorage.logContainerAction("deposited", player, minetracer$containerPos, itemStack);
-                }
+                ItemStack itemStack = entry.getKey().copy();
+                itemStack.setCount(containerChange);
+                ContainerSessionAggregator.record("deposited", player, minetracer$containerPos, itemStack);
             } else if (containerChange < 0) {
-                ItemStack itemStack = minetracer$createItemStackFromKey(itemKey);
-                if (!itemStack.isEmpty()) {
-                    itemStack.setCount(-containerChange);
-                    OptimizedLogStorage.logContainerAction("withdrew", player, minetracer$containerPos, itemStack);
-                }
+                ItemStack itemStack = entry.getKey().copy();
+                itemStack.setCount(-containerChange);
+                ContainerSessionAggregator.record("withdrew", player, minetracer$containerPos, itemStack);
             }
         }
     }
     private void minetracer$analyzeAccumulatedTransfers(PlayerEntity player) {
         // Process accumulated changes
-        for (String itemKey : minetracer$accumulatedContainerChanges.keySet()) {
-            int containerChange = minetracer$accumulatedContainerChanges.getOrDefault(itemKey, 0);
-            int playerChange = minetracer$accumulatedPlayerChanges.getOrDefault(itemKey, 0);
+        for (Object2IntMap.Entry<ItemStack> entry : minetracer$accumulatedContainerChanges.object2IntEntrySet()) {
+            int containerChange = entry.getIntValue();
+            int playerChange = minetracer$accumulatedPlayerChanges.getOrDefault(entry.getKey(), 0);
             if (containerChange > 0 && playerChange < 0) {
-                ItemStack itemStack = minetracer$createItemStackFromKey(itemKey);
-                if (!itemStack.isEmpty()) {
-                    itemStack.setCount(containerChange); // Use actual deposited amount
-                    OptimizedLogStorage.logContainerAction("deposited", player, minetracer$containerPos, itemStack);
-                }
+                ItemStack itemStack = entry.getKey().copy();
+                itemStack.setCount(containerChange); // Use actual deposited amount
+                ContainerSessionAggregator.record("deposited", player, minetracer$containerPos, itemStack);
             } else if (containerChange < 0 && playerChange > 0) {
-                ItemStack itemStack = minetracer$createItemStackFromKey(itemKey);
-                if (!itemStack.isEmpty()) {
-                    itemStack.setCount(-containerChange); // Use actual withdrawn amount
-                    OptimizedLogStorage.logContainerAction("withdrew", player, minetracer$containerPos, itemStack);
-                }
+                ItemStack itemStack = entry.getKey().copy();
+                itemStack.setCount(-containerChange); // Use actual withdrawn amount
+                ContainerSessionAggregator.record("withdrew", player, minetracer$containerPos, itemStack);
             }
         }
         minetracer$accumulatedContainerChanges.clear();
         minetracer$accumulatedPlayerChanges.clear();
     }
-    private String minetracer$getItemKey(ItemStack stack) {
-        if (stack.isEmpty())
-            return "air";
-        String itemId = Registries.ITEM.getId(stack.getItem()).toString();
-        return stack.hasNbt() ? itemId + stack.getNbt().toString() : itemId;
-    }
-    private ItemStack minetracer$createItemStackFromKey(String key) {
-        if (key.equals("air"))
-            return ItemStack.EMPTY;
-        String itemId = key.contains("{") ? key.substring(0, key.indexOf("{")) : key;
-        Item item = Registries.ITEM.get(new Identifier(itemId));
-        return new ItemStack(item, 1);
-    }
 }
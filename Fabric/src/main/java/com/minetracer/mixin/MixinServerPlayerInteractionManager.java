@@ -1,5 +1,7 @@
 package com.minetracer.mixin;
 import com.minetracer.features.minetracer.OptimizedLogStorage;
+import com.minetracer.features.minetracer.database.LoadGovernor;
+import com.minetracer.features.minetracer.util.CaptureFilter;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.network.ServerPlayerInteractionManager;
 import net.minecraft.util.math.BlockPos;
@@ -22,6 +24,8 @@ public class MixinServerPlayerInteractionManager {
     @org.spongepowered.asm.mixin.Unique
     private BlockState minetracer$prevPlacedState = null;
     @org.spongepowered.asm.mixin.Unique
+    private boolean minetracer$placedStackHasNbt = false;
+    @org.spongepowered.asm.mixin.Unique
     private BlockState minetracer$prevBrokenState = null;
     @org.spongepowered.asm.mixin.Unique
     private BlockEntity minetracer$prevBrokenBlockEntity = null;
@@ -32,6 +36,8 @@ public class MixinServerPlayerInteractionManager {
             CallbackInfoReturnable<net.minecraft.util.ActionResult> cir) {
         BlockPos placedPos = hitResult.getBlockPos().offset(hitResult.getSide());
         this.minetracer$prevPlacedState = world.getBlockState(placedPos);
+        // Contents, skull owners, banner patterns and names come from the placed item's data
+        this.minetracer$placedStackHasNbt = stack.hasNbt();
     }
     @Inject(method = "interactBlock", at = @At("RETURN"))
     private void minetracer$logBlockPlace(ServerPlayerEntity player, net.minecraft.world.World world,
@@ -45,10 +51,15 @@ public class MixinServerPlayerInteractionManager {
         BlockPos placedPos = hitResult.getBlockPos().offset(hitResult.getSide());
         BlockState placedState = world.getBlockState(placedPos);
         BlockState prevState = this.minetracer$prevPlacedState;
+        boolean carriesData = this.minetracer$placedStackHasNbt;
         this.minetracer$prevPlacedState = null;
+        this.minetracer$placedStackHasNbt = false;
         if (placedState.isAir()) {
             return; // Only skip if genuinely no block placed
         }
+        if (!CaptureFilter.shouldCaptureBlock(world, placedPos, placedState.getBlock())) {
+            return;
+        }
         CompletableFuture.runAsync(() -> {
             try {
                 Identifier blockId = Registries.BLOCK.getId(placedState.getBlock());
@@ -65,7 +76,9 @@ public class MixinServerPlayerInteractionManager {
                         }
                         fullNbt.put("Properties", propertiesNbt);
                     }
-                    if (blockEntity != null) {
+                    // Under heavy load a freshly placed block's default data is left out; restore
+                    // recreates the defaults anyway, so data from the placed item is always kept
+                    if (blockEntity != null && LoadGovernor.shouldCapturePlacedNbt(carriesData)) {
                         fullNbt.put("BlockEntityTag", blockEntity.createNbt());
                     }
                     nbt = fullNbt.toString();
@@ -116,6 +129,9 @@ public class MixinServerPlayerInteractionManager {
         if (state == null || state.isAir()) {
             return;
         }
+        if (!CaptureFilter.shouldCaptureBlock(player.getWorld(), pos, state.getBlock())) {
+            return;
+        }
         CompletableFuture.runAsync(() -> {
             try {
                 Identifier blockId = Registries.BLOCK.getId(state.getBlock());
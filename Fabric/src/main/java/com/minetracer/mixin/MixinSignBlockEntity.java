@@ -10,6 +10,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import com.minetracer.features.minetracer.NewOptimizedLogStorage;
+import com.minetracer.features.minetracer.util.CaptureFilter;
 import java.util.List;
 @Mixin(SignBlockEntity.class)
 public class MixinSignBlockEntity {
@@ -20,6 +21,11 @@ public class MixinSignBlockEntity {
     @Inject(method = "tryChangeText", at = @At("HEAD"))
     private void minetracer$cacheBeforeText(PlayerEntity player, boolean front, List messages, CallbackInfo ci) {
         SignBlockEntity sign = (SignBlockEntity) (Object) this;
+        if (sign.getWorld() != null && !CaptureFilter.shouldCaptureBlock(sign.getWorld(), sign.getPos(), sign.getCachedState().getBlock())) {
+            // Marks the edit as handled so the TAIL hook skips it too
+            minetracer$editLogged = true;
+            return;
+        }
         Text[] beforeLines = sign.getText(front).getMessages(false);
         StringBuilder beforeSb = new StringBuilder();
         for (int i = 0; i < beforeLines.length; i++) {
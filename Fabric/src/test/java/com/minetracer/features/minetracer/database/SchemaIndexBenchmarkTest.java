@@ -0,0 +1,143 @@
+package com.minetracer.features.minetracer.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Ingest and lookup timings of the SQLite backend with the first index set against the
+ * current one, on the same data and queries
+ */
+class SchemaIndexBenchmarkTest {
+
+    private static final String WORLD = "minecraft:overworld";
+    private static final int PRELOAD_ENTRIES = 200_000;
+    private static final int MEASURED_ENTRIES = 50_000;
+    private static final int BATCH = 1000;
+    private static final int QUERIES = 400;
+
+    // name, table, columns of the indexes schema 1 built on container and block
+    private static final String[][] V1_INDEXES = {
+        {"idx_container_location", "minetracer_container", "wid,x,z,time"},
+        {"idx_container_lookup", "minetracer_container", "wid,x,y,z,time"},
+        {"idx_container_user", "minetracer_container", "user,time"},
+        {"idx_container_type", "minetracer_container", "type,time"},
+        {"idx_container_time_user", "minetracer_container", "time,user"},
+        {"idx_container_rolled_back", "minetracer_container", "rolled_back,time"},
+        {"idx_block_location", "minetracer_block", "wid,x,z,time"},
+        {"idx_block_lookup", "minetracer_block", "wid,x,y,z,time"},
+        {"idx_block_user", "minetracer_block", "user,time"},
+        {"idx_block_type", "minetracer_block", "type,time"},
+        {"idx_block_time_user", "minetracer_block", "time,user"},
+        {"idx_block_rolled_back", "minetracer_block", "rolled_back,time"}
+    };
+
+    @TempDir
+    Path directory;
+
+    private int nextId = 0;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    void compareIndexSets() throws Exception {
+        double[] v1 = measure(directory.resolve("v1.db"), true);
+        double[] v2 = measure(directory.resolve("v2.db"), false);
+        System.out.println(String.format("Schema 1 indexes: %.0f entries/s, queries %.2f ms average, %.2f ms p95", v1[0], v1[1], v1[2]));
+        System.out.println(String.format("Schema 2 indexes: %.0f entries/s, queries %.2f ms average, %.2f ms p95", v2[0], v2[1], v2[2]));
+    }
+
+    /**
+     * Entries per second of ingest onto a preloaded table, then average and p95 lookup milliseconds
+     */
+    private double[] measure(Path file, boolean v1Indexes) throws Exception {
+        SqliteStorageBackend backend = new SqliteStorageBackend(file);
+        try {
+            backend.initialize();
+            if (v1Indexes) {
+                try (Connection connection = MineTracerDatabase.openConnection(file);
+                     Statement statement = connection.createStatement()) {
+                    for (String table : new String[] {"minetracer_container", "minetracer_block"}) {
+                        String shortName = table.substring("minetracer_".length());
+                        SqlDialect.SQLITE.dropIndex(statement, "idx_" + shortName + "_position", table);
+                        SqlDialect.SQLITE.dropIndex(statement, "idx_" + shortName + "_user_time", table);
+                    }
+                    for (String[] index : V1_INDEXES) {
+                        SqlDialect.SQLITE.createIndex(statement, index[0], index[1], index[2]);
+                    }
+                }
+            }
+
+            Random random = new Random(42);
+            ingest(backend, 0, PRELOAD_ENTRIES, random);
+            long started = System.nanoTime();
+            ingest(backend, PRELOAD_ENTRIES, MEASURED_ENTRIES, random);
+            double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+            Random queries = new Random(7);
+            long[] latencies = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                long queryStarted = System.nanoTime();
+                if (i % 2 == 0) {
+                    BlockPos center = new BlockPos(queries.nextInt(10_000) - 5000, 64, queries.nextInt(10_000) - 5000);
+                    backend.queryBlocks(LogQuery.inRange(center, 20, null, WORLD, 1000));
+                } else {
+                    backend.queryContainers(LogQuery.forUser("user" + (i % 50), WORLD, 1000));
+                }
+                latencies[i] = System.nanoTime() - queryStarted;
+            }
+            Arrays.sort(latencies);
+            double total = 0;
+            for (long latency : latencies) {
+                total += latency;
+            }
+            assertEquals(PRELOAD_ENTRIES + MEASURED_ENTRIES, backend.getStats().totalRows(), "every entry is stored");
+            return new double[] {MEASURED_ENTRIES / seconds, total / QUERIES / 1_000_000.0,
+                    latencies[(int) (QUERIES * 0.95)] / 1_000_000.0};
+        } finally {
+            backend.shutdown();
+        }
+    }
+
+    private void ingest(StorageBackend backend, int start, int count, Random random) throws Exception {
+        for (int written = start; written < start + count; written += BATCH) {
+            List<MineTracerConsumer.QueueEntry> batch = new ArrayList<>(BATCH);
+            for (int i = written; i < written + BATCH; i++) {
+                BlockPos pos = new BlockPos(random.nextInt(10_000) - 5000, random.nextInt(120), random.nextInt(10_000) - 5000);
+                String user = "user" + random.nextInt(50);
+                if (i % 4 == 0) {
+                    batch.add(entry(MineTracerConsumer.PROCESS_CONTAINER, "deposited", user, pos,
+                            new ItemStack(Items.COBBLESTONE, 1 + random.nextInt(64)), WORLD));
+                } else {
+                    batch.add(entry(MineTracerConsumer.PROCESS_BLOCK, i % 2 == 0 ? "placed" : "broke", user, pos,
+                            "minecraft:stone", null, WORLD));
+                }
+            }
+            backend.ingest(batch).commit();
+        }
+    }
+
+    private MineTracerConsumer.QueueEntry entry(int processType, Object... data) {
+        return new MineTracerConsumer.QueueEntry(++nextId, processType, data);
+    }
+}
@@ -0,0 +1,231 @@
+package com.minetracer.features.minetracer.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * The checks every storage backend has to pass, followed by a throughput measurement.
+ * Each backend runs on a fresh database in a temporary directory; "mysql" runs on an
+ * embedded H2 database in MySQL mode, so it needs no server.
+ */
+class StorageBackendConformanceTest {
+
+    private static final String WORLD = "minecraft:overworld";
+    private static final String OTHER_WORLD = "minecraft:the_nether";
+    private static final int THROUGHPUT_ENTRIES = 20_000;
+    private static final int THROUGHPUT_BATCH = 1000;
+    private static final int THROUGHPUT_QUERIES = 200;
+
+    @TempDir
+    Path directory;
+
+    private StorageBackend backend;
+    private int nextId = 0;
+
+    @BeforeAll
+    static void bootstrap() {
+        // Item stacks and block ids resolve through the vanilla registries
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    static Stream<String> backends() {
+        return StorageBackends.NAMES.stream();
+    }
+
+    private void open(String name) {
+        backend = StorageBackends.create(name, directory);
+        assertTrue(backend.initialize(), "backend initializes");
+    }
+
+    @AfterEach
+    void close() {
+        if (backend != null) {
+            backend.shutdown();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("backends")
+    void conformance(String name) throws Exception {
+        open(name);
+        BlockPos origin = new BlockPos(0, 64, 0);
+        BlockPos near = new BlockPos(5, 64, 0);
+        BlockPos far = new BlockPos(500, 64, 500);
+
+        MineTracerConsumer.QueueEntry depositEntry = container("deposited", "alice", origin, new ItemStack(Items.DIAMOND, 5), WORLD);
+        MineTracerConsumer.QueueEntry blockEntry = block("broke", "alice", near, "minecraft:chest", "{Items:[]}", WORLD);
+        MineTracerConsumer.QueueEntry signEntry = sign("edit", "bob", origin, "[\"hello\"]", WORLD);
+        List<MineTracerConsumer.QueueEntry> batch = Arrays.asList(
+                depositEntry,
+                container("withdrew", "alice", near, new ItemStack(Items.IRON_INGOT, 64), WORLD),
+                container("deposited", "bob", far, new ItemStack(Items.DIRT, 1), WORLD),
+                container("deposited", "bob", origin, new ItemStack(Items.STONE, 2), OTHER_WORLD),
+                blockEntry,
+                block("placed", "bob", origin, "minecraft:stone", null, WORLD),
+                signEntry,
+                kill("alice", "minecraft:zombie", origin, WORLD, 7),
+                item("pickup", "alice", origin, new ItemStack(Items.GOLD_INGOT, 3), WORLD),
+                item("drop", "bob", near, new ItemStack(Items.EMERALD, 1), WORLD));
+
+        // Ingest, commit and row ids
+        backend.ingest(batch).commit();
+        int batchRows = batch.size();
+        assertTrue(depositEntry.rowId > 0, "container rows get a row id on ingest");
+        assertTrue(blockEntry.rowId > 0, "block rows get a row id on ingest");
+        assertTrue(signEntry.rowId > 0, "sign rows get a row id on ingest");
+
+        // An aborted batch leaves nothing behind
+        backend.ingest(List.of(block("broke", "carol", far, "minecraft:dirt", null, WORLD))).abort();
+        assertTrue(backend.queryBlocks(LogQuery.forUser("carol", null, 0)).isEmpty(), "aborted batches are not visible");
+        backend.ingest(List.of(block("broke", "carol", far, "minecraft:dirt", null, WORLD))).commit();
+        assertEquals(1, backend.queryBlocks(LogQuery.forUser("carol", null, 0)).size(), "users first seen in an aborted batch can be written later");
+        batchRows++;
+
+        // Container queries
+        List<MineTracerLookup.ContainerLogEntry> exact = backend.queryContainers(LogQuery.inRange(origin, 0, null, WORLD, 1000));
+        assertEquals(1, exact.size(), "range 0 matches only the exact position");
+        MineTracerLookup.ContainerLogEntry entry = exact.get(0);
+        assertEquals(origin, entry.pos, "container position round-trips");
+        assertTrue(entry.stack.getItem() == Items.DIAMOND && entry.stack.getCount() == 5, "container stack round-trips");
+        assertTrue("deposited".equals(entry.action) && "alice".equals(entry.playerName), "container action and user round-trip");
+        assertEquals(depositEntry.rowId, entry.rowId, "queried row id matches the ingested one");
+        assertEquals(2, backend.queryContainers(LogQuery.inRange(origin, 10, null, WORLD, 1000)).size(), "range queries stay within the radius and world");
+        assertEquals(2, backend.queryContainers(LogQuery.inRange(origin, 10, "alice", WORLD, 1000)).size(), "range queries filter by user");
+        assertEquals(1, backend.queryContainers(LogQuery.forUser("bob", WORLD, 1000)).size(), "user queries filter by world");
+        assertEquals(2, backend.queryContainers(LogQuery.forUser("bob", null, 1000)).size(), "user queries without a world cover every world");
+
+        // Other log types
+        List<MineTracerLookup.BlockLogEntry> blocks = backend.queryBlocks(LogQuery.inRange(near, 0, null, WORLD, 1000));
+        assertTrue(blocks.size() == 1 && "minecraft:chest".equals(blocks.get(0).blockId) && "{Items:[]}".equals(blocks.get(0).nbt),
+                "block id and NBT round-trip");
+        List<MineTracerLookup.SignLogEntry> signs = backend.querySigns(LogQuery.forUser("bob", WORLD, 1000));
+        assertTrue(signs.size() == 1 && "[\"hello\"]".equals(signs.get(0).text), "sign text round-trips");
+        List<MineTracerLookup.KillLogEntry> kills = backend.queryKills(LogQuery.inRange(origin, 3, "alice", WORLD, 1000));
+        assertTrue(kills.size() == 1 && kills.get(0).count == 7 && WORLD.equals(kills.get(0).world), "kill count and world round-trip");
+        List<MineTracerLookup.ItemPickupDropLogEntry> items = backend.queryItems(LogQuery.forUser("alice", WORLD, 1000));
+        assertTrue(items.size() == 1 && "pickup".equals(items.get(0).action) && items.get(0).stack.getCount() == 3, "item action and stack round-trip");
+        assertTrue(backend.getUserNames().containsAll(List.of("alice", "bob")), "user names are listed");
+
+        // Ordering and limits
+        List<MineTracerConsumer.QueueEntry> repeated = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            repeated.add(block(i % 2 == 0 ? "placed" : "broke", "dave", far, "minecraft:stone", null, WORLD));
+        }
+        backend.ingest(repeated).commit();
+        batchRows += repeated.size();
+        List<MineTracerLookup.BlockLogEntry> limited = backend.queryBlocks(LogQuery.inRange(far, 0, "dave", WORLD, 10));
+        assertEquals(10, limited.size(), "limits are applied");
+        assertEquals(50, backend.queryBlocks(LogQuery.inRange(far, 0, "dave", WORLD, Integer.MAX_VALUE)).size(), "no limit returns every row");
+        for (int i = 1; i < limited.size(); i++) {
+            assertFalse(limited.get(i).timestamp.isAfter(limited.get(i - 1).timestamp), "results are newest first");
+        }
+
+        // Rollback marking
+        LongList containerIds = LongArrayList.wrap(new long[] {depositEntry.rowId});
+        LongList blockIds = LongArrayList.wrap(new long[] {blockEntry.rowId});
+        assertEquals(2, backend.markRolledBack(containerIds, blockIds, new LongArrayList()), "marking reports the rows changed");
+        assertTrue(backend.queryContainers(LogQuery.inRange(origin, 0, null, WORLD, 1000)).get(0).rolledBack, "container rows are marked rolled back");
+        assertTrue(backend.queryBlocks(LogQuery.inRange(near, 0, null, WORLD, 1000)).get(0).rolledBack, "block rows are marked rolled back");
+        assertFalse(backend.querySigns(LogQuery.forUser("bob", WORLD, 1000)).get(0).rolledBack, "unmarked rows are left alone");
+
+        // Stats and purge
+        assertEquals(batchRows, backend.getStats().totalRows(), "stats count every row");
+        long now = System.currentTimeMillis() / 1000;
+        assertEquals(0, backend.purge(now - 3600), "purge keeps rows newer than the cutoff");
+        assertEquals(batchRows, backend.purge(now + 2), "purge removes rows older than the cutoff");
+        assertEquals(0, backend.getStats().totalRows(), "nothing is left after a full purge");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("backends")
+    void throughput(String name) throws Exception {
+        open(name);
+        String[] users = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+        long started = System.nanoTime();
+        for (int written = 0; written < THROUGHPUT_ENTRIES; written += THROUGHPUT_BATCH) {
+            List<MineTracerConsumer.QueueEntry> batch = new ArrayList<>(THROUGHPUT_BATCH);
+            for (int i = written; i < written + THROUGHPUT_BATCH; i++) {
+                BlockPos pos = new BlockPos((i * 7) % 2000 - 1000, 64, (i * 13) % 2000 - 1000);
+                String user = users[i % users.length];
+                if (i % 4 == 0) {
+                    batch.add(container("deposited", user, pos, new ItemStack(Items.COBBLESTONE, 1 + i % 64), WORLD));
+                } else {
+                    batch.add(block(i % 2 == 0 ? "placed" : "broke", user, pos, "minecraft:stone", null, WORLD));
+                }
+            }
+            backend.ingest(batch).commit();
+        }
+        double ingestSeconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        long[] latencies = new long[THROUGHPUT_QUERIES];
+        for (int i = 0; i < THROUGHPUT_QUERIES; i++) {
+            BlockPos center = new BlockPos((i * 97) % 2000 - 1000, 64, (i * 89) % 2000 - 1000);
+            long queryStarted = System.nanoTime();
+            if (i % 2 == 0) {
+                backend.queryBlocks(LogQuery.inRange(center, 20, null, WORLD, 1000));
+            } else {
+                backend.queryContainers(LogQuery.forUser(users[i % users.length], WORLD, 1000));
+            }
+            latencies[i] = System.nanoTime() - queryStarted;
+        }
+        Arrays.sort(latencies);
+        double total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        System.out.println(String.format("[%s] Ingest: %d entries in %.2f s (%.0f entries/s)",
+                name, THROUGHPUT_ENTRIES, ingestSeconds, THROUGHPUT_ENTRIES / ingestSeconds));
+        System.out.println(String.format("[%s] Queries: %d in %.2f ms average, %.2f ms p95",
+                name, THROUGHPUT_QUERIES, total / THROUGHPUT_QUERIES / 1_000_000.0,
+                latencies[(int) (THROUGHPUT_QUERIES * 0.95)] / 1_000_000.0));
+        System.out.println("[" + name + "] " + backend.getStats().getSummary());
+        assertEquals(THROUGHPUT_ENTRIES, backend.getStats().totalRows(), "every entry is stored");
+    }
+
+    private MineTracerConsumer.QueueEntry entry(int processType, Object... data) {
+        return new MineTracerConsumer.QueueEntry(++nextId, processType, data);
+    }
+
+    private MineTracerConsumer.QueueEntry container(String action, String user, BlockPos pos, ItemStack stack, String world) {
+        return entry(MineTracerConsumer.PROCESS_CONTAINER, action, user, pos, stack, world);
+    }
+
+    private MineTracerConsumer.QueueEntry block(String action, String user, BlockPos pos, String blockId, String nbt, String world) {
+        return entry(MineTracerConsumer.PROCESS_BLOCK, action, user, pos, blockId, nbt, world);
+    }
+
+    private MineTracerConsumer.QueueEntry sign(String action, String user, BlockPos pos, String text, String world) {
+        return entry(MineTracerConsumer.PROCESS_SIGN, action, user, pos, text, null, world);
+    }
+
+    private MineTracerConsumer.QueueEntry kill(String killer, String victim, BlockPos pos, String world, int count) {
+        return entry(MineTracerConsumer.PROCESS_KILL, killer, victim, pos, world, count);
+    }
+
+    private MineTracerConsumer.QueueEntry item(String action, String user, BlockPos pos, ItemStack stack, String world) {
+        return entry(MineTracerConsumer.PROCESS_ITEM, action, user, pos, stack, world);
+    }
+}